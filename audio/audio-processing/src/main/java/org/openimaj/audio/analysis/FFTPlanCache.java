@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.audio.analysis;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * A shared cache of FFT plans keyed by transform size. Creating a
+ * {@link FloatFFT_1D} involves computing the twiddle-factor tables for the
+ * given size, which is expensive compared to the transform of a typical audio
+ * window. The plans hold no per-transform state once they have been
+ * constructed, so a single plan can safely be used by many threads at the same
+ * time.
+ *
+ * @author agent (agent@local)
+ */
+public final class FFTPlanCache
+{
+	private static final ConcurrentMap<Integer, FloatFFT_1D> plans = new ConcurrentHashMap<Integer, FloatFFT_1D>();
+
+	private FFTPlanCache()
+	{
+	}
+
+	/**
+	 * Get the FFT plan for transforms of the given size, creating it if
+	 * necessary.
+	 *
+	 * @param size
+	 *            the size of the transform (number of complex values for the
+	 *            complex transforms or number of real values for the real
+	 *            transforms)
+	 * @return the shared plan
+	 */
+	public static FloatFFT_1D getPlan(final int size)
+	{
+		final Integer key = size;
+		FloatFFT_1D plan = plans.get(key);
+
+		if (plan == null) {
+			final FloatFFT_1D newPlan = new FloatFFT_1D(size);
+			plan = plans.putIfAbsent(key, newPlan);
+
+			if (plan == null)
+				plan = newPlan;
+		}
+
+		return plan;
+	}
+
+	/**
+	 * Remove all the cached plans.
+	 */
+	public static void clear()
+	{
+		plans.clear();
+	}
+
+	/**
+	 * Returns the smallest power of 2 that is greater than or equal to n.
+	 *
+	 * @param n
+	 *            the value
+	 * @return the next power of 2
+	 */
+	public static int nextPowerOf2(final int n)
+	{
+		if (n <= 1)
+			return 1;
+
+		return Integer.highestOneBit(n - 1) << 1;
+	}
+}
@@ -32,6 +32,8 @@
  */
 package org.openimaj.audio.analysis;
 
+import java.util.Arrays;
+
 import org.openimaj.audio.AudioFormat;
 import org.openimaj.audio.AudioStream;
 import org.openimaj.audio.SampleChunk;
@@ -50,6 +52,11 @@ import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
  * 	frequency domain array (such as that delivered by {@link #getLastFFT()})
  * 	and returns a {@link SampleChunk}. The format of the output sample chunk
  * 	is determined by the given audio format.
+ * 	<p>
+ * 	The FFT plans are shared through the {@link FFTPlanCache} and the arrays
+ * 	holding the frequency domain data are reused between calls to process
+ * 	as long as the size of the input does not change. If you need to keep
+ * 	the data from {@link #getLastFFT()} across calls, you must copy it.
  *
  *  @author David Dupplaw (dpd@ecs.soton.ac.uk)
  *	@created 28 Oct 2011
@@ -111,35 +118,35 @@ public class FourierTransform extends AudioProcessor
 
 		// The size of the FFT to generate
 		final int sizeOfFFT = this.padToNextPowerOf2 ?
-				this.nextPowerOf2( nSamplesPerChannel ) : nSamplesPerChannel;
+				FFTPlanCache.nextPowerOf2( nSamplesPerChannel ) : nSamplesPerChannel;
 
 		// The Fourier transformer we're going to use
-		final FloatFFT_1D fft = new FloatFFT_1D( nSamplesPerChannel );
+		final FloatFFT_1D fft = FFTPlanCache.getPlan( sizeOfFFT );
+
+		// Reuse the buffers from the last window if they're the right shape
+		if( this.lastFFT == null || this.lastFFT.length != nChannels ||
+				this.lastFFT[0].length != sizeOfFFT*2 )
+			this.lastFFT = new float[nChannels][sizeOfFFT*2];
 
 		// Creates an FFT for each of the channels in turn
-		this.lastFFT = new float[nChannels][];
 		for( int c = 0; c < nChannels; c++ )
 		{
-			// Twice the length to account for imaginary parts
-			this.lastFFT[c] = new float[ sizeOfFFT*2 ];
+			final float[] data = this.lastFFT[c];
 
-			// Fill the array
+			// Fill the first half of the array with the (real) samples; the
+			// rest is zero padding and space for the imaginary parts.
 			for( int x = 0; x < nSamplesPerChannel; x++ )
-				this.lastFFT[c][x*2] = sb.get( x*nChannels+c ) * this.scalingFactor;
-
-//			System.out.println( "FFT Input (channel "+c+"), length "+this.lastFFT[c].length+": " );
-//			System.out.println( Arrays.toString( this.lastFFT[c] ));
-
-			// Perform the FFT (using jTransforms)
-			fft.complexForward( this.lastFFT[c] );
-
-			if( this.normalise )
-				this.normaliseReals( sizeOfFFT );
+				data[x] = sb.get( x*nChannels+c ) * this.scalingFactor;
+			Arrays.fill( data, nSamplesPerChannel, data.length, 0f );
 
-//			System.out.println( "FFT Output (channel "+c+"): " );
-//			System.out.println( Arrays.toString( this.lastFFT[c] ));
+			// Perform the FFT (using jTransforms). This gives the same result
+			// as the complex transform with all the imaginary parts set to zero.
+			fft.realForwardFull( data );
 		}
 
+		if( this.normalise )
+			this.normaliseReals( sizeOfFFT );
+
 	    return sb;
     }
 
@@ -154,16 +161,6 @@ public class FourierTransform extends AudioProcessor
 				this.lastFFT[c][i] /= size;
 	}
 
-	/**
-	 * 	Returns the next power of 2 superior to n.
-	 *	@param n The value to find the next power of 2 above
-	 *	@return The next power of 2
-	 */
-	private int nextPowerOf2( final int n )
-	{
-		return (int)Math.pow( 2, 32 - Integer.numberOfLeadingZeros(n - 1) );
-	}
-
 	/**
 	 * 	Given some transformed audio data, will convert it back into
 	 * 	a sample chunk. The number of channels given audio format
@@ -190,7 +187,7 @@ public class FourierTransform extends AudioProcessor
 		final int nChannels = transformedData.length;
 
 		// The Fourier transformer we're going to use
-		final FloatFFT_1D fft = new FloatFFT_1D( transformedData[0].length/2 );
+		final FloatFFT_1D fft = FFTPlanCache.getPlan( transformedData[0].length/2 );
 
 		// Create a sample buffer to put the time domain data into
 		final SampleBuffer sb = SampleBufferFactory.createSampleBuffer( format,
@@ -212,7 +209,8 @@ public class FourierTransform extends AudioProcessor
 	}
 
 	/**
-	 * 	Get the last processed FFT frequency data.
+	 * 	Get the last processed FFT frequency data. Note that the returned
+	 * 	arrays will be overwritten by the next call to process.
 	 * 	@return The fft of the last processed window
 	 */
 	public float[][] getLastFFT()
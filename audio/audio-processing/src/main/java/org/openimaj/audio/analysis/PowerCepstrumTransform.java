@@ -52,11 +52,12 @@ public class PowerCepstrumTransform extends AudioProcessor
 	/** The last generated cepstrum */
 	private float[][] lastCepstrum = null;
 
+	/** The Fourier transformer for the first transform */
+	private final FourierTransform fft = new FourierTransform();
+
 	@Override
     public SampleChunk process( final SampleChunk sample ) throws Exception
     {
-		final FourierTransform fft = new FourierTransform();
-		
 		//
 		// The squared magnitude of the Fourier transform of the logarithm 
 		// of the squared magnitude of the Fourier transform of a signal...
@@ -64,8 +65,8 @@ public class PowerCepstrumTransform extends AudioProcessor
 		// Working backwards...
 		// ... the FFT of a signal...
 		//
-		fft.process( sample );
-		final float[][] fftCoeffs = fft.getLastFFT();
+		this.fft.process( sample );
+		final float[][] fftCoeffs = this.fft.getLastFFT();
 		
 		// ...the logarithm of the squared magnitude...
 		final float logMags[][] = new float[fftCoeffs.length][];
@@ -92,7 +93,7 @@ public class PowerCepstrumTransform extends AudioProcessor
 		
 		// ... the Fast Fourier (of the log-squared-mags)
 		this.lastCepstrum  = new float[ logMags.length ][];
-		final FloatFFT_1D fft2 = new FloatFFT_1D( logMags[0].length/4 );
+		final FloatFFT_1D fft2 = FFTPlanCache.getPlan( logMags[0].length/4 );
 		for( int c = 0; c < logMags.length; c++ )
 		{
 			fft2.complexForward( logMags[c] );
@@ -0,0 +1,469 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.audio.analysis;
+
+import java.util.Arrays;
+
+import org.openimaj.audio.AudioStream;
+import org.openimaj.audio.SampleChunk;
+import org.openimaj.audio.filters.HanningAudioProcessor;
+import org.openimaj.audio.filters.WeightedWindowedAudioProcessor;
+import org.openimaj.audio.processor.AudioProcessor;
+import org.openimaj.audio.samples.SampleBuffer;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * A short-time Fourier transform (STFT) of a real audio signal. The incoming
+ * samples (which can arrive in chunks of any size) are buffered per channel,
+ * and every time a complete window is available (the first after
+ * <code>windowSize</code> samples and then every <code>hopSize</code> samples)
+ * the window is weighted, transformed with a real-input FFT and its power
+ * spectrum is computed. Each spectrum is passed to
+ * {@link #processFrame(int, float[])} which can be overridden to consume the
+ * frames; the spectrum of the most recent frame of each channel is also
+ * available from {@link #getLastPowerSpectrum()}.
+ * <p>
+ * The transform avoids allocation in the steady state: the per-channel sample
+ * history is held in ring buffers, the FFT plan comes from the
+ * {@link FFTPlanCache} and the FFT and spectrum buffers are reused for every
+ * frame. This means that the arrays passed to
+ * {@link #processFrame(int, float[])} are only valid for the duration of the
+ * call. Windows are zero-padded up to the next power of 2 before the
+ * transform.
+ * <p>
+ * Instances of this class keep state between calls, so they must not be
+ * shared between threads (although many instances will happily share the
+ * same cached FFT plans).
+ *
+ * @author agent (agent@local)
+ */
+public class ShortTimeFourierTransform extends AudioProcessor
+{
+	/** The number of samples (per channel) in each window */
+	private final int windowSize;
+
+	/** The number of samples (per channel) between the start of each window */
+	private final int hopSize;
+
+	/** The size of the FFT */
+	private final int fftSize;
+
+	/** The weights of the window function */
+	private final float[] window;
+
+	/** The FFT plan */
+	private final FloatFFT_1D fft;
+
+	/** The buffer for the FFT data */
+	private final float[] fftBuffer;
+
+	/** The per-channel ring buffers of samples */
+	private float[][] history;
+
+	/** The position in the ring buffers at which the next sample will be written */
+	private int position;
+
+	/** The number of samples until the next frame is ready */
+	private int samplesUntilNextFrame;
+
+	/** The last power spectrum of each channel */
+	private float[][] lastPowerSpectrum;
+
+	/** The number of frames that have been generated */
+	private long numberOfFrames;
+
+	/**
+	 * Construct a transform with the given window and hop size that uses a
+	 * Hanning window.
+	 *
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between the starts of
+	 *            consecutive windows
+	 */
+	public ShortTimeFourierTransform(final int windowSize, final int hopSize)
+	{
+		this(windowSize, hopSize, new HanningAudioProcessor(windowSize));
+	}
+
+	/**
+	 * Construct a transform with the given window and hop size. The weights of
+	 * the given windowing processor are applied to each window before it is
+	 * transformed.
+	 *
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between the starts of
+	 *            consecutive windows
+	 * @param windowFunction
+	 *            the window to apply (can be <code>null</code> for a
+	 *            rectangular window)
+	 */
+	public ShortTimeFourierTransform(final int windowSize, final int hopSize,
+			final WeightedWindowedAudioProcessor windowFunction)
+	{
+		if (windowSize <= 0)
+			throw new IllegalArgumentException("The window size must be positive");
+		if (hopSize <= 0)
+			throw new IllegalArgumentException("The hop size must be positive");
+
+		this.windowSize = windowSize;
+		this.hopSize = hopSize;
+		this.fftSize = Math.max(2, FFTPlanCache.nextPowerOf2(windowSize));
+		this.fft = FFTPlanCache.getPlan(this.fftSize);
+		this.fftBuffer = new float[this.fftSize];
+		this.window = createWindow(windowFunction, windowSize);
+		this.clearBuffers();
+	}
+
+	/**
+	 * Chainable constructor that uses a Hanning window.
+	 *
+	 * @param as
+	 *            the stream to chain to
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between the starts of
+	 *            consecutive windows
+	 */
+	public ShortTimeFourierTransform(final AudioStream as, final int windowSize, final int hopSize)
+	{
+		this(windowSize, hopSize);
+		this.setUnderlyingStream(as);
+	}
+
+	/**
+	 * Chainable constructor.
+	 *
+	 * @param as
+	 *            the stream to chain to
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between the starts of
+	 *            consecutive windows
+	 * @param windowFunction
+	 *            the window to apply (can be <code>null</code> for a
+	 *            rectangular window)
+	 */
+	public ShortTimeFourierTransform(final AudioStream as, final int windowSize, final int hopSize,
+			final WeightedWindowedAudioProcessor windowFunction)
+	{
+		this(windowSize, hopSize, windowFunction);
+		this.setUnderlyingStream(as);
+	}
+
+	private static float[] createWindow(final WeightedWindowedAudioProcessor windowFunction, final int windowSize)
+	{
+		final float[] window = new float[windowSize];
+
+		if (windowFunction == null) {
+			Arrays.fill(window, 1f);
+		} else {
+			// force the generation of a single channel weight table
+			windowFunction.getWindowSum(windowSize, 1);
+			final double[] weights = windowFunction.getWeights();
+			for (int i = 0; i < windowSize; i++)
+				window[i] = (float) weights[i];
+		}
+
+		return window;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Also discards any buffered samples so that the next frame will be
+	 * generated once another <code>windowSize</code> samples have been
+	 * processed.
+	 *
+	 * @see org.openimaj.audio.processor.AudioProcessor#reset()
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.clearBuffers();
+	}
+
+	private void clearBuffers()
+	{
+		this.history = null;
+		this.lastPowerSpectrum = null;
+		this.position = 0;
+		this.samplesUntilNextFrame = this.windowSize;
+		this.numberOfFrames = 0;
+	}
+
+	private void ensureChannels(final int nChannels)
+	{
+		if (this.history == null || this.history.length != nChannels) {
+			this.history = new float[nChannels][this.windowSize];
+			this.lastPowerSpectrum = new float[nChannels][this.fftSize / 2 + 1];
+			this.position = 0;
+			this.samplesUntilNextFrame = this.windowSize;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.openimaj.audio.processor.AudioProcessor#process(org.openimaj.audio.SampleChunk)
+	 */
+	@Override
+	public SampleChunk process(final SampleChunk sample)
+	{
+		this.process(sample.getSampleBuffer());
+		return sample;
+	}
+
+	/**
+	 * Process the (interleaved) samples in the given buffer, generating any
+	 * frames that become complete.
+	 *
+	 * @param sb
+	 *            the sample buffer
+	 * @return the number of frames that were generated
+	 */
+	public int process(final SampleBuffer sb)
+	{
+		final int nChannels = sb.getFormat().getNumChannels();
+		final int nSamplesPerChannel = sb.size() / nChannels;
+		this.ensureChannels(nChannels);
+
+		int frames = 0;
+		for (int i = 0; i < nSamplesPerChannel; i++) {
+			for (int c = 0; c < nChannels; c++)
+				this.history[c][this.position] = sb.get(i * nChannels + c);
+
+			if (this.advance())
+				frames++;
+		}
+		return frames;
+	}
+
+	/**
+	 * Process the given single channel samples, generating any frames that
+	 * become complete.
+	 *
+	 * @param samples
+	 *            the samples
+	 * @param offset
+	 *            the offset of the first sample in the array
+	 * @param length
+	 *            the number of samples to process
+	 * @return the number of frames that were generated
+	 */
+	public int process(final float[] samples, final int offset, final int length)
+	{
+		this.ensureChannels(1);
+
+		final float[] h = this.history[0];
+		int frames = 0;
+		for (int i = offset; i < offset + length; i++) {
+			h[this.position] = samples[i];
+
+			if (this.advance())
+				frames++;
+		}
+		return frames;
+	}
+
+	/**
+	 * Move on by one sample and generate the frames if a window is complete
+	 *
+	 * @return true if frames were generated
+	 */
+	private boolean advance()
+	{
+		this.position++;
+		if (this.position == this.windowSize)
+			this.position = 0;
+
+		if (--this.samplesUntilNextFrame > 0)
+			return false;
+
+		for (int c = 0; c < this.history.length; c++) {
+			this.transform(this.history[c], this.lastPowerSpectrum[c]);
+			this.processFrame(c, this.lastPowerSpectrum[c]);
+		}
+
+		this.numberOfFrames++;
+		this.samplesUntilNextFrame = this.hopSize;
+		return true;
+	}
+
+	/**
+	 * Compute the power spectrum of the window currently held in the given
+	 * ring buffer. The oldest sample is at the current write position.
+	 */
+	private void transform(final float[] ring, final float[] spectrum)
+	{
+		final float[] data = this.fftBuffer;
+		final int n = this.windowSize;
+		final int split = n - this.position;
+
+		for (int i = 0; i < split; i++)
+			data[i] = ring[this.position + i] * this.window[i];
+		for (int i = split; i < n; i++)
+			data[i] = ring[i - split] * this.window[i];
+		Arrays.fill(data, n, this.fftSize, 0f);
+
+		this.fft.realForward(data);
+		powerSpectrum(data, this.fftSize, spectrum);
+	}
+
+	/**
+	 * Compute the power spectrum from the packed output of
+	 * {@link FloatFFT_1D#realForward(float[])}. The output array must have
+	 * length at least <code>n/2 + 1</code>.
+	 *
+	 * @param packed
+	 *            the packed FFT data
+	 * @param n
+	 *            the (even) size of the transform
+	 * @param spectrum
+	 *            the array to write the power into
+	 * @return the spectrum array
+	 */
+	public static float[] powerSpectrum(final float[] packed, final int n, final float[] spectrum)
+	{
+		final int half = n / 2;
+
+		spectrum[0] = packed[0] * packed[0];
+		spectrum[half] = packed[1] * packed[1];
+		for (int k = 1; k < half; k++) {
+			final float re = packed[2 * k];
+			final float im = packed[2 * k + 1];
+			spectrum[k] = re * re + im * im;
+		}
+
+		return spectrum;
+	}
+
+	/**
+	 * Called with the power spectrum of each channel every time a frame is
+	 * complete. The default implementation does nothing. The spectrum array is
+	 * reused for the next frame, so it must be copied if it needs to be kept.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param powerSpectrum
+	 *            the power spectrum (with <code>fftSize/2 + 1</code> bins from
+	 *            DC to the Nyquist frequency)
+	 */
+	protected void processFrame(final int channel, final float[] powerSpectrum)
+	{
+		// do nothing by default
+	}
+
+	/**
+	 * Get the power spectrum of the last frame for each channel. The arrays
+	 * are overwritten when the next frame is generated.
+	 *
+	 * @return the last power spectra, or null if nothing has been processed
+	 */
+	public float[][] getLastPowerSpectrum()
+	{
+		return this.lastPowerSpectrum;
+	}
+
+	/**
+	 * Get the magnitude spectrum of the last frame for each channel.
+	 *
+	 * @return the magnitudes of the last frame, or null if nothing has been
+	 *         processed
+	 */
+	public float[][] getLastMagnitudeSpectrum()
+	{
+		if (this.lastPowerSpectrum == null)
+			return null;
+
+		final float[][] mags = new float[this.lastPowerSpectrum.length][];
+		for (int c = 0; c < mags.length; c++) {
+			mags[c] = new float[this.lastPowerSpectrum[c].length];
+			for (int i = 0; i < mags[c].length; i++)
+				mags[c][i] = (float) Math.sqrt(this.lastPowerSpectrum[c][i]);
+		}
+		return mags;
+	}
+
+	/**
+	 * Get the frequency at the centre of the given spectrum bin
+	 *
+	 * @param bin
+	 *            the bin
+	 * @param sampleRate
+	 *            the sample rate of the audio in Hz
+	 * @return the frequency in Hz
+	 */
+	public double getBinFrequency(final int bin, final double sampleRate)
+	{
+		return bin * sampleRate / this.fftSize;
+	}
+
+	/**
+	 * @return the number of samples per channel in each window
+	 */
+	public int getWindowSize()
+	{
+		return this.windowSize;
+	}
+
+	/**
+	 * @return the number of samples per channel between consecutive windows
+	 */
+	public int getHopSize()
+	{
+		return this.hopSize;
+	}
+
+	/**
+	 * @return the size of the FFT (the window size rounded up to a power of
+	 *         2)
+	 */
+	public int getFFTSize()
+	{
+		return this.fftSize;
+	}
+
+	/**
+	 * @return the number of frames generated since construction or the last
+	 *         {@link #reset()}
+	 */
+	public long getNumberOfFrames()
+	{
+		return this.numberOfFrames;
+	}
+}
@@ -38,7 +38,11 @@ import org.openimaj.audio.samples.SampleBuffer;
 /**
  *	A wrapper around the MFCC implementation of jAudio (which itself
  *	is a wrapper around the OrangeCow Volume implementation of FFT).
+ *	<p>
+ *	For large volumes of audio, or where the audio is being streamed,
+ *	the native (single precision) {@link StreamingMFCC} is much faster.
  *
+ *	@see StreamingMFCC
  *	@author David Dupplaw (dpd@ecs.soton.ac.uk)
  *  @created 5 Mar 2013
  *	@version $Author$, $Revision$, $Date$
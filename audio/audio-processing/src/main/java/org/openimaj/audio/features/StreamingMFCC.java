@@ -0,0 +1,509 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.audio.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.audio.AudioStream;
+import org.openimaj.audio.SampleChunk;
+import org.openimaj.audio.analysis.ShortTimeFourierTransform;
+import org.openimaj.audio.filters.HammingAudioProcessor;
+import org.openimaj.audio.filters.MelFilterBank;
+import org.openimaj.audio.filters.TriangularFilter;
+import org.openimaj.audio.filters.WeightedWindowedAudioProcessor;
+import org.openimaj.audio.processor.AudioProcessor;
+import org.openimaj.audio.samples.SampleBuffer;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.feature.FloatFV;
+
+/**
+ * A native implementation of Mel-frequency cepstral coefficients (MFCCs) and
+ * log-Mel spectra that works directly on the incoming samples without going
+ * through jAudio (c.f. {@link MFCC}).
+ * <p>
+ * The samples are split into (possibly overlapping) windows by a
+ * {@link ShortTimeFourierTransform}, so the input can arrive in chunks of any
+ * size and the coefficients are computed every <code>hopSize</code> samples.
+ * The power spectrum of each window is passed through the triangular filters
+ * of a {@link MelFilterBank}, the logarithm of the filter energies is taken
+ * and (unless only the log-Mel spectrum is required) a DCT-II is applied to
+ * decorrelate them. All computation is in single precision. The filter bank
+ * weights (as a sparse set of bin ranges) and the DCT matrix are computed
+ * once, the first time that they are needed, and are recomputed only if the
+ * sample rate of the audio changes.
+ * <p>
+ * Each set of coefficients is passed to {@link #processCoefficients(int, float[])}
+ * which can be overridden to consume the coefficients as they are produced. The
+ * arrays passed to this method are reused, so must be copied if they are to be
+ * kept. Instances are not thread-safe.
+ *
+ * @author agent (agent@local)
+ */
+public class StreamingMFCC extends AudioProcessor implements FeatureExtractor<FloatFV, SampleChunk>
+{
+	/** The default window size in samples */
+	public static final int DEFAULT_WINDOW_SIZE = 512;
+
+	/** The default hop size in samples */
+	public static final int DEFAULT_HOP_SIZE = 256;
+
+	/** The default number of cepstral coefficients */
+	public static final int DEFAULT_NUM_COEFFICIENTS = 13;
+
+	/** The smallest energy that the logarithm will be taken of */
+	private static final float LOG_FLOOR = 1e-10f;
+
+	/** The filter bank */
+	private final MelFilterBank filterBank;
+
+	/** The number of coefficients to compute */
+	private final int nCoefficients;
+
+	/** Whether to just compute the log-Mel spectrum */
+	private boolean logMelOnly = false;
+
+	/** The transform used to compute the spectra */
+	private final ShortTimeFourierTransform stft;
+
+	/** The sample rate that the filter weights have been computed for */
+	private double sampleRate = -1;
+
+	/** The first spectrum bin of each filter */
+	private int[] filterStart;
+
+	/** The weights of each filter, starting at filterStart */
+	private float[][] filterWeights;
+
+	/** The DCT matrix [coefficient][filter] */
+	private float[][] dct;
+
+	/** Workspace for the filter energies */
+	private float[] energies;
+
+	/** The last coefficients computed for each channel */
+	private float[][] lastCoefficients;
+
+	/** If not null, copies of the coefficients are collected here */
+	private List<float[]> collected;
+
+	/**
+	 * Construct with the default window (512 samples), hop (256 samples) and
+	 * number of coefficients (13) and the default {@link MelFilterBank}.
+	 */
+	public StreamingMFCC()
+	{
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_HOP_SIZE);
+	}
+
+	/**
+	 * Construct with the given window and hop sizes, 13 coefficients and the
+	 * default {@link MelFilterBank}.
+	 *
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between consecutive
+	 *            windows
+	 */
+	public StreamingMFCC(final int windowSize, final int hopSize)
+	{
+		this(windowSize, hopSize, DEFAULT_NUM_COEFFICIENTS, new MelFilterBank(), new HammingAudioProcessor(
+				windowSize));
+	}
+
+	/**
+	 * Construct with the given parameters.
+	 *
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between consecutive
+	 *            windows
+	 * @param nCoefficients
+	 *            the number of cepstral coefficients (must not be more than
+	 *            the number of filters)
+	 * @param filterBank
+	 *            the Mel filter bank
+	 * @param window
+	 *            the window function to apply before the transform (can be
+	 *            <code>null</code> for a rectangular window)
+	 */
+	public StreamingMFCC(final int windowSize, final int hopSize, final int nCoefficients,
+			final MelFilterBank filterBank, final WeightedWindowedAudioProcessor window)
+	{
+		if (nCoefficients > filterBank.getFilters().size())
+			throw new IllegalArgumentException("The number of coefficients cannot be greater than the number of filters");
+
+		this.filterBank = filterBank;
+		this.nCoefficients = nCoefficients;
+		this.stft = new ShortTimeFourierTransform(windowSize, hopSize, window) {
+			@Override
+			protected void processFrame(int channel, float[] powerSpectrum) {
+				StreamingMFCC.this.processSpectrum(channel, powerSpectrum);
+			}
+		};
+	}
+
+	/**
+	 * Chainable constructor with the given window and hop sizes, 13
+	 * coefficients and the default {@link MelFilterBank}.
+	 *
+	 * @param as
+	 *            the stream to chain to
+	 * @param windowSize
+	 *            the number of samples per channel in each window
+	 * @param hopSize
+	 *            the number of samples per channel between consecutive
+	 *            windows
+	 */
+	public StreamingMFCC(final AudioStream as, final int windowSize, final int hopSize)
+	{
+		this(windowSize, hopSize);
+		this.setUnderlyingStream(as);
+	}
+
+	/**
+	 * Set whether only the log-Mel spectrum (the logarithm of the filter
+	 * energies) should be computed instead of the cepstral coefficients.
+	 *
+	 * @param logMelOnly
+	 *            true to skip the DCT
+	 */
+	public void setLogMelOnly(final boolean logMelOnly)
+	{
+		this.logMelOnly = logMelOnly;
+		this.lastCoefficients = null;
+	}
+
+	/**
+	 * @return true if only the log-Mel spectrum is being computed
+	 */
+	public boolean isLogMelOnly()
+	{
+		return this.logMelOnly;
+	}
+
+	/**
+	 * @return the length of the vectors that will be produced for each window
+	 */
+	public int getNumberOfOutputs()
+	{
+		return this.logMelOnly ? this.filterBank.getFilters().size() : this.nCoefficients;
+	}
+
+	/**
+	 * Set the sample rate of the audio that will be processed through the
+	 * ad-hoc methods that take raw sample arrays. The sample rate is set
+	 * automatically when {@link SampleChunk}s or {@link SampleBuffer}s are
+	 * processed.
+	 *
+	 * @param sampleRate
+	 *            the sample rate in Hz
+	 */
+	public void setSampleRate(final double sampleRate)
+	{
+		if (sampleRate != this.sampleRate) {
+			this.sampleRate = sampleRate;
+			this.filterWeights = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @see org.openimaj.audio.processor.AudioProcessor#process(org.openimaj.audio.SampleChunk)
+	 */
+	@Override
+	public SampleChunk process(final SampleChunk sample)
+	{
+		this.process(sample.getSampleBuffer());
+		return sample;
+	}
+
+	/**
+	 * Process the samples in the given buffer, computing the coefficients of
+	 * any windows that become complete.
+	 *
+	 * @param sb
+	 *            the sample buffer
+	 * @return the number of windows that were completed
+	 */
+	public int process(final SampleBuffer sb)
+	{
+		this.setSampleRate(sb.getFormat().getSampleRateKHz() * 1000);
+		return this.stft.process(sb);
+	}
+
+	/**
+	 * Process the given single channel samples, computing the coefficients of
+	 * any windows that become complete. The sample rate must have been set
+	 * with {@link #setSampleRate(double)}.
+	 *
+	 * @param samples
+	 *            the samples
+	 * @param offset
+	 *            the offset of the first sample
+	 * @param length
+	 *            the number of samples
+	 * @return the number of windows that were completed
+	 */
+	public int process(final float[] samples, final int offset, final int length)
+	{
+		if (this.sampleRate <= 0)
+			throw new IllegalStateException("The sample rate has not been set");
+
+		return this.stft.process(samples, offset, length);
+	}
+
+	/**
+	 * Compute the coefficients of all the windows in the given single channel
+	 * signal. Any samples buffered from previous calls are discarded first,
+	 * and {@link #processCoefficients(int, float[])} is called as normal for
+	 * each window.
+	 *
+	 * @param samples
+	 *            the samples
+	 * @param sampleRate
+	 *            the sample rate in Hz
+	 * @return the coefficients of each window
+	 */
+	public float[][] calculateMFCC(final float[] samples, final double sampleRate)
+	{
+		this.clearBuffers();
+		this.setSampleRate(sampleRate);
+
+		this.collected = new ArrayList<float[]>();
+		try {
+			this.stft.process(samples, 0, samples.length);
+			return this.collected.toArray(new float[this.collected.size()][]);
+		} finally {
+			this.collected = null;
+		}
+	}
+
+	/**
+	 * Computes the coefficients of the given chunk, and returns the
+	 * coefficients of the most recently completed window (of each channel,
+	 * concatenated). If the window and hop sizes match the size of the chunks
+	 * this gives one feature per chunk.
+	 *
+	 * @return the feature, or null if no window has been completed yet
+	 * @see org.openimaj.feature.FeatureExtractor#extractFeature(java.lang.Object)
+	 */
+	@Override
+	public FloatFV extractFeature(final SampleChunk sc)
+	{
+		this.process(sc.getSampleBuffer());
+
+		if (this.lastCoefficients == null)
+			return null;
+
+		final int n = this.getNumberOfOutputs();
+		final float[] fv = new float[this.lastCoefficients.length * n];
+		for (int c = 0; c < this.lastCoefficients.length; c++)
+			System.arraycopy(this.lastCoefficients[c], 0, fv, c * n, n);
+
+		return new FloatFV(fv);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Also discards any buffered samples.
+	 *
+	 * @see org.openimaj.audio.processor.AudioProcessor#reset()
+	 */
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.clearBuffers();
+	}
+
+	private void clearBuffers()
+	{
+		this.stft.reset();
+		this.lastCoefficients = null;
+	}
+
+	/**
+	 * Called by the transform with the power spectrum of each window
+	 */
+	private void processSpectrum(final int channel, final float[] powerSpectrum)
+	{
+		final int n = this.getNumberOfOutputs();
+		final int nChannels = this.stft.getLastPowerSpectrum().length;
+
+		if (this.lastCoefficients == null || this.lastCoefficients.length != nChannels)
+			this.lastCoefficients = new float[nChannels][n];
+
+		final float[] coeffs = this.computeCoefficients(powerSpectrum, this.lastCoefficients[channel]);
+
+		if (this.collected != null)
+			this.collected.add(coeffs.clone());
+
+		this.processCoefficients(channel, coeffs);
+	}
+
+	/**
+	 * Compute the coefficients of the given power spectrum.
+	 *
+	 * @param powerSpectrum
+	 *            the power spectrum from DC to the Nyquist frequency
+	 * @param out
+	 *            the array to write the coefficients into
+	 * @return the coefficients
+	 */
+	protected float[] computeCoefficients(final float[] powerSpectrum, final float[] out)
+	{
+		if (this.filterWeights == null)
+			this.createFilterWeights(powerSpectrum.length);
+
+		// Apply the filter bank and take the log
+		final float[] e = this.logMelOnly ? out : this.energies;
+		for (int f = 0; f < this.filterWeights.length; f++) {
+			final float[] w = this.filterWeights[f];
+			final int start = this.filterStart[f];
+
+			float sum = 0;
+			for (int i = 0; i < w.length; i++)
+				sum += w[i] * powerSpectrum[start + i];
+
+			e[f] = (float) Math.log(sum < LOG_FLOOR ? LOG_FLOOR : sum);
+		}
+
+		if (this.logMelOnly)
+			return out;
+
+		// Decorrelate with the DCT
+		for (int k = 0; k < this.nCoefficients; k++) {
+			final float[] basis = this.dct[k];
+
+			float sum = 0;
+			for (int f = 0; f < basis.length; f++)
+				sum += basis[f] * e[f];
+			out[k] = sum;
+		}
+
+		return out;
+	}
+
+	/**
+	 * Build the sparse filter weights for the spectrum size and current sample
+	 * rate, and the DCT matrix if it hasn't been built already.
+	 */
+	private void createFilterWeights(final int nBins)
+	{
+		if (this.sampleRate <= 0)
+			throw new IllegalStateException("The sample rate has not been set");
+
+		final List<TriangularFilter> filters = this.filterBank.getFilters();
+		final int nFilters = filters.size();
+		final int fftSize = this.stft.getFFTSize();
+
+		this.filterStart = new int[nFilters];
+		this.filterWeights = new float[nFilters][];
+		for (int f = 0; f < nFilters; f++) {
+			final TriangularFilter filter = filters.get(f);
+
+			int start = (int) Math.ceil(filter.getLowFrequency() * fftSize / this.sampleRate);
+			int end = (int) Math.floor(filter.getHighFrequency() * fftSize / this.sampleRate);
+			start = Math.max(0, start);
+			end = Math.min(nBins - 1, end);
+
+			this.filterStart[f] = start;
+			this.filterWeights[f] = new float[Math.max(0, end - start + 1)];
+			for (int i = start; i <= end; i++)
+				this.filterWeights[f][i - start] = (float) filter.getWeightAt(i * this.sampleRate / fftSize);
+		}
+
+		if (this.dct == null)
+			this.dct = createDCTMatrix(this.nCoefficients, nFilters);
+
+		this.energies = new float[nFilters];
+	}
+
+	/**
+	 * Create an orthonormal DCT-II matrix.
+	 *
+	 * @param nCoefficients
+	 *            the number of output coefficients (rows)
+	 * @param n
+	 *            the length of the input (columns)
+	 * @return the DCT matrix
+	 */
+	public static float[][] createDCTMatrix(final int nCoefficients, final int n)
+	{
+		final float[][] dct = new float[nCoefficients][n];
+		final double s0 = Math.sqrt(1.0 / n);
+		final double s = Math.sqrt(2.0 / n);
+
+		for (int k = 0; k < nCoefficients; k++)
+			for (int i = 0; i < n; i++)
+				dct[k][i] = (float) ((k == 0 ? s0 : s) * Math.cos(Math.PI * k * (i + 0.5) / n));
+
+		return dct;
+	}
+
+	/**
+	 * Called with the coefficients of each completed window. The default
+	 * implementation does nothing. The array is reused for the next window of
+	 * the same channel.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param coefficients
+	 *            the coefficients (or log-Mel energies)
+	 */
+	protected void processCoefficients(final int channel, final float[] coefficients)
+	{
+		// do nothing by default
+	}
+
+	/**
+	 * Get the coefficients of the most recent window of each channel. The
+	 * arrays are overwritten by subsequent processing.
+	 *
+	 * @return the last coefficients or null if no window has been completed
+	 */
+	public float[][] getLastCoefficients()
+	{
+		return this.lastCoefficients;
+	}
+
+	/**
+	 * @return the underlying short-time Fourier transform
+	 */
+	public ShortTimeFourierTransform getTransform()
+	{
+		return this.stft;
+	}
+}
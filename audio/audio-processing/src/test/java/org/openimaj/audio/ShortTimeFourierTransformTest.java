@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.audio;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.audio.analysis.FFTPlanCache;
+import org.openimaj.audio.analysis.FourierTransform;
+import org.openimaj.audio.analysis.ShortTimeFourierTransform;
+import org.openimaj.audio.samples.SampleBuffer;
+import org.openimaj.audio.samples.SampleBufferFactory;
+
+import edu.emory.mathcs.jtransforms.fft.FloatFFT_1D;
+
+/**
+ * Tests for the {@link ShortTimeFourierTransform} and the {@link FourierTransform}
+ * using the cached plans.
+ *
+ * @author agent (agent@local)
+ */
+public class ShortTimeFourierTransformTest
+{
+	private static float[] sine(final int length, final double freq, final double sampleRate)
+	{
+		final float[] data = new float[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (float) Math.sin(2 * Math.PI * freq * i / sampleRate);
+		return data;
+	}
+
+	/**
+	 * Test that the plans are shared
+	 */
+	@Test
+	public void testPlanCache()
+	{
+		final FloatFFT_1D p1 = FFTPlanCache.getPlan(512);
+		final FloatFFT_1D p2 = FFTPlanCache.getPlan(512);
+
+		assertEquals(p1, p2);
+		assertEquals(1, FFTPlanCache.nextPowerOf2(1));
+		assertEquals(512, FFTPlanCache.nextPowerOf2(512));
+		assertEquals(1024, FFTPlanCache.nextPowerOf2(513));
+	}
+
+	/**
+	 * Test that the number of frames is correct and independent of the way the
+	 * samples are chunked, and that the peak is in the right place.
+	 */
+	@Test
+	public void testFrames()
+	{
+		final double sampleRate = 8000;
+		final float[] data = sine(4096, 1000, sampleRate);
+
+		final List<Integer> peaks = new ArrayList<Integer>();
+		final ShortTimeFourierTransform stft = new ShortTimeFourierTransform(256, 128) {
+			@Override
+			protected void processFrame(int channel, float[] powerSpectrum) {
+				int max = 0;
+				for (int i = 1; i < powerSpectrum.length; i++)
+					if (powerSpectrum[i] > powerSpectrum[max])
+						max = i;
+				peaks.add(max);
+			}
+		};
+
+		// feed the samples in awkwardly sized chunks
+		int frames = 0;
+		for (int i = 0; i < data.length; i += 100)
+			frames += stft.process(data, i, Math.min(100, data.length - i));
+
+		assertEquals(1 + (4096 - 256) / 128, frames);
+		assertEquals(frames, stft.getNumberOfFrames());
+		assertEquals(frames, peaks.size());
+		assertEquals(129, stft.getLastPowerSpectrum()[0].length);
+
+		for (final int p : peaks)
+			assertEquals(1000, stft.getBinFrequency(p, sampleRate), 1e-6);
+
+		final ShortTimeFourierTransform stft2 = new ShortTimeFourierTransform(256, 128);
+		assertEquals(frames, stft2.process(data, 0, data.length));
+	}
+
+	/**
+	 * Test that the real transform in the {@link FourierTransform} gives the
+	 * same results as a complex transform of the same data.
+	 */
+	@Test
+	public void testFourierTransform()
+	{
+		final AudioFormat af = new AudioFormat(16, 8, 1);
+		final SampleBuffer sb = SampleBufferFactory.createSampleBuffer(af, 512);
+		final float[] data = sine(512, 440, 8000);
+		for (int i = 0; i < data.length; i++)
+			sb.set(i, data[i] * 10000);
+
+		final FourierTransform ft = new FourierTransform();
+		ft.process(sb);
+		final float[] result = ft.getLastFFT()[0];
+
+		final float[] expected = new float[1024];
+		for (int i = 0; i < 512; i++)
+			expected[i * 2] = sb.get(i);
+		new FloatFFT_1D(512).complexForward(expected);
+		for (int i = 0; i < expected.length; i += 2)
+			expected[i] /= 512;
+
+		assertEquals(expected.length, result.length);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], result[i], 1e-2);
+
+		// process again to check the buffers are correctly reset
+		ft.process(sb);
+		for (int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], ft.getLastFFT()[0][i], 1e-2);
+	}
+}
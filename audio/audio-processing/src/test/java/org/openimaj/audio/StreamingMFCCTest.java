@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.audio;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.audio.features.StreamingMFCC;
+import org.openimaj.audio.filters.MelFilterBank;
+import org.openimaj.audio.filters.TriangularFilter;
+
+/**
+ * Tests for the {@link StreamingMFCC}
+ *
+ * @author agent (agent@local)
+ */
+public class StreamingMFCCTest
+{
+	private static float[] signal(final int length, final double sampleRate)
+	{
+		final float[] data = new float[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (float) (Math.sin(2 * Math.PI * 440 * i / sampleRate) + 0.5 * Math.sin(2 * Math.PI * 1500 * i
+					/ sampleRate));
+		return data;
+	}
+
+	/**
+	 * Test that the DCT matrix is orthonormal
+	 */
+	@Test
+	public void testDCT()
+	{
+		final float[][] dct = StreamingMFCC.createDCTMatrix(20, 20);
+
+		for (int i = 0; i < 20; i++) {
+			for (int j = 0; j < 20; j++) {
+				double dot = 0;
+				for (int k = 0; k < 20; k++)
+					dot += dct[i][k] * dct[j][k];
+				assertEquals(i == j ? 1 : 0, dot, 1e-5);
+			}
+		}
+	}
+
+	/**
+	 * Test that the coefficients don't depend on how the input is chunked
+	 */
+	@Test
+	public void testStreaming()
+	{
+		final double sampleRate = 16000;
+		final float[] data = signal(8000, sampleRate);
+
+		final StreamingMFCC mfcc = new StreamingMFCC(400, 160);
+		final float[][] all = mfcc.calculateMFCC(data, sampleRate);
+		assertEquals(1 + (8000 - 400) / 160, all.length);
+
+		final List<float[]> streamed = new ArrayList<float[]>();
+		final StreamingMFCC mfcc2 = new StreamingMFCC(400, 160) {
+			@Override
+			protected void processCoefficients(int channel, float[] coefficients) {
+				streamed.add(coefficients.clone());
+			}
+		};
+		mfcc2.setSampleRate(sampleRate);
+		for (int i = 0; i < data.length; i += 77)
+			mfcc2.process(data, i, Math.min(77, data.length - i));
+
+		assertEquals(all.length, streamed.size());
+		for (int i = 0; i < all.length; i++)
+			assertArrayEquals(all[i], streamed.get(i), 1e-5f);
+	}
+
+	/**
+	 * Test the log-Mel energies against a direct (double precision)
+	 * computation
+	 */
+	@Test
+	public void testLogMel()
+	{
+		final double sampleRate = 16000;
+		final int n = 512;
+		final float[] data = signal(n, sampleRate);
+
+		final MelFilterBank mfb = new MelFilterBank(26, 300, 6000);
+		final StreamingMFCC mfcc = new StreamingMFCC(n, n, 13, mfb, null);
+		mfcc.setLogMelOnly(true);
+		final float[][] logMel = mfcc.calculateMFCC(data, sampleRate);
+		assertEquals(1, logMel.length);
+		assertEquals(26, logMel[0].length);
+
+		// direct DFT
+		final double[] power = new double[n / 2 + 1];
+		for (int k = 0; k <= n / 2; k++) {
+			double re = 0, im = 0;
+			for (int i = 0; i < n; i++) {
+				re += data[i] * Math.cos(2 * Math.PI * k * i / n);
+				im -= data[i] * Math.sin(2 * Math.PI * k * i / n);
+			}
+			power[k] = re * re + im * im;
+		}
+
+		for (int f = 0; f < 26; f++) {
+			final TriangularFilter tf = mfb.getFilters().get(f);
+			double e = 0;
+			for (int k = 0; k <= n / 2; k++) {
+				final double freq = k * sampleRate / n;
+				if (freq >= tf.getLowFrequency() && freq <= tf.getHighFrequency())
+					e += tf.getWeightAt(freq) * power[k];
+			}
+			assertEquals(Math.log(Math.max(e, 1e-10)), logMel[0][f], 1e-2);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.io.KryoPool;
+import org.openimaj.io.KryoRegistrar;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * {@link KryoRegistrar} for the {@link FImage} and {@link MBFImage} classes.
+ * The images are written as their dimensions followed by the raw pixel data.
+ * 
+ * @author agent (agent@local)
+ */
+public class ImageKryoRegistrar implements KryoRegistrar {
+	/**
+	 * {@link Serializer} for {@link FImage}s
+	 */
+	public static class FImageSerializer extends Serializer<FImage> {
+		@Override
+		public void write(Kryo kryo, Output output, FImage image) {
+			output.writeInt(image.width, true);
+			output.writeInt(image.height, true);
+
+			for (final float[] row : image.pixels) {
+				for (int x = 0; x < image.width; x++)
+					output.writeFloat(row[x]);
+			}
+		}
+
+		@Override
+		public FImage read(Kryo kryo, Input input, Class<FImage> type) {
+			final int width = input.readInt(true);
+			final int height = input.readInt(true);
+			final FImage image = new FImage(width, height);
+
+			for (final float[] row : image.pixels) {
+				for (int x = 0; x < width; x++)
+					row[x] = input.readFloat();
+			}
+
+			return image;
+		}
+	}
+
+	/**
+	 * {@link Serializer} for {@link MBFImage}s
+	 */
+	public static class MBFImageSerializer extends Serializer<MBFImage> {
+		private final FImageSerializer bandSerializer = new FImageSerializer();
+
+		@Override
+		public void write(Kryo kryo, Output output, MBFImage image) {
+			output.writeString(image.colourSpace == null ? null : image.colourSpace.name());
+			output.writeInt(image.bands.size(), true);
+
+			for (final FImage band : image.bands)
+				bandSerializer.write(kryo, output, band);
+		}
+
+		@Override
+		public MBFImage read(Kryo kryo, Input input, Class<MBFImage> type) {
+			final String cs = input.readString();
+			final FImage[] bands = new FImage[input.readInt(true)];
+
+			for (int i = 0; i < bands.length; i++)
+				bands[i] = bandSerializer.read(kryo, input, FImage.class);
+
+			final MBFImage image = new MBFImage(bands);
+			image.colourSpace = cs == null ? null : ColourSpace.valueOf(cs);
+			return image;
+		}
+	}
+
+	@Override
+	public List<Registration> getRegistrations() {
+		return Arrays.asList(
+				new Registration(FImage.class, new FImageSerializer(), KryoPool.MIN_REGISTRATION_ID),
+				new Registration(MBFImage.class, new MBFImageSerializer(), KryoPool.MIN_REGISTRATION_ID + 1)
+				);
+	}
+}
@@ -221,6 +221,20 @@ public class ConnectedComponent extends PixelSet {
 		super(pixels);
 	}
 
+	/**
+	 * Construct a connected component backed by the given run-length encoded
+	 * set of pixels. Unlike {@link #ConnectedComponent(Set)}, the pixels are not
+	 * copied; the given set is used directly. If the pixels do not form a
+	 * connected component then some methods in this class may not return
+	 * expected results.
+	 *
+	 * @param pixels
+	 *            the pixels
+	 */
+	public ConnectedComponent(PixelSpanSet pixels) {
+		super(pixels);
+	}
+
 	/**
 	 * Estimates how many vertices are required to encode the boundary with the
 	 * given smoothness and window width. Basically it determines how many
@@ -959,10 +973,15 @@ public class ConnectedComponent extends PixelSet {
 		ConnectedComponent tmp;
 		try {
 			tmp = (ConnectedComponent) super.clone();
-			tmp.pixels = new HashSet<Pixel>();
 
-			for (final Pixel p : pixels)
-				tmp.pixels.add(p.clone());
+			if (pixels instanceof PixelSpanSet) {
+				tmp.pixels = ((PixelSpanSet) pixels).clone();
+			} else {
+				tmp.pixels = new HashSet<Pixel>();
+
+				for (final Pixel p : pixels)
+					tmp.pixels.add(p.clone());
+			}
 
 			return tmp;
 		} catch (final CloneNotSupportedException e) {
@@ -52,6 +52,13 @@ import Jama.Matrix;
  * A set of (not-necessarily connected) pixels within an image. This class
  * provides a number of utility functions for working with and analysing the
  * pixels.
+ * <p>
+ * The pixels are usually held in a {@link HashSet}, but can also be backed by
+ * a run-length encoded {@link PixelSpanSet} (see
+ * {@link #PixelSet(PixelSpanSet)}), which is much more compact for large
+ * regions and allows many of the methods of this class to work directly on
+ * the spans. Note that the {@link Pixel}s of a {@link PixelSpanSet} are created
+ * on demand, so they cannot be modified in place.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -139,6 +146,18 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		this.pixels.addAll(pixels);
 	}
 
+	/**
+	 * Construct a PixelSet backed by the given run-length encoded set of
+	 * pixels. Unlike {@link #PixelSet(Set)}, the pixels are not copied; the
+	 * given set is used directly.
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 */
+	public PixelSet(PixelSpanSet pixels) {
+		this.pixels = pixels;
+	}
+
 	protected void fromShape(Shape shape) {
 		final int minx = (int) Math.round(shape.minX());
 		final int maxx = (int) Math.round(shape.maxX());
@@ -199,7 +218,15 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 *            The {@link ConnectedComponent} to copy pixels from.
 	 */
 	public void merge(ConnectedComponent c) {
-		pixels.addAll(c.pixels);
+		if (pixels instanceof PixelSpanSet && c.pixels instanceof PixelSpanSet) {
+			final PixelSpanSet spans = (PixelSpanSet) pixels;
+			final int[] other = ((PixelSpanSet) c.pixels).getSpans();
+
+			for (int i = 0; i < other.length; i += 3)
+				spans.addSpan(other[i], other[i + 1], other[i + 2]);
+		} else {
+			pixels.addAll(c.pixels);
+		}
 	}
 
 	/**
@@ -229,6 +256,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 *         otherwise
 	 */
 	public boolean find(int x, int y) {
+		if (pixels instanceof PixelSpanSet)
+			return ((PixelSpanSet) pixels).contains(x, y);
+
 		return find(new Pixel(x, y));
 	}
 
@@ -262,6 +292,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		if (p == 0 && q == 0)
 			return calculateArea();
 
+		if (pixels instanceof PixelSpanSet)
+			return calculateMoment((PixelSpanSet) pixels, p, q, xc, yc);
+
 		double mpq = 0;
 		for (final Pixel pix : pixels) {
 			mpq += Math.pow(pix.x - xc, p) * Math.pow(pix.y - yc, q);
@@ -285,6 +318,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 
 		final double[] centroid = calculateCentroid();
 
+		if (pixels instanceof PixelSpanSet)
+			return calculateMoment((PixelSpanSet) pixels, p, q, centroid[0], centroid[1]);
+
 		double mpq = 0;
 		for (final Pixel pix : pixels) {
 			mpq += Math.pow(pix.x - centroid[0], p) * Math.pow(pix.y - centroid[1], q);
@@ -292,6 +328,39 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		return mpq;
 	}
 
+	/**
+	 * Calculate a moment from the spans of a {@link PixelSpanSet}, summing
+	 * along each span in closed form where possible.
+	 */
+	private static double calculateMoment(PixelSpanSet spans, int p, int q, double xc, double yc) {
+		double mpq = 0;
+
+		for (int ri = 0; ri < spans.rows.length; ri++) {
+			final int len = spans.rowLengths[ri];
+			if (len == 0)
+				continue;
+
+			final int[] row = spans.rows[ri];
+			double sx = 0;
+			for (int i = 0; i < len; i += 2) {
+				final int n = row[i + 1] - row[i];
+
+				if (p == 0) {
+					sx += n;
+				} else if (p == 1) {
+					sx += n * ((row[i] + row[i + 1] - 1) / 2.0 - xc);
+				} else {
+					for (int x = row[i]; x < row[i + 1]; x++)
+						sx += Math.pow(x - xc, p);
+				}
+			}
+
+			mpq += sx * Math.pow(ri + spans.firstY - yc, q);
+		}
+
+		return mpq;
+	}
+
 	/**
 	 * Calculate the normalized, unscaled, central moments η<sub>pq</sub>. From
 	 * Equation 6.47 in Sonka, Hlavac and Boyle [1st Ed.]. Normalised central
@@ -429,6 +498,9 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return an {@link Rectangle} describing the bounds
 	 */
 	public Rectangle calculateRegularBoundingBox() {
+		if (pixels instanceof PixelSpanSet)
+			return ((PixelSpanSet) pixels).calculateRegularBoundingBox();
+
 		int xmin = Integer.MAX_VALUE, xmax = 0, ymin = Integer.MAX_VALUE, ymax = 0;
 
 		for (final Pixel p : pixels) {
@@ -455,6 +527,11 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 *            The offset in the vertical direction.
 	 */
 	public void translate(int x, int y) {
+		if (pixels instanceof PixelSpanSet) {
+			((PixelSpanSet) pixels).translate(x, y);
+			return;
+		}
+
 		// Note: changing the position changes the hashcode, so you need to
 		// rehash the set!
 		final Set<Pixel> newPixels = new HashSet<Pixel>();
@@ -474,6 +551,12 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return the top-left most pixel within the connected component.
 	 */
 	public Pixel topLeftMostPixel() {
+		if (pixels instanceof PixelSpanSet) {
+			final PixelSpanSet spans = (PixelSpanSet) pixels;
+			final int ri = spans.firstRow();
+			return ri < 0 ? null : new Pixel(spans.rows[ri][0], ri + spans.firstY);
+		}
+
 		int top = Integer.MAX_VALUE;
 		Pixel pix = null;
 		for (final Pixel p : pixels) {
@@ -499,6 +582,12 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	 * @return the bottom-right most pixel in the connected component.
 	 */
 	public Pixel bottomRightMostPixel() {
+		if (pixels instanceof PixelSpanSet) {
+			final PixelSpanSet spans = (PixelSpanSet) pixels;
+			final int ri = spans.lastRow();
+			return ri < 0 ? null : new Pixel(spans.rows[ri][spans.rowLengths[ri] - 1] - 1, ri + spans.firstY);
+		}
+
 		int bottom = Integer.MIN_VALUE;
 		Pixel pix = null;
 		for (final Pixel p : pixels) {
@@ -629,8 +718,11 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	public FImage calculateBinaryMask(Image<?, ?> input) {
 		final FImage n = new FImage(input.getWidth(), input.getHeight());
 
-		for (final Pixel p : pixels)
-			n.pixels[p.y][p.x] = 1;
+		if (pixels instanceof PixelSpanSet)
+			fill((PixelSpanSet) pixels, n, 0);
+		else
+			for (final Pixel p : pixels)
+				n.pixels[p.y][p.x] = 1;
 
 		return n;
 	}
@@ -680,8 +772,11 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 
 		final FImage img = new FImage((int) (bb.x + bb.width + 1), (int) (bb.y + bb.height + 1));
 
-		for (final Pixel p : pixels)
-			img.pixels[p.y][p.x] = 1;
+		if (pixels instanceof PixelSpanSet)
+			fill((PixelSpanSet) pixels, img, 0);
+		else
+			for (final Pixel p : pixels)
+				img.pixels[p.y][p.x] = 1;
 
 		return img;
 	}
@@ -703,12 +798,32 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 		final FImage img = new FImage((int) (bb.x + bb.width + 1 + 2 * padding),
 				(int) (bb.y + bb.height + 1 + 2 * padding));
 
-		for (final Pixel p : pixels)
-			img.pixels[p.y + padding][p.x + padding] = 1;
+		if (pixels instanceof PixelSpanSet)
+			fill((PixelSpanSet) pixels, img, padding);
+		else
+			for (final Pixel p : pixels)
+				img.pixels[p.y + padding][p.x + padding] = 1;
 
 		return img;
 	}
 
+	/**
+	 * Set the pixels covered by the spans (offset by the given amount) to 1
+	 */
+	private static void fill(PixelSpanSet spans, FImage img, int offset) {
+		for (int ri = 0; ri < spans.rows.length; ri++) {
+			if (spans.rowLengths[ri] == 0)
+				continue;
+
+			final int[] row = spans.rows[ri];
+			final float[] out = img.pixels[ri + spans.firstY + offset];
+
+			for (int i = 0; i < spans.rowLengths[ri]; i += 2)
+				for (int x = row[i]; x < row[i + 1]; x++)
+					out[x + offset] = 1;
+		}
+	}
+
 	/**
 	 * Affine transform the shape with the given transform matrix. Side-affects
 	 * this component.
@@ -719,6 +834,24 @@ public class PixelSet implements Cloneable, ReadWriteable, Iterable<Pixel> {
 	public void transform(Matrix transform) {
 		final Matrix p1 = new Matrix(3, 1);
 
+		if (pixels instanceof PixelSpanSet) {
+			// the pixels of a span set can't be modified in place
+			final PixelSpanSet transformed = new PixelSpanSet();
+
+			for (final Pixel p : pixels) {
+				p1.set(0, 0, p.getX());
+				p1.set(1, 0, p.getY());
+				p1.set(2, 0, 1);
+
+				final Matrix p2_est = transform.times(p1);
+
+				transformed.add((int) Math.rint(p2_est.get(0, 0)), (int) Math.rint(p2_est.get(1, 0)));
+			}
+
+			pixels = transformed;
+			return;
+		}
+
 		for (final Pixel p : pixels) {
 			p1.set(0, 0, p.getX());
 			p1.set(1, 0, p.getY());
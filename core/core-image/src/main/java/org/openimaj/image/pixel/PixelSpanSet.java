@@ -0,0 +1,658 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * A {@link java.util.Set} of {@link Pixel}s that is stored as run-lengths; that
+ * is, for each scan-line (row) the set holds a sorted list of disjoint,
+ * non-adjacent horizontal spans. Compared to a {@link java.util.HashSet} of
+ * {@link Pixel}s this uses a tiny fraction of the memory for large regions,
+ * and operations such as the area, bounding box, boundary and membership
+ * tests are computed from the spans without creating {@link Pixel} objects.
+ * <p>
+ * The {@link Pixel}s returned by the iterator are created on demand, so
+ * modifying them has no effect on the set. Adding spans in raster-scan order
+ * (as produced by a connected component labeller) is an amortised constant
+ * time operation.
+ * 
+ * @author agent (agent@local)
+ */
+public class PixelSpanSet extends AbstractSet<Pixel> implements Cloneable {
+	private static final int[] EMPTY = new int[0];
+
+	/** y-ordinate of rows[0] */
+	int firstY;
+
+	/** spans of each row stored as start (inclusive), end (exclusive) pairs */
+	int[][] rows = new int[0][];
+
+	/** number of ints used in each row */
+	int[] rowLengths = EMPTY;
+
+	private int size;
+
+	/**
+	 * Construct an empty set
+	 */
+	public PixelSpanSet() {
+	}
+
+	/**
+	 * Construct a set containing the given pixels
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 */
+	public PixelSpanSet(Collection<? extends Pixel> pixels) {
+		addAll(pixels);
+	}
+
+	/**
+	 * Construct a set containing the pixels of the given {@link PixelSet}
+	 * 
+	 * @param pixels
+	 *            the pixels
+	 */
+	public PixelSpanSet(PixelSet pixels) {
+		addAll(pixels.pixels);
+	}
+
+	/**
+	 * Get the index of the row containing the given y-ordinate, growing the
+	 * row arrays as required
+	 */
+	private int rowIndex(int y) {
+		if (rows.length == 0) {
+			firstY = y;
+			rows = new int[1][];
+			rowLengths = new int[1];
+			return 0;
+		}
+
+		if (y < firstY) {
+			final int grow = Math.max(firstY - y, rows.length / 2);
+			final int[][] newRows = new int[rows.length + grow][];
+			final int[] newLengths = new int[rows.length + grow];
+			System.arraycopy(rows, 0, newRows, grow, rows.length);
+			System.arraycopy(rowLengths, 0, newLengths, grow, rows.length);
+			rows = newRows;
+			rowLengths = newLengths;
+			firstY -= grow;
+		} else if (y - firstY >= rows.length) {
+			final int newLength = Math.max(y - firstY + 1, rows.length + rows.length / 2);
+			rows = Arrays.copyOf(rows, newLength);
+			rowLengths = Arrays.copyOf(rowLengths, newLength);
+		}
+
+		return y - firstY;
+	}
+
+	/**
+	 * Find the index of the first span in the row that ends at or after the
+	 * given x (i.e. the first span that contains or touches x, or lies to the
+	 * right of it).
+	 */
+	private static int firstEndingAtOrAfter(int[] row, int nspans, int x) {
+		int lo = 0, hi = nspans;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (row[2 * mid + 1] < x)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	 * Find the index of the last span in the row that starts at or before the
+	 * given x, or -1 if there is none.
+	 */
+	private static int lastStartingAtOrBefore(int[] row, int nspans, int x) {
+		int lo = 0, hi = nspans;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (row[2 * mid] <= x)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo - 1;
+	}
+
+	/**
+	 * Add all the pixels in the horizontal span from startX (inclusive) to endX
+	 * (exclusive) on row y.
+	 * 
+	 * @param y
+	 *            the y-ordinate of the row
+	 * @param startX
+	 *            the first x-ordinate of the span
+	 * @param endX
+	 *            the x-ordinate one past the end of the span
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean addSpan(int y, int startX, int endX) {
+		if (endX <= startX)
+			return false;
+
+		final int ri = rowIndex(y);
+		int[] row = rows[ri];
+		final int len = rowLengths[ri];
+		final int nspans = len / 2;
+
+		// fast path for appending to the end of the row
+		if (nspans == 0 || row[len - 1] < startX) {
+			if (row == null || row.length < len + 2) {
+				row = row == null ? new int[4] : Arrays.copyOf(row, Math.max(4, row.length * 2));
+				rows[ri] = row;
+			}
+			row[len] = startX;
+			row[len + 1] = endX;
+			rowLengths[ri] = len + 2;
+			size += endX - startX;
+			return true;
+		}
+
+		// spans i..j (inclusive) touch or overlap the new span
+		final int i = firstEndingAtOrAfter(row, nspans, startX);
+		final int j = lastStartingAtOrBefore(row, nspans, endX);
+
+		if (i > j) {
+			// no overlap; insert a new span at i
+			if (row.length < len + 2) {
+				row = Arrays.copyOf(row, row.length * 2);
+				rows[ri] = row;
+			}
+			System.arraycopy(row, 2 * i, row, 2 * i + 2, len - 2 * i);
+			row[2 * i] = startX;
+			row[2 * i + 1] = endX;
+			rowLengths[ri] = len + 2;
+			size += endX - startX;
+			return true;
+		}
+
+		final int newStart = Math.min(startX, row[2 * i]);
+		final int newEnd = Math.max(endX, row[2 * j + 1]);
+
+		int covered = 0;
+		for (int k = i; k <= j; k++)
+			covered += row[2 * k + 1] - row[2 * k];
+
+		final int added = (newEnd - newStart) - covered;
+		if (added == 0)
+			return false;
+
+		row[2 * i] = newStart;
+		row[2 * i + 1] = newEnd;
+		if (j > i) {
+			System.arraycopy(row, 2 * j + 2, row, 2 * i + 2, len - 2 * j - 2);
+			rowLengths[ri] = len - 2 * (j - i);
+		}
+		size += added;
+
+		return true;
+	}
+
+	/**
+	 * Add the pixel at the given coordinates
+	 * 
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean add(int x, int y) {
+		return addSpan(y, x, x + 1);
+	}
+
+	@Override
+	public boolean add(Pixel p) {
+		return addSpan(p.y, p.x, p.x + 1);
+	}
+
+	/**
+	 * Test whether the pixel at the given coordinates is in the set
+	 * 
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the pixel is in the set; false otherwise
+	 */
+	public boolean contains(int x, int y) {
+		final int ri = y - firstY;
+		if (ri < 0 || ri >= rows.length)
+			return false;
+
+		final int s = lastStartingAtOrBefore(rows[ri], rowLengths[ri] / 2, x);
+		return s >= 0 && x < rows[ri][2 * s + 1];
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Pixel))
+			return false;
+
+		final Pixel p = (Pixel) o;
+		return contains(p.x, p.y);
+	}
+
+	/**
+	 * Remove the pixel at the given coordinates
+	 * 
+	 * @param x
+	 *            the x-ordinate
+	 * @param y
+	 *            the y-ordinate
+	 * @return true if the set changed as a result of the call
+	 */
+	public boolean remove(int x, int y) {
+		final int ri = y - firstY;
+		if (ri < 0 || ri >= rows.length)
+			return false;
+
+		int[] row = rows[ri];
+		final int len = rowLengths[ri];
+		final int s = lastStartingAtOrBefore(row, len / 2, x);
+		if (s < 0 || x >= row[2 * s + 1])
+			return false;
+
+		final int start = row[2 * s];
+		final int end = row[2 * s + 1];
+
+		if (start == x && end == x + 1) {
+			System.arraycopy(row, 2 * s + 2, row, 2 * s, len - 2 * s - 2);
+			rowLengths[ri] = len - 2;
+		} else if (start == x) {
+			row[2 * s] = x + 1;
+		} else if (end == x + 1) {
+			row[2 * s + 1] = x;
+		} else {
+			// split the span
+			if (row.length < len + 2) {
+				row = Arrays.copyOf(row, row.length * 2);
+				rows[ri] = row;
+			}
+			System.arraycopy(row, 2 * s + 2, row, 2 * s + 4, len - 2 * s - 2);
+			row[2 * s + 1] = x;
+			row[2 * s + 2] = x + 1;
+			row[2 * s + 3] = end;
+			rowLengths[ri] = len + 2;
+		}
+		size--;
+
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Pixel))
+			return false;
+
+		final Pixel p = (Pixel) o;
+		return remove(p.x, p.y);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void clear() {
+		rows = new int[0][];
+		rowLengths = EMPTY;
+		size = 0;
+	}
+
+	/**
+	 * @return the total number of spans in the set
+	 */
+	public int numSpans() {
+		int n = 0;
+		for (final int l : rowLengths)
+			n += l / 2;
+		return n;
+	}
+
+	/**
+	 * Get all the spans in the set in raster-scan order. The spans are returned
+	 * as a flat array of (y, startX, endX) triples, where startX is inclusive
+	 * and endX is exclusive.
+	 * 
+	 * @return the spans
+	 */
+	public int[] getSpans() {
+		final int[] spans = new int[3 * numSpans()];
+
+		for (int ri = 0, k = 0; ri < rows.length; ri++) {
+			final int[] row = rows[ri];
+			for (int i = 0; i < rowLengths[ri]; i += 2) {
+				spans[k++] = ri + firstY;
+				spans[k++] = row[i];
+				spans[k++] = row[i + 1];
+			}
+		}
+
+		return spans;
+	}
+
+	/**
+	 * Get the spans on the given row as (startX, endX) pairs, where startX is
+	 * inclusive and endX is exclusive.
+	 * 
+	 * @param y
+	 *            the y-ordinate of the row
+	 * @return the spans (which might be empty)
+	 */
+	public int[] getSpans(int y) {
+		final int ri = y - firstY;
+		if (ri < 0 || ri >= rows.length || rowLengths[ri] == 0)
+			return EMPTY;
+
+		return Arrays.copyOf(rows[ri], rowLengths[ri]);
+	}
+
+	/**
+	 * @return the index of the first non-empty row, or -1 if the set is empty
+	 */
+	int firstRow() {
+		for (int ri = 0; ri < rows.length; ri++)
+			if (rowLengths[ri] > 0)
+				return ri;
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last non-empty row, or -1 if the set is empty
+	 */
+	int lastRow() {
+		for (int ri = rows.length - 1; ri >= 0; ri--)
+			if (rowLengths[ri] > 0)
+				return ri;
+		return -1;
+	}
+
+	/**
+	 * Get the bounds of the set as an array containing the minimum x, minimum
+	 * y, maximum x and maximum y ordinates of the pixels (all inclusive).
+	 * 
+	 * @return the bounds, or null if the set is empty
+	 */
+	public int[] getBounds() {
+		final int first = firstRow();
+		if (first < 0)
+			return null;
+		final int last = lastRow();
+
+		int minx = Integer.MAX_VALUE, maxx = Integer.MIN_VALUE;
+		for (int ri = first; ri <= last; ri++) {
+			final int len = rowLengths[ri];
+			if (len == 0)
+				continue;
+
+			if (rows[ri][0] < minx)
+				minx = rows[ri][0];
+			if (rows[ri][len - 1] - 1 > maxx)
+				maxx = rows[ri][len - 1] - 1;
+		}
+
+		return new int[] { minx, first + firstY, maxx, last + firstY };
+	}
+
+	/**
+	 * Calculate the regular bounding box of the pixels. This is consistent with
+	 * {@link PixelSet#calculateRegularBoundingBox()}, so the width and height
+	 * are the differences between the maximum and minimum ordinates.
+	 * 
+	 * @return the bounding box
+	 */
+	public Rectangle calculateRegularBoundingBox() {
+		final int[] b = getBounds();
+		if (b == null)
+			return new Rectangle(Integer.MAX_VALUE, Integer.MAX_VALUE, -Integer.MAX_VALUE, -Integer.MAX_VALUE);
+
+		return new Rectangle(b[0], b[1], b[2] - b[0], b[3] - b[1]);
+	}
+
+	/**
+	 * Translate all the pixels in the set by the given amount.
+	 * 
+	 * @param dx
+	 *            the amount to move in the x direction
+	 * @param dy
+	 *            the amount to move in the y direction
+	 */
+	public void translate(int dx, int dy) {
+		firstY += dy;
+
+		if (dx != 0) {
+			for (int ri = 0; ri < rows.length; ri++) {
+				final int[] row = rows[ri];
+				for (int i = 0; i < rowLengths[ri]; i++)
+					row[i] += dx;
+			}
+		}
+	}
+
+	/**
+	 * Shrink each span of the given row by one pixel at each end; the result
+	 * contains the pixels whose horizontal neighbours are also in the row.
+	 */
+	private static int[] shrink(int[] row, int len) {
+		final int[] out = new int[len];
+		int n = 0;
+		for (int i = 0; i < len; i += 2) {
+			if (row[i + 1] - row[i] > 2) {
+				out[n++] = row[i] + 1;
+				out[n++] = row[i + 1] - 1;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	/**
+	 * Intersect two lists of spans
+	 */
+	private static int[] intersect(int[] a, int alen, int[] b, int blen) {
+		final int[] out = new int[alen + blen];
+		int n = 0, i = 0, j = 0;
+
+		while (i < alen && j < blen) {
+			final int s = Math.max(a[i], b[j]);
+			final int e = Math.min(a[i + 1], b[j + 1]);
+			if (s < e) {
+				out[n++] = s;
+				out[n++] = e;
+			}
+			if (a[i + 1] < b[j + 1])
+				i += 2;
+			else
+				j += 2;
+		}
+
+		return Arrays.copyOf(out, n);
+	}
+
+	private int[] row(int ri) {
+		if (ri < 0 || ri >= rows.length || rowLengths[ri] == 0)
+			return EMPTY;
+		return rows[ri];
+	}
+
+	private int rowLength(int ri) {
+		if (ri < 0 || ri >= rows.length)
+			return 0;
+		return rowLengths[ri];
+	}
+
+	/**
+	 * Compute the (unordered) set of inner boundary pixels; that is the pixels
+	 * in this set which have at least one neighbour that is not in the set. The
+	 * boundary is computed row-by-row from the spans.
+	 * 
+	 * @param eightNeighbours
+	 *            if true, a pixel is on the boundary if any of its eight
+	 *            neighbours is outside the set (giving a 4-connected
+	 *            boundary); if false only the four horizontal and vertical
+	 *            neighbours are considered (giving an 8-connected boundary).
+	 * @return the boundary pixels
+	 */
+	public PixelSpanSet calculateBoundary(boolean eightNeighbours) {
+		final PixelSpanSet boundary = new PixelSpanSet();
+
+		for (int ri = 0; ri < rows.length; ri++) {
+			final int len = rowLengths[ri];
+			if (len == 0)
+				continue;
+
+			final int[] row = rows[ri];
+
+			// the interior pixels of this row
+			int[] interior = shrink(row, len);
+			if (eightNeighbours) {
+				final int[] above = shrink(row(ri - 1), rowLength(ri - 1));
+				final int[] below = shrink(row(ri + 1), rowLength(ri + 1));
+				interior = intersect(interior, interior.length, above, above.length);
+				interior = intersect(interior, interior.length, below, below.length);
+			} else {
+				interior = intersect(interior, interior.length, row(ri - 1), rowLength(ri - 1));
+				interior = intersect(interior, interior.length, row(ri + 1), rowLength(ri + 1));
+			}
+
+			// boundary = row - interior
+			final int y = ri + firstY;
+			int k = 0;
+			for (int i = 0; i < len; i += 2) {
+				int x = row[i];
+				while (k < interior.length && interior[k] < row[i + 1]) {
+					boundary.addSpan(y, x, interior[k]);
+					x = interior[k + 1];
+					k += 2;
+				}
+				boundary.addSpan(y, x, row[i + 1]);
+			}
+		}
+
+		return boundary;
+	}
+
+	@Override
+	public Iterator<Pixel> iterator() {
+		return new Iterator<Pixel>() {
+			int ri = -1;
+			int span = 0;
+			int x = 0;
+			int lastX, lastY;
+			boolean canRemove = false;
+
+			{
+				nextRow();
+			}
+
+			private void nextRow() {
+				do {
+					ri++;
+				} while (ri < rows.length && rowLengths[ri] == 0);
+
+				span = 0;
+				if (ri < rows.length)
+					x = rows[ri][0];
+			}
+
+			@Override
+			public boolean hasNext() {
+				return ri < rows.length;
+			}
+
+			@Override
+			public Pixel next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				lastX = x;
+				lastY = ri + firstY;
+				canRemove = true;
+
+				x++;
+				if (x >= rows[ri][2 * span + 1]) {
+					span++;
+					if (2 * span < rowLengths[ri])
+						x = rows[ri][2 * span];
+					else
+						nextRow();
+				}
+
+				return new Pixel(lastX, lastY);
+			}
+
+			@Override
+			public void remove() {
+				if (!canRemove)
+					throw new IllegalStateException();
+				canRemove = false;
+
+				PixelSpanSet.this.remove(lastX, lastY);
+
+				if (ri < rows.length && ri + firstY == lastY) {
+					// the spans of the current row might have moved
+					span = firstEndingAtOrAfter(rows[ri], rowLengths[ri] / 2, x + 1);
+				}
+			}
+		};
+	}
+
+	@Override
+	public PixelSpanSet clone() {
+		try {
+			final PixelSpanSet clone = (PixelSpanSet) super.clone();
+
+			clone.rows = new int[rows.length][];
+			for (int ri = 0; ri < rows.length; ri++)
+				if (rows[ri] != null)
+					clone.rows[ri] = Arrays.copyOf(rows[ri], rowLengths[ri]);
+			clone.rowLengths = rowLengths.clone();
+
+			return clone;
+		} catch (final CloneNotSupportedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+}
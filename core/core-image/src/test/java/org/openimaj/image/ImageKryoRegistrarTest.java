@@ -0,0 +1,105 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.io.IOUtils;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Tests for the {@link ImageKryoRegistrar}
+ * 
+ * @author agent (agent@local)
+ */
+public class ImageKryoRegistrarTest {
+	private static byte[] write(Object obj) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.write(obj, new DataOutputStream(baos));
+		return baos.toByteArray();
+	}
+
+	private static <T> T read(byte[] bytes) throws IOException {
+		return IOUtils.<T> read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Test round-tripping an {@link FImage}, and that the data is no bigger
+	 * than that written with an unregistered {@link Kryo}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testFImage() throws IOException {
+		final FImage image = new FImage(31, 17);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = (float) Math.random();
+
+		final byte[] bytes = write(image);
+		final FImage image2 = read(bytes);
+		assertEquals(image, image2);
+
+		final Output output = new Output(4096, -1);
+		new Kryo().writeClassAndObject(output, image);
+		assertTrue(bytes.length < output.position());
+	}
+
+	/**
+	 * Test round-tripping an {@link MBFImage}
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testMBFImage() throws IOException {
+		final MBFImage image = new MBFImage(13, 7, ColourSpace.HSV);
+		for (final FImage band : image.bands)
+			for (int y = 0; y < band.height; y++)
+				for (int x = 0; x < band.width; x++)
+					band.pixels[y][x] = (float) Math.random();
+
+		final MBFImage image2 = read(write(image));
+		assertEquals(ColourSpace.HSV, image2.colourSpace);
+		assertEquals(image.numBands(), image2.numBands());
+		for (int i = 0; i < image.numBands(); i++)
+			assertEquals(image.getBand(i), image2.getBand(i));
+	}
+}
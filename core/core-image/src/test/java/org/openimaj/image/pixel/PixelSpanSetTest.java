@@ -0,0 +1,170 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.pixel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link PixelSpanSet}, comparing it against a {@link HashSet} of
+ * {@link Pixel}s.
+ *
+ * @author agent (agent@local)
+ */
+public class PixelSpanSetTest {
+	private static Set<Pixel> randomPixels(Random rng, int n, int size) {
+		final Set<Pixel> pixels = new HashSet<Pixel>();
+		for (int i = 0; i < n; i++)
+			pixels.add(new Pixel(rng.nextInt(size) - size / 4, rng.nextInt(size) - size / 4));
+		return pixels;
+	}
+
+	/**
+	 * Test adding, removing and iterating
+	 */
+	@Test
+	public void testSetOperations() {
+		final Random rng = new Random(1);
+
+		for (int trial = 0; trial < 20; trial++) {
+			final Set<Pixel> expected = randomPixels(rng, 500, 30);
+			final PixelSpanSet spans = new PixelSpanSet();
+			for (final Pixel p : expected)
+				spans.add(p);
+
+			assertEquals(expected.size(), spans.size());
+			assertEquals(expected, spans);
+			assertEquals(spans, expected);
+
+			// adding spans
+			for (int i = 0; i < 10; i++) {
+				final int y = rng.nextInt(30);
+				final int x = rng.nextInt(30);
+				final int len = rng.nextInt(10);
+				for (int j = x; j < x + len; j++)
+					expected.add(new Pixel(j, y));
+				spans.addSpan(y, x, x + len);
+			}
+			assertEquals(expected.size(), spans.size());
+			assertEquals(expected, spans);
+
+			// removing
+			for (final Pixel p : randomPixels(rng, 200, 30)) {
+				assertEquals(expected.remove(p), spans.remove(p));
+			}
+			assertEquals(expected.size(), spans.size());
+			assertEquals(expected, spans);
+
+			// removing through the iterator
+			final Iterator<Pixel> iter = spans.iterator();
+			while (iter.hasNext()) {
+				final Pixel p = iter.next();
+				if (rng.nextBoolean()) {
+					iter.remove();
+					expected.remove(p);
+				}
+			}
+			assertEquals(expected.size(), spans.size());
+			assertEquals(expected, spans);
+
+			for (int y = -10; y < 30; y++)
+				for (int x = -10; x < 30; x++)
+					assertEquals(expected.contains(new Pixel(x, y)), spans.contains(x, y));
+		}
+	}
+
+	/**
+	 * Test that the {@link PixelSet} methods give the same results with either
+	 * backing
+	 */
+	@Test
+	public void testPixelSetBacking() {
+		final Random rng = new Random(2);
+		final Set<Pixel> pixels = randomPixels(rng, 300, 40);
+
+		final PixelSet hashed = new PixelSet(pixels);
+		final PixelSet spans = new PixelSet(new PixelSpanSet(pixels));
+
+		assertEquals(hashed.calculateArea(), spans.calculateArea());
+		assertEquals(hashed.topLeftMostPixel(), spans.topLeftMostPixel());
+		assertEquals(hashed.bottomRightMostPixel(), spans.bottomRightMostPixel());
+		assertEquals(hashed.calculateCentroid()[0], spans.calculateCentroid()[0], 1e-8);
+		assertEquals(hashed.calculateCentroid()[1], spans.calculateCentroid()[1], 1e-8);
+		assertEquals(hashed.calculateMoment(2, 1), spans.calculateMoment(2, 1), 1e-6);
+		assertEquals(hashed.calculateMoment(0, 2), spans.calculateMoment(0, 2), 1e-6);
+		assertEquals(hashed.calculateDirection(), spans.calculateDirection(), 1e-8);
+
+		hashed.translate(20, 20);
+		spans.translate(20, 20);
+		assertEquals(hashed.pixels, spans.pixels);
+		assertEquals(hashed.calculateRegularBoundingBox(), spans.calculateRegularBoundingBox());
+		assertEquals(hashed.toFImage(), spans.toFImage());
+		assertEquals(hashed.toFImage(2), spans.toFImage(2));
+	}
+
+	/**
+	 * Test the boundary calculation against a brute-force version
+	 */
+	@Test
+	public void testBoundary() {
+		final Random rng = new Random(3);
+		final Set<Pixel> pixels = randomPixels(rng, 1000, 40);
+		final PixelSpanSet spans = new PixelSpanSet(pixels);
+
+		for (final boolean eight : new boolean[] { true, false }) {
+			final PixelSpanSet boundary = spans.calculateBoundary(eight);
+
+			final Set<Pixel> expected = new HashSet<Pixel>();
+			for (final Pixel p : pixels) {
+				boolean inner = true;
+				for (int dy = -1; dy <= 1; dy++)
+					for (int dx = -1; dx <= 1; dx++)
+						if ((eight || dx == 0 || dy == 0) && !pixels.contains(new Pixel(p.x + dx, p.y + dy)))
+							inner = false;
+
+				if (!inner)
+					expected.add(p);
+			}
+
+			assertEquals(expected, boundary);
+		}
+
+		assertTrue(new PixelSpanSet().calculateBoundary(true).isEmpty());
+		assertFalse(spans.calculateBoundary(true).isEmpty());
+	}
+}
@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.SparseVector;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.Vector.Entry;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+import ch.akuhn.matrix.eigenvalues.FewEigenvalues;
+
+/**
+ * Compute a few of the extreme eigenvalues and eigenvectors of a large,
+ * sparse, symmetric matrix with the Locally Optimal Block Preconditioned
+ * Conjugate Gradient (LOBPCG) method. This is a drop-in alternative to
+ * {@link FewEigenvalues} that only ever holds a small number of dense blocks
+ * of vectors, and that computes the products of the matrix with blocks of
+ * vectors (and all the other dense block operations) in parallel.
+ * <p>
+ * The matrix is only accessed through the
+ * {@link #multiply(double[][], int, double[][], int, int)} method, so it
+ * need not be stored explicitly; {@link #of(SparseMatrix, ThreadPoolExecutor)}
+ * creates an instance for a {@link SparseMatrix} by packing it into compressed
+ * sparse row form. Because a whole block is iterated at once, repeated
+ * eigenvalues (such as those of the Laplacian of a graph with several
+ * connected components) are found correctly as long as the number of
+ * requested eigenvalues covers the multiplicity.
+ * <p>
+ * Blocks of <code>k</code> vectors are stored as row-major
+ * <code>n &times; k</code> arrays, so that each row of the matrix is
+ * multiplied with all the vectors of a block in a single pass. The
+ * eigenvalues are returned in ascending order, matching {@link FewEigenvalues}.
+ * 
+ * @see "A. V. Knyazev. Toward the Optimal Preconditioned Eigensolver: Locally Optimal Block Preconditioned Conjugate Gradient Method. SIAM Journal on Scientific Computing 23(2):517-541, 2001."
+ * 
+ * @author agent (agent@local)
+ */
+public abstract class LOBPCGEigenvalues extends Eigenvalues {
+	/**
+	 * Operation on a range of rows
+	 */
+	protected static interface RowOperation {
+		/**
+		 * Perform the operation on the given rows
+		 * 
+		 * @param start
+		 *            the first row
+		 * @param stop
+		 *            the row after the last
+		 */
+		void perform(int start, int stop);
+	}
+
+	private static final double DROP_TOLERANCE = 1e-12;
+
+	private boolean magnitude;
+	private double tolerance = 1e-8;
+	private int maxIterations = 1000;
+	private long seed = 0;
+
+	protected ThreadPoolExecutor pool;
+	private double[][] tmp;
+
+	/**
+	 * Construct to compute the eigen decomposition of a matrix with the given
+	 * number of rows and columns. By default the 20 eigenvalues with the
+	 * greatest magnitude are computed.
+	 * 
+	 * @param n
+	 *            the number of rows/columns
+	 * @param pool
+	 *            the thread pool for parallel operations; can be null
+	 */
+	public LOBPCGEigenvalues(int n, ThreadPoolExecutor pool) {
+		super(n);
+		this.pool = pool;
+		this.greatest(20);
+	}
+
+	/**
+	 * Create an instance to compute the eigen decomposition of the given
+	 * symmetric {@link SparseMatrix}, performing all operations in the calling
+	 * thread.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @return the eigen decomposition object
+	 */
+	public static LOBPCGEigenvalues of(SparseMatrix matrix) {
+		return of(matrix, null);
+	}
+
+	/**
+	 * Create an instance to compute the eigen decomposition of the given
+	 * symmetric {@link SparseMatrix}, performing the block operations with the
+	 * given thread pool. The matrix is copied into compressed sparse row form.
+	 * 
+	 * @param matrix
+	 *            the matrix
+	 * @param pool
+	 *            the thread pool; can be null
+	 * @return the eigen decomposition object
+	 */
+	public static LOBPCGEigenvalues of(SparseMatrix matrix, ThreadPoolExecutor pool) {
+		final int n = matrix.rowCount();
+
+		final int[] offsets = new int[n + 1];
+		for (int i = 0; i < n; i++)
+			offsets[i + 1] = offsets[i] + matrix.row(i).used();
+
+		final int[] columns = new int[offsets[n]];
+		final double[] values = new double[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			final Vector row = matrix.row(i);
+
+			if (row instanceof SparseVector) {
+				final SparseVector srow = (SparseVector) row;
+				System.arraycopy(srow.keys(), 0, columns, offsets[i], srow.used());
+				System.arraycopy(srow.values(), 0, values, offsets[i], srow.used());
+			} else {
+				int k = offsets[i];
+				for (final Entry e : row.entries()) {
+					columns[k] = e.index;
+					values[k++] = e.value;
+				}
+			}
+		}
+
+		return new LOBPCGEigenvalues(n, pool) {
+			@Override
+			protected void multiply(final double[][] x, final int xoff, final double[][] y, final int yoff,
+					final int ncols)
+			{
+				forEachRows(new RowOperation() {
+					@Override
+					public void perform(int start, int stop) {
+						for (int r = start; r < stop; r++) {
+							final double[] yr = y[r];
+							for (int j = 0; j < ncols; j++)
+								yr[yoff + j] = 0;
+
+							for (int k = offsets[r]; k < offsets[r + 1]; k++) {
+								final double a = values[k];
+								final double[] xr = x[columns[k]];
+
+								for (int j = 0; j < ncols; j++)
+									yr[yoff + j] += a * xr[xoff + j];
+							}
+						}
+					}
+				});
+			}
+		};
+	}
+
+	/**
+	 * Multiply the matrix by a block of vectors. The vectors are the
+	 * <code>ncols</code> columns of <code>x</code> starting at
+	 * <code>xoff</code>, and the result must be written into the same number of
+	 * columns of <code>y</code> starting at <code>yoff</code>.
+	 * Implementations can use {@link #forEachRows(RowOperation)} to parallelise
+	 * the computation.
+	 * 
+	 * @param x
+	 *            the input block (n rows)
+	 * @param xoff
+	 *            the first column of the input
+	 * @param y
+	 *            the output block (n rows)
+	 * @param yoff
+	 *            the first column of the output
+	 * @param ncols
+	 *            the number of vectors
+	 */
+	protected abstract void multiply(double[][] x, int xoff, double[][] y, int yoff, int ncols);
+
+	/**
+	 * Apply the given operation to all the rows, splitting them across the
+	 * threads of the pool if there is one.
+	 * 
+	 * @param op
+	 *            the operation
+	 */
+	protected void forEachRows(final RowOperation op) {
+		if (pool == null) {
+			op.perform(0, n);
+		} else {
+			Parallel.forRange(0, n, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					op.perform(range.start, range.stop);
+				}
+			}, pool);
+		}
+	}
+
+	/**
+	 * Configure to compute the <code>nev</code> eigenvalues with the largest
+	 * magnitude.
+	 * 
+	 * @param nev
+	 *            the number of eigenvalues
+	 * @return this
+	 */
+	public LOBPCGEigenvalues greatest(int nev) {
+		this.magnitude = true;
+		this.nev = Math.min(nev, n);
+		return this;
+	}
+
+	/**
+	 * Configure to compute the <code>nev</code> algebraically largest
+	 * eigenvalues.
+	 * 
+	 * @param nev
+	 *            the number of eigenvalues
+	 * @return this
+	 */
+	@Override
+	public LOBPCGEigenvalues largest(int nev) {
+		this.magnitude = false;
+		this.nev = Math.min(nev, n);
+		return this;
+	}
+
+	/**
+	 * Set the convergence tolerance on the norm of the residual of each
+	 * eigenvector relative to the largest eigenvalue magnitude. Defaults to
+	 * 1e-8.
+	 * 
+	 * @param tolerance
+	 *            the tolerance
+	 * @return this
+	 */
+	public LOBPCGEigenvalues tolerance(double tolerance) {
+		this.tolerance = tolerance;
+		return this;
+	}
+
+	/**
+	 * Set the maximum number of iterations. Defaults to 1000.
+	 * 
+	 * @param maxIterations
+	 *            the maximum number of iterations
+	 * @return this
+	 */
+	public LOBPCGEigenvalues maxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+		return this;
+	}
+
+	/**
+	 * Set the seed for the random starting vectors.
+	 * 
+	 * @param seed
+	 *            the seed
+	 * @return this
+	 */
+	public LOBPCGEigenvalues seed(long seed) {
+		this.seed = seed;
+		return this;
+	}
+
+	/**
+	 * Multiply by the operator whose largest eigenvalues are sought: the
+	 * matrix itself, or its square if the eigenvalues of largest magnitude are
+	 * required.
+	 */
+	private void multiplyOperator(double[][] x, int xoff, double[][] y, int yoff, int ncols) {
+		if (magnitude) {
+			multiply(x, xoff, tmp, 0, ncols);
+			multiply(tmp, 0, y, yoff, ncols);
+		} else {
+			multiply(x, xoff, y, yoff, ncols);
+		}
+	}
+
+	@Override
+	public Eigenvalues run() {
+		final int b = nev;
+		final int w = 3 * b;
+
+		// the columns [0, b) hold the current eigenvector estimates X,
+		// [b, 2b) the residuals R and [2b, 3b) the search directions P; AQ
+		// holds the operator applied to each column
+		final double[][] Q = new double[n][w];
+		final double[][] AQ = new double[n][w];
+		if (magnitude)
+			tmp = new double[n][b];
+
+		final Random rng = new Random(seed);
+		for (int r = 0; r < n; r++)
+			for (int i = 0; i < b; i++)
+				Q[r][i] = rng.nextGaussian();
+
+		final int nx = orthonormalise(Q, null, 0, b);
+		if (nx < b)
+			throw new RuntimeException("Unable to construct an initial basis");
+
+		multiplyOperator(Q, 0, AQ, 0, b);
+		double[] theta = rayleighRitz(Q, AQ, b);
+
+		int np = 0;
+		final double[] norms = new double[b];
+		for (int iter = 0; iter < maxIterations; iter++) {
+			// residuals of the non-converged vectors
+			computeResiduals(Q, AQ, theta, norms);
+
+			double anorm = 0;
+			for (final double t : theta)
+				anorm = Math.max(anorm, Math.abs(t));
+
+			int nr = 0;
+			final int[] active = new int[b];
+			for (int i = 0; i < b; i++) {
+				if (norms[i] > tolerance * anorm)
+					active[nr++] = i;
+			}
+
+			if (nr == 0)
+				break;
+
+			compact(Q, b, active, nr);
+
+			// make R orthonormal and orthogonal to X
+			for (int pass = 0; pass < 2; pass++)
+				subtractProjection(Q, null, 0, b, b, nr);
+			nr = orthonormalise(Q, null, b, nr);
+			if (nr == 0)
+				break;
+
+			multiplyOperator(Q, b, AQ, b, nr);
+
+			// make P orthonormal and orthogonal to X and R
+			if (np > 0) {
+				for (int pass = 0; pass < 2; pass++) {
+					subtractProjection(Q, AQ, 0, b, 2 * b, np);
+					subtractProjection(Q, AQ, b, nr, 2 * b, np);
+				}
+				np = orthonormalise(Q, AQ, 2 * b, np);
+			}
+
+			// Rayleigh-Ritz on [X R P]
+			final int[] cols = new int[b + nr + np];
+			for (int i = 0; i < b; i++)
+				cols[i] = i;
+			for (int i = 0; i < nr; i++)
+				cols[b + i] = b + i;
+			for (int i = 0; i < np; i++)
+				cols[b + nr + i] = 2 * b + i;
+
+			final int s = cols.length;
+			final double[][] G = gram(Q, cols, AQ, cols);
+			for (int i = 0; i < s; i++) {
+				for (int j = i + 1; j < s; j++) {
+					G[i][j] = G[j][i] = 0.5 * (G[i][j] + G[j][i]);
+				}
+			}
+
+			final EigenvalueDecomposition evd = new Matrix(G).eig();
+			final double[] vals = evd.getRealEigenvalues();
+			final double[][] vecs = evd.getV().getArray();
+
+			final double[][] C = new double[s][b];
+			theta = new double[b];
+			for (int i = 0; i < b; i++) {
+				theta[i] = vals[s - 1 - i];
+				for (int j = 0; j < s; j++)
+					C[j][i] = vecs[j][s - 1 - i];
+			}
+
+			updateBasis(Q, AQ, cols, C, b);
+			np = nr + np > 0 ? b : 0;
+		}
+
+		// final eigenvectors/values in ascending order
+		final double[] values;
+		final double[][] vectors = new double[b][n];
+		if (magnitude) {
+			// the columns of X span the eigenvectors with the largest
+			// eigenvalues of the square of the matrix; separate them with
+			// respect to the matrix itself
+			multiply(Q, 0, AQ, 0, b);
+			final double[] signed = rayleighRitz(Q, AQ, b);
+
+			values = new double[b];
+			for (int i = 0; i < b; i++)
+				values[i] = signed[b - 1 - i];
+		} else {
+			values = new double[b];
+			for (int i = 0; i < b; i++)
+				values[i] = theta[b - 1 - i];
+		}
+
+		for (int r = 0; r < n; r++)
+			for (int i = 0; i < b; i++)
+				vectors[b - 1 - i][r] = Q[r][i];
+
+		this.value = values;
+		this.vector = new Vector[b];
+		for (int i = 0; i < b; i++)
+			this.vector[i] = Vector.wrap(vectors[i]);
+
+		tmp = null;
+
+		return this;
+	}
+
+	/**
+	 * Compute the Gram matrix between the given columns of a and b
+	 */
+	private double[][] gram(final double[][] a, final int[] acols, final double[][] bm, final int[] bcols) {
+		final double[][] result = new double[acols.length][bcols.length];
+
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				final double[][] partial = new double[acols.length][bcols.length];
+
+				for (int r = start; r < stop; r++) {
+					final double[] ar = a[r];
+					final double[] br = bm[r];
+
+					for (int i = 0; i < acols.length; i++) {
+						final double v = ar[acols[i]];
+						if (v == 0)
+							continue;
+
+						final double[] p = partial[i];
+						for (int j = 0; j < bcols.length; j++)
+							p[j] += v * br[bcols[j]];
+					}
+				}
+
+				synchronized (result) {
+					for (int i = 0; i < acols.length; i++)
+						for (int j = 0; j < bcols.length; j++)
+							result[i][j] += partial[i][j];
+				}
+			}
+		});
+
+		return result;
+	}
+
+	private static int[] range(int off, int count) {
+		final int[] r = new int[count];
+		for (int i = 0; i < count; i++)
+			r[i] = off + i;
+		return r;
+	}
+
+	/**
+	 * Make the given columns orthonormal (in place) by twice applying the
+	 * eigendecomposition of their Gram matrix, dropping any linearly dependent
+	 * directions. The same transform is applied to the columns of the
+	 * operator block if it is not null.
+	 * 
+	 * @return the number of remaining columns
+	 */
+	private int orthonormalise(final double[][] x, final double[][] ax, final int off, int count) {
+		for (int pass = 0; pass < 2 && count > 0; pass++) {
+			final int[] cols = range(off, count);
+			final EigenvalueDecomposition evd = new Matrix(gram(x, cols, x, cols)).eig();
+			final double[] d = evd.getRealEigenvalues();
+			final double[][] u = evd.getV().getArray();
+
+			final double max = d[count - 1];
+			if (!(max > 0))
+				return 0;
+
+			int kept = 0;
+			for (int i = 0; i < count; i++)
+				if (d[i] > DROP_TOLERANCE * max)
+					kept++;
+
+			final double[][] T = new double[count][kept];
+			for (int k = 0; k < kept; k++) {
+				final int src = count - 1 - k;
+				final double scale = 1.0 / Math.sqrt(d[src]);
+				for (int j = 0; j < count; j++)
+					T[j][k] = u[j][src] * scale;
+			}
+
+			transform(x, off, count, T, kept);
+			if (ax != null)
+				transform(ax, off, count, T, kept);
+
+			count = kept;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Replace the <code>count</code> columns at <code>off</code> with the
+	 * <code>kept</code> columns of their product with <code>T</code>
+	 */
+	private void transform(final double[][] x, final int off, final int count, final double[][] T, final int kept) {
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				final double[] t = new double[count];
+
+				for (int r = start; r < stop; r++) {
+					final double[] xr = x[r];
+					System.arraycopy(xr, off, t, 0, count);
+
+					for (int k = 0; k < kept; k++) {
+						double sum = 0;
+						for (int j = 0; j < count; j++)
+							sum += t[j] * T[j][k];
+						xr[off + k] = sum;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Subtract the projection of the columns at <code>toff</code> onto the
+	 * (orthonormal) columns at <code>boff</code>. If <code>ax</code> is not
+	 * null the same combination is subtracted from its columns.
+	 */
+	private void subtractProjection(final double[][] x, final double[][] ax, final int boff, final int nb,
+			final int toff, final int nt)
+	{
+		final double[][] C = gram(x, range(boff, nb), x, range(toff, nt));
+
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					subtract(x[r]);
+					if (ax != null)
+						subtract(ax[r]);
+				}
+			}
+
+			private void subtract(double[] row) {
+				for (int j = 0; j < nt; j++) {
+					double sum = 0;
+					for (int i = 0; i < nb; i++)
+						sum += row[boff + i] * C[i][j];
+					row[toff + j] -= sum;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compute the residuals AX - X.theta into the R columns, and their norms
+	 */
+	private void computeResiduals(final double[][] Q, final double[][] AQ, final double[] theta, final double[] norms) {
+		final int b = theta.length;
+		final double[] sq = new double[b];
+
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				final double[] partial = new double[b];
+
+				for (int r = start; r < stop; r++) {
+					final double[] q = Q[r];
+					final double[] aq = AQ[r];
+
+					for (int i = 0; i < b; i++) {
+						final double v = aq[i] - theta[i] * q[i];
+						q[b + i] = v;
+						partial[i] += v * v;
+					}
+				}
+
+				synchronized (sq) {
+					for (int i = 0; i < b; i++)
+						sq[i] += partial[i];
+				}
+			}
+		});
+
+		for (int i = 0; i < b; i++)
+			norms[i] = Math.sqrt(sq[i]);
+	}
+
+	/**
+	 * Move the active residual columns to the start of the R block
+	 */
+	private void compact(final double[][] Q, final int b, final int[] active, final int nr) {
+		if (nr == b)
+			return;
+
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					final double[] q = Q[r];
+					for (int i = 0; i < nr; i++)
+						q[b + i] = q[b + active[i]];
+				}
+			}
+		});
+	}
+
+	/**
+	 * Rayleigh-Ritz on the X columns alone; rotates X and AX to the Ritz
+	 * vectors and returns the Ritz values in descending order.
+	 */
+	private double[] rayleighRitz(double[][] Q, double[][] AQ, int b) {
+		final int[] cols = range(0, b);
+		final double[][] G = gram(Q, cols, AQ, cols);
+		for (int i = 0; i < b; i++) {
+			for (int j = i + 1; j < b; j++) {
+				G[i][j] = G[j][i] = 0.5 * (G[i][j] + G[j][i]);
+			}
+		}
+
+		final EigenvalueDecomposition evd = new Matrix(G).eig();
+		final double[] vals = evd.getRealEigenvalues();
+		final double[][] vecs = evd.getV().getArray();
+
+		final double[][] C = new double[b][b];
+		final double[] theta = new double[b];
+		for (int i = 0; i < b; i++) {
+			theta[i] = vals[b - 1 - i];
+			for (int j = 0; j < b; j++)
+				C[j][i] = vecs[j][b - 1 - i];
+		}
+
+		transform(Q, 0, b, C, b);
+		transform(AQ, 0, b, C, b);
+
+		return theta;
+	}
+
+	/**
+	 * Form the new X (= [X R P] C) and P (= [R P] C_RP), along with the
+	 * operator applied to them, in place.
+	 */
+	private void updateBasis(final double[][] Q, final double[][] AQ, final int[] cols, final double[][] C,
+			final int b)
+	{
+		final int s = cols.length;
+
+		forEachRows(new RowOperation() {
+			@Override
+			public void perform(int start, int stop) {
+				final double[] t = new double[s];
+
+				for (int r = start; r < stop; r++) {
+					update(Q[r], t);
+					update(AQ[r], t);
+				}
+			}
+
+			private void update(double[] row, double[] t) {
+				for (int j = 0; j < s; j++)
+					t[j] = row[cols[j]];
+
+				for (int i = 0; i < b; i++) {
+					double p = 0;
+					for (int j = b; j < s; j++)
+						p += t[j] * C[j][i];
+
+					double x = p;
+					for (int j = 0; j < b; j++)
+						x += t[j] * C[j][i];
+
+					row[i] = x;
+					row[2 * b + i] = p;
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.math.matrix.GeneralisedEigenvalueProblem;
+import org.openimaj.math.matrix.algorithm.pca.StreamingPrincipalComponentAnalysis;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.Matrix;
+
+/**
+ * An implementation of {@link LinearDiscriminantAnalysis} that accumulates the
+ * statistics required to compute the basis one vector at a time, rather than
+ * requiring all the data to be held in memory. Only the per-class sums and
+ * counts and the total scatter matrix are stored; the between-class scatter is
+ * computed from the class means, and the within-class scatter is the
+ * difference between the total and between-class scatter.
+ * <p>
+ * Accumulators that have been fed with different parts of the data (for
+ * example by different threads) can be combined with
+ * {@link #merge(StreamingLinearDiscriminantAnalysis)}; this is done
+ * automatically by {@link #update(List, ThreadPoolExecutor)}, which shares a
+ * small fixed number of accumulators between the threads. Once all the data
+ * has been accumulated, {@link #learnBasis()} computes the basis.
+ * 
+ * @author agent (agent@local)
+ */
+public class StreamingLinearDiscriminantAnalysis extends LinearDiscriminantAnalysis {
+	private static class ClassStats {
+		long count;
+		double[] sum;
+	}
+
+	/**
+	 * The number of items read by a worker thread before they are added to an
+	 * accumulator
+	 */
+	private static final int BLOCK_SIZE = 32;
+
+	private StreamingPrincipalComponentAnalysis total = new StreamingPrincipalComponentAnalysis();
+	private Map<Object, ClassStats> classes = new HashMap<Object, ClassStats>();
+
+	/**
+	 * Construct with the given number of components.
+	 * 
+	 * @param numComponents
+	 *            the number of components
+	 */
+	public StreamingLinearDiscriminantAnalysis(int numComponents) {
+		super(numComponents);
+	}
+
+	/**
+	 * Add a vector belonging to the given class to the accumulated statistics.
+	 * 
+	 * @param clazz
+	 *            the class of the vector
+	 * @param vector
+	 *            the vector
+	 */
+	public void update(Object clazz, double[] vector) {
+		ClassStats stats = classes.get(clazz);
+		if (stats == null) {
+			classes.put(clazz, stats = new ClassStats());
+			stats.sum = new double[vector.length];
+		}
+
+		stats.count++;
+		for (int i = 0; i < vector.length; i++)
+			stats.sum[i] += vector[i];
+
+		total.update(vector);
+	}
+
+	/**
+	 * Add all the labelled vectors from the given list to the accumulated
+	 * statistics in parallel, using at most
+	 * {@link StreamingPrincipalComponentAnalysis#DEFAULT_NUM_ACCUMULATORS}
+	 * accumulators.
+	 * 
+	 * @see #update(List, ThreadPoolExecutor, int)
+	 * 
+	 * @param data
+	 *            the data as pairs of class and vector
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void update(List<? extends IndependentPair<?, double[]>> data, ThreadPoolExecutor pool) {
+		update(data, pool, StreamingPrincipalComponentAnalysis.DEFAULT_NUM_ACCUMULATORS);
+	}
+
+	/**
+	 * Add all the labelled vectors from the given list to the accumulated
+	 * statistics in parallel. The worker threads retrieve small blocks of
+	 * items from the list, and then fold each block into one of a fixed number
+	 * of shared accumulators (this object being one of them); the accumulators
+	 * are merged once all the data has been read. The additional memory
+	 * required is therefore <code>numAccumulators - 1</code> sets of
+	 * statistics, irrespective of the number of threads in the pool.
+	 * <p>
+	 * The items are retrieved by the worker threads, so lists that lazily load
+	 * or compute their items are also processed in parallel, but must be
+	 * thread-safe.
+	 * 
+	 * @param data
+	 *            the data as pairs of class and vector
+	 * @param pool
+	 *            the thread pool
+	 * @param numAccumulators
+	 *            the maximum number of accumulators to use
+	 */
+	public void update(final List<? extends IndependentPair<?, double[]>> data, ThreadPoolExecutor pool,
+			int numAccumulators)
+	{
+		final int nacc = Math.max(1, Math.min(numAccumulators, pool.getMaximumPoolSize()));
+		final BlockingQueue<StreamingLinearDiscriminantAnalysis> accumulators =
+				new ArrayBlockingQueue<StreamingLinearDiscriminantAnalysis>(nacc);
+
+		accumulators.add(this);
+		for (int i = 1; i < nacc; i++)
+			accumulators.add(new StreamingLinearDiscriminantAnalysis(numComponents));
+
+		Parallel.forRange(0, data.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				@SuppressWarnings("unchecked")
+				final IndependentPair<?, double[]>[] block = new IndependentPair[Math.min(BLOCK_SIZE, range.stop
+						- range.start)];
+
+				for (int i = range.start; i < range.stop;) {
+					int n = 0;
+					for (; n < block.length && i < range.stop; n++, i++)
+						block[n] = data.get(i);
+
+					final StreamingLinearDiscriminantAnalysis acc;
+					try {
+						acc = accumulators.take();
+					} catch (final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+
+					try {
+						for (int j = 0; j < n; j++)
+							acc.update(block[j].firstObject(), block[j].secondObject());
+					} finally {
+						accumulators.add(acc);
+					}
+				}
+			}
+		}, pool);
+
+		for (final StreamingLinearDiscriminantAnalysis acc : accumulators)
+			if (acc != this)
+				merge(acc);
+	}
+
+	/**
+	 * Merge the statistics accumulated by another
+	 * {@link StreamingLinearDiscriminantAnalysis} into this one. The other
+	 * object is not modified.
+	 * 
+	 * @param other
+	 *            the statistics to merge
+	 */
+	public void merge(StreamingLinearDiscriminantAnalysis other) {
+		for (final Entry<Object, ClassStats> e : other.classes.entrySet()) {
+			ClassStats stats = classes.get(e.getKey());
+			if (stats == null) {
+				classes.put(e.getKey(), stats = new ClassStats());
+				stats.sum = new double[e.getValue().sum.length];
+			}
+
+			stats.count += e.getValue().count;
+			for (int i = 0; i < stats.sum.length; i++)
+				stats.sum[i] += e.getValue().sum[i];
+		}
+
+		total.merge(other.total);
+	}
+
+	/**
+	 * Clear the accumulated statistics.
+	 */
+	public void reset() {
+		total.reset();
+		classes.clear();
+	}
+
+	/**
+	 * Learn the basis from the data that has been accumulated with
+	 * {@link #update(Object, double[])} and
+	 * {@link #merge(StreamingLinearDiscriminantAnalysis)}.
+	 */
+	public void learnBasis() {
+		final int c = classes.size();
+
+		if (c < 0 || numComponents >= c)
+			numComponents = c - 1;
+
+		final long n = total.getCount();
+
+		// Sw = St - Sb, where St is the total scatter
+		final Matrix Sw = total.getCovariance().times(n - 1);
+		final int dims = Sw.getRowDimension();
+		final Matrix Sb = new Matrix(dims, dims);
+
+		mean = new double[dims];
+		for (final ClassStats stats : classes.values())
+			for (int i = 0; i < dims; i++)
+				mean[i] += stats.sum[i];
+		for (int i = 0; i < dims; i++)
+			mean[i] /= n;
+
+		final double[][] sb = Sb.getArray();
+		final double[][] sw = Sw.getArray();
+		final double[] diff = new double[dims];
+		for (final ClassStats stats : classes.values()) {
+			for (int i = 0; i < dims; i++)
+				diff[i] = stats.sum[i] / stats.count - mean[i];
+
+			for (int i = 0; i < dims; i++) {
+				for (int j = 0; j < dims; j++) {
+					final double v = stats.count * diff[i] * diff[j];
+					sb[i][j] += v;
+					sw[i][j] -= v;
+				}
+			}
+		}
+
+		final IndependentPair<Matrix, double[]> evs = GeneralisedEigenvalueProblem
+				.symmetricGeneralisedEigenvectorsSorted(Sb, Sw, numComponents);
+		this.eigenvectors = evs.firstObject();
+		this.eigenvalues = evs.secondObject();
+	}
+
+	@Override
+	public void learnBasis(List<double[][]> data) {
+		reset();
+
+		for (int i = 0; i < data.size(); i++)
+			for (final double[] vector : data.get(i))
+				update(i, vector);
+
+		learnBasis();
+	}
+}
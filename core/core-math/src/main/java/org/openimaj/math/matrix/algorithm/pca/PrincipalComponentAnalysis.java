@@ -456,6 +456,30 @@ public abstract class PrincipalComponentAnalysis {
 		return vec.times(basis).getColumnPackedCopy();
 	}
 
+	/**
+	 * Project a vector by the basis. The vector is normalised by subtracting
+	 * the mean and then multiplied by the basis. The vector is used directly,
+	 * without being copied or converted to doubles.
+	 * 
+	 * @param vector
+	 *            the vector to project
+	 * @return projected vector
+	 */
+	public double[] project(float[] vector) {
+		final double[][] b = basis.getArray();
+		final double[] result = new double[basis.getColumnDimension()];
+
+		for (int i = 0; i < vector.length; i++) {
+			final double v = vector[i] - mean[i];
+			final double[] bi = b[i];
+
+			for (int j = 0; j < result.length; j++)
+				result[j] += v * bi[j];
+		}
+
+		return result;
+	}
+
 	/**
 	 * Get the standard deviations (sqrt of eigenvalues) of the principal
 	 * components.
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.data.DoubleArrayBackedDataSource;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import Jama.QRDecomposition;
+
+/**
+ * Compute an approximate PCA basis using a randomised range finder, as
+ * described by Halko, Martinsson and Tropp ("Finding structure with
+ * randomness", SIAM Review, 2011).
+ * <p>
+ * The data is never held in memory as a matrix; instead it is read from a
+ * {@link DataSource} in a small number of (parallel) passes, each of which
+ * multiplies the covariance matrix by a thin d×(k+p) matrix, where d is the
+ * dimensionality of the data, k is the number of components required and p is
+ * the amount of oversampling. Memory usage is therefore proportional to
+ * d×(k+p) rather than to the size of the data or the square of its
+ * dimensionality, which makes this suitable for learning the top few
+ * components of very high dimensional data (for example VLAD vectors). The
+ * accuracy of the result improves with the number of power iterations, at the
+ * cost of one extra pass over the data each.
+ * <p>
+ * The rows of the {@link DataSource} must be either <code>double[]</code> or
+ * <code>float[]</code> arrays. The passes over the data are split across the
+ * threads of a pool, so the source must be safe to read from several threads
+ * at once.
+ * 
+ * @author agent (agent@local)
+ */
+public class RandomisedPrincipalComponentAnalysis extends PrincipalComponentAnalysis {
+	private static final int BLOCK_SIZE = 256;
+
+	int ndims;
+	int oversampling;
+	int powerIterations;
+	long seed;
+
+	/**
+	 * Construct a {@link RandomisedPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors using an oversampling of 10, 2 power
+	 * iterations and a random seed of 0.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 */
+	public RandomisedPrincipalComponentAnalysis(int ndims) {
+		this(ndims, 10, 2, 0);
+	}
+
+	/**
+	 * Construct a {@link RandomisedPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 * @param oversampling
+	 *            the number of additional random directions to sample
+	 * @param powerIterations
+	 *            the number of power iterations
+	 * @param seed
+	 *            the seed for the random directions; no seed if seed &lt; 0
+	 */
+	public RandomisedPrincipalComponentAnalysis(int ndims, int oversampling, int powerIterations, long seed) {
+		this.ndims = ndims;
+		this.oversampling = oversampling;
+		this.powerIterations = powerIterations;
+		this.seed = seed;
+	}
+
+	/**
+	 * Set the seed for the random directions. Learning the basis from the same
+	 * data with the same seed always gives the same result.
+	 * 
+	 * @param seed
+	 *            the random seed; no seed if seed &lt; 0
+	 */
+	public void seed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Learn the basis from the given data using the
+	 * {@link GlobalExecutorPool}.
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 */
+	public void learnBasis(DataSource<?> data) {
+		learnBasis(data, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Learn the basis from the given data, using the given pool to parallelise
+	 * the passes over the data. The source is read concurrently from the
+	 * threads of the pool, so must be thread-safe.
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void learnBasis(DataSource<?> data, ThreadPoolExecutor pool) {
+		final int n = data.size();
+		final int d = data.numDimensions();
+
+		if (n < 2)
+			throw new IllegalStateException("At least two vectors are required to learn the basis");
+
+		final int l = Math.min(ndims + oversampling, d);
+		final int k = Math.min(ndims, l);
+
+		final Random rng = seed < 0 ? new Random() : new Random(seed);
+		final double[][] omega = new double[d][l];
+		for (int i = 0; i < d; i++)
+			for (int j = 0; j < l; j++)
+				omega[i][j] = rng.nextGaussian();
+
+		// first pass computes the mean at the same time as the (uncentred)
+		// product with the random matrix, which is then corrected
+		final double[] sum = new double[d];
+		final double[][] y = multiplyScatter(data, omega, null, sum, pool);
+
+		mean = new double[d];
+		for (int i = 0; i < d; i++)
+			mean[i] = sum[i] / n;
+
+		final double[] mo = new double[l];
+		for (int i = 0; i < d; i++)
+			for (int j = 0; j < l; j++)
+				mo[j] += mean[i] * omega[i][j];
+
+		for (int i = 0; i < d; i++)
+			for (int j = 0; j < l; j++)
+				y[i][j] -= n * mean[i] * mo[j];
+
+		Matrix q = new QRDecomposition(new Matrix(y)).getQ();
+
+		for (int it = 0;; it++) {
+			final Matrix z = new Matrix(multiplyScatter(data, q.getArray(), mean, null, pool));
+
+			if (it == powerIterations) {
+				// Rayleigh-Ritz: eigendecomposition of the covariance
+				// projected into the subspace
+				final Matrix b = q.transpose().times(z).times(1.0 / (n - 1));
+				final Matrix bs = b.plus(b.transpose()).times(0.5);
+				final EigenvalueDecomposition evd = bs.eig();
+				final double[] evals = evd.getRealEigenvalues();
+				final Matrix evecs = evd.getV();
+
+				// eigenvalues are in ascending order
+				final Matrix u = new Matrix(l, k);
+				eigenvalues = new double[k];
+				for (int i = 0; i < k; i++) {
+					final int col = evals.length - 1 - i;
+					eigenvalues[i] = evals[col];
+
+					for (int r = 0; r < l; r++)
+						u.set(r, i, evecs.get(r, col));
+				}
+
+				basis = q.times(u);
+				return;
+			}
+
+			q = new QRDecomposition(z).getQ();
+		}
+	}
+
+	/**
+	 * Compute the product of the scatter matrix of the data with the given
+	 * d×l matrix in a single parallel pass, by accumulating
+	 * <code>x (x<sup>T</sup> m)</code> for each row x. If the mean is given it
+	 * is subtracted from each row; if the sum is not null, the (uncentred) sum
+	 * of the rows is accumulated into it.
+	 */
+	private static double[][] multiplyScatter(final DataSource<?> data, final double[][] m, final double[] mean,
+			final double[] sum, ThreadPoolExecutor pool)
+	{
+		final int d = m.length;
+		final int l = m[0].length;
+		final double[][] result = new double[d][l];
+
+		Parallel.forRange(0, data.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final double[][] acc = new double[d][l];
+				final double[] accSum = sum == null ? null : new double[d];
+				final double[] x = new double[d];
+				final double[] t = new double[l];
+				final Object[] block = data.createTemporaryArray(BLOCK_SIZE);
+
+				for (int start = range.start; start < range.stop; start += BLOCK_SIZE) {
+					final int stop = Math.min(start + BLOCK_SIZE, range.stop);
+					getData(data, start, stop, block);
+
+					for (int r = 0; r < stop - start; r++) {
+						copyRow(block[r], mean, x);
+
+						if (accSum != null)
+							for (int i = 0; i < d; i++)
+								accSum[i] += x[i];
+
+						for (int j = 0; j < l; j++)
+							t[j] = 0;
+						for (int i = 0; i < d; i++) {
+							final double xi = x[i];
+							final double[] mi = m[i];
+							for (int j = 0; j < l; j++)
+								t[j] += xi * mi[j];
+						}
+
+						for (int i = 0; i < d; i++) {
+							final double xi = x[i];
+							final double[] ai = acc[i];
+							for (int j = 0; j < l; j++)
+								ai[j] += xi * t[j];
+						}
+					}
+				}
+
+				synchronized (result) {
+					for (int i = 0; i < d; i++)
+						for (int j = 0; j < l; j++)
+							result[i][j] += acc[i][j];
+
+					if (sum != null)
+						for (int i = 0; i < d; i++)
+							sum[i] += accSum[i];
+				}
+			}
+		}, pool);
+
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void getData(DataSource<T> data, int start, int stop, Object[] block) {
+		data.getData(start, stop, (T[]) block);
+	}
+
+	private static void copyRow(Object row, double[] mean, double[] x) {
+		if (row instanceof double[]) {
+			final double[] r = (double[]) row;
+			for (int i = 0; i < x.length; i++)
+				x[i] = mean == null ? r[i] : r[i] - mean[i];
+		} else if (row instanceof float[]) {
+			final float[] r = (float[]) row;
+			for (int i = 0; i < x.length; i++)
+				x[i] = mean == null ? r[i] : r[i] - mean[i];
+		} else {
+			throw new IllegalArgumentException("Unsupported data type: " + row.getClass());
+		}
+	}
+
+	@Override
+	public void learnBasis(Matrix data) {
+		learnBasis(new DoubleArrayBackedDataSource(data.getArray()));
+	}
+
+	@Override
+	protected void learnBasisNorm(Matrix norm) {
+		learnBasis(norm);
+	}
+}
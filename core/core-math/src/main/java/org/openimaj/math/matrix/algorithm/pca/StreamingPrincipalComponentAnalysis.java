@@ -0,0 +1,441 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.NotConvergedException;
+import no.uib.cipr.matrix.SymmDenseEVD;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import Jama.Matrix;
+
+/**
+ * Compute the PCA from the mean and covariance of data that is accumulated
+ * incrementally, one vector at a time, rather than from a data matrix held in
+ * memory. Memory usage is therefore proportional to the square of the
+ * dimensionality of the data, and independent of the number of vectors.
+ * <p>
+ * The running mean and co-moment matrix are updated with Welford's method,
+ * and accumulators that have been fed with different parts of the data (for
+ * example by different threads) can be combined with
+ * {@link #merge(StreamingPrincipalComponentAnalysis)}; this is done
+ * automatically by {@link #update(DataSource, ThreadPoolExecutor)}, which
+ * shares a small fixed number of accumulators between the threads. Once all
+ * the data has been accumulated, {@link #learnBasis()} computes the basis from
+ * the eigendecomposition of the covariance matrix.
+ * <p>
+ * As the co-moment matrix is d×d, this is best suited to data of moderate
+ * dimensionality; for very high dimensional data consider the
+ * {@link RandomisedPrincipalComponentAnalysis}.
+ * 
+ * @author agent (agent@local)
+ */
+public class StreamingPrincipalComponentAnalysis extends PrincipalComponentAnalysis {
+	/**
+	 * The default maximum number of accumulators used when updating in
+	 * parallel
+	 */
+	public static final int DEFAULT_NUM_ACCUMULATORS = 2;
+
+	/**
+	 * The number of vectors read by a worker thread before they are added to
+	 * an accumulator
+	 */
+	private static final int BLOCK_SIZE = 32;
+
+	int ndims;
+
+	long count;
+	double[] runningMean;
+	double[][] comoment;
+
+	/**
+	 * Construct a {@link StreamingPrincipalComponentAnalysis} that will
+	 * extract all the eigenvectors.
+	 */
+	public StreamingPrincipalComponentAnalysis() {
+		this(-1);
+	}
+
+	/**
+	 * Construct a {@link StreamingPrincipalComponentAnalysis} that will
+	 * extract the n best eigenvectors.
+	 * 
+	 * @param ndims
+	 *            the number of eigenvectors to select.
+	 */
+	public StreamingPrincipalComponentAnalysis(int ndims) {
+		this.ndims = ndims;
+	}
+
+	private void init(int length) {
+		if (runningMean == null) {
+			runningMean = new double[length];
+			comoment = new double[length][length];
+		} else if (runningMean.length != length) {
+			throw new IllegalArgumentException("Vector length " + length + " doesn't match accumulated length "
+					+ runningMean.length);
+		}
+	}
+
+	/**
+	 * Add a vector to the accumulated statistics.
+	 * 
+	 * @param vector
+	 *            the vector
+	 */
+	public void update(double[] vector) {
+		init(vector.length);
+
+		final double[] delta = new double[vector.length];
+		for (int i = 0; i < delta.length; i++)
+			delta[i] = vector[i] - runningMean[i];
+
+		updateDelta(delta);
+	}
+
+	/**
+	 * Add a vector to the accumulated statistics.
+	 * 
+	 * @param vector
+	 *            the vector
+	 */
+	public void update(float[] vector) {
+		init(vector.length);
+
+		final double[] delta = new double[vector.length];
+		for (int i = 0; i < delta.length; i++)
+			delta[i] = vector[i] - runningMean[i];
+
+		updateDelta(delta);
+	}
+
+	/**
+	 * Welford update given the difference between the new vector and the
+	 * current running mean
+	 */
+	private void updateDelta(double[] delta) {
+		final int n = delta.length;
+
+		count++;
+		for (int i = 0; i < n; i++)
+			runningMean[i] += delta[i] / count;
+
+		// only the upper triangle is accumulated; the difference between the
+		// vector and the updated mean is delta - delta / count
+		for (int i = 0; i < n; i++) {
+			final double di = delta[i] - delta[i] / count;
+			final double[] row = comoment[i];
+
+			for (int j = i; j < n; j++)
+				row[j] += di * delta[j];
+		}
+	}
+
+	/**
+	 * Add all the vectors from the given {@link DataSource} to the
+	 * accumulated statistics.
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 */
+	public void update(DataSource<?> data) {
+		for (int i = 0; i < data.size(); i++)
+			update(data.getData(i));
+	}
+
+	/**
+	 * Add all the vectors from the given {@link DataSource} to the
+	 * accumulated statistics in parallel, using at most
+	 * {@link #DEFAULT_NUM_ACCUMULATORS} accumulators.
+	 * 
+	 * @see #update(DataSource, ThreadPoolExecutor, int)
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void update(final DataSource<?> data, ThreadPoolExecutor pool) {
+		update(data, pool, DEFAULT_NUM_ACCUMULATORS);
+	}
+
+	/**
+	 * Add all the vectors from the given {@link DataSource} to the
+	 * accumulated statistics in parallel. The worker threads read small blocks
+	 * of vectors from the source, and then fold each block into one of a fixed
+	 * number of shared accumulators (this object being one of them); the
+	 * accumulators are merged once all the data has been read. The additional
+	 * memory required is therefore <code>numAccumulators - 1</code> d×d
+	 * matrices, irrespective of the number of threads in the pool.
+	 * <p>
+	 * The source is read concurrently from the threads of the pool, so must be
+	 * thread-safe.
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 * @param numAccumulators
+	 *            the maximum number of accumulators to use
+	 */
+	public void update(final DataSource<?> data, ThreadPoolExecutor pool, int numAccumulators) {
+		update(new AbstractList<Object>() {
+			@Override
+			public Object get(int index) {
+				return data.getData(index);
+			}
+
+			@Override
+			public int size() {
+				return data.size();
+			}
+		}, pool, numAccumulators);
+	}
+
+	/**
+	 * Add all the vectors from the given list to the accumulated statistics in
+	 * parallel, using at most {@link #DEFAULT_NUM_ACCUMULATORS} accumulators.
+	 * 
+	 * @see #update(List, ThreadPoolExecutor, int)
+	 * 
+	 * @param data
+	 *            the data; items must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void update(final List<?> data, ThreadPoolExecutor pool) {
+		update(data, pool, DEFAULT_NUM_ACCUMULATORS);
+	}
+
+	/**
+	 * Add all the vectors from the given list to the accumulated statistics in
+	 * parallel. This works in the same way as
+	 * {@link #update(DataSource, ThreadPoolExecutor, int)}; the items are
+	 * retrieved from the list by the worker threads, so lists that lazily load
+	 * or compute their items are also processed in parallel, but must be
+	 * thread-safe.
+	 * 
+	 * @param data
+	 *            the data; items must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 * @param numAccumulators
+	 *            the maximum number of accumulators to use
+	 */
+	public void update(final List<?> data, ThreadPoolExecutor pool, int numAccumulators) {
+		final int nacc = Math.max(1, Math.min(numAccumulators, pool.getMaximumPoolSize()));
+		final BlockingQueue<StreamingPrincipalComponentAnalysis> accumulators =
+				new ArrayBlockingQueue<StreamingPrincipalComponentAnalysis>(nacc);
+
+		accumulators.add(this);
+		for (int i = 1; i < nacc; i++)
+			accumulators.add(new StreamingPrincipalComponentAnalysis());
+
+		Parallel.forRange(0, data.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Object[] block = new Object[Math.min(BLOCK_SIZE, range.stop - range.start)];
+
+				for (int i = range.start; i < range.stop;) {
+					int n = 0;
+					for (; n < block.length && i < range.stop; n++, i++)
+						block[n] = data.get(i);
+
+					final StreamingPrincipalComponentAnalysis acc;
+					try {
+						acc = accumulators.take();
+					} catch (final InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+
+					try {
+						for (int j = 0; j < n; j++)
+							acc.update(block[j]);
+					} finally {
+						accumulators.add(acc);
+					}
+				}
+			}
+		}, pool);
+
+		for (final StreamingPrincipalComponentAnalysis acc : accumulators)
+			if (acc != this)
+				merge(acc);
+	}
+
+	private void update(Object row) {
+		if (row instanceof double[])
+			update((double[]) row);
+		else if (row instanceof float[])
+			update((float[]) row);
+		else
+			throw new IllegalArgumentException("Unsupported data type: " + row.getClass());
+	}
+
+	/**
+	 * Merge the statistics accumulated by another
+	 * {@link StreamingPrincipalComponentAnalysis} into this one. The other
+	 * object is not modified.
+	 * 
+	 * @param other
+	 *            the statistics to merge
+	 */
+	public void merge(StreamingPrincipalComponentAnalysis other) {
+		if (other.count == 0)
+			return;
+
+		init(other.runningMean.length);
+
+		final int n = runningMean.length;
+		final double total = count + other.count;
+		final double scale = (count * (double) other.count) / total;
+
+		final double[] delta = new double[n];
+		for (int i = 0; i < n; i++)
+			delta[i] = other.runningMean[i] - runningMean[i];
+
+		for (int i = 0; i < n; i++) {
+			final double[] row = comoment[i];
+			final double[] orow = other.comoment[i];
+
+			for (int j = i; j < n; j++)
+				row[j] += orow[j] + delta[i] * delta[j] * scale;
+		}
+
+		for (int i = 0; i < n; i++)
+			runningMean[i] += delta[i] * other.count / total;
+
+		count += other.count;
+	}
+
+	/**
+	 * Get the number of vectors that have been accumulated
+	 * 
+	 * @return the number of vectors
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Clear the accumulated statistics.
+	 */
+	public void reset() {
+		count = 0;
+		runningMean = null;
+		comoment = null;
+	}
+
+	/**
+	 * Get the (unbiased) covariance matrix of the accumulated data.
+	 * 
+	 * @return the covariance matrix
+	 */
+	public Matrix getCovariance() {
+		final int n = runningMean.length;
+		final Matrix covar = new Matrix(n, n);
+		final double[][] cv = covar.getArray();
+		final double norm = 1.0 / (count - 1);
+
+		for (int i = 0; i < n; i++) {
+			for (int j = i; j < n; j++) {
+				cv[i][j] = cv[j][i] = comoment[i][j] * norm;
+			}
+		}
+
+		return covar;
+	}
+
+	/**
+	 * Learn the basis from the data that has been accumulated with
+	 * {@link #update(double[])} and {@link #merge(StreamingPrincipalComponentAnalysis)}.
+	 */
+	public void learnBasis() {
+		if (count < 2)
+			throw new IllegalStateException("At least two vectors are required to learn the basis");
+
+		mean = runningMean.clone();
+
+		try {
+			final SymmDenseEVD evd = SymmDenseEVD.factorize(new DenseMatrix(getCovariance().getArray()));
+			final DenseMatrix evecs = evd.getEigenvectors();
+			final double[] evals = evd.getEigenvalues();
+
+			// eigenvalues are in ascending order
+			final int rows = evecs.numRows();
+			final int dims = ndims < 0 ? evals.length : Math.min(ndims, evals.length);
+
+			basis = new Matrix(rows, dims);
+			eigenvalues = new double[dims];
+
+			final double[][] basisData = basis.getArray();
+			for (int i = 0; i < dims; i++) {
+				final int col = evals.length - 1 - i;
+				eigenvalues[i] = evals[col];
+
+				for (int r = 0; r < rows; r++)
+					basisData[r][i] = evecs.get(r, col);
+			}
+		} catch (final NotConvergedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public void learnBasis(Matrix data) {
+		reset();
+
+		for (final double[] row : data.getArray())
+			update(row);
+
+		learnBasis();
+	}
+
+	@Override
+	protected void learnBasisNorm(Matrix norm) {
+		learnBasis(norm);
+	}
+}
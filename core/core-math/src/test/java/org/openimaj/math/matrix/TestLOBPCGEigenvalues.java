@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import Jama.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.Vector;
+
+/**
+ * Tests for {@link LOBPCGEigenvalues}
+ * 
+ * @author agent (agent@local)
+ */
+public class TestLOBPCGEigenvalues {
+	private static final double EPS = 1e-6;
+
+	private static SparseMatrix randomSymmetric(int n, double density, Random rng) {
+		final SparseMatrix m = new SparseMatrix(n, n);
+		for (int i = 0; i < n; i++) {
+			m.put(i, i, rng.nextGaussian());
+			for (int j = i + 1; j < n; j++) {
+				if (rng.nextDouble() < density) {
+					final double v = rng.nextGaussian();
+					m.put(i, j, v);
+					m.put(j, i, v);
+				}
+			}
+		}
+		return m;
+	}
+
+	private static double[] jamaEigenvalues(SparseMatrix m) {
+		return new Matrix(m.asArray()).eig().getRealEigenvalues();
+	}
+
+	private static void checkVectors(SparseMatrix m, LOBPCGEigenvalues eig) {
+		for (int i = 0; i < eig.value.length; i++) {
+			final Vector v = eig.vector[i];
+			final Vector mv = m.mult(v);
+
+			assertEquals(1, v.norm(), EPS);
+			for (int r = 0; r < m.rowCount(); r++)
+				assertEquals(eig.value[i] * v.get(r), mv.get(r), 1e-4);
+		}
+	}
+
+	/**
+	 * Test the algebraically largest eigenvalues against a dense solver
+	 */
+	@Test
+	public void testLargest() {
+		final Random rng = new Random(1);
+		final SparseMatrix m = randomSymmetric(200, 0.05, rng);
+
+		final LOBPCGEigenvalues eig = LOBPCGEigenvalues.of(m, GlobalExecutorPool.getPool());
+		eig.largest(5).run();
+
+		final double[] expected = jamaEigenvalues(m);
+		Arrays.sort(expected);
+		for (int i = 0; i < 5; i++)
+			assertEquals(expected[expected.length - 5 + i], eig.value[i], EPS);
+
+		checkVectors(m, eig);
+	}
+
+	/**
+	 * Test the eigenvalues of greatest magnitude against a dense solver
+	 */
+	@Test
+	public void testGreatest() {
+		final Random rng = new Random(2);
+		final SparseMatrix m = randomSymmetric(150, 0.05, rng);
+
+		final LOBPCGEigenvalues eig = LOBPCGEigenvalues.of(m).greatest(6);
+		eig.run();
+
+		final double[] expected = jamaEigenvalues(m);
+		final double[] mags = new double[expected.length];
+		for (int i = 0; i < expected.length; i++)
+			mags[i] = Math.abs(expected[i]);
+		Arrays.sort(mags);
+
+		final double[] actual = new double[6];
+		for (int i = 0; i < 6; i++)
+			actual[i] = Math.abs(eig.value[i]);
+		Arrays.sort(actual);
+
+		for (int i = 0; i < 6; i++)
+			assertEquals(mags[mags.length - 6 + i], actual[i], EPS);
+
+		checkVectors(m, eig);
+	}
+
+	/**
+	 * Test that repeated eigenvalues (from a block diagonal matrix with
+	 * identical blocks) are all found
+	 */
+	@Test
+	public void testRepeated() {
+		final int nblocks = 4;
+		final int bs = 30;
+		final SparseMatrix block = randomSymmetric(bs, 0.2, new Random(3));
+		final SparseMatrix m = new SparseMatrix(nblocks * bs, nblocks * bs);
+		for (int b = 0; b < nblocks; b++)
+			for (int i = 0; i < bs; i++)
+				for (int j = 0; j < bs; j++)
+					if (block.get(i, j) != 0)
+						m.put(b * bs + i, b * bs + j, block.get(i, j));
+
+		final LOBPCGEigenvalues eig = LOBPCGEigenvalues.of(m, GlobalExecutorPool.getPool());
+		eig.largest(nblocks).run();
+
+		final double[] expected = jamaEigenvalues(block);
+		Arrays.sort(expected);
+		for (int i = 0; i < nblocks; i++)
+			assertEquals(expected[bs - 1], eig.value[i], EPS);
+
+		checkVectors(m, eig);
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link StreamingLinearDiscriminantAnalysis}
+ * 
+ * @author agent (agent@local)
+ */
+public class StreamingLinearDiscriminantAnalysisTest {
+	private static final int NUM_CLASSES = 3;
+	private static final int PER_CLASS = 200;
+	private static final int DIMS = 5;
+
+	private List<double[][]> data;
+
+	/**
+	 * Create some gaussian data for each class, with different means and a
+	 * shared non-diagonal covariance
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+		data = new ArrayList<double[][]>();
+
+		for (int c = 0; c < NUM_CLASSES; c++) {
+			final double[][] classData = new double[PER_CLASS][DIMS];
+
+			for (int i = 0; i < PER_CLASS; i++) {
+				double prev = 0;
+				for (int j = 0; j < DIMS; j++) {
+					final double v = rng.nextGaussian() + 0.5 * prev;
+					classData[i][j] = v + (j == c ? 3 : 0) + c;
+					prev = v;
+				}
+			}
+
+			data.add(classData);
+		}
+	}
+
+	private static double absCosine(double[] a, double[] b) {
+		double dot = 0, na = 0, nb = 0;
+		for (int i = 0; i < a.length; i++) {
+			dot += a[i] * b[i];
+			na += a[i] * a[i];
+			nb += b[i] * b[i];
+		}
+		return Math.abs(dot) / Math.sqrt(na * nb);
+	}
+
+	/**
+	 * Test that the streaming LDA finds the same basis as the batch LDA. The
+	 * batch implementation weights the between-class scatter by the total
+	 * number of instances rather than the size of each class, so with balanced
+	 * classes its eigenvalues are scaled by the number of classes.
+	 */
+	@Test
+	public void testAgainstBatch() {
+		final LinearDiscriminantAnalysis batch = new LinearDiscriminantAnalysis(NUM_CLASSES - 1);
+		batch.learnBasis(data);
+
+		final StreamingLinearDiscriminantAnalysis streaming = new StreamingLinearDiscriminantAnalysis(
+				NUM_CLASSES - 1);
+		streaming.learnBasis(data);
+
+		assertArrayEquals(batch.getMean(), streaming.getMean(), 1e-10);
+
+		for (int i = 0; i < NUM_CLASSES - 1; i++) {
+			assertEquals(batch.getEigenValues()[i], NUM_CLASSES * streaming.getEigenValues()[i],
+					1e-6 * batch.getEigenValues()[i]);
+			assertEquals(1, absCosine(batch.getBasisVector(i), streaming.getBasisVector(i)), 1e-8);
+		}
+	}
+
+	/**
+	 * Test that accumulating in parallel gives the same result as
+	 * accumulating sequentially
+	 */
+	@Test
+	public void testParallel() {
+		final List<IndependentPair<Integer, double[]>> items = new ArrayList<IndependentPair<Integer, double[]>>();
+		for (int c = 0; c < NUM_CLASSES; c++)
+			for (final double[] v : data.get(c))
+				items.add(IndependentPair.pair(c, v));
+
+		final StreamingLinearDiscriminantAnalysis sequential = new StreamingLinearDiscriminantAnalysis(
+				NUM_CLASSES - 1);
+		for (final IndependentPair<Integer, double[]> item : items)
+			sequential.update(item.firstObject(), item.secondObject());
+		sequential.learnBasis();
+
+		for (int nacc = 1; nacc <= 3; nacc++) {
+			final StreamingLinearDiscriminantAnalysis parallel = new StreamingLinearDiscriminantAnalysis(
+					NUM_CLASSES - 1);
+			parallel.update(items, GlobalExecutorPool.getPool(), nacc);
+			parallel.learnBasis();
+
+			assertArrayEquals(sequential.getMean(), parallel.getMean(), 1e-10);
+			assertArrayEquals(sequential.getEigenValues(), parallel.getEigenValues(), 1e-8);
+			for (int i = 0; i < NUM_CLASSES - 1; i++)
+				assertEquals(1, absCosine(sequential.getBasisVector(i), parallel.getBasisVector(i)), 1e-8);
+		}
+	}
+}
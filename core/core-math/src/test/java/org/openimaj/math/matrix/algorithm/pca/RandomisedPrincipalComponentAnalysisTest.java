@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.data.FloatArrayBackedDataSource;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link RandomisedPrincipalComponentAnalysis}
+ * 
+ * @author agent (agent@local)
+ * 
+ */
+public class RandomisedPrincipalComponentAnalysisTest extends PrincipalComponentAnalysisTest {
+
+	@Override
+	protected PrincipalComponentAnalysis createPCA() {
+		return new RandomisedPrincipalComponentAnalysis(2);
+	}
+
+	/**
+	 * Test that the top components of higher dimensional data with a few
+	 * dominant directions agree with the exact covariance PCA, and that
+	 * learning from a float data source and projecting float vectors give the
+	 * same results as with doubles.
+	 */
+	@Test
+	public void testHighDimensional() {
+		final Random rng = new Random(42);
+		final int n = 2000;
+		final int d = 50;
+		final double[] sds = { 20, 10, 5 };
+
+		final Matrix dirs = new Matrix(d, d);
+		for (int i = 0; i < d; i++)
+			for (int j = 0; j < d; j++)
+				dirs.set(i, j, rng.nextGaussian());
+		final Matrix q = dirs.qr().getQ();
+
+		final double[][] data = new double[n][d];
+		final float[][] fdata = new float[n][d];
+		for (int r = 0; r < n; r++) {
+			for (int c = 0; c < d; c++) {
+				final double sd = c < sds.length ? sds[c] : 0.5;
+				final double v = rng.nextGaussian() * sd;
+
+				for (int i = 0; i < d; i++)
+					data[r][i] += v * q.get(i, c);
+			}
+
+			for (int i = 0; i < d; i++) {
+				data[r][i] = (float) (data[r][i] + 3);
+				fdata[r][i] = (float) data[r][i];
+			}
+		}
+
+		final CovarPrincipalComponentAnalysis covar = new CovarPrincipalComponentAnalysis();
+		covar.learnBasis(data);
+
+		final RandomisedPrincipalComponentAnalysis rpca = new RandomisedPrincipalComponentAnalysis(3, 10, 2, 1);
+		rpca.learnBasis(data);
+
+		final RandomisedPrincipalComponentAnalysis fpca = new RandomisedPrincipalComponentAnalysis(3, 10, 2, 1);
+		fpca.learnBasis(new FloatArrayBackedDataSource(fdata));
+
+		assertEquals(3, rpca.getEigenValues().length);
+		assertArrayEquals(covar.getMean(), rpca.getMean(), 1e-8);
+		assertArrayEquals(rpca.getMean(), fpca.getMean(), 1e-8);
+
+		for (int i = 0; i < sds.length; i++) {
+			assertEquals(covar.getEigenValue(i), rpca.getEigenValue(i), covar.getEigenValue(i) * 1e-3);
+			assertEquals(1, Math.abs(dot(covar.getPrincipalComponent(i), rpca.getPrincipalComponent(i))), 1e-3);
+			assertEquals(rpca.getEigenValue(i), fpca.getEigenValue(i), rpca.getEigenValue(i) * 1e-6);
+		}
+
+		assertArrayEquals(rpca.project(data[0]), rpca.project(fdata[0]), 1e-8);
+	}
+
+	/**
+	 * Test that learning with the same seed gives the same basis, both from
+	 * different instances and from repeated learning with one instance.
+	 */
+	@Test
+	public void testSeed() {
+		final double[][] data = makeData2d(500, 10, 1, 0.3).getArray();
+
+		final RandomisedPrincipalComponentAnalysis pca1 = new RandomisedPrincipalComponentAnalysis(1, 1, 0, 7);
+		pca1.learnBasis(data);
+		final double[] ev1 = pca1.getEigenValues().clone();
+		final double[] pc1 = pca1.getPrincipalComponent(0);
+
+		final RandomisedPrincipalComponentAnalysis pca2 = new RandomisedPrincipalComponentAnalysis(1, 1, 0, 7);
+		pca2.learnBasis(data);
+		assertArrayEquals(ev1, pca2.getEigenValues(), 0);
+		assertArrayEquals(pc1, pca2.getPrincipalComponent(0), 0);
+
+		pca1.learnBasis(data);
+		assertArrayEquals(ev1, pca1.getEigenValues(), 0);
+		assertArrayEquals(pc1, pca1.getPrincipalComponent(0), 0);
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+}
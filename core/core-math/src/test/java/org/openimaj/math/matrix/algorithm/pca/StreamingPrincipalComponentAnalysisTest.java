@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.math.matrix.algorithm.pca;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link StreamingPrincipalComponentAnalysis}
+ * 
+ * @author agent (agent@local)
+ * 
+ */
+public class StreamingPrincipalComponentAnalysisTest extends PrincipalComponentAnalysisTest {
+
+	@Override
+	protected PrincipalComponentAnalysis createPCA() {
+		return new StreamingPrincipalComponentAnalysis();
+	}
+
+	/**
+	 * Test that merging accumulators fed with parts of the data gives the same
+	 * result as accumulating all the data in one place, and that both agree
+	 * with the batch covariance PCA.
+	 */
+	@Test
+	public void testMerge() {
+		final Matrix m = makeData2d(1000, 10, 1, 0.3);
+		final double[][] data = m.getArray();
+
+		final StreamingPrincipalComponentAnalysis all = new StreamingPrincipalComponentAnalysis();
+		final StreamingPrincipalComponentAnalysis p1 = new StreamingPrincipalComponentAnalysis();
+		final StreamingPrincipalComponentAnalysis p2 = new StreamingPrincipalComponentAnalysis();
+
+		for (int i = 0; i < data.length; i++) {
+			all.update(data[i]);
+
+			if (i < 300)
+				p1.update(data[i]);
+			else
+				p2.update(data[i]);
+		}
+
+		p1.merge(p2);
+		assertEquals(all.getCount(), p1.getCount());
+
+		all.learnBasis();
+		p1.learnBasis();
+
+		final CovarPrincipalComponentAnalysis covar = new CovarPrincipalComponentAnalysis();
+		covar.learnBasis(m);
+
+		assertArrayEquals(covar.getMean(), all.getMean(), 1e-8);
+		assertArrayEquals(all.getMean(), p1.getMean(), 1e-8);
+		assertArrayEquals(covar.getEigenValues(), all.getEigenValues(), 1e-6);
+		assertArrayEquals(all.getEigenValues(), p1.getEigenValues(), 1e-6);
+
+		for (int i = 0; i < 2; i++) {
+			assertEquals(1, Math.abs(dot(covar.getPrincipalComponent(i), all.getPrincipalComponent(i))), 1e-6);
+			assertEquals(1, Math.abs(dot(all.getPrincipalComponent(i), p1.getPrincipalComponent(i))), 1e-6);
+		}
+	}
+
+	/**
+	 * Test that accumulating in parallel with different numbers of shared
+	 * accumulators gives the same result as accumulating sequentially.
+	 */
+	@Test
+	public void testParallel() {
+		final double[][] data = makeData2d(1000, 10, 1, 0.3).getArray();
+
+		final StreamingPrincipalComponentAnalysis sequential = new StreamingPrincipalComponentAnalysis();
+		for (final double[] row : data)
+			sequential.update(row);
+		sequential.learnBasis();
+
+		for (int nacc = 1; nacc <= 3; nacc++) {
+			final StreamingPrincipalComponentAnalysis parallel = new StreamingPrincipalComponentAnalysis();
+			parallel.update(Arrays.asList(data), GlobalExecutorPool.getPool(), nacc);
+			assertEquals(data.length, parallel.getCount());
+			parallel.learnBasis();
+
+			assertArrayEquals(sequential.getMean(), parallel.getMean(), 1e-8);
+			assertArrayEquals(sequential.getEigenValues(), parallel.getEigenValues(), 1e-6);
+			for (int i = 0; i < 2; i++)
+				assertEquals(1, Math.abs(dot(sequential.getPrincipalComponent(i),
+						parallel.getPrincipalComponent(i))), 1e-6);
+		}
+	}
+
+	/**
+	 * Test that accumulating float vectors gives the same result as
+	 * accumulating the same values as doubles.
+	 */
+	@Test
+	public void testFloat() {
+		final double[][] data = makeData2d(1000, 10, 1, 0.3).getArray();
+
+		final StreamingPrincipalComponentAnalysis dpca = new StreamingPrincipalComponentAnalysis();
+		final StreamingPrincipalComponentAnalysis fpca = new StreamingPrincipalComponentAnalysis();
+		for (final double[] row : data) {
+			final float[] frow = { (float) row[0], (float) row[1] };
+
+			dpca.update(new double[] { frow[0], frow[1] });
+			fpca.update(frow);
+		}
+
+		assertArrayEquals(dpca.getCovariance().getRowPackedCopy(), fpca.getCovariance().getRowPackedCopy(), 0);
+
+		dpca.learnBasis();
+		fpca.learnBasis();
+		assertArrayEquals(dpca.getMean(), fpca.getMean(), 0);
+		assertArrayEquals(dpca.getEigenValues(), fpca.getEigenValues(), 0);
+	}
+
+	private static double dot(double[] a, double[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++)
+			sum += a[i] * b[i];
+		return sum;
+	}
+}
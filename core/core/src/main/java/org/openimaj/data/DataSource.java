@@ -33,6 +33,11 @@ package org.openimaj.data;
  * A source which returns data of type DATATYPE. Classes which implement this
  * interface must support random access to rows as well as the ability to get
  * random subsets of data.
+ * <p>
+ * Implementations are not required to be thread-safe. However, algorithms
+ * that process a source in parallel (for example the streaming and randomised
+ * PCA implementations) call the <code>getData</code> methods concurrently from
+ * several threads, so any source given to them must support this.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -1007,6 +1007,14 @@ public class IOUtils {
 	/**
 	 * Writes an object using the Kryo serialisation library. The object doesn't
 	 * need to have any special serialisation attributes.
+	 * <p>
+	 * The object is written using the pooled {@link Kryo} instance of the
+	 * current thread (see {@link KryoPool}), so classes registered by a
+	 * {@link KryoRegistrar} are written with their registered serializer and
+	 * without their full class name. The data is prefixed by its negated length
+	 * in order to distinguish it from data written by earlier versions (which
+	 * used an unregistered {@link Kryo} and a positive length); both forms can
+	 * be read by {@link #read(DataInput)}.
 	 * 
 	 * @param obj
 	 *            the object to write
@@ -1015,17 +1023,22 @@ public class IOUtils {
 	 * @throws IOException
 	 */
 	public static void write(Object obj, DataOutput out) throws IOException {
-		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
-		final Output output = new Output(bos);
+		final KryoPool.Context context = KryoPool.acquire();
 
-		final Kryo kryo = new Kryo();
-		kryo.writeClassAndObject(output, obj);
-		output.flush();
+		try {
+			final Output output = context.getOutput();
 
-		final byte[] array = bos.toByteArray();
+			try {
+				context.getKryo().writeClassAndObject(output, obj);
+			} catch (final KryoException e) {
+				throw new IOException(e);
+			}
 
-		out.writeInt(array.length);
-		out.write(array);
+			out.writeInt(-output.position());
+			out.write(output.getBuffer(), 0, output.position());
+		} finally {
+			KryoPool.release();
+		}
 	}
 
 	/**
@@ -1043,6 +1056,31 @@ public class IOUtils {
 	public static <T> T read(DataInput in) throws IOException {
 		final int length = in.readInt();
 
+		if (length >= 0)
+			return (T) readLegacy(in, length);
+
+		final KryoPool.Context context = KryoPool.acquire();
+
+		try {
+			final Input input = context.getInput(-length);
+			in.readFully(input.getBuffer(), 0, -length);
+
+			try {
+				return (T) context.getKryo().readClassAndObject(input);
+			} catch (final KryoException e) {
+				try {
+					input.setPosition(0);
+					return (T) context.getFallback().readClassAndObject(input);
+				} catch (final KryoException e1) {
+					throw new IOException(e1);
+				}
+			}
+		} finally {
+			KryoPool.release();
+		}
+	}
+
+	private static Object readLegacy(DataInput in, int length) throws IOException {
 		final byte[] bytes = new byte[length];
 		in.readFully(bytes);
 
@@ -1054,7 +1092,7 @@ public class IOUtils {
 			kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
 			obj = kryo.readClassAndObject(new Input(bytes));
 		}
-		return (T) obj;
+		return obj;
 	}
 
 	/**
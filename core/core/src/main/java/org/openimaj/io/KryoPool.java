@@ -0,0 +1,261 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Thread-local pool of {@link Kryo} instances (and their associated
+ * {@link Output} and {@link Input} buffers) that have been pre-registered with the classes and
+ * serializers provided by all the {@link KryoRegistrar}s on the classpath.
+ * Creating and configuring a {@link Kryo} instance is relatively expensive, and
+ * instances are not thread-safe, so each thread gets its own instance which is
+ * reused for all subsequent calls from that thread.
+ * <p>
+ * Data written by a pooled instance can only be read by a {@link Kryo} that has
+ * the same registrations (see {@link #register(Kryo)}).
+ * 
+ * @author agent (agent@local)
+ */
+public final class KryoPool {
+	/**
+	 * The minimum id that a {@link KryoRegistrar} can use for its
+	 * registrations. Lower ids are reserved for Kryo's own default
+	 * registrations.
+	 */
+	public static final int MIN_REGISTRATION_ID = 100;
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	private static List<Registration> registrations;
+
+	private static final ThreadLocal<Kryo> KRYO = new ThreadLocal<Kryo>() {
+		@Override
+		protected Kryo initialValue() {
+			return create();
+		}
+	};
+
+	private static final ThreadLocal<ContextStack> CONTEXTS = new ThreadLocal<ContextStack>() {
+		@Override
+		protected ContextStack initialValue() {
+			return new ContextStack();
+		}
+	};
+
+	/**
+	 * The {@link Kryo} instances and buffers used by a single (possibly
+	 * nested) serialisation call within a thread.
+	 */
+	static final class Context {
+		private final Kryo kryo;
+		private Kryo fallback;
+		private Output output;
+		private Input input;
+
+		Context(Kryo kryo) {
+			this.kryo = kryo;
+		}
+
+		/**
+		 * @return the {@link Kryo} for this context
+		 */
+		Kryo getKryo() {
+			return kryo;
+		}
+
+		/**
+		 * Get the {@link Kryo} for this context that instantiates objects
+		 * without calling their constructors (so can create objects without a
+		 * no-argument constructor).
+		 * 
+		 * @return the fallback {@link Kryo}
+		 */
+		Kryo getFallback() {
+			if (fallback == null) {
+				fallback = create();
+				fallback.setInstantiatorStrategy(new StdInstantiatorStrategy());
+			}
+			return fallback;
+		}
+
+		/**
+		 * Get the {@link Output} for this context. The output is cleared and
+		 * will grow as required.
+		 * 
+		 * @return the {@link Output}
+		 */
+		Output getOutput() {
+			if (output == null)
+				output = new Output(INITIAL_BUFFER_SIZE, -1);
+			output.clear();
+			return output;
+		}
+
+		/**
+		 * Get the {@link Input} for this context, reset to read the given
+		 * number of bytes from the start of its buffer. The buffer is grown as
+		 * required, and should be filled by the caller before reading.
+		 * 
+		 * @param length
+		 *            the number of bytes that will be read
+		 * @return the {@link Input}
+		 */
+		Input getInput(int length) {
+			if (input == null)
+				input = new Input();
+			byte[] buffer = input.getBuffer();
+			if (buffer == null || buffer.length < length)
+				buffer = new byte[Math.max(length, INITIAL_BUFFER_SIZE)];
+			input.setBuffer(buffer, 0, length);
+			return input;
+		}
+	}
+
+	/**
+	 * Per-thread stack of {@link Context}s, indexed by the depth of nesting of
+	 * serialisation calls. Contexts are created on demand and kept for re-use.
+	 */
+	private static final class ContextStack {
+		final List<Context> contexts = new ArrayList<Context>();
+		int depth;
+	}
+
+	private KryoPool() {
+	}
+
+	/**
+	 * Get the registrations from all the {@link KryoRegistrar}s on the
+	 * classpath. The registrations are loaded on the first call to this method.
+	 * 
+	 * @return the registrations
+	 * @throws IllegalArgumentException
+	 *             if two registrations share the same id or an id is less than
+	 *             {@link #MIN_REGISTRATION_ID}.
+	 */
+	public static synchronized List<Registration> getRegistrations() {
+		if (registrations == null) {
+			final List<Registration> regs = new ArrayList<Registration>();
+
+			for (final KryoRegistrar registrar : ServiceLoader.load(KryoRegistrar.class)) {
+				for (final Registration r : registrar.getRegistrations()) {
+					if (r.getId() < MIN_REGISTRATION_ID)
+						throw new IllegalArgumentException("Registration id " + r.getId() + " for " + r.getType()
+								+ " is reserved");
+
+					for (final Registration other : regs) {
+						if (other.getId() == r.getId())
+							throw new IllegalArgumentException("Registration id " + r.getId() + " for " + r.getType()
+									+ " is already used by " + other.getType());
+					}
+
+					regs.add(r);
+				}
+			}
+
+			registrations = Collections.unmodifiableList(regs);
+		}
+
+		return registrations;
+	}
+
+	/**
+	 * Register all the classes provided by the {@link KryoRegistrar}s on the
+	 * classpath with the given {@link Kryo}.
+	 * 
+	 * @param kryo
+	 *            the {@link Kryo} to register with
+	 * @return the {@link Kryo}
+	 */
+	public static Kryo register(Kryo kryo) {
+		for (final Registration r : getRegistrations())
+			kryo.register(r.getType(), r.getSerializer(), r.getId());
+
+		return kryo;
+	}
+
+	/**
+	 * Create a new {@link Kryo} instance with all the registrations provided by
+	 * the {@link KryoRegistrar}s on the classpath.
+	 * 
+	 * @return a new {@link Kryo}
+	 */
+	public static Kryo create() {
+		return register(new Kryo());
+	}
+
+	/**
+	 * Get the pooled {@link Kryo} instance for the current thread. The returned
+	 * instance must not be shared with other threads.
+	 * 
+	 * @return the {@link Kryo} for the current thread
+	 */
+	public static Kryo get() {
+		return KRYO.get();
+	}
+
+	/**
+	 * Acquire the {@link Context} for a serialisation call from the current
+	 * thread. Calls may be nested (for example when a serializer itself uses
+	 * {@link IOUtils#write(Object, java.io.DataOutput)} or
+	 * {@link IOUtils#read(java.io.DataInput)}); each level of nesting gets its
+	 * own {@link Kryo} and buffers so the outer call is not corrupted. Every
+	 * call to this method must be matched by a call to {@link #release()},
+	 * typically in a <code>finally</code> block.
+	 * 
+	 * @return the {@link Context} for the current depth of nesting
+	 */
+	static Context acquire() {
+		final ContextStack stack = CONTEXTS.get();
+
+		if (stack.depth == stack.contexts.size())
+			stack.contexts.add(new Context(stack.depth == 0 ? get() : create()));
+
+		return stack.contexts.get(stack.depth++);
+	}
+
+	/**
+	 * Release the {@link Context} most recently acquired by the current thread
+	 * with {@link #acquire()}.
+	 */
+	static void release() {
+		CONTEXTS.get().depth--;
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io;
+
+import java.util.List;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+
+/**
+ * Interface for objects that provide {@link Kryo} class registrations (and
+ * their {@link Serializer}s) for the classes of a module. Registered classes
+ * are written as a small integer id rather than their full class name.
+ * <p>
+ * Implementations are discovered by {@link KryoPool} using the standard
+ * {@link java.util.ServiceLoader} mechanism, so each module providing a
+ * registrar should list it in a
+ * <code>META-INF/services/org.openimaj.io.KryoRegistrar</code> resource.
+ * Implementations must have a public no-argument constructor.
+ * <p>
+ * Because the ids are written into the serialised data, each registration must
+ * use a fixed id that never changes and is unique across all registrars. Ids
+ * below {@link KryoPool#MIN_REGISTRATION_ID} are reserved for Kryo's own
+ * registrations; within OpenIMAJ, the blocks of ten ids starting at
+ * {@link KryoPool#MIN_REGISTRATION_ID} are used for images, feature vectors,
+ * keypoints and cluster centroids respectively.
+ * <p>
+ * The serializers must be stateless (they are shared between threads), and
+ * should have a public no-argument constructor so that they can also be
+ * registered by class name (for example with Storm).
+ * 
+ * @author agent (agent@local)
+ */
+public interface KryoRegistrar {
+	/**
+	 * Get the registrations provided by this registrar.
+	 * 
+	 * @return the registrations
+	 */
+	public List<Registration> getRegistrations();
+}
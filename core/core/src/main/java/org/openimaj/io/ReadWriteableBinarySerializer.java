@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * A Kryo {@link Serializer} for objects that are both {@link ReadableBinary}
+ * and {@link WriteableBinary} (such as {@link ReadWriteableBinary} objects)
+ * that delegates to their {@link WriteableBinary#writeBinary(DataOutput)} and
+ * {@link ReadableBinary#readBinary(DataInput)} methods. The objects must be
+ * able to read themselves into a newly constructed instance (i.e. the binary
+ * format must not rely on state set by a constructor).
+ * <p>
+ * The {@link DataOutput} and {@link DataInput} passed to the objects write
+ * directly to the Kryo {@link Output} and {@link Input} (which use the same
+ * big-endian encoding), rather than going a byte at a time through a
+ * {@link DataOutputStream} or {@link DataInputStream}.
+ * 
+ * @author agent (agent@local)
+ * 
+ * @param <T>
+ *            type of object being serialised
+ */
+public class ReadWriteableBinarySerializer<T extends ReadableBinary & WriteableBinary> extends Serializer<T> {
+	private static class KryoDataOutput implements DataOutput {
+		private final Output output;
+
+		KryoDataOutput(Output output) {
+			this.output = output;
+		}
+
+		@Override
+		public void write(int b) {
+			output.writeByte(b);
+		}
+
+		@Override
+		public void write(byte[] b) {
+			output.writeBytes(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			output.writeBytes(b, off, len);
+		}
+
+		@Override
+		public void writeBoolean(boolean v) {
+			output.writeBoolean(v);
+		}
+
+		@Override
+		public void writeByte(int v) {
+			output.writeByte(v);
+		}
+
+		@Override
+		public void writeShort(int v) {
+			output.writeShort(v);
+		}
+
+		@Override
+		public void writeChar(int v) {
+			output.writeShort(v);
+		}
+
+		@Override
+		public void writeInt(int v) {
+			output.writeInt(v);
+		}
+
+		@Override
+		public void writeLong(long v) {
+			output.writeLong(v);
+		}
+
+		@Override
+		public void writeFloat(float v) {
+			output.writeFloat(v);
+		}
+
+		@Override
+		public void writeDouble(double v) {
+			output.writeDouble(v);
+		}
+
+		@Override
+		public void writeBytes(String s) {
+			for (int i = 0; i < s.length(); i++)
+				output.writeByte(s.charAt(i));
+		}
+
+		@Override
+		public void writeChars(String s) {
+			for (int i = 0; i < s.length(); i++)
+				output.writeShort(s.charAt(i));
+		}
+
+		@Override
+		public void writeUTF(String s) throws IOException {
+			new DataOutputStream(output).writeUTF(s);
+		}
+	}
+
+	private static class KryoDataInput implements DataInput {
+		private final Input input;
+
+		KryoDataInput(Input input) {
+			this.input = input;
+		}
+
+		@Override
+		public void readFully(byte[] b) {
+			input.readBytes(b);
+		}
+
+		@Override
+		public void readFully(byte[] b, int off, int len) {
+			input.readBytes(b, off, len);
+		}
+
+		@Override
+		public int skipBytes(int n) {
+			return (int) input.skip((long) n);
+		}
+
+		@Override
+		public boolean readBoolean() {
+			return input.readBoolean();
+		}
+
+		@Override
+		public byte readByte() {
+			return input.readByte();
+		}
+
+		@Override
+		public int readUnsignedByte() {
+			return input.readByteUnsigned();
+		}
+
+		@Override
+		public short readShort() {
+			return input.readShort();
+		}
+
+		@Override
+		public int readUnsignedShort() {
+			return input.readShortUnsigned();
+		}
+
+		@Override
+		public char readChar() {
+			return input.readChar();
+		}
+
+		@Override
+		public int readInt() {
+			return input.readInt();
+		}
+
+		@Override
+		public long readLong() {
+			return input.readLong();
+		}
+
+		@Override
+		public float readFloat() {
+			return input.readFloat();
+		}
+
+		@Override
+		public double readDouble() {
+			return input.readDouble();
+		}
+
+		@Override
+		public String readLine() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String readUTF() throws IOException {
+			return DataInputStream.readUTF(this);
+		}
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output, T object) {
+		try {
+			object.writeBinary(new KryoDataOutput(output));
+		} catch (final IOException e) {
+			throw new KryoException(e);
+		}
+	}
+
+	@Override
+	public T read(Kryo kryo, Input input, Class<T> type) {
+		final T object = kryo.newInstance(type);
+
+		try {
+			object.readBinary(new KryoDataInput(input));
+		} catch (final IOException e) {
+			throw new KryoException(e);
+		}
+
+		return object;
+	}
+}
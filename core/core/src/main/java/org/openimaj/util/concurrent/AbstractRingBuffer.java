@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Base class for lock-free, array-backed {@link BlockingDroppingQueue}s. The
+ * queue is a bounded ring buffer in which every slot carries a sequence number
+ * that records whether it is free for the producer of a given position or
+ * holds the element for the consumer of that position, so producers and
+ * consumers never need to take a lock. Subclasses provide the insertion
+ * strategy for either a single producer thread ({@link SingleProducerRingBuffer}
+ * ) or any number of producer threads ({@link MultiProducerRingBuffer}).
+ * <p>
+ * As with the {@link ArrayBlockingDroppingQueue}, {@link #put(Object)} drops
+ * the oldest element to make room when the queue is full and never blocks.
+ * The retrieval operations may be called from any number of threads; threads
+ * waiting in {@link #take()} or {@link #poll(long, TimeUnit)} wait using the
+ * queue's {@link WaitStrategy} rather than a lock and condition.
+ * <p>
+ * The iterator is weakly consistent and works on a snapshot of the queue; it
+ * does not support removal, and consequently neither does
+ * {@link #remove(Object)}.
+ *
+ * @author agent (agent@local)
+ * @param <E>
+ *            the type of elements held in this collection
+ */
+public abstract class AbstractRingBuffer<E> extends AbstractQueue<E> implements BlockingDroppingQueue<E> {
+	/**
+	 * An {@link AtomicLong} padded to fill a cache line, so that the head and
+	 * tail counters (which are written by different threads) do not share one.
+	 */
+	@SuppressWarnings("serial")
+	static final class PaddedAtomicLong extends AtomicLong {
+		long p1, p2, p3, p4, p5, p6, p7;
+	}
+
+	/** The capacity of the buffer */
+	protected final int capacity;
+
+	/** mask for computing indices, or -1 if the capacity isn't a power of 2 */
+	private final int mask;
+
+	/** The slots of the buffer */
+	protected final Object[] items;
+
+	/**
+	 * The sequence number of each slot; <code>2 * pos</code> if the slot is
+	 * free for the producer of position <code>pos</code>, and
+	 * <code>2 * pos + 1</code> if it holds the element at position
+	 * <code>pos</code>.
+	 */
+	protected final AtomicLongArray sequences;
+
+	/** The next position to be written; also the number of insertions */
+	protected final PaddedAtomicLong tail = new PaddedAtomicLong();
+
+	/** The next position to be read */
+	protected final PaddedAtomicLong head = new PaddedAtomicLong();
+
+	private final AtomicLong dropCount = new AtomicLong();
+
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Construct with the given capacity and wait strategy
+	 *
+	 * @param capacity
+	 *            the capacity of the buffer
+	 * @param waitStrategy
+	 *            the strategy for threads waiting for an element
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	protected AbstractRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException();
+		if (waitStrategy == null)
+			throw new NullPointerException();
+
+		this.capacity = capacity;
+		this.mask = Integer.bitCount(capacity) == 1 ? capacity - 1 : -1;
+		this.items = new Object[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		this.waitStrategy = waitStrategy;
+
+		for (int i = 0; i < capacity; i++)
+			sequences.set(i, 2L * i);
+	}
+
+	/**
+	 * Get the index of the slot for the given position
+	 *
+	 * @param pos
+	 *            the position
+	 * @return the index
+	 */
+	protected final int index(long pos) {
+		return mask >= 0 ? (int) (pos & mask) : (int) (pos % capacity);
+	}
+
+	/**
+	 * Store the element in the slot for the given position (which must have
+	 * been claimed by the caller) and make it visible to consumers.
+	 *
+	 * @param pos
+	 *            the position
+	 * @param index
+	 *            the index of the slot
+	 * @param e
+	 *            the element
+	 */
+	protected final void publish(long pos, int index, E e) {
+		items[index] = e;
+		sequences.lazySet(index, 2 * pos + 1);
+	}
+
+	/**
+	 * @return the {@link WaitStrategy} used by waiting consumers
+	 */
+	public WaitStrategy getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	@Override
+	public E put(E e) throws InterruptedException {
+		if (e == null)
+			throw new NullPointerException();
+
+		E ret = null;
+		while (!offer(e)) {
+			// only drop if the buffer is really full, rather than a consumer
+			// being part way through freeing the slot we need
+			if (tail.get() - head.get() >= capacity) {
+				final E dropped = poll();
+				if (dropped != null) {
+					ret = dropped;
+					dropCount.incrementAndGet();
+				}
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public long insertCount() {
+		return tail.get();
+	}
+
+	@Override
+	public long dropCount() {
+		return dropCount.get();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E poll() {
+		long pos = head.get();
+		int idx;
+		for (;;) {
+			idx = index(pos);
+			final long dif = sequences.get(idx) - (2 * pos + 1);
+
+			if (dif == 0) {
+				if (head.compareAndSet(pos, pos + 1))
+					break;
+				pos = head.get();
+			} else if (dif < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+
+		final E e = (E) items[idx];
+		items[idx] = null;
+		sequences.lazySet(idx, 2 * (pos + capacity));
+		return e;
+	}
+
+	@Override
+	public E take() throws InterruptedException {
+		E e;
+		int counter = 0;
+		while ((e = poll()) == null)
+			counter = waitStrategy.idle(counter);
+		return e;
+	}
+
+	@Override
+	public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		E e;
+		int counter = 0;
+		while ((e = poll()) == null) {
+			if (System.nanoTime() - deadline >= 0)
+				return null;
+			counter = waitStrategy.idle(counter);
+		}
+		return e;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public E peek() {
+		for (;;) {
+			final long pos = head.get();
+			final int idx = index(pos);
+
+			if (sequences.get(idx) != 2 * pos + 1) {
+				if (head.get() == pos)
+					return null;
+				continue;
+			}
+
+			final E e = (E) items[idx];
+			if (e != null && sequences.get(idx) == 2 * pos + 1)
+				return e;
+		}
+	}
+
+	@Override
+	public int size() {
+		for (;;) {
+			final long h = head.get();
+			final long t = tail.get();
+			if (h == head.get()) {
+				final long size = t - h;
+				return size < 0 ? 0 : (size > capacity ? capacity : (int) size);
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return peek() == null;
+	}
+
+	@Override
+	public int remainingCapacity() {
+		return capacity - size();
+	}
+
+	@Override
+	public void clear() {
+		while (poll() != null) {
+			// drain
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c) {
+		return drainTo(c, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super E> c, int maxElements) {
+		if (c == null)
+			throw new NullPointerException();
+		if (c == this)
+			throw new IllegalArgumentException();
+
+		int n = 0;
+		E e;
+		while (n < maxElements && (e = poll()) != null) {
+			c.add(e);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Unsupported; elements can only be removed from the head of a ring
+	 * buffer.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public boolean remove(Object o) {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the elements in this queue, in
+	 * proper sequence. The iterator does not support removal.
+	 *
+	 * @return an iterator over the elements in this queue
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public Iterator<E> iterator() {
+		final List<E> snapshot = new ArrayList<E>();
+
+		final long t = tail.get();
+		for (long pos = head.get(); pos < t; pos++) {
+			final int idx = index(pos);
+			if (sequences.get(idx) != 2 * pos + 1)
+				continue;
+
+			final E e = (E) items[idx];
+			if (e != null && sequences.get(idx) == 2 * pos + 1)
+				snapshot.add(e);
+		}
+
+		return Collections.unmodifiableList(snapshot).iterator();
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Standard {@link WaitStrategy}s, trading off latency against CPU usage.
+ *
+ * @author agent (agent@local)
+ */
+public enum BasicWaitStrategy implements WaitStrategy {
+	/**
+	 * Busy-spin. Gives the lowest latency, but keeps a core fully occupied
+	 * whilst waiting, so should only be used if there are more cores than busy
+	 * threads.
+	 */
+	SPIN {
+		@Override
+		public int idle(int counter) throws InterruptedException {
+			checkInterrupted();
+			return counter + 1;
+		}
+	},
+	/**
+	 * Spin for a short while and then repeatedly yield the processor to other
+	 * threads.
+	 */
+	YIELD {
+		@Override
+		public int idle(int counter) throws InterruptedException {
+			checkInterrupted();
+			if (counter >= SPIN_TRIES)
+				Thread.yield();
+			return counter + 1;
+		}
+	},
+	/**
+	 * Spin, then yield, and then park the thread for progressively longer
+	 * periods (up to a millisecond). This uses little CPU when the queue is
+	 * idle for long periods, at the cost of some latency. This is a good
+	 * default for live data sources.
+	 */
+	PARK {
+		@Override
+		public int idle(int counter) throws InterruptedException {
+			checkInterrupted();
+			if (counter >= SPIN_TRIES + YIELD_TRIES) {
+				final int shift = Math.min(counter - SPIN_TRIES - YIELD_TRIES, MAX_PARK_SHIFT);
+				LockSupport.parkNanos(MIN_PARK_NANOS << shift);
+			} else if (counter >= SPIN_TRIES) {
+				Thread.yield();
+			}
+			return counter + 1;
+		}
+	};
+
+	private static final int SPIN_TRIES = 100;
+	private static final int YIELD_TRIES = 100;
+	private static final long MIN_PARK_NANOS = 1000;
+	private static final int MAX_PARK_SHIFT = 10;
+
+	private static void checkInterrupted() throws InterruptedException {
+		if (Thread.interrupted())
+			throw new InterruptedException();
+	}
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import java.util.Collection;
+
+/**
+ * A lock-free {@link BlockingDroppingQueue} ring buffer that may be written
+ * by any number of producer threads. Producers claim positions with a single
+ * compare-and-set on the tail counter; if the buffer is full, {@link #put}
+ * drops the oldest element to make room. See {@link AbstractRingBuffer} for
+ * details.
+ * <p>
+ * If only one thread ever inserts elements, the
+ * {@link SingleProducerRingBuffer} is slightly cheaper.
+ *
+ * @author agent (agent@local)
+ * @param <E>
+ *            the type of elements held in this collection
+ */
+public class MultiProducerRingBuffer<E> extends AbstractRingBuffer<E> {
+	/**
+	 * Construct with the given capacity, using the {@link BasicWaitStrategy#PARK}
+	 * strategy for waiting consumers.
+	 *
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	public MultiProducerRingBuffer(int capacity) {
+		this(capacity, BasicWaitStrategy.PARK);
+	}
+
+	/**
+	 * Construct with the given capacity and wait strategy.
+	 *
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @param waitStrategy
+	 *            the strategy for threads waiting for an element
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than 1
+	 */
+	public MultiProducerRingBuffer(int capacity, WaitStrategy waitStrategy) {
+		super(capacity, waitStrategy);
+	}
+
+	/**
+	 * Construct with the given capacity and wait strategy, initially
+	 * containing the elements of the given collection, added in traversal
+	 * order of the collection's iterator.
+	 *
+	 * @param capacity
+	 *            the capacity of this queue
+	 * @param waitStrategy
+	 *            the strategy for threads waiting for an element
+	 * @param c
+	 *            the collection of elements to initially contain
+	 * @throws IllegalArgumentException
+	 *             if <tt>capacity</tt> is less than <tt>c.size()</tt>, or less
+	 *             than 1.
+	 * @throws NullPointerException
+	 *             if the specified collection or any of its elements are null
+	 */
+	public MultiProducerRingBuffer(int capacity, WaitStrategy waitStrategy, Collection<? extends E> c) {
+		this(capacity, waitStrategy);
+		if (capacity < c.size())
+			throw new IllegalArgumentException();
+
+		addAll(c);
+	}
+
+	@Override
+	public boolean offer(E e) {
+		if (e == null)
+			throw new NullPointerException();
+
+		long pos = tail.get();
+		int idx;
+		for (;;) {
+			idx = index(pos);
+			final long dif = sequences.get(idx) - 2 * pos;
+
+			if (dif == 0) {
+				if (tail.compareAndSet(pos, pos + 1))
+					break;
+				pos = tail.get();
+			} else if (dif < 0) {
+				// the slot still holds the element from the previous lap
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+
+		publish(pos, idx, e);
+		return true;
+	}
+}
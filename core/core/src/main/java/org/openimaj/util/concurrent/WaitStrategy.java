@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+/**
+ * Strategy used by the lock-free queues (for example the
+ * {@link AbstractRingBuffer} implementations) to wait for an element to
+ * become available. Rather than blocking on a lock, a waiting thread
+ * repeatedly re-checks the queue, calling {@link #idle(int)} between checks;
+ * the strategy decides whether to busy-spin, yield or park the thread.
+ * <p>
+ * Standard implementations are provided by {@link BasicWaitStrategy}.
+ *
+ * @author agent (agent@local)
+ */
+public interface WaitStrategy {
+	/**
+	 * Wait a little. This is called repeatedly whilst a thread is waiting;
+	 * the counter starts at zero for each new wait and the value returned
+	 * from this method is passed to the next call, so implementations can use
+	 * it to back off progressively.
+	 *
+	 * @param counter
+	 *            the counter for the current wait
+	 * @return the new value of the counter
+	 * @throws InterruptedException
+	 *             if the waiting thread is interrupted
+	 */
+	int idle(int counter) throws InterruptedException;
+}
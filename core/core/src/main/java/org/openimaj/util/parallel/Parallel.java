@@ -132,13 +132,13 @@ public class Parallel {
 			final ThreadPoolExecutor pool)
 	{
 		int loops = pool.getMaximumPoolSize();
-		final int ops = (stop - start) / incr;
+		final int ops = Math.max(0, (stop - start + incr - 1) / incr);
 
-		final double div = ops / (double) loops;
-		int chunksize = (int) div;
-		int remainder = (int) ((div - chunksize) * loops);
+		// integer arithmetic ensures exactly loops chunks are submitted
+		int chunksize = ops / loops;
+		int remainder = ops % loops;
 
-		if (div < 1) {
+		if (chunksize < 1) {
 			chunksize = 1;
 			remainder = 0;
 			loops = ops;
@@ -231,13 +231,13 @@ public class Parallel {
 			final ThreadPoolExecutor pool)
 	{
 		int loops = pool.getMaximumPoolSize();
-		final int ops = (stop - start) / incr;
+		final int ops = Math.max(0, (stop - start + incr - 1) / incr);
 
-		final double div = ops / (double) loops;
-		int chunksize = (int) div;
-		int remainder = (int) ((div - chunksize) * loops);
+		// integer arithmetic ensures exactly loops chunks are submitted
+		int chunksize = ops / loops;
+		int remainder = ops % loops;
 
-		if (div < 1) {
+		if (chunksize < 1) {
 			chunksize = 1;
 			remainder = 0;
 			loops = ops;
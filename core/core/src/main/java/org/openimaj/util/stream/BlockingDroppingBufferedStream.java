@@ -29,7 +29,11 @@
  */
 package org.openimaj.util.stream;
 
+import org.openimaj.util.concurrent.ArrayBlockingDroppingQueue;
 import org.openimaj.util.concurrent.BlockingDroppingQueue;
+import org.openimaj.util.concurrent.MultiProducerRingBuffer;
+import org.openimaj.util.concurrent.SingleProducerRingBuffer;
+import org.openimaj.util.concurrent.WaitStrategy;
 
 /**
  * Base for a {@link Stream} with an internal buffer based on a
@@ -42,6 +46,11 @@ import org.openimaj.util.concurrent.BlockingDroppingQueue;
  * that are connected to external, live data-sources that can potentially
  * produce data at a rate which exceeds the rate at which the stream can be
  * processed or consumed.
+ * <p>
+ * For sources that produce items at a high rate, a lock-free buffer such as a
+ * {@link MultiProducerRingBuffer} (or a {@link SingleProducerRingBuffer} if
+ * items are only ever registered from one thread) avoids the lock handoffs of
+ * an {@link ArrayBlockingDroppingQueue}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -62,6 +71,19 @@ public class BlockingDroppingBufferedStream<T> extends AbstractStream<T> {
 		this.buffer = buffer;
 	}
 
+	/**
+	 * Construct with a lock-free {@link MultiProducerRingBuffer} of the given
+	 * capacity as the backing queue.
+	 * 
+	 * @param capacity
+	 *            the capacity of the buffer
+	 * @param waitStrategy
+	 *            the strategy used by the consumer when waiting for items
+	 */
+	public BlockingDroppingBufferedStream(int capacity, WaitStrategy waitStrategy) {
+		this(new MultiProducerRingBuffer<T>(capacity, waitStrategy));
+	}
+
 	protected void register(T obj) throws InterruptedException {
 		buffer.offer(obj);
 	}
@@ -0,0 +1,233 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Tests for the pooled Kryo serialisation used by
+ * {@link IOUtils#write(Object, java.io.DataOutput)} and
+ * {@link IOUtils#read(java.io.DataInput)}.
+ * 
+ * @author agent (agent@local)
+ */
+public class KryoPoolTest {
+	/**
+	 * An object whose serialisation itself uses
+	 * {@link IOUtils#write(Object, java.io.DataOutput)} and
+	 * {@link IOUtils#read(java.io.DataInput)}.
+	 */
+	public static class Nested implements KryoSerializable {
+		String before;
+		Object payload;
+		String after;
+
+		@Override
+		public void write(Kryo kryo, Output output) {
+			output.writeString(before);
+			try {
+				IOUtils.write(payload, new DataOutputStream(output));
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			output.writeString(after);
+		}
+
+		@Override
+		public void read(Kryo kryo, Input input) {
+			before = input.readString();
+			try {
+				payload = IOUtils.read(new DataInputStream(input));
+			} catch (final IOException e) {
+				throw new RuntimeException(e);
+			}
+			after = input.readString();
+		}
+	}
+
+	private static byte[] write(Object obj) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.write(obj, new DataOutputStream(baos));
+		return baos.toByteArray();
+	}
+
+	private static <T> T read(byte[] bytes) throws IOException {
+		return IOUtils.<T> read(new DataInputStream(new ByteArrayInputStream(bytes)));
+	}
+
+	/**
+	 * Test that objects can be written and read, including several objects
+	 * in the same stream
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final Map<String, float[]> map = new HashMap<String, float[]>();
+		map.put("a", new float[] { 1, 2, 3 });
+		map.put("b", new float[1000]);
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+		IOUtils.write(map, dos);
+		IOUtils.write("hello", dos);
+		IOUtils.write(null, dos);
+
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		final Map<String, float[]> map2 = IOUtils.read(dis);
+		assertEquals(2, map2.size());
+		assertArrayEquals(map.get("a"), map2.get("a"), 0f);
+		assertArrayEquals(map.get("b"), map2.get("b"), 0f);
+		assertEquals("hello", IOUtils.read(dis));
+		assertEquals(null, IOUtils.read(dis));
+	}
+
+	/**
+	 * Test that data written in the format used before the pooled instances
+	 * can still be read
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testReadLegacy() throws IOException {
+		final List<String> list = new ArrayList<String>();
+		list.add("one");
+		list.add("two");
+
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final Output output = new Output(bos);
+		new Kryo().writeClassAndObject(output, list);
+		output.flush();
+
+		final byte[] array = bos.toByteArray();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+		dos.writeInt(array.length);
+		dos.write(array);
+
+		assertEquals(list, read(baos.toByteArray()));
+	}
+
+	/**
+	 * Test that the pooled instances work concurrently
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testThreads() throws Exception {
+		final int nThreads = 4;
+		final Thread[] threads = new Thread[nThreads];
+		final boolean[] ok = new boolean[nThreads];
+
+		for (int i = 0; i < nThreads; i++) {
+			final int t = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int j = 0; j < 1000; j++) {
+							final double[] data = new double[j];
+							for (int k = 0; k < j; k++)
+								data[k] = t * k;
+
+							final double[] result = read(write(data));
+							assertArrayEquals(data, result, 0);
+						}
+						ok[t] = true;
+					} catch (final IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+			};
+			threads[i].start();
+		}
+
+		for (int i = 0; i < nThreads; i++) {
+			threads[i].join();
+			assertTrue(ok[i]);
+		}
+	}
+
+	/**
+	 * Test that objects whose serializers themselves use the pooled
+	 * serialisation can be written and read without corrupting the outer
+	 * buffers
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testNested() throws IOException {
+		final Nested inner = new Nested();
+		inner.before = "inner-before";
+		inner.payload = new double[] { 1, 2, 3 };
+		inner.after = "inner-after";
+
+		final Nested outer = new Nested();
+		outer.before = "outer-before";
+		outer.payload = inner;
+		outer.after = "outer-after";
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final DataOutputStream dos = new DataOutputStream(baos);
+		IOUtils.write(outer, dos);
+		IOUtils.write("next", dos);
+
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+		final Nested outer2 = IOUtils.read(dis);
+		assertEquals("outer-before", outer2.before);
+		assertEquals("outer-after", outer2.after);
+
+		final Nested inner2 = (Nested) outer2.payload;
+		assertEquals("inner-before", inner2.before);
+		assertEquals("inner-after", inner2.after);
+		assertArrayEquals((double[]) inner.payload, (double[]) inner2.payload, 0);
+
+		assertEquals("next", IOUtils.read(dis));
+	}
+}
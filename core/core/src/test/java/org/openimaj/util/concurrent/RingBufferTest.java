@@ -0,0 +1,181 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * Tests for the {@link SingleProducerRingBuffer} and
+ * {@link MultiProducerRingBuffer}.
+ *
+ * @author agent (agent@local)
+ */
+public class RingBufferTest {
+	private void checkDropping(AbstractRingBuffer<Integer> queue) throws InterruptedException {
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+		assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+
+		for (int i = 0; i < 3; i++)
+			assertNull(queue.put(i));
+		assertEquals(3, queue.size());
+		assertFalse(queue.offer(3));
+
+		assertEquals(Integer.valueOf(0), queue.put(3));
+		assertEquals(Integer.valueOf(1), queue.put(4));
+		assertEquals(5, queue.insertCount());
+		assertEquals(2, queue.dropCount());
+		assertEquals(3, queue.size());
+		assertEquals(0, queue.remainingCapacity());
+
+		final List<Integer> contents = new ArrayList<Integer>();
+		for (final Integer i : queue)
+			contents.add(i);
+		assertEquals(3, contents.size());
+		assertEquals(Integer.valueOf(2), contents.get(0));
+		assertEquals(Integer.valueOf(4), contents.get(2));
+		assertTrue(queue.contains(3));
+
+		assertEquals(Integer.valueOf(2), queue.peek());
+		assertEquals(Integer.valueOf(2), queue.take());
+		assertEquals(Integer.valueOf(3), queue.poll());
+
+		final List<Integer> drained = new ArrayList<Integer>();
+		assertEquals(1, queue.drainTo(drained));
+		assertEquals(Integer.valueOf(4), drained.get(0));
+		assertTrue(queue.isEmpty());
+
+		// wrap around many times
+		for (int i = 0; i < 100; i++) {
+			queue.put(i);
+			assertEquals(Integer.valueOf(i), queue.take());
+		}
+	}
+
+	/**
+	 * Test the basic queue operations and drop-oldest behaviour
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testDropping() throws InterruptedException {
+		checkDropping(new SingleProducerRingBuffer<Integer>(3));
+		checkDropping(new MultiProducerRingBuffer<Integer>(3));
+
+		final AbstractRingBuffer<Integer> single = new MultiProducerRingBuffer<Integer>(1, BasicWaitStrategy.YIELD);
+		assertNull(single.put(1));
+		assertEquals(Integer.valueOf(1), single.put(2));
+		assertEquals(Integer.valueOf(2), single.poll());
+		assertNull(single.poll());
+	}
+
+	/**
+	 * Test that every element inserted by concurrent producers is either
+	 * received exactly once or counted as dropped
+	 *
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrent() throws InterruptedException {
+		checkConcurrent(new SingleProducerRingBuffer<Integer>(16, BasicWaitStrategy.SPIN), 1);
+		checkConcurrent(new MultiProducerRingBuffer<Integer>(16, BasicWaitStrategy.YIELD), 4);
+		checkConcurrent(new MultiProducerRingBuffer<Integer>(5, BasicWaitStrategy.PARK), 4);
+	}
+
+	private void checkConcurrent(final AbstractRingBuffer<Integer> queue, int nproducers) throws InterruptedException {
+		final int perProducer = 50000;
+		final int total = nproducers * perProducer;
+		final boolean[] seen = new boolean[total];
+		final AtomicBoolean duplicate = new AtomicBoolean();
+		final AtomicBoolean done = new AtomicBoolean();
+		final int[] received = new int[1];
+
+		final Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						final Integer i = queue.poll(10, TimeUnit.MILLISECONDS);
+						if (i == null) {
+							if (done.get() && queue.isEmpty())
+								return;
+							continue;
+						}
+
+						if (seen[i])
+							duplicate.set(true);
+						seen[i] = true;
+						received[0]++;
+					}
+				} catch (final InterruptedException e) {
+					// finished
+				}
+			}
+		};
+		consumer.start();
+
+		final List<Thread> producers = new ArrayList<Thread>();
+		for (int p = 0; p < nproducers; p++) {
+			final int offset = p * perProducer;
+			final Thread t = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < perProducer; i++)
+							queue.put(offset + i);
+					} catch (final InterruptedException e) {
+						// finished
+					}
+				}
+			};
+			producers.add(t);
+			t.start();
+		}
+
+		for (final Thread t : producers)
+			t.join();
+		done.set(true);
+		consumer.join();
+
+		assertFalse(duplicate.get());
+		assertEquals(total, queue.insertCount());
+		assertEquals(total, received[0] + queue.dropCount());
+	}
+}
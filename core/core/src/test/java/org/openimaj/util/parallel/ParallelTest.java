@@ -36,9 +36,14 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+import org.openimaj.util.parallel.Parallel.IntRange;
 import org.openimaj.util.parallel.partition.GrowingChunkPartitioner;
 import org.openimaj.util.parallel.partition.RangePartitioner;
 
@@ -96,4 +101,55 @@ public class ParallelTest {
 
 		assertEquals(intsList.size(), out.size());
 	}
+
+	/**
+	 * Test that the for-range and for-index loops visit every index exactly
+	 * once and only return once all the work is complete, including when the
+	 * number of indices doesn't divide evenly between the threads
+	 */
+	@Test
+	public void testForRangeAndIndex() {
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3,
+				new DaemonThreadFactory());
+
+		try {
+			for (final int incr : new int[] { 1, 2, 3 }) {
+				for (int n = 0; n <= 10; n++) {
+					final int expected = (n + incr - 1) / incr;
+					final AtomicInteger count = new AtomicInteger();
+
+					Parallel.forRange(0, n, incr, new Operation<IntRange>() {
+						@Override
+						public void perform(IntRange range) {
+							for (int i = range.start; i < range.stop; i += range.incr) {
+								sleep();
+								count.incrementAndGet();
+							}
+						}
+					}, pool);
+					assertEquals(expected, count.get());
+
+					count.set(0);
+					Parallel.forIndex(0, n, incr, new Operation<Integer>() {
+						@Override
+						public void perform(Integer i) {
+							sleep();
+							count.incrementAndGet();
+						}
+					}, pool);
+					assertEquals(expected, count.get());
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(5);
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
 }
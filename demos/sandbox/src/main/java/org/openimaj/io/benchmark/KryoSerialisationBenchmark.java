@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.io.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+import org.openimaj.io.IOUtils;
+import org.openimaj.ml.clustering.FloatCentroidsResult;
+import org.openimaj.time.Timer;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Compare the size and throughput of the pooled and pre-registered Kryo
+ * serialisation used by {@link IOUtils#write(Object, DataOutput)} against the
+ * previous approach of creating a new unregistered {@link Kryo} for every
+ * object.
+ * 
+ * @author agent (agent@local)
+ */
+public class KryoSerialisationBenchmark {
+	private static final int ITERATIONS = 2000;
+
+	private static void writeLegacy(Object obj, DataOutput out) throws IOException {
+		final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final Output output = new Output(bos);
+
+		final Kryo kryo = new Kryo();
+		kryo.writeClassAndObject(output, obj);
+		output.flush();
+
+		final byte[] array = bos.toByteArray();
+		out.writeInt(array.length);
+		out.write(array);
+	}
+
+	private static Object readLegacy(DataInput in) throws IOException {
+		final byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		final Kryo kryo = new Kryo();
+		try {
+			return kryo.readClassAndObject(new Input(bytes));
+		} catch (final KryoException e) {
+			kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+			return kryo.readClassAndObject(new Input(bytes));
+		}
+	}
+
+	private static void benchmark(String name, Object obj, int iterations) throws IOException {
+		final ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+		final ByteArrayOutputStream pooled = new ByteArrayOutputStream();
+
+		writeLegacy(obj, new DataOutputStream(legacy));
+		IOUtils.write(obj, new DataOutputStream(pooled));
+		final byte[] legacyBytes = legacy.toByteArray();
+		final byte[] pooledBytes = pooled.toByteArray();
+
+		// warm up
+		for (int i = 0; i < iterations / 10; i++) {
+			readLegacy(new DataInputStream(new ByteArrayInputStream(legacyBytes)));
+			IOUtils.read(new DataInputStream(new ByteArrayInputStream(pooledBytes)));
+		}
+
+		Timer t = Timer.timer();
+		for (int i = 0; i < iterations; i++) {
+			legacy.reset();
+			writeLegacy(obj, new DataOutputStream(legacy));
+			readLegacy(new DataInputStream(new ByteArrayInputStream(legacy.toByteArray())));
+		}
+		final long legacyTime = t.duration();
+
+		t = Timer.timer();
+		for (int i = 0; i < iterations; i++) {
+			pooled.reset();
+			IOUtils.write(obj, new DataOutputStream(pooled));
+			IOUtils.read(new DataInputStream(new ByteArrayInputStream(pooled.toByteArray())));
+		}
+		final long pooledTime = t.duration();
+
+		System.out.format("%-22s size: %9d -> %9d bytes   round-trips/s: %9.1f -> %9.1f\n", name,
+				legacyBytes.length, pooledBytes.length,
+				1000.0 * iterations / Math.max(1, legacyTime), 1000.0 * iterations / Math.max(1, pooledTime));
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            ignored
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		final Random rng = new Random(0);
+
+		final FImage image = new FImage(320, 240);
+		for (int y = 0; y < image.height; y++)
+			for (int x = 0; x < image.width; x++)
+				image.pixels[y][x] = rng.nextFloat();
+
+		final MBFImage colour = new MBFImage(image.clone(), image.clone(), image.clone());
+
+		final float[] vector = new float[128];
+		for (int i = 0; i < vector.length; i++)
+			vector[i] = rng.nextFloat();
+		final FloatFV fv = new FloatFV(vector);
+
+		final List<Keypoint> keypoints = new ArrayList<Keypoint>();
+		for (int i = 0; i < 500; i++) {
+			final Keypoint kpt = new Keypoint(rng.nextFloat() * 320, rng.nextFloat() * 240, rng.nextFloat(),
+					rng.nextFloat(), new byte[128]);
+			rng.nextBytes(kpt.ivec);
+			keypoints.add(kpt);
+		}
+
+		final FloatCentroidsResult centroids = new FloatCentroidsResult();
+		centroids.centroids = new float[1000][128];
+		for (final float[] c : centroids.centroids)
+			for (int i = 0; i < c.length; i++)
+				c[i] = rng.nextFloat();
+
+		benchmark("FloatFV (128)", fv, ITERATIONS * 100);
+		benchmark("FImage (320x240)", image, ITERATIONS);
+		benchmark("MBFImage (320x240x3)", colour, ITERATIONS / 4);
+		benchmark("Keypoint list (500)", keypoints, ITERATIONS);
+		benchmark("Centroids (1000x128)", centroids, ITERATIONS / 4);
+	}
+}
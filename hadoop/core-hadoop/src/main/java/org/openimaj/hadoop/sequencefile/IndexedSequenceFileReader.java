@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile.Reader;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Random access to the records of one or more sequence files by key, using
+ * the sidecar {@link SequenceFileIndex} of each file. Files without an index
+ * are indexed on first use, and the index is saved if possible.
+ * <p>
+ * Lookups of many keys at once with {@link #find(Collection)} are sorted by
+ * file and offset, so each file is read in a single forward pass that only
+ * touches the records (or blocks) that are required. The underlying readers
+ * are kept open between lookups; call {@link #close()} when done. Instances
+ * are not thread-safe.
+ *
+ * @author agent (agent@local)
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class IndexedSequenceFileReader<K extends Writable, V extends Writable> implements Closeable {
+	private final FileSystem fs;
+	private final Path[] files;
+	private final Configuration config;
+	private final SequenceFileIndex[] indexes;
+	private final Reader[] readers;
+
+	/**
+	 * Construct for the given sequence file, or all the "part" files in the
+	 * given directory.
+	 *
+	 * @param uriOrPath
+	 *            the file or directory
+	 * @throws IOException
+	 */
+	public IndexedSequenceFileReader(String uriOrPath) throws IOException {
+		this(uriOrPath, new Configuration());
+	}
+
+	/**
+	 * Construct for the given sequence file, or all the "part" files in the
+	 * given directory.
+	 *
+	 * @param uriOrPath
+	 *            the file or directory
+	 * @param config
+	 *            the configuration
+	 * @throws IOException
+	 */
+	public IndexedSequenceFileReader(String uriOrPath, Configuration config) throws IOException {
+		this(getFileSystem(uriOrPath, config), SequenceFileUtility.getFilePaths(uriOrPath, "part"), config);
+	}
+
+	/**
+	 * Construct for the given sequence files
+	 *
+	 * @param fs
+	 *            the filesystem
+	 * @param files
+	 *            the files
+	 * @param config
+	 *            the configuration
+	 */
+	public IndexedSequenceFileReader(FileSystem fs, Path[] files, Configuration config) {
+		this.fs = fs;
+		this.files = files;
+		this.config = config;
+		this.indexes = new SequenceFileIndex[files.length];
+		this.readers = new Reader[files.length];
+	}
+
+	private static FileSystem getFileSystem(String uriOrPath, Configuration config) throws IOException {
+		final URI uri = SequenceFileUtility.convertToURI(uriOrPath);
+		return SequenceFileUtility.getFileSystem(uri, config);
+	}
+
+	/**
+	 * Get the index of the i-th file, loading or building it as necessary
+	 *
+	 * @param i
+	 *            the file number
+	 * @return the index
+	 * @throws IOException
+	 */
+	protected SequenceFileIndex getIndex(int i) throws IOException {
+		if (indexes[i] == null) {
+			SequenceFileIndex index = SequenceFileIndex.read(fs, files[i]);
+
+			if (index == null) {
+				index = SequenceFileIndex.build(fs, files[i], config);
+
+				try {
+					index.write(fs, files[i]);
+				} catch (final IOException e) {
+					// the index is still usable even if it can't be saved
+				}
+			}
+
+			indexes[i] = index;
+		}
+		return indexes[i];
+	}
+
+	private Reader getReader(int i) throws IOException {
+		if (readers[i] == null)
+			readers[i] = new Reader(fs, files[i], config);
+		return readers[i];
+	}
+
+	/**
+	 * Find the value of the record with the given key
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or null if there is no such record
+	 * @throws IOException
+	 */
+	public V find(K key) throws IOException {
+		return find(Collections.singleton(key)).get(key);
+	}
+
+	/**
+	 * Find the values of the records with the given keys. Keys that are not
+	 * found are absent from the returned map; where a key appears in more than
+	 * one record, the first one encountered is returned.
+	 *
+	 * @param keys
+	 *            the keys
+	 * @return a map of keys to values
+	 * @throws IOException
+	 */
+	public Map<K, V> find(Collection<K> keys) throws IOException {
+		final Set<K> remaining = new HashSet<K>(keys);
+		final Map<K, V> results = new HashMap<K, V>();
+
+		final long[] hashes = new long[remaining.size()];
+		int k = 0;
+		for (final K key : remaining)
+			hashes[k++] = SequenceFileIndex.hash(key);
+
+		for (int i = 0; i < files.length && !remaining.isEmpty(); i++) {
+			final SequenceFileIndex index = getIndex(i);
+
+			final List<Long> offsets = new ArrayList<Long>();
+			for (final long hash : hashes) {
+				for (final long offset : index.getOffsets(hash))
+					offsets.add(offset);
+			}
+			Collections.sort(offsets);
+
+			long last = -1;
+			for (final long offset : offsets) {
+				if (offset == last)
+					continue;
+				last = offset;
+
+				readAt(i, offset, index.isBlockCompressed(), remaining, results);
+				if (remaining.isEmpty())
+					break;
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Read the record (or block of records) at the given offset, moving any
+	 * of the remaining keys that are found into the results
+	 */
+	@SuppressWarnings("unchecked")
+	private void readAt(int file, long offset, boolean block, Set<K> remaining, Map<K, V> results)
+			throws IOException
+	{
+		final Reader reader = getReader(file);
+		reader.seek(offset);
+
+		K key = (K) ReflectionUtils.newInstance(reader.getKeyClass(), config);
+		V value = (V) ReflectionUtils.newInstance(reader.getValueClass(), config);
+		if (!reader.next(key, value))
+			return;
+
+		// reading the values as well as the keys means that the position is
+		// that of the end of the block for all the records within it
+		final long blockEnd = reader.getPosition();
+		while (true) {
+			if (remaining.remove(key)) {
+				results.put(key, value);
+
+				if (remaining.isEmpty())
+					return;
+				key = (K) ReflectionUtils.newInstance(reader.getKeyClass(), config);
+				value = (V) ReflectionUtils.newInstance(reader.getValueClass(), config);
+			}
+
+			if (!block || !reader.next(key, value) || reader.getPosition() != blockEnd)
+				return;
+		}
+	}
+
+	/**
+	 * @return the files being read
+	 */
+	public Path[] getFiles() {
+		return files;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (int i = 0; i < readers.length; i++) {
+			if (readers[i] != null) {
+				readers[i].close();
+				readers[i] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.SequenceFile.Reader;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * A persistent index of the records in a single sequence file, mapping a
+ * 64-bit hash of each serialised key to the offset at which the record can be
+ * read. For record-compressed or uncompressed files the offset is that of the
+ * record itself; for block-compressed files it is that of the block
+ * containing the record. As distinct keys might share a hash, readers must
+ * check the key of the record they find at an offset.
+ * <p>
+ * The index is stored in a hidden sidecar file next to the sequence file (see
+ * {@link #getIndexPath(Path)}), so that it is ignored by Hadoop input formats
+ * and the file listing methods of {@link SequenceFileUtility}. Indexes can be
+ * built incrementally as a file is written (see
+ * {@link SequenceFileUtility#setIndexing(boolean)}), or afterwards with
+ * {@link #build(FileSystem, Path, Configuration)}.
+ *
+ * @author agent (agent@local)
+ */
+public class SequenceFileIndex {
+	private static final int MAGIC = 0x53464958; // "SFIX"
+	private static final int VERSION = 1;
+
+	private final long[] hashes;
+	private final long[] offsets;
+	private final boolean blockCompressed;
+
+	private SequenceFileIndex(long[] hashes, long[] offsets, boolean blockCompressed) {
+		this.hashes = hashes;
+		this.offsets = offsets;
+		this.blockCompressed = blockCompressed;
+	}
+
+	/**
+	 * Incrementally build an index as records are appended
+	 */
+	public static class Builder {
+		private long[] hashes = new long[1024];
+		private long[] offsets = new long[1024];
+		private int size;
+		private final boolean blockCompressed;
+
+		/**
+		 * @param blockCompressed
+		 *            whether the offsets refer to blocks rather than records
+		 */
+		public Builder(boolean blockCompressed) {
+			this.blockCompressed = blockCompressed;
+		}
+
+		/**
+		 * Add a record
+		 *
+		 * @param key
+		 *            the key of the record
+		 * @param offset
+		 *            the offset of the record (or its block)
+		 * @throws IOException
+		 */
+		public void add(Writable key, long offset) throws IOException {
+			add(hash(key), offset);
+		}
+
+		void add(long hash, long offset) {
+			if (size == hashes.length) {
+				hashes = Arrays.copyOf(hashes, size * 2);
+				offsets = Arrays.copyOf(offsets, size * 2);
+			}
+			hashes[size] = hash;
+			offsets[size] = offset;
+			size++;
+		}
+
+		/**
+		 * @return the index of the records added so far
+		 */
+		public SequenceFileIndex build() {
+			final long[] h = Arrays.copyOf(hashes, size);
+			final long[] o = Arrays.copyOf(offsets, size);
+			sort(h, o, 0, size - 1);
+
+			return new SequenceFileIndex(h, o, blockCompressed);
+		}
+	}
+
+	/**
+	 * Sort by hash then offset, keeping the arrays in step
+	 */
+	private static void sort(long[] h, long[] o, int lo, int hi) {
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			final long ph = h[mid], po = o[mid];
+			int i = lo, j = hi;
+
+			while (i <= j) {
+				while (compare(h[i], o[i], ph, po) < 0)
+					i++;
+				while (compare(h[j], o[j], ph, po) > 0)
+					j--;
+				if (i <= j) {
+					final long th = h[i], to = o[i];
+					h[i] = h[j];
+					o[i] = o[j];
+					h[j] = th;
+					o[j] = to;
+					i++;
+					j--;
+				}
+			}
+
+			// recurse into the smaller half to bound the stack depth
+			if (j - lo < hi - i) {
+				sort(h, o, lo, j);
+				lo = i;
+			} else {
+				sort(h, o, i, hi);
+				hi = j;
+			}
+		}
+	}
+
+	private static int compare(long h1, long o1, long h2, long o2) {
+		if (h1 != h2)
+			return h1 < h2 ? -1 : 1;
+		return o1 < o2 ? -1 : (o1 == o2 ? 0 : 1);
+	}
+
+	/**
+	 * Compute the 64-bit (FNV-1a) hash of the serialised form of a key
+	 *
+	 * @param key
+	 *            the key
+	 * @return the hash
+	 * @throws IOException
+	 */
+	public static long hash(Writable key) throws IOException {
+		final DataOutputBuffer buffer = new DataOutputBuffer();
+		key.write(buffer);
+
+		final byte[] data = buffer.getData();
+		final int length = buffer.getLength();
+
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < length; i++) {
+			h ^= data[i] & 0xff;
+			h *= 0x100000001b3L;
+		}
+		return h;
+	}
+
+	/**
+	 * Get the path of the sidecar index file for a sequence file
+	 *
+	 * @param sequenceFile
+	 *            the sequence file
+	 * @return the index path
+	 */
+	public static Path getIndexPath(Path sequenceFile) {
+		return new Path(sequenceFile.getParent(), "." + sequenceFile.getName() + ".idx");
+	}
+
+	/**
+	 * Build the index of an existing sequence file by reading through it
+	 *
+	 * @param fs
+	 *            the filesystem
+	 * @param sequenceFile
+	 *            the sequence file
+	 * @param config
+	 *            the configuration
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static SequenceFileIndex build(FileSystem fs, Path sequenceFile, Configuration config) throws IOException {
+		final Reader reader = new Reader(fs, sequenceFile, config);
+
+		try {
+			final Builder builder = new Builder(reader.isBlockCompressed());
+			final Writable key = (Writable) ReflectionUtils.newInstance(reader.getKeyClass(), config);
+			final Writable value = (Writable) ReflectionUtils.newInstance(reader.getValueClass(), config);
+
+			// see SequenceFileUtility#listKeysAndOffsets(); the values must
+			// be read so that the positions of block-compressed files are
+			// those of the block boundaries
+			long start = reader.getPosition();
+			long end = start;
+			while (reader.next(key, value)) {
+				final long pos = reader.getPosition();
+				if (reader.isBlockCompressed()) {
+					if (pos != end) {
+						start = end;
+						end = pos;
+					}
+				} else {
+					start = end;
+					end = pos;
+				}
+				builder.add(key, start);
+			}
+
+			return builder.build();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read the sidecar index of the given sequence file
+	 *
+	 * @param fs
+	 *            the filesystem
+	 * @param sequenceFile
+	 *            the sequence file
+	 * @return the index, or null if the file has no index
+	 * @throws IOException
+	 */
+	public static SequenceFileIndex read(FileSystem fs, Path sequenceFile) throws IOException {
+		final Path indexPath = getIndexPath(sequenceFile);
+		if (!fs.exists(indexPath))
+			return null;
+
+		final FSDataInputStream in = fs.open(indexPath);
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Invalid sequence file index: " + indexPath);
+
+			final boolean blockCompressed = in.readBoolean();
+			final int n = in.readInt();
+			final long[] hashes = new long[n];
+			final long[] offsets = new long[n];
+
+			for (int i = 0; i < n; i++) {
+				hashes[i] = in.readLong();
+				offsets[i] = in.readLong();
+			}
+
+			return new SequenceFileIndex(hashes, offsets, blockCompressed);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write this index as the sidecar index of the given sequence file
+	 *
+	 * @param fs
+	 *            the filesystem
+	 * @param sequenceFile
+	 *            the sequence file
+	 * @throws IOException
+	 */
+	public void write(FileSystem fs, Path sequenceFile) throws IOException {
+		final FSDataOutputStream out = fs.create(getIndexPath(sequenceFile), true);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeBoolean(blockCompressed);
+			out.writeInt(hashes.length);
+
+			for (int i = 0; i < hashes.length; i++) {
+				out.writeLong(hashes[i]);
+				out.writeLong(offsets[i]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Get the offsets of all records whose key has the given hash.
+	 *
+	 * @param hash
+	 *            the key hash (see {@link #hash(Writable)})
+	 * @return the offsets in ascending order; empty if there are none
+	 */
+	public long[] getOffsets(long hash) {
+		int idx = Arrays.binarySearch(hashes, hash);
+		if (idx < 0)
+			return new long[0];
+
+		int lo = idx, hi = idx;
+		while (lo > 0 && hashes[lo - 1] == hash)
+			lo--;
+		while (hi + 1 < hashes.length && hashes[hi + 1] == hash)
+			hi++;
+
+		return Arrays.copyOfRange(offsets, lo, hi + 1);
+	}
+
+	/**
+	 * @return the number of records in the index
+	 */
+	public int size() {
+		return hashes.length;
+	}
+
+	/**
+	 * @return true if the offsets refer to blocks of records rather than
+	 *         individual records
+	 */
+	public boolean isBlockCompressed() {
+		return blockCompressed;
+	}
+}
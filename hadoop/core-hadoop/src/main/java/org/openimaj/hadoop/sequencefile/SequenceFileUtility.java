@@ -40,6 +40,7 @@ import java.net.URI;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -94,6 +95,9 @@ public abstract class SequenceFileUtility<K extends Writable, V extends Writable
 
 	protected String uuid;
 
+	protected SequenceFileIndex.Builder indexBuilder;
+	private boolean appended = false;
+
 	public SequenceFileUtility(String uriOrPath, boolean read) throws IOException {
 		setup(convertToURI(uriOrPath), read);
 	}
@@ -869,8 +873,87 @@ public abstract class SequenceFileUtility<K extends Writable, V extends Writable
 	 * @throws IOException
 	 */
 	public void close() throws IOException {
-		if (writer != null)
+		if (writer != null) {
 			writer.close();
+
+			if (indexBuilder != null) {
+				indexBuilder.build().write(fileSystem, sequenceFilePath);
+				indexBuilder = null;
+			}
+		}
+	}
+
+	/**
+	 * Enable or disable building a {@link SequenceFileIndex} of the records
+	 * as they are appended. The index is written to a sidecar file when the
+	 * utility is closed, and can be used for random access with an
+	 * {@link IndexedSequenceFileReader}. Write mode only, and must be called
+	 * before any records are appended.
+	 *
+	 * @param indexing
+	 *            true to build an index
+	 */
+	public void setIndexing(boolean indexing) {
+		if (isReader) {
+			throw new UnsupportedOperationException("Cannot build index in read mode");
+		}
+		if (appended) {
+			throw new IllegalStateException("Indexing must be enabled before records are appended");
+		}
+
+		indexBuilder = indexing ? new SequenceFileIndex.Builder(compressionType == CompressionType.BLOCK) : null;
+	}
+
+	/**
+	 * Get the {@link SequenceFileIndex} of this file. The sidecar index is
+	 * read if it exists; otherwise the index is built by reading through the
+	 * file and saved if possible. Read mode only.
+	 *
+	 * @return the index
+	 * @throws IOException
+	 */
+	public SequenceFileIndex getIndex() throws IOException {
+		if (!isReader) {
+			throw new UnsupportedOperationException("Cannot read index in write mode");
+		}
+
+		SequenceFileIndex index = SequenceFileIndex.read(fileSystem, sequenceFilePath);
+		if (index == null) {
+			index = SequenceFileIndex.build(fileSystem, sequenceFilePath, config);
+
+			try {
+				index.write(fileSystem, sequenceFilePath);
+			} catch (final IOException e) {
+				// the index is still usable even if it can't be saved
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Find the values of the records with the given keys using the index of
+	 * the file (see {@link #getIndex()}), rather than searching linearly.
+	 * Read mode only.
+	 *
+	 * @see IndexedSequenceFileReader#find(Collection)
+	 *
+	 * @param keys
+	 *            the keys
+	 * @return a map of keys to values; missing keys are absent
+	 * @throws IOException
+	 */
+	public Map<K, V> find(Collection<K> keys) throws IOException {
+		if (!isReader) {
+			throw new UnsupportedOperationException("Cannot find key in write mode");
+		}
+
+		final IndexedSequenceFileReader<K, V> reader = new IndexedSequenceFileReader<K, V>(fileSystem,
+				new Path[] { sequenceFilePath }, config);
+		try {
+			return reader.find(keys);
+		} finally {
+			reader.close();
+		}
 	}
 
 	/**
@@ -1033,7 +1116,11 @@ public abstract class SequenceFileUtility<K extends Writable, V extends Writable
 			throw new UnsupportedOperationException("Cannot write data in read mode");
 		}
 
-		writer.append(key, readFile(fs, p));
+		final V value = readFile(fs, p);
+		if (indexBuilder != null)
+			indexBuilder.add(key, writer.getLength());
+		writer.append(key, value);
+		appended = true;
 	}
 
 	/**
@@ -1047,7 +1134,10 @@ public abstract class SequenceFileUtility<K extends Writable, V extends Writable
 		if (isReader) {
 			throw new UnsupportedOperationException("Cannot write data in read mode");
 		}
+		if (indexBuilder != null)
+			indexBuilder.add(key, writer.getLength());
 		writer.append(key, value);
+		appended = true;
 	}
 
 	/**
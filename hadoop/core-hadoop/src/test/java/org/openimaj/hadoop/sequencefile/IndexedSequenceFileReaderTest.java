@@ -0,0 +1,148 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.sequencefile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link SequenceFileIndex} and
+ * {@link IndexedSequenceFileReader}
+ *
+ * @author agent (agent@local)
+ */
+public class IndexedSequenceFileReaderTest {
+	private static final int NUM_RECORDS = 400;
+
+	/** temporary folder */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] valueFor(int i) {
+		// large enough values to span several compression blocks
+		final byte[] data = new byte[5000 + i];
+		new Random(i).nextBytes(data);
+		return data;
+	}
+
+	private File write(CompressionType type, boolean indexing) throws Exception {
+		final File file = new File(folder.getRoot(), type + "-" + indexing + ".seq");
+		final TextBytesSequenceFileUtility util = new TextBytesSequenceFileUtility(file.getAbsolutePath(), type);
+		util.setIndexing(indexing);
+
+		for (int i = 0; i < NUM_RECORDS; i++)
+			util.appendData(new Text("key" + i), new BytesWritable(valueFor(i)));
+		util.close();
+
+		return file;
+	}
+
+	private void check(File file) throws Exception {
+		final List<Text> keys = new ArrayList<Text>();
+		for (int i = NUM_RECORDS - 1; i >= 0; i -= 3)
+			keys.add(new Text("key" + i));
+		keys.add(new Text("missing"));
+
+		final IndexedSequenceFileReader<Text, BytesWritable> reader = new IndexedSequenceFileReader<Text, BytesWritable>(
+				file.getAbsolutePath());
+		try {
+			final Map<Text, BytesWritable> found = reader.find(keys);
+			assertEquals(keys.size() - 1, found.size());
+
+			for (int i = NUM_RECORDS - 1; i >= 0; i -= 3) {
+				final BytesWritable value = found.get(new Text("key" + i));
+				assertArrayEquals(valueFor(i), Arrays.copyOf(value.getBytes(), value.getLength()));
+			}
+
+			final BytesWritable single = reader.find(new Text("key0"));
+			assertArrayEquals(valueFor(0), Arrays.copyOf(single.getBytes(), single.getLength()));
+			assertNull(reader.find(new Text("missing")));
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Test lookups with indexes built as the files are written
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIndexOnAppend() throws Exception {
+		for (final CompressionType type : CompressionType.values()) {
+			final File file = write(type, true);
+			assertTrue(SequenceFileIndex.getIndexPath(new Path(file.getAbsolutePath())).getName().startsWith("."));
+			assertTrue(new File(file.getParentFile(), "." + file.getName() + ".idx").exists());
+			check(file);
+		}
+	}
+
+	/**
+	 * Test lookups with indexes built from existing files, and that they are
+	 * identical to those built on append
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testIndexExisting() throws Exception {
+		for (final CompressionType type : CompressionType.values()) {
+			final File file = write(type, false);
+			final File indexFile = new File(file.getParentFile(), "." + file.getName() + ".idx");
+			assertTrue(!indexFile.exists());
+
+			check(file);
+			assertTrue(indexFile.exists());
+
+			final TextBytesSequenceFileUtility util = new TextBytesSequenceFileUtility(file.getAbsolutePath(), true);
+			final SequenceFileIndex index = util.getIndex();
+			assertEquals(NUM_RECORDS, index.size());
+
+			final Map<Text, BytesWritable> found = util.find(Arrays.asList(new Text("key7")));
+			assertEquals(1, found.size());
+		}
+	}
+}
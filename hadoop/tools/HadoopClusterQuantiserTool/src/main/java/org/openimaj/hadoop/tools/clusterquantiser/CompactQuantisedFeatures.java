@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.clusterquantiser;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableUtils;
+import org.openimaj.io.ReadWriteableBinary;
+
+/**
+ * A compact binary representation of the quantised features of a single
+ * image, as produced by the {@link HadoopClusterQuantiserTool} in binary
+ * output mode. After the header, the number of features, the number of
+ * clusters and a flag indicating the presence of locations are written,
+ * followed by the cluster index of each feature as a variable-length integer
+ * and, optionally, its location packed as floats.
+ * <p>
+ * Use {@link org.openimaj.io.IOUtils#read(java.io.InputStream, Class)} to
+ * read the output records of the tool.
+ *
+ * @author agent (agent@local)
+ */
+public class CompactQuantisedFeatures implements ReadWriteableBinary {
+	private static final byte[] HEADER = "CQF1".getBytes();
+
+	/** The number of clusters in the codebook */
+	public int numClusters;
+
+	/** The cluster index of each feature */
+	public int[] clusters;
+
+	/** The location of each feature, or null if locations were not stored */
+	public float[][] locations;
+
+	/**
+	 * Construct empty, for deserialisation
+	 */
+	public CompactQuantisedFeatures() {
+	}
+
+	/**
+	 * Construct with the given data
+	 *
+	 * @param numClusters
+	 *            the number of clusters in the codebook
+	 * @param clusters
+	 *            the cluster index of each feature
+	 * @param locations
+	 *            the location of each feature; may be null
+	 */
+	public CompactQuantisedFeatures(int numClusters, int[] clusters, float[][] locations) {
+		this.numClusters = numClusters;
+		this.clusters = clusters;
+		this.locations = locations;
+	}
+
+	/**
+	 * Parse a whitespace separated location string (as found in
+	 * {@link org.openimaj.tools.clusterquantiser.FeatureFileFeature#location})
+	 * into an array of floats.
+	 *
+	 * @param location
+	 *            the location string
+	 * @return the parsed location
+	 */
+	public static float[] parseLocation(String location) {
+		final String trimmed = location.trim();
+		if (trimmed.length() == 0)
+			return new float[0];
+
+		final String[] parts = trimmed.split("\\s+");
+		final float[] loc = new float[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			loc[i] = Float.parseFloat(parts[i]);
+
+		return loc;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		final int n = WritableUtils.readVInt(in);
+		numClusters = WritableUtils.readVInt(in);
+		final boolean hasLocations = in.readBoolean();
+
+		clusters = new int[n];
+		locations = hasLocations ? new float[n][] : null;
+
+		for (int i = 0; i < n; i++) {
+			clusters[i] = WritableUtils.readVInt(in);
+
+			if (hasLocations) {
+				final float[] loc = new float[WritableUtils.readVInt(in)];
+				for (int j = 0; j < loc.length; j++)
+					loc[j] = in.readFloat();
+				locations[i] = loc;
+			}
+		}
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, clusters.length);
+		WritableUtils.writeVInt(out, numClusters);
+		out.writeBoolean(locations != null);
+
+		for (int i = 0; i < clusters.length; i++) {
+			WritableUtils.writeVInt(out, clusters[i]);
+
+			if (locations != null) {
+				WritableUtils.writeVInt(out, locations[i].length);
+				for (final float f : locations[i])
+					out.writeFloat(f);
+			}
+		}
+	}
+}
@@ -136,6 +136,20 @@ public class HadoopClusterQuantiserOptions extends AbstractClusterQuantiserOptio
 	MapperMode mapperMode = MapperMode.STANDARD;
 	protected MapperModeOp mapperModeOp = (MapperModeOp) MapperMode.STANDARD.getOptions();
 
+	@Option(
+			name = "--binary-output",
+			aliases = "-bo",
+			required = false,
+			usage = "Write the quantised features in the compact binary format (see CompactQuantisedFeatures) rather than as ASCII")
+	private boolean binaryOutput = false;
+
+	@Option(
+			name = "--binary-locations",
+			aliases = "-bl",
+			required = false,
+			usage = "Include the feature locations in the compact binary output")
+	private boolean binaryLocations = false;
+
 	private ClusterTypeOp clusterTypeOp;
 
 	private Class<? extends SpatialClusters<?>> clusterClass;
@@ -187,6 +201,10 @@ public class HadoopClusterQuantiserOptions extends AbstractClusterQuantiserOptio
 			if (this.extension.equals(".loc"))
 				this.extension = ".counts";
 		}
+		if (binaryLocations && !binaryOutput)
+			throw new CmdLineException(null, "--binary-locations requires --binary-output");
+		if (binaryOutput && this.extension.equals(".loc"))
+			this.extension = ".cqf";
 		if (forceRM && this.beforeMaps) {
 
 			try {
@@ -237,6 +255,22 @@ public class HadoopClusterQuantiserOptions extends AbstractClusterQuantiserOptio
 		return getClusterInputStream(this.quantLocation);
 	}
 
+	/**
+	 * @return true if the output should be written in the compact binary
+	 *         format
+	 */
+	public boolean isBinaryOutput() {
+		return binaryOutput;
+	}
+
+	/**
+	 * @return true if locations should be included in the compact binary
+	 *         output
+	 */
+	public boolean isBinaryLocations() {
+		return binaryLocations;
+	}
+
 	public String getClusterInputString() {
 		return this.quantLocation;
 	}
@@ -44,6 +44,7 @@ import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.kohsuke.args4j.CmdLineException;
@@ -65,18 +66,28 @@ import org.openimaj.util.array.ByteArrayConverter;
 public class HadoopClusterQuantiserTool extends Configured implements Tool {
 	private static final String ARGS_KEY = "clusterquantiser.args";
 
+	/**
+	 * Mapper that quantises the features of each record. The codebook and
+	 * assigner are loaded once per JVM and shared by all mapper instances; the
+	 * assigners are safe for concurrent use, so the mapper can also be run
+	 * with several threads through a {@link MultithreadedMapper}. Use the
+	 * MULTITHREAD mapper mode to have a single copy of a large codebook
+	 * shared by all the threads of a task, rather than one copy per task JVM.
+	 */
 	static class ClusterQuantiserMapper extends Mapper<Text, BytesWritable, Text, BytesWritable> {
-		private static SpatialClusters<?> tree = null;
-		private static HardAssigner<?, ?, ?> assigner = null;
-		private static HadoopClusterQuantiserOptions options = null;
+		private static volatile SpatialClusters<?> tree = null;
+		private static volatile HardAssigner<?, ?, ?> assigner = null;
+		private static volatile HadoopClusterQuantiserOptions options = null;
 
 		protected static synchronized void loadCluster(Mapper<Text, BytesWritable, Text, BytesWritable>.Context context)
 				throws IOException
 		{
 			if (options == null) {
 				try {
-					options = new HadoopClusterQuantiserOptions(context.getConfiguration().getStrings(ARGS_KEY));
-					options.prepare();
+					final HadoopClusterQuantiserOptions opts = new HadoopClusterQuantiserOptions(context
+							.getConfiguration().getStrings(ARGS_KEY));
+					opts.prepare();
+					options = opts;
 				} catch (final CmdLineException e) {
 					throw new IOException(e);
 				}
@@ -87,14 +98,15 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 				try {
 					System.out.print("Reading quant data. ");
 					ios = options.getClusterInputStream();
-					tree = IOUtils.read(ios, options.getClusterClass());
+					final SpatialClusters<?> clusters = IOUtils.read(ios, options.getClusterClass());
 
-					if (tree instanceof ByteCentroidsResult)
-						assigner = new KDTreeByteEuclideanAssigner((ByteCentroidsResult) tree);
-					else if (tree instanceof IntCentroidsResult)
-						assigner = new KDTreeIntEuclideanAssigner((IntCentroidsResult) tree);
+					if (clusters instanceof ByteCentroidsResult)
+						assigner = new KDTreeByteEuclideanAssigner((ByteCentroidsResult) clusters);
+					else if (clusters instanceof IntCentroidsResult)
+						assigner = new KDTreeIntEuclideanAssigner((IntCentroidsResult) clusters);
 					else
-						assigner = tree.defaultHardAssigner();
+						assigner = clusters.defaultHardAssigner();
+					tree = clusters;
 
 					System.out.println("Done reading quant data.");
 				} catch (final IOException e) {
@@ -117,6 +129,26 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 		}
 
 		@SuppressWarnings("unchecked")
+		private static int[] assign(FeatureFile input) {
+			final int n = input.size();
+
+			if (tree.getClass().getName().contains("Byte")) {
+				final byte[][] data = new byte[n][];
+				int i = 0;
+				for (final FeatureFileFeature fff : input)
+					data[i++] = fff.data;
+
+				return ((HardAssigner<byte[], ?, ?>) assigner).assign(data);
+			} else {
+				final int[][] data = new int[n][];
+				int i = 0;
+				for (final FeatureFileFeature fff : input)
+					data[i++] = ByteArrayConverter.byteToInt(fff.data);
+
+				return ((HardAssigner<int[], ?, ?>) assigner).assign(data);
+			}
+		}
+
 		@Override
 		protected void
 				map(Text key, BytesWritable value, Mapper<Text, BytesWritable, Text, BytesWritable>.Context context)
@@ -126,36 +158,41 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 				final long t1 = System.currentTimeMillis();
 
 				System.out.println("[" + Thread.currentThread().getId() + "]" + "Calling map ");
-				ByteArrayOutputStream baos = null;
 				if (options.isInfoMode()) {
 					ClusterQuantiser.do_info(options);
 				} else if (options.isQuantMode()) {
 
-					final FeatureFile input = options.getFileType().read(new ByteArrayInputStream(value.getBytes()));
+					final FeatureFile input = options.getFileType().read(
+							new ByteArrayInputStream(value.getBytes(), 0, value.getLength()));
+					final ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
-					baos = new ByteArrayOutputStream();
-					PrintWriter pw = null;
 					try {
-						pw = new PrintWriter(baos);
-						pw.format("%d\n%d\n", input.size(), tree.numClusters());
-
-						for (final FeatureFileFeature fff : input) {
-							int cluster = -1;
-
-							if (tree.getClass().getName().contains("Byte"))
-								cluster = ((HardAssigner<byte[], ?, ?>) assigner).assign(fff.data);
-							else
-								cluster = ((HardAssigner<int[], ?, ?>) assigner).assign(ByteArrayConverter
-										.byteToInt(fff.data));
+						final int[] clusters = assign(input);
+
+						if (options.isBinaryOutput()) {
+							float[][] locations = null;
+							if (options.isBinaryLocations()) {
+								locations = new float[clusters.length][];
+								int i = 0;
+								for (final FeatureFileFeature fff : input)
+									locations[i++] = CompactQuantisedFeatures.parseLocation(fff.location);
+							}
+
+							IOUtils.writeBinary(baos, new CompactQuantisedFeatures(tree.numClusters(), clusters,
+									locations));
+						} else {
+							final PrintWriter pw = new PrintWriter(baos);
+							pw.format("%d\n%d\n", input.size(), tree.numClusters());
+
+							int i = 0;
+							for (final FeatureFileFeature fff : input)
+								pw.format("%s %d\n", fff.location.trim(), clusters[i++]);
 
-							pw.format("%s %d\n", fff.location.trim(), cluster);
-						}
-					} finally {
-						if (pw != null) {
 							pw.flush();
 							pw.close();
-							input.close();
 						}
+					} finally {
+						input.close();
 					}
 
 					context.write(key, new BytesWritable(baos.toByteArray()));
@@ -188,17 +225,12 @@ public class HadoopClusterQuantiserTool extends Configured implements Tool {
 		metadata.put("clusterquantiser.filetype", options.getFileType().toString());
 		metadata.put("clusterquantiser.countmode", "" + options.getCountMode());
 		metadata.put("clusterquantiser.extention", "" + options.getExtension());
+		metadata.put("clusterquantiser.binaryoutput", "" + options.isBinaryOutput());
+		metadata.put("clusterquantiser.binarylocations", "" + options.isBinaryLocations());
 
 		final Job job = TextBytesJobUtil.createJob(options.getInputFileString(), options.getOutputFileString(), metadata,
 				this.getConf());
 		job.setJarByClass(this.getClass());
-		// job.setMapperClass(MultithreadedMapper.class);
-		// MultithreadedMapper.setNumberOfThreads(job,
-		// options.getConcurrency());
-		// MultithreadedMapper.setMapperClass(job,
-		// ClusterQuantiserMapper.class);
-		// System.out.println("NThreads = " +
-		// MultithreadedMapper.getNumberOfThreads(job));
 		options.mapperModeOp.prepareJobMapper(job, ClusterQuantiserMapper.class, options);
 
 		job.getConfiguration().setStrings(ARGS_KEY, args);
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.hadoop.tools.clusterquantiser;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+import org.openimaj.io.IOUtils;
+
+/**
+ * Tests for {@link CompactQuantisedFeatures}
+ *
+ * @author agent (agent@local)
+ */
+public class CompactQuantisedFeaturesTest {
+	private static CompactQuantisedFeatures roundTrip(CompactQuantisedFeatures in) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		IOUtils.writeBinary(baos, in);
+
+		return IOUtils.read(new ByteArrayInputStream(baos.toByteArray()), CompactQuantisedFeatures.class);
+	}
+
+	/**
+	 * Test round-tripping with and without locations
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		final int[] clusters = { 0, 5, 127, 128, 99999, 1000000 };
+		final float[][] locations = new float[clusters.length][];
+		for (int i = 0; i < clusters.length; i++)
+			locations[i] = CompactQuantisedFeatures.parseLocation(" " + i + ".5 " + (2 * i) + " 1.25 -0.5\n");
+
+		final CompactQuantisedFeatures withLocs = roundTrip(new CompactQuantisedFeatures(1000001, clusters, locations));
+		assertEquals(1000001, withLocs.numClusters);
+		assertArrayEquals(clusters, withLocs.clusters);
+		for (int i = 0; i < clusters.length; i++) {
+			assertArrayEquals(new float[] { i + 0.5f, 2 * i, 1.25f, -0.5f }, withLocs.locations[i], 0f);
+		}
+
+		final CompactQuantisedFeatures noLocs = roundTrip(new CompactQuantisedFeatures(1000001, clusters, null));
+		assertArrayEquals(clusters, noLocs.clusters);
+		assertNull(noLocs.locations);
+	}
+}
@@ -29,13 +29,21 @@
  */
 package org.openimaj.image.processing.face.detection;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.data.dataset.GroupedDataset;
 import org.openimaj.data.dataset.ListBackedDataset;
 import org.openimaj.data.dataset.ListDataset;
 import org.openimaj.data.dataset.MapBackedDataset;
 import org.openimaj.image.Image;
+import org.openimaj.io.IOUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Convenience methods for dealing with face detections in datasets and lists of
@@ -98,6 +106,107 @@ public class DatasetFaceDetector {
 		return output;
 	}
 
+	/**
+	 * Apply a face detector to all the images in the given dataset in parallel
+	 * using the given thread pool, choosing only the biggest face if multiple
+	 * are found. The order of the faces in each group of the output matches
+	 * the order of the images in the input.
+	 * <p>
+	 * Face detectors are not generally safe to use from multiple threads, so
+	 * each task works with its own copy of the detector (made through its
+	 * binary serialised form). The images are retrieved from the dataset by the
+	 * worker threads, so lazily loaded datasets are read in parallel and only
+	 * the detected faces are retained.
+	 * 
+	 * @param <PERSON>
+	 *            Type representing a person
+	 * @param <IMAGE>
+	 *            Type of image
+	 * @param <FACE>
+	 *            Type of {@link DetectedFace} extracted
+	 * @param input
+	 *            The input dataset
+	 * @param detector
+	 *            The face detector
+	 * @param pool
+	 *            the thread pool
+	 * @return a dataset of detected faces.
+	 */
+	public static <PERSON, IMAGE extends Image<?, IMAGE>, FACE extends DetectedFace>
+			GroupedDataset<PERSON, ListDataset<FACE>, FACE>
+			process(GroupedDataset<PERSON, ? extends ListDataset<IMAGE>, IMAGE> input,
+					final FaceDetector<FACE, IMAGE> detector, ThreadPoolExecutor pool)
+	{
+		final List<PERSON> groups = new ArrayList<PERSON>(input.getGroups());
+		final List<ListDataset<IMAGE>> instances = new ArrayList<ListDataset<IMAGE>>(groups.size());
+		final int[] offsets = new int[groups.size() + 1];
+
+		for (int g = 0; g < groups.size(); g++) {
+			instances.add(input.getInstances(groups.get(g)));
+			offsets[g + 1] = offsets[g] + instances.get(g).size();
+		}
+
+		final Object[] results = new Object[offsets[groups.size()]];
+
+		Parallel.forRange(0, results.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final FaceDetector<FACE, IMAGE> localDetector = copy(detector);
+
+				for (int idx = range.start; idx < range.stop; idx += range.incr) {
+					int g = Arrays.binarySearch(offsets, idx);
+					if (g < 0)
+						g = -g - 2;
+					else
+						while (offsets[g + 1] == idx)
+							g++; // skip empty groups
+
+					final int i = idx - offsets[g];
+					final List<FACE> faces = localDetector.detectFaces(instances.get(g).getInstance(i));
+
+					if (faces == null || faces.size() == 0) {
+						System.err.println("There was no face detected in " + groups.get(g) + " instance " + i);
+						continue;
+					}
+
+					results[idx] = getBiggest(faces);
+				}
+			}
+		}, pool);
+
+		final MapBackedDataset<PERSON, ListDataset<FACE>, FACE> output = new MapBackedDataset<PERSON, ListDataset<FACE>, FACE>();
+		for (int g = 0; g < groups.size(); g++) {
+			final ListBackedDataset<FACE> detected = new ListBackedDataset<FACE>();
+
+			for (int idx = offsets[g]; idx < offsets[g + 1]; idx++) {
+				@SuppressWarnings("unchecked")
+				final FACE face = (FACE) results[idx];
+
+				if (face != null)
+					detected.add(face);
+			}
+
+			output.getMap().put(groups.get(g), detected);
+		}
+
+		return output;
+	}
+
+	/**
+	 * Make a copy of the given detector through its binary serialised form.
+	 */
+	private static <FACE extends DetectedFace, IMAGE extends Image<?, IMAGE>> FaceDetector<FACE, IMAGE> copy(
+			FaceDetector<FACE, IMAGE> detector)
+	{
+		try {
+			final FaceDetector<FACE, IMAGE> instance = IOUtils.newInstance(detector.getClass().getName());
+
+			return IOUtils.deserialize(IOUtils.serialize(detector), instance);
+		} catch (final IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
 	/**
 	 * Apply a face detector to all the images in the given dataset, choosing
 	 * only the biggest face if multiple are found.
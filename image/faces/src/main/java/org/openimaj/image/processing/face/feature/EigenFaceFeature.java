@@ -34,6 +34,7 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -167,6 +168,36 @@ public class EigenFaceFeature implements FacialFeature, FeatureVectorProvider<Do
 			eigen.train(patches);
 		}
 
+		/**
+		 * Train in parallel using the given thread pool. The faces are aligned
+		 * by the worker threads as they are needed, rather than all being
+		 * aligned up-front, and the basis is learnt with
+		 * {@link EigenImages#train(List, ThreadPoolExecutor)}. The aligner must
+		 * be safe to use from multiple threads.
+		 * 
+		 * @param data
+		 *            the data
+		 * @param pool
+		 *            the thread pool
+		 */
+		public void train(final List<? extends T> data, ThreadPoolExecutor pool) {
+			final List<FImage> patches = new AbstractList<FImage>() {
+
+				@Override
+				public FImage get(int index) {
+					return aligner.align(data.get(index));
+				}
+
+				@Override
+				public int size() {
+					return data.size();
+				}
+
+			};
+
+			eigen.train(patches, pool);
+		}
+
 		/**
 		 * Train from a dataset
 		 * 
@@ -37,6 +37,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -179,6 +180,37 @@ public class FisherFaceFeature implements FacialFeature, FeatureVectorProvider<D
 			fisher.train(patches);
 		}
 
+		/**
+		 * Train in parallel using the given thread pool. The faces are aligned
+		 * by the worker threads as they are needed, rather than all being
+		 * aligned up-front, and the basis is learnt with
+		 * {@link FisherImages#train(List, ThreadPoolExecutor)}. The aligner
+		 * must be safe to use from multiple threads.
+		 * 
+		 * @param data
+		 *            the data
+		 * @param pool
+		 *            the thread pool
+		 */
+		public void train(final List<? extends IndependentPair<?, T>> data, ThreadPoolExecutor pool) {
+			final List<IndependentPair<?, FImage>> patches = new AbstractList<IndependentPair<?, FImage>>() {
+
+				@Override
+				public IndependentPair<?, FImage> get(int index) {
+					return IndependentPair.pair(data.get(index).firstObject(),
+							aligner.align(data.get(index).secondObject()));
+				}
+
+				@Override
+				public int size() {
+					return data.size();
+				}
+
+			};
+
+			fisher.train(patches, pool);
+		}
+
 		/**
 		 * Train on a map of data.
 		 * 
@@ -217,6 +249,31 @@ public class FisherFaceFeature implements FacialFeature, FeatureVectorProvider<D
 
 			fisher.train(list);
 		}
+
+		/**
+		 * Train on a grouped dataset in parallel using the given thread pool.
+		 * 
+		 * @see #train(List, ThreadPoolExecutor)
+		 * 
+		 * @param <KEY>
+		 *            The group type
+		 * @param data
+		 *            the data
+		 * @param pool
+		 *            the thread pool
+		 */
+		public <KEY> void train(GroupedDataset<KEY, ? extends ListDataset<T>, T> data, ThreadPoolExecutor pool) {
+			final List<IndependentPair<KEY, T>> list = new ArrayList<IndependentPair<KEY, T>>();
+
+			for (final KEY e : data.getGroups()) {
+				for (final T i : data.getInstances(e)) {
+					if (i != null)
+						list.add(IndependentPair.pair(e, i));
+				}
+			}
+
+			train(list, pool);
+		}
 	}
 
 	private DoubleFV fv;
@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.processing.face.recognition;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.data.dataset.GroupedDataset;
 import org.openimaj.data.dataset.ListDataset;
 import org.openimaj.experiment.dataset.util.DatasetAdaptors;
@@ -159,6 +161,12 @@ public class EigenFaceRecogniser<FACE extends DetectedFace, PERSON>
 		extractor.train(DatasetAdaptors.asList(dataset));
 	}
 
+	@Override
+	protected void beforeBatchTrain(GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset, ThreadPoolExecutor pool)
+	{
+		extractor.train(DatasetAdaptors.asList(dataset), pool);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("EigenFaceRecogniser[extractor=%s; recogniser=%s]",
@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import gnu.trove.iterator.TObjectIntIterator;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.feature.FeatureVector;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.image.processing.face.detection.DetectedFace;
+import org.openimaj.ml.annotation.Annotated;
+import org.openimaj.ml.annotation.IncrementalAnnotator;
+import org.openimaj.ml.annotation.RestrictedAnnotator;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * A k-nearest-neighbour annotator for faces that stores the enrolled feature
+ * vectors in a {@link FaceGalleryIndex}, so that recognition against large
+ * galleries is sub-linear in the gallery size. Scoring follows the
+ * {@link org.openimaj.ml.annotation.basic.KNNAnnotator}: each person is scored
+ * by the proportion of the k nearest neighbours (within the distance
+ * threshold) that belong to them.
+ * <p>
+ * Features are compared using the Euclidean distance, and are converted to
+ * floats for storage. Wrap instances with
+ * {@link AnnotatorFaceRecogniser#create(IncrementalAnnotator)} to build a
+ * {@link FaceRecogniser}.
+ * 
+ * @author agent (agent@local)
+ * 
+ * @param <FACE>
+ *            Type of {@link DetectedFace}
+ * @param <PERSON>
+ *            Type of object representing a person
+ */
+public class FaceGalleryAnnotator<FACE extends DetectedFace, PERSON>
+		extends
+		IncrementalAnnotator<FACE, PERSON>
+		implements
+		RestrictedAnnotator<FACE, PERSON>
+{
+	protected FeatureExtractor<? extends FeatureVector, FACE> extractor;
+	protected FaceGalleryIndex<PERSON> index;
+	protected int k;
+	protected float threshold;
+
+	protected FaceGalleryAnnotator() {
+	}
+
+	/**
+	 * Construct with the given extractor and number of neighbours. The
+	 * distance threshold is disabled and the gallery uses the default search
+	 * parameters.
+	 * 
+	 * @param extractor
+	 *            the extractor
+	 * @param k
+	 *            the number of neighbours
+	 */
+	public FaceGalleryAnnotator(FeatureExtractor<? extends FeatureVector, FACE> extractor, int k) {
+		this(extractor, k, Float.MAX_VALUE);
+	}
+
+	/**
+	 * Construct with the given extractor, number of neighbours and distance
+	 * threshold. The gallery uses the default search parameters.
+	 * 
+	 * @param extractor
+	 *            the extractor
+	 * @param k
+	 *            the number of neighbours
+	 * @param threshold
+	 *            the threshold on distance for successful matches
+	 */
+	public FaceGalleryAnnotator(FeatureExtractor<? extends FeatureVector, FACE> extractor, int k, float threshold) {
+		this(extractor, k, threshold, new FaceGalleryIndex<PERSON>());
+	}
+
+	/**
+	 * Construct with the given extractor, number of neighbours, distance
+	 * threshold and gallery.
+	 * 
+	 * @param extractor
+	 *            the extractor
+	 * @param k
+	 *            the number of neighbours
+	 * @param threshold
+	 *            the threshold on distance for successful matches
+	 * @param index
+	 *            the gallery in which to store the features
+	 */
+	public FaceGalleryAnnotator(FeatureExtractor<? extends FeatureVector, FACE> extractor, int k, float threshold,
+			FaceGalleryIndex<PERSON> index)
+	{
+		this.extractor = extractor;
+		this.k = k;
+		this.threshold = threshold;
+		this.index = index;
+	}
+
+	/**
+	 * Extract a feature from the face as an array of floats. The values of
+	 * {@link FloatFV} features are returned directly without copying (the
+	 * gallery copies enrolled vectors).
+	 */
+	protected float[] extract(FACE face) {
+		final FeatureVector fv = extractor.extractFeature(face);
+
+		if (fv instanceof FloatFV)
+			return ((FloatFV) fv).values;
+
+		final double[] dv = fv.asDoubleVector();
+		final float[] v = new float[dv.length];
+		for (int i = 0; i < dv.length; i++)
+			v[i] = (float) dv[i];
+		return v;
+	}
+
+	@Override
+	public void train(Annotated<FACE, PERSON> annotated) {
+		final float[] vector = extract(annotated.getObject());
+
+		for (final PERSON person : annotated.getAnnotations())
+			index.add(vector, person);
+	}
+
+	/**
+	 * Remove a person and all their enrolled faces from the gallery.
+	 * 
+	 * @param person
+	 *            the person
+	 * @return the number of faces removed
+	 */
+	public int remove(PERSON person) {
+		return index.removePerson(person);
+	}
+
+	@Override
+	public void reset() {
+		index.reset();
+	}
+
+	@Override
+	public Set<PERSON> getAnnotations() {
+		return index.getPeople();
+	}
+
+	@Override
+	public List<ScoredAnnotation<PERSON>> annotate(FACE object) {
+		return annotate(object, null);
+	}
+
+	@Override
+	public List<ScoredAnnotation<PERSON>> annotate(FACE object, Collection<PERSON> restrict) {
+		final List<IntFloatPair> neighbours = index.search(extract(object), k, restrict);
+
+		final TObjectIntHashMap<PERSON> selected = new TObjectIntHashMap<PERSON>();
+		int count = 0;
+		for (final IntFloatPair nn : neighbours) {
+			if (nn.second > threshold)
+				continue;
+
+			selected.adjustOrPutValue(index.getPerson(nn.first), 1, 1);
+			count++;
+		}
+
+		final TObjectIntIterator<PERSON> iterator = selected.iterator();
+		final List<ScoredAnnotation<PERSON>> result = new ArrayList<ScoredAnnotation<PERSON>>(selected.size());
+		while (iterator.hasNext()) {
+			iterator.advance();
+
+			result.add(new ScoredAnnotation<PERSON>(iterator.key(), (float) iterator.value() / (float) count));
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return the gallery storing the enrolled features
+	 */
+	public FaceGalleryIndex<PERSON> getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the number of neighbours to search for
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * Set the number of neighbours
+	 * 
+	 * @param k
+	 *            the number of neighbours
+	 */
+	public void setK(int k) {
+		this.k = k;
+	}
+}
@@ -0,0 +1,580 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.openimaj.io.IOUtils;
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.knn.approximate.FloatNearestNeighboursKDTree;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * A gallery of enrolled face feature vectors (for example LTP histograms, or
+ * Eigen/Fisher face projections) that supports sub-linear nearest-neighbour
+ * search.
+ * <p>
+ * Each vector is copied into the gallery when it is enrolled, and is labelled
+ * with the person it belongs to. Searches are performed against an ensemble of
+ * randomised KD-Trees built over the gallery; the trees share the rows of the
+ * gallery rather than copying them. The approximate search fetches a number of
+ * candidates that is a multiple of the requested number of neighbours, and
+ * these are then re-ranked by their exact Euclidean distance to the query.
+ * <p>
+ * The gallery supports online enrolment and removal. New vectors are held in
+ * an unindexed "tail" which is searched exhaustively, and removed vectors are
+ * marked as deleted and skipped; the trees are lazily rebuilt once the tail or
+ * the number of deletions grows beyond a fraction of the indexed size. Small
+ * galleries, for which building trees is not worthwhile, are always searched
+ * exhaustively. Restricting a search to a set of people only considers the
+ * vectors of those people.
+ * <p>
+ * The identifiers returned by {@link #add(float[], Object)} are stable for the
+ * lifetime of the gallery (including across serialisation), and are never
+ * reused after removal.
+ * <p>
+ * The gallery is safe for use by multiple threads. Any number of searches can
+ * run concurrently; enrolment, removal and rebuilding the trees have exclusive
+ * access.
+ * 
+ * @author agent (agent@local)
+ * 
+ * @param <PERSON>
+ *            Type of object representing a person
+ */
+public class FaceGalleryIndex<PERSON> implements ReadWriteableBinary {
+	/**
+	 * The default number of trees in the ensemble
+	 */
+	public static final int DEFAULT_NTREES = 8;
+
+	/**
+	 * The default number of checks performed during a tree search
+	 */
+	public static final int DEFAULT_NCHECKS = 768;
+
+	/**
+	 * The default multiple of the requested number of neighbours that is
+	 * retrieved from the trees and re-ranked
+	 */
+	public static final int DEFAULT_RERANK_FACTOR = 4;
+
+	/**
+	 * The default minimum number of vectors required before the trees are
+	 * built; smaller galleries are searched exhaustively
+	 */
+	public static final int DEFAULT_MIN_INDEX_SIZE = 256;
+
+	private static final float REBUILD_FRACTION = 0.1f;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int ntrees = DEFAULT_NTREES;
+	private int nchecks = DEFAULT_NCHECKS;
+	private int rerankFactor = DEFAULT_RERANK_FACTOR;
+	private int minIndexSize = DEFAULT_MIN_INDEX_SIZE;
+
+	private int ndims = -1;
+	private int size;
+	private int numRemoved;
+	private float[][] data;
+	private BitSet removed = new BitSet();
+	private List<PERSON> labels = new ArrayList<PERSON>();
+
+	private transient Map<PERSON, TIntArrayList> personIds = new HashMap<PERSON, TIntArrayList>();
+	private transient FloatNearestNeighboursKDTree tree;
+	private transient int[] treeIds;
+	private transient int indexedUpTo;
+	private transient int removedSinceBuild;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Construct an empty gallery with the default search parameters.
+	 */
+	public FaceGalleryIndex() {
+	}
+
+	/**
+	 * Construct an empty gallery with the given search parameters.
+	 * 
+	 * @param ntrees
+	 *            the number of trees in the ensemble
+	 * @param nchecks
+	 *            the number of checks performed during a tree search
+	 * @param rerankFactor
+	 *            the multiple of the requested number of neighbours that is
+	 *            retrieved from the trees and re-ranked exactly
+	 * @param minIndexSize
+	 *            the minimum number of vectors required before the trees are
+	 *            built
+	 */
+	public FaceGalleryIndex(int ntrees, int nchecks, int rerankFactor, int minIndexSize) {
+		this.ntrees = ntrees;
+		this.nchecks = nchecks;
+		this.rerankFactor = Math.max(1, rerankFactor);
+		this.minIndexSize = minIndexSize;
+	}
+
+	/**
+	 * Enrol a feature vector for the given person. The vector is copied into
+	 * the gallery, so can be re-used or modified afterwards.
+	 * 
+	 * @param vector
+	 *            the feature vector
+	 * @param person
+	 *            the person
+	 * @return the identifier of the enrolled vector
+	 */
+	public int add(float[] vector, PERSON person) {
+		lock.writeLock().lock();
+		try {
+			if (ndims < 0)
+				ndims = vector.length;
+			else if (vector.length != ndims)
+				throw new IllegalArgumentException("Expected a vector of length " + ndims + " but got "
+						+ vector.length);
+
+			if (data == null)
+				data = new float[INITIAL_CAPACITY][];
+			else if (size == data.length)
+				data = Arrays.copyOf(data, data.length * 2);
+
+			final int id = size++;
+			data[id] = vector.clone();
+			labels.add(person);
+			idsFor(person).add(id);
+
+			return id;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove the vector with the given identifier from the gallery.
+	 * 
+	 * @param id
+	 *            the identifier
+	 * @return true if the vector was present; false otherwise
+	 */
+	public boolean removeVector(int id) {
+		lock.writeLock().lock();
+		try {
+			if (id < 0 || id >= size || removed.get(id))
+				return false;
+
+			final TIntArrayList ids = personIds.get(labels.get(id));
+			ids.remove(id);
+			if (ids.isEmpty())
+				personIds.remove(labels.get(id));
+
+			markRemoved(id);
+
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Remove all the vectors belonging to the given person from the gallery.
+	 * 
+	 * @param person
+	 *            the person
+	 * @return the number of vectors removed
+	 */
+	public int removePerson(PERSON person) {
+		lock.writeLock().lock();
+		try {
+			final TIntArrayList ids = personIds.remove(person);
+			if (ids == null)
+				return 0;
+
+			for (int i = 0; i < ids.size(); i++)
+				markRemoved(ids.get(i));
+
+			return ids.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Mark a vector as removed. The row is released, although the trees keep
+	 * a reference to it until they are next rebuilt.
+	 */
+	private void markRemoved(int id) {
+		removed.set(id);
+		data[id] = null;
+		labels.set(id, null);
+		numRemoved++;
+
+		if (id < indexedUpTo)
+			removedSinceBuild++;
+	}
+
+	/**
+	 * Remove everything from the gallery.
+	 */
+	public void reset() {
+		lock.writeLock().lock();
+		try {
+			ndims = -1;
+			size = 0;
+			numRemoved = 0;
+			data = null;
+			removed.clear();
+			labels.clear();
+			personIds.clear();
+			invalidateTree();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void invalidateTree() {
+		tree = null;
+		treeIds = null;
+		indexedUpTo = 0;
+		removedSinceBuild = 0;
+	}
+
+	private TIntArrayList idsFor(PERSON person) {
+		TIntArrayList ids = personIds.get(person);
+		if (ids == null)
+			personIds.put(person, ids = new TIntArrayList());
+		return ids;
+	}
+
+	/**
+	 * @return the number of vectors in the gallery
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size - numRemoved;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the dimensionality of the vectors in the gallery, or -1 if
+	 *         nothing has been enrolled
+	 */
+	public int numDimensions() {
+		return ndims;
+	}
+
+	/**
+	 * @return the people with at least one vector in the gallery
+	 */
+	public Set<PERSON> getPeople() {
+		lock.readLock().lock();
+		try {
+			return Collections.unmodifiableSet(new HashSet<PERSON>(personIds.keySet()));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get the person that the vector with the given identifier belongs to.
+	 * 
+	 * @param id
+	 *            the identifier
+	 * @return the person, or null if the vector has been removed
+	 */
+	public PERSON getPerson(int id) {
+		lock.readLock().lock();
+		try {
+			return labels.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Get a copy of the vector with the given identifier.
+	 * 
+	 * @param id
+	 *            the identifier
+	 * @return the vector, or null if it has been removed
+	 */
+	public float[] getVector(int id) {
+		lock.readLock().lock();
+		try {
+			if (removed.get(id))
+				return null;
+
+			return data[id].clone();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the (approximate) k-nearest neighbours of the query vector. The
+	 * returned pairs contain the identifier of each neighbour and its exact
+	 * Euclidean distance to the query, and are sorted by increasing distance.
+	 * 
+	 * @param query
+	 *            the query vector
+	 * @param k
+	 *            the number of neighbours
+	 * @return the neighbours
+	 */
+	public List<IntFloatPair> search(float[] query, int k) {
+		return search(query, k, null);
+	}
+
+	/**
+	 * Find the (approximate) k-nearest neighbours of the query vector,
+	 * optionally only considering the vectors of a given set of people. The
+	 * returned pairs contain the identifier of each neighbour and its exact
+	 * Euclidean distance to the query, and are sorted by increasing distance.
+	 * 
+	 * @param query
+	 *            the query vector
+	 * @param k
+	 *            the number of neighbours
+	 * @param restrict
+	 *            the people to consider; if null all people are considered
+	 * @return the neighbours
+	 */
+	public List<IntFloatPair> search(float[] query, int k, Collection<PERSON> restrict) {
+		if (restrict == null && treeNeedsUpdate()) {
+			lock.writeLock().lock();
+			try {
+				if (treeNeedsUpdate())
+					updateTree();
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		lock.readLock().lock();
+		try {
+			final TIntArrayList candidates = new TIntArrayList();
+
+			if (restrict != null) {
+				for (final PERSON p : restrict) {
+					final TIntArrayList ids = personIds.get(p);
+					if (ids != null)
+						candidates.addAll(ids);
+				}
+			} else {
+				if (tree != null) {
+					final int nfetch = Math.min(k * rerankFactor, treeIds.length);
+					for (final IntFloatPair p : tree.searchKNN(query, nfetch)) {
+						if (p != null)
+							candidates.add(treeIds[p.first]);
+					}
+				}
+
+				for (int i = indexedUpTo; i < size; i++)
+					candidates.add(i);
+			}
+
+			return rerank(query, k, candidates);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private List<IntFloatPair> rerank(float[] query, int k, TIntArrayList candidates) {
+		final List<IntFloatPair> results = new ArrayList<IntFloatPair>(candidates.size());
+
+		for (int i = 0; i < candidates.size(); i++) {
+			final int id = candidates.get(i);
+			if (removed.get(id))
+				continue;
+
+			results.add(new IntFloatPair(id, (float) Math.sqrt(distanceSq(query, data[id]))));
+		}
+
+		Collections.sort(results, new Comparator<IntFloatPair>() {
+			@Override
+			public int compare(IntFloatPair o1, IntFloatPair o2) {
+				return Float.compare(o1.second, o2.second);
+			}
+		});
+
+		if (results.size() > k)
+			return new ArrayList<IntFloatPair>(results.subList(0, k));
+		return results;
+	}
+
+	private static double distanceSq(float[] a, float[] b) {
+		double sum = 0;
+		for (int i = 0; i < a.length; i++) {
+			final double diff = a[i] - b[i];
+			sum += diff * diff;
+		}
+		return sum;
+	}
+
+	/**
+	 * Test whether the trees need to be built, rebuilt or dropped: they are
+	 * needed once the gallery is large enough, and are rebuilt when the
+	 * unindexed tail or number of removals has grown too large.
+	 */
+	private boolean treeNeedsUpdate() {
+		lock.readLock().lock();
+		try {
+			if (size - numRemoved < minIndexSize)
+				return tree != null;
+
+			final int threshold = (int) (REBUILD_FRACTION * indexedUpTo);
+			return tree == null || size - indexedUpTo > threshold || removedSinceBuild > threshold;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * (Re)build or drop the trees. The trees index the live rows of the
+	 * gallery directly; only the array of row references is allocated. Must
+	 * be called with the write lock held.
+	 */
+	private void updateTree() {
+		final int live = size - numRemoved;
+
+		if (live < minIndexSize) {
+			invalidateTree();
+			return;
+		}
+
+		final float[][] pnts = new float[live][];
+		treeIds = new int[live];
+		for (int i = 0, j = 0; i < size; i++) {
+			if (!removed.get(i)) {
+				pnts[j] = data[i];
+				treeIds[j++] = i;
+			}
+		}
+
+		tree = new FloatNearestNeighboursKDTree(pnts, ntrees, nchecks);
+		indexedUpTo = size;
+		removedSinceBuild = 0;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		lock.writeLock().lock();
+		try {
+			ntrees = in.readInt();
+			nchecks = in.readInt();
+			rerankFactor = in.readInt();
+			minIndexSize = in.readInt();
+
+			ndims = in.readInt();
+			size = in.readInt();
+			numRemoved = 0;
+			removed.clear();
+			data = ndims < 0 ? null : new float[Math.max(INITIAL_CAPACITY, size)][];
+
+			for (int i = 0; i < size; i++) {
+				if (!in.readBoolean()) {
+					removed.set(i);
+					numRemoved++;
+					continue;
+				}
+
+				data[i] = new float[ndims];
+				for (int j = 0; j < ndims; j++)
+					data[i][j] = in.readFloat();
+			}
+
+			labels = IOUtils.read(in);
+
+			// the mapping from people to vectors is rebuilt from the labels
+			personIds.clear();
+			for (int i = 0; i < size; i++) {
+				if (!removed.get(i))
+					idsFor(labels.get(i)).add(i);
+			}
+
+			invalidateTree();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return "FGIdx".getBytes();
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		lock.readLock().lock();
+		try {
+			out.writeInt(ntrees);
+			out.writeInt(nchecks);
+			out.writeInt(rerankFactor);
+			out.writeInt(minIndexSize);
+
+			out.writeInt(ndims);
+			out.writeInt(size);
+
+			for (int i = 0; i < size; i++) {
+				out.writeBoolean(!removed.get(i));
+
+				if (!removed.get(i)) {
+					for (int j = 0; j < ndims; j++)
+						out.writeFloat(data[i][j]);
+				}
+			}
+
+			IOUtils.write(labels, out);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+}
@@ -33,7 +33,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListDataset;
 import org.openimaj.image.processing.face.detection.DetectedFace;
 import org.openimaj.io.ReadWriteableBinary;
 import org.openimaj.ml.annotation.IncrementalAnnotator;
@@ -60,6 +63,21 @@ public abstract class FaceRecogniser<FACE extends DetectedFace, PERSON>
 	protected FaceRecogniser() {
 	}
 
+	/**
+	 * Train the recogniser with the given dataset, using the given thread pool
+	 * for any work that can be performed in parallel. By default this just
+	 * calls {@link #train(GroupedDataset)}; recognisers that can make use of
+	 * multiple threads should override this method.
+	 * 
+	 * @param dataset
+	 *            the dataset to train on
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void train(GroupedDataset<PERSON, ? extends ListDataset<FACE>, FACE> dataset, ThreadPoolExecutor pool) {
+		train(dataset);
+	}
+
 	/**
 	 * Attempt to recognize the given face, restricting the potential people to
 	 * coming from the given set.
@@ -36,6 +36,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.log4j.Logger;
 import org.openimaj.data.dataset.GroupedDataset;
@@ -176,6 +177,24 @@ public class FaceRecognitionEngine<FACE extends DetectedFace, PERSON>
 		this.recogniser.train(faceDataset);
 	}
 
+	/**
+	 * Train with a dataset, using the given thread pool to perform the face
+	 * detection in parallel (see
+	 * {@link DatasetFaceDetector#process(GroupedDataset, FaceDetector, ThreadPoolExecutor)}
+	 * ) and to train the recogniser (see
+	 * {@link FaceRecogniser#train(GroupedDataset, ThreadPoolExecutor)}).
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void train(final GroupedDataset<PERSON, ListDataset<FImage>, FImage> dataset, ThreadPoolExecutor pool) {
+		final GroupedDataset<PERSON, ListDataset<FACE>, FACE> faceDataset = DatasetFaceDetector
+				.process(dataset, this.detector, pool);
+		this.recogniser.train(faceDataset, pool);
+	}
+
 	/**
 	 * Train the recogniser with a single example, returning the detected face.
 	 * If multiple faces are found, the biggest is chosen.
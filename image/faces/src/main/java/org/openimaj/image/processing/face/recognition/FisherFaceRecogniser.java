@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.processing.face.recognition;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.data.dataset.GroupedDataset;
 import org.openimaj.data.dataset.ListDataset;
 import org.openimaj.feature.DoubleFV;
@@ -158,6 +160,12 @@ public class FisherFaceRecogniser<FACE extends DetectedFace, PERSON>
 		extractor.train(dataset);
 	}
 
+	@Override
+	protected void beforeBatchTrain(GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset, ThreadPoolExecutor pool)
+	{
+		extractor.train(dataset, pool);
+	}
+
 	@Override
 	public String toString() {
 		return String.format("FisherFaceRecogniser[extractor=%s; recogniser=%s]",
@@ -35,6 +35,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.data.dataset.GroupedDataset;
 import org.openimaj.data.dataset.ListDataset;
@@ -113,6 +114,24 @@ abstract class LazyFaceRecogniser<FACE extends DetectedFace, PERSON, EXTRACTOR e
 		isInvalid = true;
 	}
 
+	/**
+	 * Add all the faces in the dataset to the cache and then immediately
+	 * retrain, using the given thread pool to train the feature extractor and
+	 * the internal recogniser.
+	 */
+	@Override
+	public void train(GroupedDataset<PERSON, ? extends ListDataset<FACE>, FACE> dataset, ThreadPoolExecutor pool) {
+		for (final PERSON person : dataset.getGroups()) {
+			for (final FACE face : dataset.getInstances(person)) {
+				if (face != null)
+					faceCache.add(person, face);
+			}
+		}
+
+		isInvalid = true;
+		retrain(pool);
+	}
+
 	@Override
 	public void reset() {
 		internalRecogniser.reset();
@@ -133,6 +152,21 @@ abstract class LazyFaceRecogniser<FACE extends DetectedFace, PERSON, EXTRACTOR e
 	 */
 	protected abstract void beforeBatchTrain(GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset);
 
+	/**
+	 * Called before batch training/re-training takes place when a thread pool
+	 * is available. By default this just calls
+	 * {@link #beforeBatchTrain(GroupedDataset)}.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param pool
+	 *            the thread pool
+	 */
+	protected void beforeBatchTrain(GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset, ThreadPoolExecutor pool)
+	{
+		beforeBatchTrain(dataset);
+	}
+
 	private void retrain() {
 		if (isInvalid) {
 			final GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset = faceCache.getDataset();
@@ -142,6 +176,15 @@ abstract class LazyFaceRecogniser<FACE extends DetectedFace, PERSON, EXTRACTOR e
 		}
 	}
 
+	private void retrain(ThreadPoolExecutor pool) {
+		if (isInvalid) {
+			final GroupedDataset<PERSON, ListDataset<FACE>, FACE> dataset = faceCache.getDataset();
+			beforeBatchTrain(dataset, pool);
+			internalRecogniser.train(dataset, pool);
+			isInvalid = false;
+		}
+	}
+
 	@Override
 	public List<ScoredAnnotation<PERSON>> annotate(FACE object, Collection<PERSON> restrict) {
 		retrain();
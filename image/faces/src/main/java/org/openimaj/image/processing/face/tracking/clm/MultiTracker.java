@@ -39,12 +39,21 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.algorithm.FourierTemplateMatcher;
 import org.openimaj.image.processing.face.detection.DetectedFace;
 import org.openimaj.image.processing.resize.ResizeProcessor;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+import org.openimaj.util.parallel.Parallel;
 
 import Jama.Matrix;
 
@@ -59,6 +68,14 @@ import com.jsaragih.MFCheck;
  * {@link TrackerVars} object which can be used to construct the Tracker.
  * <p>
  * <code><pre>MultiTracker t = new MultiTracker( MultiTracker.load( new File("face.tracker.file") ) );</pre></code>
+ * <p>
+ * By default all the faces are tracked sequentially in the calling thread.
+ * If a thread pool is set with {@link #setThreadPool(ThreadPoolExecutor)} the
+ * template matching and model fitting of the faces are performed in parallel,
+ * and if {@link #setAsynchronousDetection(boolean)} is enabled the periodic
+ * redetection of faces runs in the background, with any newly detected faces
+ * being added on a later frame. The time taken by each stage can be monitored
+ * with a {@link TrackingInstrumentation}.
  *
  * @author David Dupplaw (dpd@ecs.soton.ac.uk)
  */
@@ -149,6 +166,52 @@ public class MultiTracker {
 		double[] similarity;
 	}
 
+	/**
+	 * The stages of tracking that are reported to a
+	 * {@link TrackingInstrumentation}
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static enum Stage {
+		/** Detection of faces with the face detector */
+		DETECTION,
+		/** Template matching of the tracked faces in the reduced-size frame */
+		TEMPLATE_TRACKING,
+		/** Fitting the models, checking for failure and updating templates */
+		MODEL_FITTING
+	}
+
+	/**
+	 * Callback for receiving the time spent in each {@link Stage} of tracking.
+	 * Note that if asynchronous detection is enabled the {@link Stage#DETECTION}
+	 * timings are reported from the background detection thread.
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static interface TrackingInstrumentation {
+		/**
+		 * Called when a stage of tracking a frame completes
+		 *
+		 * @param stage
+		 *            the stage
+		 * @param nanos
+		 *            the elapsed time in nanoseconds
+		 * @param numFaces
+		 *            the number of faces processed by the stage
+		 */
+		public void stageCompleted(Stage stage, long nanos, int numFaces);
+	}
+
+	/** The outcome of fitting the model of a single face */
+	private static enum FitResult {
+		/** The face was tracked */
+		TRACKED,
+		/** The face failed the failure check */
+		FAILED,
+		/** The face was lost; a new detection is required */
+		LOST
+	}
+
 	/** Scaling of template for template matching */
 	private static final double TSCALE = 0.3;
 
@@ -166,6 +229,32 @@ public class MultiTracker {
 
 	private FImage small_;
 
+	/** The frame from which {@link #small_} was created */
+	private FImage smallSource;
+
+	/** The pool for tracking faces in parallel; null for sequential */
+	private ThreadPoolExecutor pool;
+
+	/** Whether the periodic redetection is run in the background */
+	private boolean asynchronousDetection;
+
+	/** The executor used for background detection */
+	private ExecutorService detectionExecutor;
+
+	/** The background detection in progress */
+	private Future<List<Rectangle>> pendingDetection;
+
+	/** The callback for timings */
+	private TrackingInstrumentation instrumentation;
+
+	/** The per-thread failure checkers */
+	private ThreadLocal<MFCheck> failureChecks = new ThreadLocal<MFCheck>() {
+		@Override
+		protected MFCheck initialValue() {
+			return MultiTracker.this.initialTracker.failureCheck.copy();
+		}
+	};
+
 	/**
 	 * Create a tracker using the given model, face detector, failure checker,
 	 * reference shape and similarity measures. These values will be copied into
@@ -213,12 +302,72 @@ public class MultiTracker {
 	protected MultiTracker() {
 	}
 
+	/**
+	 * Set the thread pool used to track the faces in parallel. Each face is
+	 * template matched and has its model fitted independently, so a pool
+	 * gives a speedup when tracking several faces. If the pool is null (the
+	 * default) all faces are processed in the calling thread.
+	 *
+	 * @param pool
+	 *            the thread pool; can be null
+	 */
+	public void setThreadPool(final ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Set whether the periodic redetection of faces (controlled by the
+	 * frames-per-detection argument of
+	 * {@link #track(FImage, int[], int, int, double, double, boolean, float)}
+	 * ) is performed on a background thread whilst the existing faces continue
+	 * to be tracked. Faces found by a background detection are added on the
+	 * first frame after the detection completes. Detection is always
+	 * synchronous when no faces are being tracked.
+	 *
+	 * @param asynchronousDetection
+	 *            true to detect in the background
+	 */
+	public void setAsynchronousDetection(final boolean asynchronousDetection) {
+		this.asynchronousDetection = asynchronousDetection;
+	}
+
+	/**
+	 * Set the callback that is informed of the time taken by each stage of
+	 * tracking.
+	 *
+	 * @param instrumentation
+	 *            the callback; can be null
+	 */
+	public void setInstrumentation(final TrackingInstrumentation instrumentation) {
+		this.instrumentation = instrumentation;
+	}
+
 	/**
 	 * Reset frame number (will perform detection in next image)
 	 */
 	public void frameReset() {
 		this.framesSinceLastDetection = -1;
 		this.trackedFaces.clear();
+
+		if (this.pendingDetection != null) {
+			this.pendingDetection.cancel(true);
+			this.pendingDetection = null;
+		}
+	}
+
+	/**
+	 * Reset the tracker and stop the background thread used for asynchronous
+	 * detection (see {@link #setAsynchronousDetection(boolean)}). The tracker
+	 * can still be used afterwards; a new background thread will be started
+	 * if it is needed.
+	 */
+	public void close() {
+		this.frameReset();
+
+		if (this.detectionExecutor != null) {
+			this.detectionExecutor.shutdownNow();
+			this.detectionExecutor = null;
+		}
 	}
 
 	/**
@@ -248,35 +397,33 @@ public class MultiTracker {
 	{
 		this.currentFrame = im;
 
+		// callers often reuse the same image for every frame, so the
+		// reduced-size frame must always be recreated
+		this.small_ = null;
+		this.smallSource = null;
+
 		if ((this.framesSinceLastDetection < 0)
 				|| (fpd >= 0 && fpd < this.framesSinceLastDetection))
 		{
 			this.framesSinceLastDetection = 0;
-			final List<Rectangle> RL = this.initialTracker.faceDetector
-					.detect(this.currentFrame);
-
-			// Convert the detected rectangles into face trackers
-			// trackedFaces.clear();
-			// for (final Rectangle r : RL)
-			// trackedFaces.add(new TrackedFace(r, initialTracker));
-			if (this.trackedFaces.size() == 0) {
-				for (final Rectangle r : RL)
-					this.trackedFaces.add(new TrackedFace(r, this.initialTracker));
-			} else {
-				this.trackRedetect(this.currentFrame, searchAreaSize);
 
-				final int sz = this.trackedFaces.size();
-				for (final Rectangle r : RL) {
-					boolean found = false;
-					for (int i = 0; i < sz; i++) {
-						if (r.percentageOverlap(this.trackedFaces.get(i).redetectedBounds) > 0.5) {
-							found = true;
-							break;
-						}
-					}
-
-					if (!found)
+			if (this.asynchronousDetection && this.trackedFaces.size() > 0) {
+				// Keep tracking the existing faces whilst detecting new ones
+				this.startDetection(this.currentFrame);
+				this.trackRedetect(this.currentFrame, searchAreaSize);
+			} else {
+				final List<Rectangle> RL = this.detect(this.currentFrame);
+
+				// Convert the detected rectangles into face trackers
+				// trackedFaces.clear();
+				// for (final Rectangle r : RL)
+				// trackedFaces.add(new TrackedFace(r, initialTracker));
+				if (this.trackedFaces.size() == 0) {
+					for (final Rectangle r : RL)
 						this.trackedFaces.add(new TrackedFace(r, this.initialTracker));
+				} else {
+					this.trackRedetect(this.currentFrame, searchAreaSize);
+					this.addDetections(RL);
 				}
 			}
 		} else {
@@ -284,63 +431,49 @@ public class MultiTracker {
 			this.trackRedetect(this.currentFrame, searchAreaSize);
 		}
 
+		// Add any faces found by a completed background detection
+		this.mergePendingDetection();
+
 		// Didn't find any faces in this frame? Try again next frame.
 		if (this.trackedFaces.size() == 0)
 			return -1;
 
-		boolean resize = true;
-
-		for (final Iterator<TrackedFace> iterator = this.trackedFaces.iterator(); iterator.hasNext();) {
-			final TrackedFace f = iterator.next();
-
-			if ((f.redetectedBounds.width == 0)
-					|| (f.redetectedBounds.height == 0))
-			{
-				iterator.remove();
-				this.framesSinceLastDetection = -1;
-				continue;
-				// return -1;
-			}
-
-			if (f.gen) {
-				this.initShape(f.redetectedBounds, f.shape, f.referenceShape);
-				f.clm._pdm.calcParams(f.shape, f.clm._plocal, f.clm._pglobl);
-			} else {
-				final double tx = f.redetectedBounds.x - f.lastMatchBounds.x;
-				final double ty = f.redetectedBounds.y - f.lastMatchBounds.y;
+		final long t0 = System.nanoTime();
 
-				f.clm._pglobl.getArray()[4][0] += tx;
-				f.clm._pglobl.getArray()[5][0] += ty;
+		// The templates of all faces are extracted from the reduced-size frame
+		this.resampleSmall(this.currentFrame);
 
-				resize = false;
-			}
+		final int nFaces = this.trackedFaces.size();
+		final FitResult[] results = new FitResult[nFaces];
+		if (this.pool == null) {
+			final MFCheck failureCheck = fcheck ? this.initialTracker.failureCheck : null;
 
-			f.clm.fit(this.currentFrame, wSize, nIter, clamp, fTol);
-			f.clm._pdm.calcShape2D(f.shape, f.clm._plocal, f.clm._pglobl);
+			for (int i = 0; i < nFaces; i++)
+				results[i] = this.fit(this.trackedFaces.get(i), wSize, nIter, clamp, fTol, failureCheck);
+		} else {
+			Parallel.forIndex(0, nFaces, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					final MFCheck failureCheck = fcheck ? MultiTracker.this.failureChecks.get() : null;
 
-			if (fcheck) {
-				if (!this.initialTracker.failureCheck.check(f.clm.getViewIdx(),
-						this.currentFrame, f.shape))
-				{
-					iterator.remove();
-					continue;
-					// return -1;
+					results[i] = MultiTracker.this.fit(MultiTracker.this.trackedFaces.get(i), wSize, nIter, clamp,
+							fTol, failureCheck);
 				}
-			}
+			}, this.pool);
+		}
 
-			f.lastMatchBounds = this.updateTemplate(f, this.currentFrame, f.shape,
-					resize);
+		int i = 0;
+		for (final Iterator<TrackedFace> iterator = this.trackedFaces.iterator(); iterator.hasNext(); i++) {
+			iterator.next();
 
-			if ((f.lastMatchBounds.width == 0)
-					|| (f.lastMatchBounds.height == 0))
-			{
+			if (results[i] != FitResult.TRACKED)
 				iterator.remove();
+			if (results[i] == FitResult.LOST)
 				this.framesSinceLastDetection = -1;
-				continue;
-				// return -1;
-			}
 		}
 
+		this.report(Stage.MODEL_FITTING, t0, nFaces);
+
 		// Didn't find any faces in this frame? Try again next frame.
 		if (this.trackedFaces.size() == 0)
 			return -1;
@@ -350,6 +483,180 @@ public class MultiTracker {
 		return 0;
 	}
 
+	/**
+	 * Fit the model of a single face to the current frame and update its
+	 * template.
+	 *
+	 * @param f
+	 *            the face
+	 * @param wSize
+	 *            The window size
+	 * @param nIter
+	 *            The number of iterations for model fitting
+	 * @param clamp
+	 *            The number s.d.'s in which a model must fit
+	 * @param fTol
+	 *            The tolerance for model fitting
+	 * @param failureCheck
+	 *            the failure checker, or null if failures should not be
+	 *            checked
+	 * @return the result of the fitting
+	 */
+	private FitResult fit(final TrackedFace f, final int[] wSize, final int nIter, final double clamp,
+			final double fTol, final MFCheck failureCheck)
+	{
+		if ((f.redetectedBounds.width == 0)
+				|| (f.redetectedBounds.height == 0))
+		{
+			return FitResult.LOST;
+		}
+
+		if (f.gen) {
+			this.initShape(f.redetectedBounds, f.shape, f.referenceShape);
+			f.clm._pdm.calcParams(f.shape, f.clm._plocal, f.clm._pglobl);
+		} else {
+			final double tx = f.redetectedBounds.x - f.lastMatchBounds.x;
+			final double ty = f.redetectedBounds.y - f.lastMatchBounds.y;
+
+			f.clm._pglobl.getArray()[4][0] += tx;
+			f.clm._pglobl.getArray()[5][0] += ty;
+		}
+
+		f.clm.fit(this.currentFrame, wSize, nIter, clamp, fTol);
+		f.clm._pdm.calcShape2D(f.shape, f.clm._plocal, f.clm._pglobl);
+
+		if (failureCheck != null) {
+			if (!failureCheck.check(f.clm.getViewIdx(), this.currentFrame, f.shape))
+				return FitResult.FAILED;
+		}
+
+		f.lastMatchBounds = this.updateTemplate(f, this.currentFrame, f.shape, true);
+
+		if ((f.lastMatchBounds.width == 0)
+				|| (f.lastMatchBounds.height == 0))
+		{
+			return FitResult.LOST;
+		}
+
+		return FitResult.TRACKED;
+	}
+
+	/**
+	 * Detect faces in the given frame, waiting for any background detection to
+	 * finish first (its result is discarded).
+	 *
+	 * @param im
+	 *            the frame
+	 * @return the detected face rectangles
+	 */
+	private List<Rectangle> detect(final FImage im) {
+		if (this.pendingDetection != null) {
+			this.awaitDetection(this.pendingDetection);
+			this.pendingDetection = null;
+		}
+
+		final long t0 = System.nanoTime();
+		final List<Rectangle> RL = this.initialTracker.faceDetector.detect(im);
+		this.report(Stage.DETECTION, t0, RL.size());
+
+		return RL;
+	}
+
+	/**
+	 * Start detecting faces in the given frame on the background thread,
+	 * unless a detection is already in progress.
+	 *
+	 * @param im
+	 *            the frame
+	 */
+	private void startDetection(final FImage im) {
+		if (this.pendingDetection != null)
+			return;
+
+		if (this.detectionExecutor == null)
+			this.detectionExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory());
+
+		// the caller is free to reuse the frame once tracking returns
+		final FImage frame = im.clone();
+		this.pendingDetection = this.detectionExecutor.submit(new Callable<List<Rectangle>>() {
+			@Override
+			public List<Rectangle> call() throws Exception {
+				final long t0 = System.nanoTime();
+				final List<Rectangle> RL = MultiTracker.this.initialTracker.faceDetector.detect(frame);
+				MultiTracker.this.report(Stage.DETECTION, t0, RL.size());
+				return RL;
+			}
+		});
+	}
+
+	/**
+	 * If a background detection has completed, add any newly found faces to
+	 * the tracked faces.
+	 */
+	private void mergePendingDetection() {
+		if (this.pendingDetection == null || !this.pendingDetection.isDone())
+			return;
+
+		final List<Rectangle> RL = this.awaitDetection(this.pendingDetection);
+		this.pendingDetection = null;
+
+		this.addDetections(RL);
+	}
+
+	private List<Rectangle> awaitDetection(final Future<List<Rectangle>> detection) {
+		try {
+			return detection.get();
+		} catch (final InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Start tracking any of the detected rectangles that do not overlap a face
+	 * that is already being tracked.
+	 *
+	 * @param RL
+	 *            the detected rectangles
+	 */
+	private void addDetections(final List<Rectangle> RL) {
+		final int sz = this.trackedFaces.size();
+		for (final Rectangle r : RL) {
+			boolean found = false;
+			for (int i = 0; i < sz; i++) {
+				if (r.percentageOverlap(this.trackedFaces.get(i).redetectedBounds) > 0.5) {
+					found = true;
+					break;
+				}
+			}
+
+			if (!found)
+				this.trackedFaces.add(new TrackedFace(r, this.initialTracker));
+		}
+	}
+
+	private void report(final Stage stage, final long t0, final int numFaces) {
+		if (this.instrumentation != null)
+			this.instrumentation.stageCompleted(stage, System.nanoTime() - t0, numFaces);
+	}
+
+	/**
+	 * Create the reduced-size version of the given frame for template
+	 * matching, if it hasn't already been created during the current call to
+	 * {@link #track(FImage, int[], int, int, double, double, boolean, float)}.
+	 *
+	 * @param im
+	 *            the frame
+	 */
+	private void resampleSmall(final FImage im) {
+		if (this.smallSource != im) {
+			this.small_ = ResizeProcessor.resample(im, (int) (MultiTracker.TSCALE * im.width),
+					(int) (MultiTracker.TSCALE * im.height));
+			this.smallSource = im;
+		}
+	}
+
 	/**
 	 * Initialise the shape within the given rectangle based on the given
 	 * reference shape.
@@ -397,62 +704,82 @@ public class MultiTracker {
 	 *            The search area size
 	 */
 	private void trackRedetect(final FImage im, final float searchAreaSize) {
-		final int ww = im.width;
-		final int hh = im.height;
+		final long t0 = System.nanoTime();
 
 		// Resize the frame so processing is quicker.
-		this.small_ = ResizeProcessor.resample(im, (int) (MultiTracker.TSCALE * ww),
-				(int) (MultiTracker.TSCALE * hh));
-
-		for (final TrackedFace f : this.trackedFaces) {
-			f.gen = false;
-
-			// Get the new search area nearby to the last match
-			Rectangle searchAreaBounds = f.lastMatchBounds.clone();
-			searchAreaBounds.scale((float) MultiTracker.TSCALE);
-			searchAreaBounds.scaleCentroid(searchAreaSize);
-
-			if (searchAreaBounds.overlapping(this.small_.getBounds()) != null)
-				searchAreaBounds = searchAreaBounds.overlapping(this.small_.getBounds());
-			else
-				searchAreaBounds = this.small_.getBounds();
-
-			// Get the search image
-			final FImage searchArea = this.small_.extractROI(searchAreaBounds);
-
-			// Template match the template over the reduced size image.
-			final FourierTemplateMatcher matcher = new FourierTemplateMatcher(
-					f.templateImage,
-					FourierTemplateMatcher.Mode.NORM_CORRELATION_COEFFICIENT);
-			matcher.analyseImage(searchArea);
-
-			// Get the response map
-			final float[][] ncc_ = matcher.getResponseMap().pixels;
-
-			// DisplayUtilities.displayName( matcher.getResponseMap(),
-			// "responseMap" );
-			// DisplayUtilities.displayName( f.templateImage, "template" );
-
-			f.redetectedBounds = f.templateImage.getBounds();
-
-			// Find the maximum template match in the image
-			final int h = searchArea.height - f.templateImage.height + 1;
-			final int w = searchArea.width - f.templateImage.width + 1;
-			float vb = -2;
-			for (int y = 0; y < h; y++) {
-				for (int x = 0; x < w; x++) {
-					final float v = ncc_[y][x];
-					if (v > vb) {
-						vb = v;
-						f.redetectedBounds.x = x + searchAreaBounds.x;
-						f.redetectedBounds.y = y + searchAreaBounds.y;
-					}
+		this.resampleSmall(im);
+
+		if (this.pool == null) {
+			for (final TrackedFace f : this.trackedFaces)
+				this.trackRedetect(f, searchAreaSize);
+		} else {
+			Parallel.forEach(this.trackedFaces, new Operation<TrackedFace>() {
+				@Override
+				public void perform(TrackedFace f) {
+					MultiTracker.this.trackRedetect(f, searchAreaSize);
 				}
-			}
+			}, this.pool);
+		}
+
+		this.report(Stage.TEMPLATE_TRACKING, t0, this.trackedFaces.size());
+	}
 
-			// Rescale the rectangle to full-size image coordinates.
-			f.redetectedBounds.scale((float) (1d / MultiTracker.TSCALE));
+	/**
+	 * Redetect a single face in the reduced-size frame by template matching.
+	 *
+	 * @param f
+	 *            The face
+	 * @param searchAreaSize
+	 *            The search area size
+	 */
+	private void trackRedetect(final TrackedFace f, final float searchAreaSize) {
+		f.gen = false;
+
+		// Get the new search area nearby to the last match
+		Rectangle searchAreaBounds = f.lastMatchBounds.clone();
+		searchAreaBounds.scale((float) MultiTracker.TSCALE);
+		searchAreaBounds.scaleCentroid(searchAreaSize);
+
+		if (searchAreaBounds.overlapping(this.small_.getBounds()) != null)
+			searchAreaBounds = searchAreaBounds.overlapping(this.small_.getBounds());
+		else
+			searchAreaBounds = this.small_.getBounds();
+
+		// Get the search image
+		final FImage searchArea = this.small_.extractROI(searchAreaBounds);
+
+		// Template match the template over the reduced size image.
+		final FourierTemplateMatcher matcher = new FourierTemplateMatcher(
+				f.templateImage,
+				FourierTemplateMatcher.Mode.NORM_CORRELATION_COEFFICIENT);
+		matcher.analyseImage(searchArea);
+
+		// Get the response map
+		final float[][] ncc_ = matcher.getResponseMap().pixels;
+
+		// DisplayUtilities.displayName( matcher.getResponseMap(),
+		// "responseMap" );
+		// DisplayUtilities.displayName( f.templateImage, "template" );
+
+		f.redetectedBounds = f.templateImage.getBounds();
+
+		// Find the maximum template match in the image
+		final int h = searchArea.height - f.templateImage.height + 1;
+		final int w = searchArea.width - f.templateImage.width + 1;
+		float vb = -2;
+		for (int y = 0; y < h; y++) {
+			for (int x = 0; x < w; x++) {
+				final float v = ncc_[y][x];
+				if (v > vb) {
+					vb = v;
+					f.redetectedBounds.x = x + searchAreaBounds.x;
+					f.redetectedBounds.y = y + searchAreaBounds.y;
+				}
+			}
 		}
+
+		// Rescale the rectangle to full-size image coordinates.
+		f.redetectedBounds.scale((float) (1d / MultiTracker.TSCALE));
 	}
 
 	protected Rectangle updateTemplate(final TrackedFace f, final FImage im, final Matrix s,
@@ -492,12 +819,8 @@ public class MultiTracker {
 					(float) Math.floor(ymin), (float) Math.ceil(xmax - xmin),
 					(float) Math.ceil(ymax - ymin));
 
-			final int ww = im.width;
-			final int hh = im.height;
-
 			if (resize)
-				this.small_ = ResizeProcessor.resample(im, (int) (MultiTracker.TSCALE * ww),
-						(int) (MultiTracker.TSCALE * hh));
+				this.resampleSmall(im);
 
 			f.templateImage = this.small_.extractROI(R);
 
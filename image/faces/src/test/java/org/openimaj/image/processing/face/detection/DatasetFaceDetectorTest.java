@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.detection;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openimaj.data.dataset.GroupedDataset;
+import org.openimaj.data.dataset.ListBackedDataset;
+import org.openimaj.data.dataset.ListDataset;
+import org.openimaj.data.dataset.MapBackedDataset;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.processing.resize.ResizeProcessor;
+import org.openimaj.util.parallel.GlobalExecutorPool.DaemonThreadFactory;
+
+/**
+ * Tests for {@link DatasetFaceDetector}
+ * 
+ * @author agent (agent@local)
+ */
+public class DatasetFaceDetectorTest {
+	private static FImage face;
+
+	/**
+	 * Load the test image
+	 * 
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void setup() throws IOException {
+		face = ImageUtilities.readF(DatasetFaceDetectorTest.class
+				.getResourceAsStream("/org/openimaj/image/data/sinaface.jpg"));
+	}
+
+	private static ListBackedDataset<FImage> list(FImage... images) {
+		final ListBackedDataset<FImage> list = new ListBackedDataset<FImage>();
+		for (final FImage image : images)
+			list.add(image);
+		return list;
+	}
+
+	/**
+	 * Test that detecting in parallel gives the same faces, in the same order,
+	 * as detecting sequentially; this includes images without faces, images
+	 * with several faces and an empty group.
+	 */
+	@Test
+	public void testParallel() {
+		final FImage twoFaces = new FImage(face.width * 2, face.height);
+		twoFaces.drawImage(face, 0, 0);
+		twoFaces.drawImage(ResizeProcessor.halfSize(face), face.width, face.height / 4);
+
+		final MapBackedDataset<String, ListDataset<FImage>, FImage> dataset =
+				new MapBackedDataset<String, ListDataset<FImage>, FImage>();
+		dataset.getMap().put("a", list(face, new FImage(100, 100), ResizeProcessor.halfSize(face)));
+		dataset.getMap().put("empty", list());
+		dataset.getMap().put("b", list(twoFaces, face.clone().flipX(), new FImage(50, 50)));
+		dataset.getMap().put("c", list(face.clone().inverse(), face));
+
+		final HaarCascadeDetector detector = new HaarCascadeDetector(20);
+		final GroupedDataset<String, ListDataset<DetectedFace>, DetectedFace> expected =
+				DatasetFaceDetector.process(dataset, detector);
+
+		final ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(3,
+				new DaemonThreadFactory());
+		try {
+			final GroupedDataset<String, ListDataset<DetectedFace>, DetectedFace> actual =
+					DatasetFaceDetector.process(dataset, detector, pool);
+
+			assertEquals(expected.getGroups(), actual.getGroups());
+			assertEquals(2, expected.getInstances("a").size());
+			assertEquals(0, expected.getInstances("empty").size());
+
+			for (final String group : expected.getGroups()) {
+				final ListDataset<DetectedFace> e = expected.getInstances(group);
+				final ListDataset<DetectedFace> a = actual.getInstances(group);
+
+				assertEquals(e.size(), a.size());
+				for (int i = 0; i < e.size(); i++) {
+					assertEquals(e.getInstance(i).getBounds(), a.getInstance(i).getBounds());
+					assertEquals(e.getInstance(i).getConfidence(), a.getInstance(i).getConfidence(), 0);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
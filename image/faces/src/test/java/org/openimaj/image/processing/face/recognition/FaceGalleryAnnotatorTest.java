@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.feature.FeatureExtractor;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.image.FImage;
+import org.openimaj.image.processing.face.detection.DetectedFace;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.ml.annotation.AnnotatedObject;
+import org.openimaj.ml.annotation.ScoredAnnotation;
+
+/**
+ * Tests for {@link FaceGalleryAnnotator}
+ * 
+ * @author agent (agent@local)
+ */
+public class FaceGalleryAnnotatorTest {
+	private static final int NDIMS = 8;
+
+	/**
+	 * Extractor that uses the first row of the face patch as the feature, and
+	 * (like many extractors) re-uses a single feature vector
+	 */
+	private static class RowExtractor implements FeatureExtractor<FloatFV, DetectedFace> {
+		final FloatFV fv = new FloatFV(NDIMS);
+
+		@Override
+		public FloatFV extractFeature(DetectedFace face) {
+			System.arraycopy(face.getFacePatch().pixels[0], 0, fv.values, 0, NDIMS);
+			return fv;
+		}
+	}
+
+	private static DetectedFace makeFace(Random rng, float[] centre, float noise) {
+		final FImage patch = new FImage(NDIMS, 1);
+		for (int i = 0; i < NDIMS; i++)
+			patch.pixels[0][i] = centre[i] + noise * (float) rng.nextGaussian();
+
+		return new DetectedFace(new Rectangle(0, 0, NDIMS, 1), patch, 1);
+	}
+
+	/**
+	 * Test that faces are annotated with the person whose enrolled faces are
+	 * closest, that the annotations can be restricted, and that people can be
+	 * removed
+	 */
+	@Test
+	public void testAnnotate() {
+		final Random rng = new Random(0);
+		final List<String> people = Arrays.asList("a", "b", "c", "d");
+		final List<float[]> centres = new ArrayList<float[]>();
+
+		final FaceGalleryAnnotator<DetectedFace, String> annotator = new FaceGalleryAnnotator<DetectedFace, String>(
+				new RowExtractor(), 5);
+
+		for (int p = 0; p < people.size(); p++) {
+			final float[] centre = new float[NDIMS];
+			centre[p] = 10;
+			centres.add(centre);
+
+			for (int i = 0; i < 10; i++)
+				annotator.train(AnnotatedObject.create(makeFace(rng, centre, 0.5f), people.get(p)));
+		}
+
+		assertEquals(new HashSet<String>(people), annotator.getAnnotations());
+		assertEquals(40, annotator.getIndex().size());
+
+		for (int p = 0; p < people.size(); p++) {
+			final List<ScoredAnnotation<String>> result = annotator.annotate(makeFace(rng, centres.get(p), 0.5f));
+			Collections.sort(result);
+
+			assertEquals(people.get(p), result.get(result.size() - 1).annotation);
+			assertEquals(1, result.get(result.size() - 1).confidence, 0);
+		}
+
+		// restricting to other people must only return those people
+		final List<String> restrict = Arrays.asList("b", "c");
+		for (final ScoredAnnotation<String> a : annotator.annotate(makeFace(rng, centres.get(0), 0.5f), restrict))
+			assertTrue(restrict.contains(a.annotation));
+
+		assertEquals(10, annotator.remove("a"));
+		assertEquals(30, annotator.getIndex().size());
+		for (final ScoredAnnotation<String> a : annotator.annotate(makeFace(rng, centres.get(0), 0.5f)))
+			assertTrue(!a.annotation.equals("a"));
+
+		annotator.reset();
+		assertEquals(0, annotator.getIndex().size());
+		assertTrue(annotator.getAnnotations().isEmpty());
+	}
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.recognition;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.io.IOUtils;
+import org.openimaj.util.pair.IntFloatPair;
+
+/**
+ * Tests for {@link FaceGalleryIndex}
+ * 
+ * @author agent (agent@local)
+ */
+public class FaceGalleryIndexTest {
+	private static final int NDIMS = 8;
+	private static final int NPEOPLE = 20;
+	private static final int K = 10;
+
+	private Random rng;
+
+	/**
+	 * Reset the random number generator
+	 */
+	@Before
+	public void setup() {
+		rng = new Random(0);
+	}
+
+	private float[] randomVector() {
+		final float[] v = new float[NDIMS];
+		for (int i = 0; i < NDIMS; i++)
+			v[i] = (float) rng.nextGaussian();
+		return v;
+	}
+
+	/**
+	 * Add vectors to the gallery, re-using a single buffer for every vector to
+	 * check that the gallery copies them
+	 */
+	private List<float[]> fill(FaceGalleryIndex<Integer> index, int n) {
+		final List<float[]> vectors = new ArrayList<float[]>();
+		final float[] buffer = new float[NDIMS];
+
+		for (int i = 0; i < n; i++) {
+			final float[] v = randomVector();
+			vectors.add(v);
+
+			System.arraycopy(v, 0, buffer, 0, NDIMS);
+			index.add(buffer, i % NPEOPLE);
+		}
+		Arrays.fill(buffer, Float.NaN);
+
+		return vectors;
+	}
+
+	/**
+	 * Find the exact k-nearest neighbours amongst the first n identifiers by
+	 * brute force
+	 */
+	private static List<IntFloatPair> bruteForce(FaceGalleryIndex<Integer> index, int n, float[] query, int k,
+			Collection<Integer> restrict)
+	{
+		final List<IntFloatPair> all = new ArrayList<IntFloatPair>();
+
+		for (int i = 0; i < n; i++) {
+			final float[] v = index.getVector(i);
+			if (v == null || (restrict != null && !restrict.contains(index.getPerson(i))))
+				continue;
+
+			double d = 0;
+			for (int j = 0; j < NDIMS; j++)
+				d += (query[j] - v[j]) * (query[j] - v[j]);
+
+			all.add(new IntFloatPair(i, (float) Math.sqrt(d)));
+		}
+
+		Collections.sort(all, new Comparator<IntFloatPair>() {
+			@Override
+			public int compare(IntFloatPair o1, IntFloatPair o2) {
+				return Float.compare(o1.second, o2.second);
+			}
+		});
+
+		return new ArrayList<IntFloatPair>(all.subList(0, Math.min(k, all.size())));
+	}
+
+	private static void assertSameResults(List<IntFloatPair> expected, List<IntFloatPair> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).first, actual.get(i).first);
+			assertEquals(expected.get(i).second, actual.get(i).second, 1e-5);
+		}
+	}
+
+	/**
+	 * Count how many of the expected neighbours were found
+	 */
+	private static int overlap(List<IntFloatPair> expected, List<IntFloatPair> actual) {
+		int count = 0;
+		for (final IntFloatPair e : expected)
+			for (final IntFloatPair a : actual)
+				if (e.first == a.first)
+					count++;
+		return count;
+	}
+
+	/**
+	 * Test that the vectors are copied into the gallery
+	 */
+	@Test
+	public void testVectorsCopied() {
+		final FaceGalleryIndex<Integer> index = new FaceGalleryIndex<Integer>();
+		final List<float[]> vectors = fill(index, 100);
+
+		assertEquals(100, index.size());
+		assertEquals(NDIMS, index.numDimensions());
+		for (int i = 0; i < vectors.size(); i++) {
+			assertArrayEquals(vectors.get(i), index.getVector(i), 0);
+			assertEquals(i % NPEOPLE, (int) index.getPerson(i));
+		}
+
+		// modifying the returned vector must not affect the gallery
+		index.getVector(0)[0] = Float.NaN;
+		assertArrayEquals(vectors.get(0), index.getVector(0), 0);
+	}
+
+	/**
+	 * Test that searching a small gallery (which is searched exhaustively)
+	 * exactly matches a brute-force search, with and without restricting the
+	 * people
+	 */
+	@Test
+	public void testExhaustiveSearch() {
+		final FaceGalleryIndex<Integer> index = new FaceGalleryIndex<Integer>();
+		fill(index, 200);
+
+		final List<Integer> restrict = Arrays.asList(1, 5, 7);
+		for (int q = 0; q < 20; q++) {
+			final float[] query = randomVector();
+
+			assertSameResults(bruteForce(index, 200, query, K, null), index.search(query, K));
+			assertSameResults(bruteForce(index, 200, query, K, restrict), index.search(query, K, restrict));
+		}
+	}
+
+	/**
+	 * Test that searching a gallery large enough to be indexed by the trees
+	 * ranks the neighbours by their exact distance and finds almost all of the
+	 * true nearest neighbours; also check that vectors added after the trees
+	 * were built and removed vectors are dealt with correctly.
+	 */
+	@Test
+	public void testIndexedSearch() {
+		final FaceGalleryIndex<Integer> index = new FaceGalleryIndex<Integer>(4, 256, 4, 100);
+		final List<float[]> vectors = fill(index, 2000);
+
+		int found = 0;
+		for (int q = 0; q < 50; q++) {
+			final float[] query = randomVector();
+			final List<IntFloatPair> expected = bruteForce(index, 2000, query, K, null);
+			final List<IntFloatPair> actual = index.search(query, K);
+
+			assertEquals(K, actual.size());
+			for (int i = 0; i < actual.size(); i++) {
+				if (i > 0)
+					assertTrue(actual.get(i - 1).second <= actual.get(i).second);
+
+				final float[] v = vectors.get(actual.get(i).first);
+				double d = 0;
+				for (int j = 0; j < NDIMS; j++)
+					d += (query[j] - v[j]) * (query[j] - v[j]);
+				assertEquals(Math.sqrt(d), actual.get(i).second, 1e-5);
+			}
+
+			found += overlap(expected, actual);
+		}
+		assertTrue(found >= 0.9 * 50 * K);
+
+		// gallery vectors must find themselves
+		for (int i = 0; i < 2000; i += 97)
+			assertEquals(i, index.search(vectors.get(i), 1).get(0).first);
+
+		// vectors added after the trees were built are searched exhaustively
+		final float[] added = randomVector();
+		final int id = index.add(added, -1);
+		assertEquals(id, index.search(added, 1).get(0).first);
+		assertEquals(-1, (int) index.getPerson(id));
+
+		// removed vectors are never returned
+		assertTrue(index.removeVector(id));
+		assertFalse(index.removeVector(id));
+		assertNull(index.getVector(id));
+		assertTrue(id != index.search(added, 1).get(0).first);
+
+		assertEquals(100, index.removePerson(3));
+		for (int q = 0; q < 20; q++)
+			for (final IntFloatPair p : index.search(randomVector(), K))
+				assertTrue(index.getPerson(p.first) != 3);
+	}
+
+	/**
+	 * Test that the gallery can be serialised, keeping the identifiers of the
+	 * vectors and the removals
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testSerialisation() throws IOException {
+		final FaceGalleryIndex<Integer> index = new FaceGalleryIndex<Integer>();
+		fill(index, 300);
+		index.removeVector(10);
+		index.removePerson(4);
+
+		final FaceGalleryIndex<Integer> copy = IOUtils.deserialize(IOUtils.serialize(index),
+				new FaceGalleryIndex<Integer>());
+
+		assertEquals(index.size(), copy.size());
+		assertEquals(index.getPeople(), copy.getPeople());
+		for (int i = 0; i < 300; i++) {
+			assertEquals(index.getPerson(i), copy.getPerson(i));
+			assertArrayEquals(index.getVector(i), copy.getVector(i), 0);
+		}
+
+		for (int q = 0; q < 10; q++) {
+			final float[] query = randomVector();
+			assertSameResults(index.search(query, K), copy.search(query, K));
+		}
+
+		// the copy can be added to, and new identifiers follow on
+		assertEquals(300, copy.add(randomVector(), 1));
+	}
+
+	/**
+	 * Test that searches running concurrently with enrolment, removal and
+	 * tree rebuilds always see a consistent gallery
+	 * 
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testConcurrentSearchAndEnrol() throws InterruptedException {
+		final FaceGalleryIndex<Integer> index = new FaceGalleryIndex<Integer>(4, 256, 4, 64);
+		fill(index, 200);
+
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final Thread[] searchers = new Thread[4];
+		for (int t = 0; t < searchers.length; t++) {
+			final Random qrng = new Random(t + 1);
+
+			searchers[t] = new Thread() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0; i < 500; i++) {
+							final float[] query = new float[NDIMS];
+							for (int j = 0; j < NDIMS; j++)
+								query[j] = (float) qrng.nextGaussian();
+
+							final List<IntFloatPair> result = index.search(query, K);
+							assertEquals(K, result.size());
+							for (int j = 1; j < result.size(); j++)
+								assertTrue(result.get(j - 1).second <= result.get(j).second);
+						}
+					} catch (final Throwable e) {
+						failure.compareAndSet(null, e);
+					}
+				}
+			};
+			searchers[t].start();
+		}
+
+		for (int i = 0; i < 400; i++) {
+			final int id = index.add(randomVector(), i % NPEOPLE);
+			if (i % 3 == 0)
+				index.removeVector(id - 100);
+		}
+
+		for (final Thread t : searchers)
+			t.join();
+
+		if (failure.get() != null)
+			throw new AssertionError(failure.get());
+
+		final float[] query = randomVector();
+		assertSameResults(bruteForce(index, 600, query, K, null), index.search(query, K, Arrays.asList(0, 1, 2, 3,
+				4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19)));
+	}
+}
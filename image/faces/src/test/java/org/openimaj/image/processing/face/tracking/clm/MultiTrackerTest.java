@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.processing.face.tracking.clm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import com.jsaragih.Tracker;
+
+/**
+ * Tests for the {@link MultiTracker}
+ *
+ * @author agent (agent@local)
+ */
+public class MultiTrackerTest {
+	private static final int NUM_FRAMES = 8;
+	private static final int STEP = 3;
+	private static FImage face;
+
+	/**
+	 * Load the test image
+	 *
+	 * @throws IOException
+	 */
+	@BeforeClass
+	public static void setup() throws IOException {
+		face = ImageUtilities.readF(MultiTrackerTest.class.getResourceAsStream("/org/openimaj/image/data/sinaface.jpg"));
+	}
+
+	/**
+	 * Draw a frame containing several copies of the face, moving slowly from
+	 * frame to frame
+	 */
+	private static void drawFrame(FImage frame, int k) {
+		frame.fill(0);
+		for (int i = 0; i < 3; i++)
+			for (int j = 0; j < 2; j++)
+				frame.drawImage(face, i * face.width + STEP * k, j * face.height + STEP * k / 2);
+	}
+
+	private static MultiTracker createTracker() {
+		return new MultiTracker(MultiTracker.load(Tracker.class.getResourceAsStream("face2.tracker")));
+	}
+
+	/**
+	 * Track the sequence, drawing each frame into a new image or reusing one
+	 * image for all frames
+	 */
+	private static double[][] track(MultiTracker tracker, boolean reuseFrame) {
+		FImage frame = new FImage(face.width * 3 + STEP * NUM_FRAMES, face.height * 2 + STEP * NUM_FRAMES);
+
+		for (int k = 0; k < NUM_FRAMES; k++) {
+			if (!reuseFrame)
+				frame = new FImage(frame.width, frame.height);
+
+			drawFrame(frame, k);
+			tracker.track(frame, new int[] { 11, 9, 7 }, 3, 5, 3, 0.01, true, 1.4f);
+		}
+
+		final double[][] shapes = new double[tracker.trackedFaces.size()][];
+		for (int i = 0; i < shapes.length; i++)
+			shapes[i] = tracker.trackedFaces.get(i).shape.getColumnPackedCopy();
+		return shapes;
+	}
+
+	/**
+	 * Test that tracking in parallel (and with a reused frame buffer) gives
+	 * the same shapes as tracking sequentially
+	 */
+	@Test
+	public void testParallelTracking() {
+		final double[][] expected = track(createTracker(), false);
+		assertTrue(expected.length > 1);
+
+		final double[][] reused = track(createTracker(), true);
+		assertEquals(expected.length, reused.length);
+		for (int i = 0; i < expected.length; i++)
+			assertArrayEquals(expected[i], reused[i], 0);
+
+		final ThreadPoolExecutor pool = GlobalExecutorPool.getPool();
+		final MultiTracker tracker = createTracker();
+		tracker.setThreadPool(pool);
+		final double[][] parallel = track(tracker, true);
+		assertEquals(expected.length, parallel.length);
+		for (int i = 0; i < expected.length; i++)
+			assertArrayEquals(expected[i], parallel[i], 0);
+	}
+
+	/**
+	 * Test that the faces continue to be tracked with asynchronous
+	 * redetection
+	 */
+	@Test
+	public void testAsynchronousDetection() {
+		final double[][] expected = track(createTracker(), false);
+
+		final MultiTracker tracker = createTracker();
+		tracker.setThreadPool(GlobalExecutorPool.getPool());
+		tracker.setAsynchronousDetection(true);
+		try {
+			final double[][] async = track(tracker, true);
+			assertEquals(expected.length, async.length);
+		} finally {
+			tracker.close();
+		}
+
+		assertEquals(0, tracker.trackedFaces.size());
+	}
+}
@@ -42,6 +42,7 @@ import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.image.pixel.ConnectedComponent;
 import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
 import org.openimaj.image.pixel.Pixel;
+import org.openimaj.image.pixel.PixelSpanSet;
 
 /**
  * A connected component labeler.
@@ -289,6 +290,21 @@ public class ConnectedComponentLabeler implements ImageAnalyser<FImage> {
 				// 13. Return.
 				return cc;
 			}
+		},
+		/**
+		 * A run-based union-find algorithm that labels horizontal strips of
+		 * the image in parallel (see {@link RunLengthLabeling}). The
+		 * components are backed by run-length encoded {@link PixelSpanSet}s
+		 * rather than sets of {@link Pixel}s, so this is much faster and uses
+		 * much less memory than the other algorithms on large images.
+		 *
+		 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+		 */
+		PARALLEL_UNION_FIND {
+			@Override
+			public List<ConnectedComponent> findComponents(FImage image, float bgThreshold, ConnectMode mode) {
+				return new RunLengthLabeling(image, bgThreshold, mode).getComponents();
+			}
 		};
 
 		/**
@@ -367,6 +383,23 @@ public class ConnectedComponentLabeler implements ImageAnalyser<FImage> {
 		return components;
 	}
 
+	/**
+	 * Label the connected components of the given image using the
+	 * {@link Algorithm#PARALLEL_UNION_FIND} algorithm (regardless of the
+	 * algorithm this labeler was constructed with), returning the labels as an
+	 * image in row-major order. Background pixels have the label 0 and the
+	 * components are numbered from 1 in the raster-scan order of their first
+	 * pixel.
+	 *
+	 * @param image
+	 *            the image to label
+	 * @return the label image (the label of (x, y) is at
+	 *         <code>y * image.width + x</code>)
+	 */
+	public int[] labelImage(FImage image) {
+		return new RunLengthLabeling(image, bgThreshold, mode).getLabelImage();
+	}
+
 	@Override
 	public void analyseImage(FImage image) {
 		components = algorithm.findComponents(image, bgThreshold, mode);
@@ -0,0 +1,343 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.PixelSpanSet;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * Run-based connected component labelling using a union-find forest. The image
+ * is divided into horizontal strips which are labelled in parallel; each strip
+ * is converted into horizontal runs of foreground pixels and runs which touch
+ * runs on the previous row (according to the {@link ConnectMode}) are joined.
+ * The strips are then stitched together by joining the runs across the strip
+ * boundaries.
+ * <p>
+ * Labels are numbered from 1 in the raster-scan order of the first pixel of
+ * each component, and the components can be retrieved either as a label image
+ * or as {@link ConnectedComponent}s backed by run-length encoded
+ * {@link PixelSpanSet}s. Neither requires a {@link org.openimaj.image.pixel.Pixel}
+ * object per pixel.
+ *
+ * @author agent (agent@local)
+ */
+public class RunLengthLabeling {
+	private static final int MIN_STRIP_HEIGHT = 16;
+
+	private final int width;
+	private final int height;
+
+	/** index of the first run of each row (and the total number of runs) */
+	private final int[] rowPtr;
+	private final int[] runStart;
+	private final int[] runEnd;
+
+	/** label of each run */
+	private final int[] runLabel;
+	private final int numComponents;
+
+	private static class Strip {
+		int y0, y1;
+		TIntArrayList starts = new TIntArrayList();
+		TIntArrayList ends = new TIntArrayList();
+		TIntArrayList parent = new TIntArrayList();
+		int[] rowPtr;
+	}
+
+	/**
+	 * Label the given image.
+	 *
+	 * @param image
+	 *            the image
+	 * @param bgThreshold
+	 *            the threshold; pixels with a value less than or equal to this
+	 *            are considered to be background
+	 * @param mode
+	 *            the {@link ConnectMode}
+	 */
+	public RunLengthLabeling(final FImage image, final float bgThreshold, final ConnectMode mode) {
+		this.width = image.width;
+		this.height = image.height;
+
+		final int threads = GlobalExecutorPool.getPool().getMaximumPoolSize();
+		final int nstrips = Math.max(1, Math.min(2 * threads, height / MIN_STRIP_HEIGHT));
+		final Strip[] strips = new Strip[nstrips];
+		for (int i = 0; i < nstrips; i++) {
+			strips[i] = new Strip();
+			strips[i].y0 = (int) ((long) i * height / nstrips);
+			strips[i].y1 = (int) ((long) (i + 1) * height / nstrips);
+		}
+
+		if (nstrips == 1) {
+			labelStrip(image, bgThreshold, mode, strips[0]);
+		} else {
+			Parallel.forIndex(0, nstrips, 1, new Operation<Integer>() {
+				@Override
+				public void perform(Integer i) {
+					labelStrip(image, bgThreshold, mode, strips[i]);
+				}
+			});
+		}
+
+		// concatenate the strips
+		int nruns = 0;
+		for (final Strip s : strips)
+			nruns += s.starts.size();
+
+		rowPtr = new int[height + 1];
+		runStart = new int[nruns];
+		runEnd = new int[nruns];
+		final int[] parent = new int[nruns];
+
+		int offset = 0;
+		for (final Strip s : strips) {
+			final int n = s.starts.size();
+			s.starts.toArray(runStart, 0, offset, n);
+			s.ends.toArray(runEnd, 0, offset, n);
+			for (int i = 0; i < n; i++)
+				parent[offset + i] = s.parent.getQuick(i) + offset;
+			for (int y = s.y0; y < s.y1; y++)
+				rowPtr[y] = s.rowPtr[y - s.y0] + offset;
+
+			offset += n;
+		}
+		rowPtr[height] = nruns;
+
+		// join the runs across the strip boundaries
+		for (int i = 1; i < nstrips; i++) {
+			final int y = strips[i].y0;
+			if (y > 0)
+				joinRows(mode, rowPtr[y - 1], rowPtr[y], rowPtr[y], rowPtr[y + 1], runStart, runEnd, parent);
+		}
+
+		// assign the labels; the root of each set is its first run in scan
+		// order, so is always labelled before the other runs in its set
+		runLabel = new int[nruns];
+		int next = 0;
+		for (int r = 0; r < nruns; r++) {
+			final int root = find(parent, r);
+			runLabel[r] = root == r ? ++next : runLabel[root];
+		}
+		numComponents = next;
+	}
+
+	private static void labelStrip(FImage image, float bgThreshold, ConnectMode mode, Strip strip) {
+		final int nrows = strip.y1 - strip.y0;
+		strip.rowPtr = new int[nrows + 1];
+
+		for (int y = strip.y0; y < strip.y1; y++) {
+			final float[] row = image.pixels[y];
+			final int first = strip.starts.size();
+			strip.rowPtr[y - strip.y0] = first;
+
+			for (int x = 0; x < image.width;) {
+				if (row[x] > bgThreshold) {
+					final int start = x;
+					while (x < image.width && row[x] > bgThreshold)
+						x++;
+
+					strip.parent.add(strip.starts.size());
+					strip.starts.add(start);
+					strip.ends.add(x);
+				} else {
+					x++;
+				}
+			}
+
+			if (y > strip.y0) {
+				final int prev = strip.rowPtr[y - strip.y0 - 1];
+				joinRows(mode, prev, first, first, strip.starts.size(), strip.starts, strip.ends, strip.parent);
+			}
+		}
+		strip.rowPtr[nrows] = strip.starts.size();
+	}
+
+	/**
+	 * Join the touching runs of two adjacent rows (the runs from a0 to a1 on
+	 * the upper row, and b0 to b1 on the lower row).
+	 */
+	private static void joinRows(ConnectMode mode, int a0, int a1, int b0, int b1, int[] starts, int[] ends,
+			int[] parent)
+	{
+		// with 8-connectivity, runs that touch diagonally are connected
+		final int slack = mode == ConnectMode.CONNECT_8 ? 1 : 0;
+
+		int i = a0, j = b0;
+		while (i < a1 && j < b1) {
+			if (starts[i] < ends[j] + slack && starts[j] < ends[i] + slack)
+				union(parent, i, j);
+
+			if (ends[i] < ends[j])
+				i++;
+			else
+				j++;
+		}
+	}
+
+	private static void joinRows(ConnectMode mode, int a0, int a1, int b0, int b1, TIntArrayList starts,
+			TIntArrayList ends, TIntArrayList parent)
+	{
+		final int slack = mode == ConnectMode.CONNECT_8 ? 1 : 0;
+
+		int i = a0, j = b0;
+		while (i < a1 && j < b1) {
+			if (starts.getQuick(i) < ends.getQuick(j) + slack && starts.getQuick(j) < ends.getQuick(i) + slack)
+				union(parent, i, j);
+
+			if (ends.getQuick(i) < ends.getQuick(j))
+				i++;
+			else
+				j++;
+		}
+	}
+
+	private static int find(int[] parent, int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]];
+			x = parent[x];
+		}
+		return x;
+	}
+
+	private static void union(int[] parent, int a, int b) {
+		final int ra = find(parent, a);
+		final int rb = find(parent, b);
+
+		// always keep the earliest run as the root
+		if (ra < rb)
+			parent[rb] = ra;
+		else if (rb < ra)
+			parent[ra] = rb;
+	}
+
+	private static int find(TIntArrayList parent, int x) {
+		while (parent.getQuick(x) != x) {
+			parent.setQuick(x, parent.getQuick(parent.getQuick(x)));
+			x = parent.getQuick(x);
+		}
+		return x;
+	}
+
+	private static void union(TIntArrayList parent, int a, int b) {
+		final int ra = find(parent, a);
+		final int rb = find(parent, b);
+
+		if (ra < rb)
+			parent.setQuick(rb, ra);
+		else if (rb < ra)
+			parent.setQuick(ra, rb);
+	}
+
+	/**
+	 * @return the number of connected components
+	 */
+	public int getNumComponents() {
+		return numComponents;
+	}
+
+	/**
+	 * @return the total number of runs of foreground pixels
+	 */
+	public int getNumRuns() {
+		return runStart.length;
+	}
+
+	/**
+	 * Get the labels as an image in row-major order (the label of pixel (x, y)
+	 * is at index <code>y * width + x</code>). Background pixels have the label
+	 * 0, and the components are labelled from 1 to
+	 * {@link #getNumComponents()}.
+	 *
+	 * @return the label image
+	 */
+	public int[] getLabelImage() {
+		final int[] labels = new int[width * height];
+
+		Parallel.forRange(0, height, 1, new Operation<Parallel.IntRange>() {
+			@Override
+			public void perform(Parallel.IntRange range) {
+				for (int y = range.start; y < range.stop; y += range.incr) {
+					final int base = y * width;
+
+					for (int r = rowPtr[y]; r < rowPtr[y + 1]; r++)
+						for (int x = runStart[r]; x < runEnd[r]; x++)
+							labels[base + x] = runLabel[r];
+				}
+			}
+		});
+
+		return labels;
+	}
+
+	/**
+	 * Get the spans of each component as run-length encoded sets of pixels.
+	 * The set at index <code>i</code> has the label <code>i + 1</code>.
+	 *
+	 * @return the spans of each component
+	 */
+	public PixelSpanSet[] getSpans() {
+		final PixelSpanSet[] spans = new PixelSpanSet[numComponents];
+		for (int i = 0; i < numComponents; i++)
+			spans[i] = new PixelSpanSet();
+
+		// runs are added in scan order, so are always appended
+		for (int y = 0; y < height; y++)
+			for (int r = rowPtr[y]; r < rowPtr[y + 1]; r++)
+				spans[runLabel[r] - 1].addSpan(y, runStart[r], runEnd[r]);
+
+		return spans;
+	}
+
+	/**
+	 * Get the connected components, backed by {@link PixelSpanSet}s. The
+	 * component at index <code>i</code> has the label <code>i + 1</code>.
+	 *
+	 * @return the connected components
+	 */
+	public List<ConnectedComponent> getComponents() {
+		final PixelSpanSet[] spans = getSpans();
+		final List<ConnectedComponent> components = new ArrayList<ConnectedComponent>(spans.length);
+
+		for (final PixelSpanSet s : spans)
+			components.add(new ConnectedComponent(s));
+
+		return components;
+	}
+}
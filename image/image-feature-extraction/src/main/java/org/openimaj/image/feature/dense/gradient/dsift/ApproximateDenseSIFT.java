@@ -177,47 +177,53 @@ public class ApproximateDenseSIFT extends DenseSIFT {
 		return acc /= (2 * binSize - 1);
 	}
 
+	/**
+	 * For this implementation a tile corresponds to a single orientation bin.
+	 */
+	@Override
+	protected int getNumTiles() {
+		return numOriBins;
+	}
+
 	@Override
-	protected void extractFeatures() {
+	protected void extractTile(int bint) {
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
 
-		for (int bint = 0; bint < numOriBins; bint++) {
-			final FImage conv = data.gradientMagnitudes[bint].process(new FTriangleFilter(binWidth, binHeight));
-			final float[][] src = conv.pixels;
-
-			for (int biny = 0; biny < numBinsY; biny++) {
-
-				// This approximate version of DSIFT does not use a proper
-				// Gaussian weighting scheme for the gradients that are
-				// accumulated on the spatial bins. Instead each spatial bins is
-				// accumulated based on the triangular kernel only, equivalent
-				// to bilinear interpolation plus a flat, rather than Gaussian,
-				// window. Eventually, however, the magnitude of the spatial
-				// bins in the SIFT descriptor is reweighted by the average of
-				// the Gaussian window on each bin.
-				float wy = computeWindowMean(binHeight, numBinsY, biny, gaussianWindowSize);
-
-				// The triangular convolution functions convolve by a triangular
-				// kernel with unit integral; instead for SIFT the triangular
-				// kernel should have unit height. This is compensated for by
-				// multiplying by the bin size:
-				wy *= binHeight;
-
-				for (int binx = 0; binx < numBinsX; ++binx) {
-					float wx = computeWindowMean(binWidth, numBinsX, binx, gaussianWindowSize);
-					wx *= binWidth;
-					final float w = wx * wy;
-
-					final int descriptorOffset = bint + binx * numOriBins + biny * (numBinsX * numOriBins);
-					int descriptorIndex = 0;
-
-					for (int framey = data.boundMinY; framey <= data.boundMaxY - frameSizeY + 1; framey += stepY) {
-						for (int framex = data.boundMinX; framex <= data.boundMaxX - frameSizeX + 1; framex += stepX) {
-							descriptors[descriptorIndex][descriptorOffset] = w
-									* src[framey + biny * binHeight][framex + binx * binWidth];
-							descriptorIndex++;
-						}
+		final FImage conv = data.gradientMagnitudes[bint].process(new FTriangleFilter(binWidth, binHeight));
+		final float[][] src = conv.pixels;
+
+		for (int biny = 0; biny < numBinsY; biny++) {
+
+			// This approximate version of DSIFT does not use a proper
+			// Gaussian weighting scheme for the gradients that are
+			// accumulated on the spatial bins. Instead each spatial bins is
+			// accumulated based on the triangular kernel only, equivalent
+			// to bilinear interpolation plus a flat, rather than Gaussian,
+			// window. Eventually, however, the magnitude of the spatial
+			// bins in the SIFT descriptor is reweighted by the average of
+			// the Gaussian window on each bin.
+			float wy = computeWindowMean(binHeight, numBinsY, biny, gaussianWindowSize);
+
+			// The triangular convolution functions convolve by a triangular
+			// kernel with unit integral; instead for SIFT the triangular
+			// kernel should have unit height. This is compensated for by
+			// multiplying by the bin size:
+			wy *= binHeight;
+
+			for (int binx = 0; binx < numBinsX; ++binx) {
+				float wx = computeWindowMean(binWidth, numBinsX, binx, gaussianWindowSize);
+				wx *= binWidth;
+				final float w = wx * wy;
+
+				final int descriptorOffset = bint + binx * numOriBins + biny * (numBinsX * numOriBins);
+				int descriptorIndex = 0;
+
+				for (int framey = data.boundMinY; framey <= data.boundMaxY - frameSizeY + 1; framey += stepY) {
+					for (int framex = data.boundMinX; framex <= data.boundMaxX - frameSizeX + 1; framex += stepX) {
+						descriptors[descriptorIndex][descriptorOffset] = w
+								* src[framey + biny * binHeight][framex + binx * binWidth];
+						descriptorIndex++;
 					}
 				}
 			}
@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.feature.dense.gradient.dsift;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.feature.local.list.LocalFeatureList;
 import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.image.FImage;
@@ -36,6 +38,9 @@ import org.openimaj.image.processing.convolution.FImageConvolveSeparable;
 import org.openimaj.image.processing.convolution.FImageGradients;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of a dense SIFT feature extractor for {@link FImage}s.
@@ -105,16 +110,27 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 					gradientMagnitudes[i] = new FImage(image.width, image.height);
 			}
 
+			final int numFeatures = computeNumFeatures(dsift);
+
+			dsift.descriptors = new float[numFeatures][dsift.numOriBins * dsift.numBinsX * dsift.numBinsY];
+			dsift.energies = new float[numFeatures];
+		}
+
+		/**
+		 * Compute the number of sampling windows that fit within the bounds
+		 *
+		 * @param dsift
+		 *            the extractor
+		 * @return the number of features
+		 */
+		protected int computeNumFeatures(DenseSIFT dsift) {
 			final int rangeX = boundMaxX - boundMinX - (dsift.numBinsX - 1) * dsift.binWidth;
 			final int rangeY = boundMaxY - boundMinY - (dsift.numBinsY - 1) * dsift.binHeight;
 
 			final int numWindowsX = (rangeX >= 0) ? rangeX / dsift.stepX + 1 : 0;
 			final int numWindowsY = (rangeY >= 0) ? rangeY / dsift.stepY + 1 : 0;
 
-			final int numFeatures = numWindowsX * numWindowsY;
-
-			dsift.descriptors = new float[numFeatures][dsift.numOriBins * dsift.numBinsX * dsift.numBinsY];
-			dsift.energies = new float[numFeatures];
+			return numWindowsX * numWindowsY;
 		}
 	}
 
@@ -305,36 +321,106 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 	 * Extract the DSIFT features
 	 */
 	protected void extractFeatures() {
+		final int nTiles = getNumTiles();
+
+		for (int tile = 0; tile < nTiles; tile++)
+			extractTile(tile);
+	}
+
+	/**
+	 * Get the number of independent units of work that
+	 * {@link #extractFeatures()} is split into. Each tile writes a distinct set
+	 * of elements of the descriptors, so tiles can be extracted concurrently.
+	 * 
+	 * @return the number of tiles
+	 */
+	protected int getNumTiles() {
+		return numBinsY * numBinsX * numOriBins;
+	}
+
+	/**
+	 * Extract a single tile of the features; for this implementation a tile
+	 * is the single element of every descriptor that corresponds to a given
+	 * spatial and orientation bin.
+	 * 
+	 * @param tile
+	 *            the tile index
+	 */
+	protected void extractTile(int tile) {
+		final int bint = tile % numOriBins;
+		final int binx = (tile / numOriBins) % numBinsX;
+		final int biny = tile / (numOriBins * numBinsX);
+
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
 
-		for (int biny = 0; biny < numBinsY; biny++) {
-			final float[] yker = buildKernel(binHeight, numBinsY, biny, gaussianWindowSize);
+		final float[] yker = buildKernel(binHeight, numBinsY, biny, gaussianWindowSize);
+		final float[] xker = buildKernel(binWidth, numBinsX, binx, gaussianWindowSize);
 
-			for (int binx = 0; binx < numBinsX; binx++) {
-				final float[] xker = buildKernel(binWidth, numBinsX, binx, gaussianWindowSize);
+		final FImage conv = data.gradientMagnitudes[bint].process(new FImageConvolveSeparable(xker, yker));
+		final float[][] src = conv.pixels;
 
-				for (int bint = 0; bint < numOriBins; bint++) {
-					final FImage conv = data.gradientMagnitudes[bint].process(new FImageConvolveSeparable(xker, yker));
-					final float[][] src = conv.pixels;
+		final int descriptorOffset = bint + binx * numOriBins + biny * (numBinsX * numOriBins);
+		int descriptorIndex = 0;
 
-					final int descriptorOffset = bint + binx * numOriBins + biny * (numBinsX * numOriBins);
-					int descriptorIndex = 0;
-
-					for (int framey = data.boundMinY; framey <= data.boundMaxY - frameSizeY + 1; framey += stepY) {
-						for (int framex = data.boundMinX; framex <= data.boundMaxX - frameSizeX + 1; framex += stepX) {
-							descriptors[descriptorIndex][descriptorOffset] = src[framey + biny * binHeight][framex
-									+ binx * binWidth];
-							descriptorIndex++;
-						}
-					}
-				}
+		for (int framey = data.boundMinY; framey <= data.boundMaxY - frameSizeY + 1; framey += stepY) {
+			for (int framex = data.boundMinX; framex <= data.boundMaxX - frameSizeX + 1; framex += stepX) {
+				descriptors[descriptorIndex][descriptorOffset] = src[framey + biny * binHeight][framex
+						+ binx * binWidth];
+				descriptorIndex++;
 			}
 		}
 	}
 
 	@Override
 	public void analyseImage(FImage image, Rectangle bounds) {
+		setBounds(bounds);
+
+		data.setupWorkingSpace(image, this);
+
+		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, data.gradientMagnitudes);
+
+		extractFeatures();
+
+		normaliseDescriptors(0, descriptors.length);
+	}
+
+	/**
+	 * Compute the dense sift descriptors inside the bounds rectangle of the
+	 * given image, using the given pool to extract the tiles of the
+	 * descriptors (see {@link #getNumTiles()}) concurrently and to normalise
+	 * the descriptors.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param bounds
+	 *            the bounds rectangle
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void analyseImage(FImage image, Rectangle bounds, ThreadPoolExecutor pool) {
+		setBounds(bounds);
+
+		data.setupWorkingSpace(image, this);
+
+		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, data.gradientMagnitudes);
+
+		Parallel.forIndex(0, getNumTiles(), 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer tile) {
+				extractTile(tile);
+			}
+		}, pool);
+
+		Parallel.forRange(0, descriptors.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				normaliseDescriptors(range.start, range.stop);
+			}
+		}, pool);
+	}
+
+	private void setBounds(Rectangle bounds) {
 		if (data == null)
 			data = new WorkingData();
 
@@ -342,22 +428,48 @@ public class DenseSIFT extends AbstractDenseSIFT<FImage> {
 		data.boundMaxX = (int) (bounds.width - 1);
 		data.boundMinY = (int) bounds.y;
 		data.boundMaxY = (int) (bounds.height - 1);
+	}
 
-		data.setupWorkingSpace(image, this);
+	/**
+	 * Get the number of descriptors that would be extracted within the given
+	 * bounds.
+	 */
+	int computeNumFeatures(Rectangle bounds) {
+		setBounds(bounds);
 
-		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, data.gradientMagnitudes);
+		return data.computeNumFeatures(this);
+	}
 
-		extractFeatures();
+	/**
+	 * Prepare to extract the features within the given bounds from gradient
+	 * magnitude maps that have already been computed (and might be shared with
+	 * other extractors), writing into the given descriptor and energy arrays.
+	 * The features are then computed by calling {@link #extractTile(int)} for
+	 * every tile, followed by {@link #normaliseDescriptors(int, int)}.
+	 */
+	void setupSharedGradients(FImage[] gradientMagnitudes, Rectangle bounds, float[][] descriptors, float[] energies) {
+		setBounds(bounds);
 
-		normaliseDescriptors();
+		data.gradientMagnitudes = gradientMagnitudes;
+		this.descriptors = descriptors;
+		this.energies = energies;
 	}
 
-	private void normaliseDescriptors() {
+	/**
+	 * Compute the energies of, normalise and clip the given range of the
+	 * extracted descriptors.
+	 *
+	 * @param start
+	 *            the index of the first descriptor
+	 * @param stop
+	 *            the index after the last descriptor
+	 */
+	protected void normaliseDescriptors(int start, int stop) {
 		final int frameSizeX = binWidth * (numBinsX - 1) + 1;
 		final int frameSizeY = binHeight * (numBinsY - 1) + 1;
 		final float energyNorm = frameSizeX * frameSizeY;
 
-		for (int j = 0; j < descriptors.length; j++) {
+		for (int j = start; j < stop; j++) {
 			final float[] arr = descriptors[j];
 
 			energies[j] = ArrayUtils.sumValues(arr) / energyNorm;
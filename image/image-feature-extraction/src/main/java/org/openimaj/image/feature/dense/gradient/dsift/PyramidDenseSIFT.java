@@ -29,18 +29,26 @@
  */
 package org.openimaj.image.feature.dense.gradient.dsift;
 
+import gnu.trove.list.array.TFloatArrayList;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.feature.local.list.LocalFeatureList;
 import org.openimaj.feature.local.list.MemoryLocalFeatureList;
 import org.openimaj.image.FImage;
 import org.openimaj.image.Image;
 import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.image.processing.convolution.FImageGradients;
 import org.openimaj.image.processor.SinglebandImageProcessor;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IntObjectPair;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * A scale-space pyramid of dense SIFT for {@link FImage}s. Dense sift features
@@ -48,7 +56,13 @@ import org.openimaj.util.pair.IntObjectPair;
  * smoothed with a Gaussian before each scale.
  * <p>
  * The {@link PyramidDenseSIFT} is not thread safe, but is reusable like the
- * {@link DenseSIFT} analyser.
+ * {@link DenseSIFT} analyser. A single analyser can however make use of
+ * multiple threads through
+ * {@link #analyseImage(Image, Rectangle, ThreadPoolExecutor)}. When the
+ * underlying extractor is a {@link DenseSIFT}, the gradient maps are shared
+ * between levels with the same smoothing and the descriptors of all levels are
+ * written into a single matrix; keypoint objects are only created when they
+ * are requested.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * @param <IMAGE>
@@ -73,6 +87,18 @@ public class PyramidDenseSIFT<IMAGE extends Image<?, IMAGE> & SinglebandImagePro
 
 	private List<AbstractDenseSIFT<IMAGE>> levels;
 
+	/**
+	 * Gradient maps for each distinct level of smoothing; re-used between
+	 * calls if the image size doesn't change
+	 */
+	private FImage[][] gradients;
+
+	/**
+	 * The descriptors of all levels, if they were extracted using shared
+	 * gradient maps
+	 */
+	private volatile float[][] descriptors;
+
 	/**
 	 * Construct the pyramid dense sift extractor. The magnification factor is
 	 * used to determine how to smooth the image before extracting the features
@@ -101,28 +127,182 @@ public class PyramidDenseSIFT<IMAGE extends Image<?, IMAGE> & SinglebandImagePro
 
 	@Override
 	public void analyseImage(IMAGE image, Rectangle originalBounds) {
+		analyseImage(image, originalBounds, null);
+	}
+
+	/**
+	 * Compute the dense sift descriptors of the given image using the given
+	 * thread pool. The entire image will be sampled.
+	 * 
+	 * @see #analyseImage(Image, Rectangle, ThreadPoolExecutor)
+	 * 
+	 * @param image
+	 *            the image
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void analyseImage(IMAGE image, ThreadPoolExecutor pool) {
+		analyseImage(image, image.getBounds(), pool);
+	}
+
+	/**
+	 * Compute the dense sift descriptors inside the bounds rectangle of the
+	 * given image using the given thread pool. If the underlying extractor is
+	 * a {@link DenseSIFT} (or subclass), the gradient maps of the image are
+	 * computed once for each distinct amount of smoothing (i.e. once in total
+	 * if the magnification factor is 0) and shared by the levels, and the
+	 * tiles of all the levels (see {@link DenseSIFT#getNumTiles()}) are
+	 * extracted concurrently into a single descriptor matrix. Otherwise, the
+	 * levels are computed concurrently.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param originalBounds
+	 *            the bounds rectangle
+	 * @param pool
+	 *            the thread pool; if null the work is performed in the
+	 *            calling thread.
+	 */
+	public void analyseImage(final IMAGE image, Rectangle originalBounds, ThreadPoolExecutor pool) {
+		final Rectangle[] levelBounds = new Rectangle[sizes.length];
 		final Rectangle bounds = originalBounds;
 
 		for (int i = 0; i < sizes.length; i++) {
 			final int size = sizes[i];
 			final int offset = (int) Math.floor(3f / 2f * (ArrayUtils.maxValue(sizes) - size));
 
-			final IMAGE smoothed;
-			if (magnificationFactor == 0) {
-				smoothed = image;
+			bounds.x = originalBounds.x + offset;
+			bounds.y = originalBounds.y + offset;
+			levelBounds[i] = bounds.clone();
+		}
+
+		if (image instanceof FImage && levels.get(0) instanceof DenseSIFT) {
+			analyseShared((FImage) image, levelBounds, pool);
+		} else {
+			descriptors = null;
+
+			if (pool == null) {
+				for (int i = 0; i < sizes.length; i++)
+					analyseLevel(image, i, levelBounds[i]);
 			} else {
-				final float sigma = size / magnificationFactor;
-				smoothed = image.process(new FGaussianConvolve(sigma));
+				Parallel.forIndex(0, sizes.length, 1, new Operation<Integer>() {
+					@Override
+					public void perform(Integer i) {
+						analyseLevel(image, i, levelBounds[i]);
+					}
+				}, pool);
 			}
+		}
+	}
 
-			// extract DSIFT
-			bounds.x = originalBounds.x + offset;
-			bounds.y = originalBounds.y + offset;
+	private float getSmoothingSigma(int level) {
+		return magnificationFactor == 0 ? 0 : sizes[level] / magnificationFactor;
+	}
 
-			final AbstractDenseSIFT<IMAGE> dsift = levels.get(i);
-			dsift.setBinWidth(size);
-			dsift.setBinHeight(size);
-			dsift.analyseImage(smoothed, bounds);
+	private void analyseLevel(IMAGE image, int level, Rectangle bounds) {
+		final float sigma = getSmoothingSigma(level);
+		final IMAGE smoothed = sigma == 0 ? image : image.process(new FGaussianConvolve(sigma));
+
+		final AbstractDenseSIFT<IMAGE> dsift = levels.get(level);
+		dsift.setBinWidth(sizes[level]);
+		dsift.setBinHeight(sizes[level]);
+		dsift.analyseImage(smoothed, bounds);
+	}
+
+	private void analyseShared(final FImage image, Rectangle[] levelBounds, ThreadPoolExecutor pool) {
+		final int nLevels = sizes.length;
+		final DenseSIFT[] dsifts = new DenseSIFT[nLevels];
+
+		// work out which levels can share gradient maps
+		final TFloatArrayList sigmas = new TFloatArrayList();
+		final int[] levelGradients = new int[nLevels];
+		for (int i = 0; i < nLevels; i++) {
+			dsifts[i] = (DenseSIFT) levels.get(i);
+			dsifts[i].setBinWidth(sizes[i]);
+			dsifts[i].setBinHeight(sizes[i]);
+
+			final float sigma = getSmoothingSigma(i);
+			if (!sigmas.contains(sigma))
+				sigmas.add(sigma);
+			levelGradients[i] = sigmas.indexOf(sigma);
+		}
+
+		final int numOriBins = dsifts[0].numOriBins;
+		if (gradients == null || gradients.length != sigmas.size() || gradients[0][0].width != image.width
+				|| gradients[0][0].height != image.height)
+		{
+			gradients = new FImage[sigmas.size()][numOriBins];
+			for (int i = 0; i < gradients.length; i++)
+				for (int j = 0; j < numOriBins; j++)
+					gradients[i][j] = new FImage(image.width, image.height);
+		}
+
+		final Operation<Integer> gradientOp = new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final float sigma = sigmas.get(i);
+				final FImage smoothed = sigma == 0 ? image : image.process(new FGaussianConvolve(sigma));
+
+				FImageGradients.gradientMagnitudesAndQuantisedOrientations(smoothed, gradients[i]);
+			}
+		};
+
+		// allocate the descriptors of all levels in one go, and give each
+		// level a view of its part
+		final int[] featureOffsets = new int[nLevels + 1];
+		for (int i = 0; i < nLevels; i++)
+			featureOffsets[i + 1] = featureOffsets[i] + dsifts[i].computeNumFeatures(levelBounds[i]);
+
+		final int len = numOriBins * dsifts[0].numBinsX * dsifts[0].numBinsY;
+		descriptors = new float[featureOffsets[nLevels]][len];
+
+		final int[] tileOffsets = new int[nLevels + 1];
+		for (int i = 0; i < nLevels; i++) {
+			final float[][] view = Arrays.copyOfRange(descriptors, featureOffsets[i], featureOffsets[i + 1]);
+			final float[] energies = new float[view.length];
+
+			dsifts[i].setupSharedGradients(gradients[levelGradients[i]], levelBounds[i], view, energies);
+			tileOffsets[i + 1] = tileOffsets[i] + dsifts[i].getNumTiles();
+		}
+
+		final Operation<Integer> tileOp = new Operation<Integer>() {
+			@Override
+			public void perform(Integer tile) {
+				int level = 0;
+				while (tile >= tileOffsets[level + 1])
+					level++;
+
+				dsifts[level].extractTile(tile - tileOffsets[level]);
+			}
+		};
+
+		final Operation<IntRange> normaliseOp = new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				normalise(dsifts, featureOffsets, range.start, range.stop);
+			}
+		};
+
+		if (pool == null) {
+			for (int i = 0; i < sigmas.size(); i++)
+				gradientOp.perform(i);
+			for (int i = 0; i < tileOffsets[nLevels]; i++)
+				tileOp.perform(i);
+			normalise(dsifts, featureOffsets, 0, descriptors.length);
+		} else {
+			Parallel.forIndex(0, sigmas.size(), 1, gradientOp, pool);
+			Parallel.forIndex(0, tileOffsets[nLevels], 1, tileOp, pool);
+			Parallel.forRange(0, descriptors.length, 1, normaliseOp, pool);
+		}
+	}
+
+	private static void normalise(DenseSIFT[] dsifts, int[] featureOffsets, int from, int to) {
+		for (int i = 0; i < dsifts.length; i++) {
+			final int start = Math.max(from, featureOffsets[i]);
+			final int stop = Math.min(to, featureOffsets[i + 1]);
+
+			if (start < stop)
+				dsifts[i].normaliseDescriptors(start - featureOffsets[i], stop - featureOffsets[i]);
 		}
 	}
 
@@ -347,6 +527,9 @@ public class PyramidDenseSIFT<IMAGE extends Image<?, IMAGE> & SinglebandImagePro
 
 	@Override
 	public float[][] getDescriptors() {
+		if (descriptors != null)
+			return descriptors;
+
 		int len = 0;
 		for (int i = 0; i < sizes.length; i++) {
 			len += levels.get(i).getDescriptors().length;
@@ -364,4 +547,18 @@ public class PyramidDenseSIFT<IMAGE extends Image<?, IMAGE> & SinglebandImagePro
 
 		return descr;
 	}
+
+	@Override
+	public PyramidDenseSIFT<IMAGE> clone() {
+		final PyramidDenseSIFT<IMAGE> clone = (PyramidDenseSIFT<IMAGE>) super.clone();
+
+		clone.levels = new ArrayList<AbstractDenseSIFT<IMAGE>>(sizes.length);
+		for (final AbstractDenseSIFT<IMAGE> level : levels)
+			clone.levels.add(level.clone());
+
+		clone.gradients = null;
+		clone.descriptors = null;
+
+		return clone;
+	}
 }
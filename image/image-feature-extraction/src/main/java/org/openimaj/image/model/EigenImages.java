@@ -32,7 +32,9 @@ package org.openimaj.image.model;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -43,6 +45,7 @@ import org.openimaj.image.feature.DoubleFV2FImage;
 import org.openimaj.image.feature.FImage2DoubleFV;
 import org.openimaj.io.IOUtils;
 import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.math.matrix.algorithm.pca.StreamingPrincipalComponentAnalysis;
 import org.openimaj.math.matrix.algorithm.pca.ThinSvdPrincipalComponentAnalysis;
 import org.openimaj.ml.pca.FeatureVectorPCA;
 import org.openimaj.ml.training.BatchTrainer;
@@ -125,6 +128,49 @@ public class EigenImages implements BatchTrainer<FImage>, FeatureExtractor<Doubl
 		pca.learnBasis(features);
 	}
 
+	/**
+	 * Train in parallel using the given thread pool. Rather than building a
+	 * data matrix containing all the images, the mean and covariance of the
+	 * images are accumulated with a {@link StreamingPrincipalComponentAnalysis}
+	 * (see
+	 * {@link StreamingPrincipalComponentAnalysis#update(List, ThreadPoolExecutor)}
+	 * ) and used to compute the basis. The images are retrieved from the list
+	 * by the worker threads, so lists that lazily load or compute their images
+	 * (i.e. from disk or by aligning detected faces) are also processed in
+	 * parallel, and only a small block of images per thread needs to be held in
+	 * memory.
+	 * <p>
+	 * Memory usage is proportional to
+	 * {@link StreamingPrincipalComponentAnalysis#DEFAULT_NUM_ACCUMULATORS}
+	 * multiplied by the square of the number of pixels in each image,
+	 * irrespective of the number of threads.
+	 * 
+	 * @param data
+	 *            the training images
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void train(final List<? extends FImage> data, ThreadPoolExecutor pool) {
+		width = data.get(0).width;
+		height = data.get(0).height;
+
+		final StreamingPrincipalComponentAnalysis total = new StreamingPrincipalComponentAnalysis(numComponents);
+
+		total.update(new AbstractList<double[]>() {
+			@Override
+			public double[] get(int index) {
+				return FImage2DoubleFV.INSTANCE.extractFeature(data.get(index)).values;
+			}
+
+			@Override
+			public int size() {
+				return data.size();
+			}
+		}, pool);
+
+		pca.learnBasis(total);
+	}
+
 	/**
 	 * Reconstruct an image from a weight vector
 	 * 
@@ -32,11 +32,13 @@ package org.openimaj.image.model;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -48,7 +50,9 @@ import org.openimaj.image.FImage;
 import org.openimaj.image.feature.FImage2DoubleFV;
 import org.openimaj.io.ReadWriteableBinary;
 import org.openimaj.math.matrix.algorithm.LinearDiscriminantAnalysis;
+import org.openimaj.math.matrix.algorithm.StreamingLinearDiscriminantAnalysis;
 import org.openimaj.math.matrix.algorithm.pca.PrincipalComponentAnalysis;
+import org.openimaj.math.matrix.algorithm.pca.StreamingPrincipalComponentAnalysis;
 import org.openimaj.math.matrix.algorithm.pca.ThinSvdPrincipalComponentAnalysis;
 import org.openimaj.ml.training.BatchTrainer;
 import org.openimaj.util.array.ArrayUtils;
@@ -198,6 +202,64 @@ public class FisherImages implements BatchTrainer<IndependentPair<?, FImage>>,
 		mean = pca.getMean();
 	}
 
+	/**
+	 * Train in parallel using the given thread pool. Rather than holding all
+	 * the data in memory, two passes are made over the list: the first
+	 * accumulates the statistics for the PCA with a
+	 * {@link StreamingPrincipalComponentAnalysis}, and the second projects each
+	 * image with the PCA basis and accumulates the LDA statistics with a
+	 * {@link StreamingLinearDiscriminantAnalysis}. Each pass shares a small
+	 * fixed number of accumulators between the threads (see
+	 * {@link StreamingPrincipalComponentAnalysis#DEFAULT_NUM_ACCUMULATORS}), so
+	 * memory usage does not grow with the number of threads. The items are
+	 * retrieved from the list by the worker threads, so lists that lazily load
+	 * or compute their images are also processed in parallel (but note that
+	 * each item will be retrieved twice).
+	 * 
+	 * @param data
+	 *            the training data
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void train(final List<? extends IndependentPair<?, FImage>> data, ThreadPoolExecutor pool) {
+		width = data.get(0).secondObject().width;
+		height = data.get(0).secondObject().height;
+
+		final StreamingPrincipalComponentAnalysis pca = new StreamingPrincipalComponentAnalysis(numComponents);
+		pca.update(new AbstractList<double[]>() {
+			@Override
+			public double[] get(int index) {
+				return FImage2DoubleFV.INSTANCE.extractFeature(data.get(index).secondObject()).values;
+			}
+
+			@Override
+			public int size() {
+				return data.size();
+			}
+		}, pool);
+		pca.learnBasis();
+
+		final StreamingLinearDiscriminantAnalysis lda = new StreamingLinearDiscriminantAnalysis(numComponents);
+		lda.update(new AbstractList<IndependentPair<?, double[]>>() {
+			@Override
+			public IndependentPair<?, double[]> get(int index) {
+				final IndependentPair<?, FImage> item = data.get(index);
+				final double[] fv = FImage2DoubleFV.INSTANCE.extractFeature(item.secondObject()).values;
+
+				return IndependentPair.pair(item.firstObject(), pca.project(fv));
+			}
+
+			@Override
+			public int size() {
+				return data.size();
+			}
+		}, pool);
+		lda.learnBasis();
+
+		basis = pca.getBasis().times(lda.getBasis());
+		mean = pca.getMean();
+	}
+
 	private double[] project(double[] vector) {
 		final Matrix vec = new Matrix(1, vector.length);
 		final double[][] vecarr = vec.getArray();
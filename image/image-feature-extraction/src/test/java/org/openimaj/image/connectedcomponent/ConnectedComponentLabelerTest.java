@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.connectedcomponent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.image.connectedcomponent.ConnectedComponentLabeler.Algorithm;
+import org.openimaj.image.pixel.ConnectedComponent;
+import org.openimaj.image.pixel.ConnectedComponent.ConnectMode;
+import org.openimaj.image.pixel.Pixel;
+import org.openimaj.image.pixel.PixelSpanSet;
+
+/**
+ * Tests for the {@link Algorithm#PARALLEL_UNION_FIND} labelling
+ *
+ * @author agent (agent@local)
+ */
+public class ConnectedComponentLabelerTest {
+	private static FImage randomImage(Random rng, int width, int height, double density) {
+		final FImage image = new FImage(width, height);
+		for (int y = 0; y < height; y++)
+			for (int x = 0; x < width; x++)
+				image.pixels[y][x] = rng.nextDouble() < density ? 1 : 0;
+		return image;
+	}
+
+	private static Set<Set<Pixel>> asSets(List<ConnectedComponent> components) {
+		final Set<Set<Pixel>> sets = new HashSet<Set<Pixel>>();
+		for (final ConnectedComponent cc : components)
+			sets.add(new HashSet<Pixel>(cc.pixels));
+		return sets;
+	}
+
+	/**
+	 * Test that the components are the same as those found by the two-pass
+	 * algorithm for both connectivities, including on images that are split
+	 * into several strips
+	 */
+	@Test
+	public void testSameAsTwoPass() {
+		final Random rng = new Random(42);
+
+		for (final ConnectMode mode : ConnectMode.values()) {
+			for (final int height : new int[] { 1, 7, 200 }) {
+				final FImage image = randomImage(rng, 150, height, 0.45);
+
+				final List<ConnectedComponent> expected = new ConnectedComponentLabeler(Algorithm.TWO_PASS, mode)
+						.findComponents(image);
+				final List<ConnectedComponent> actual = new ConnectedComponentLabeler(Algorithm.PARALLEL_UNION_FIND,
+						mode).findComponents(image);
+
+				assertEquals(expected.size(), actual.size());
+				assertEquals(asSets(expected), asSets(actual));
+
+				for (final ConnectedComponent cc : actual)
+					assertTrue(cc.pixels instanceof PixelSpanSet);
+			}
+		}
+	}
+
+	/**
+	 * Test that the label image agrees with the components
+	 */
+	@Test
+	public void testLabelImage() {
+		final FImage image = randomImage(new Random(7), 100, 120, 0.5);
+		final RunLengthLabeling labelling = new RunLengthLabeling(image, 0, ConnectMode.CONNECT_8);
+
+		final int[] labels = labelling.getLabelImage();
+		final List<ConnectedComponent> components = labelling.getComponents();
+		assertEquals(labelling.getNumComponents(), components.size());
+
+		int next = 1;
+		for (int y = 0; y < image.height; y++) {
+			for (int x = 0; x < image.width; x++) {
+				final int label = labels[y * image.width + x];
+
+				if (image.pixels[y][x] == 0) {
+					assertEquals(0, label);
+				} else {
+					assertTrue(components.get(label - 1).find(x, y));
+
+					// labels are numbered in scan order
+					assertTrue(label <= next);
+					if (label == next)
+						next++;
+				}
+			}
+		}
+	}
+}
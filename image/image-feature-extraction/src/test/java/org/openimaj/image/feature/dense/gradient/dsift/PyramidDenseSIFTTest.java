@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.dense.gradient.dsift;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.processing.convolution.FGaussianConvolve;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link PyramidDenseSIFT}, checking that the levels extracted from
+ * shared gradient maps match independently extracted levels.
+ * 
+ * @author agent (agent@local)
+ */
+public class PyramidDenseSIFTTest {
+	private static final int[] SIZES = { 4, 6, 8, 10 };
+
+	private FImage image;
+
+	/**
+	 * Load the test image
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readF(OpenIMAJ.getLogoAsStream());
+	}
+
+	/**
+	 * Extract each level of the pyramid independently, smoothing the image
+	 * and offsetting the bounds in the same way as the pyramid
+	 */
+	private DenseSIFT[] extractLevels(DenseSIFT dsift, float magFactor) {
+		final DenseSIFT[] levels = new DenseSIFT[SIZES.length];
+		final Rectangle bounds = image.getBounds();
+
+		for (int i = 0; i < SIZES.length; i++) {
+			final int offset = (int) Math.floor(3f / 2f * (ArrayUtils.maxValue(SIZES) - SIZES[i]));
+			final FImage smoothed = magFactor == 0 ? image : image.process(new FGaussianConvolve(SIZES[i]
+					/ magFactor));
+
+			bounds.x += offset;
+			bounds.y += offset;
+
+			levels[i] = dsift.clone();
+			levels[i].setBinWidth(SIZES[i]);
+			levels[i].setBinHeight(SIZES[i]);
+			levels[i].analyseImage(smoothed, bounds);
+		}
+
+		return levels;
+	}
+
+	private void checkLevels(DenseSIFT[] expected, PyramidDenseSIFT<FImage> pdsift) {
+		final float[][][] levelDescriptors = pdsift.getLevelDescriptors();
+		final float[][] descriptors = pdsift.getDescriptors();
+		final LocalFeatureList<FloatDSIFTKeypoint> keypoints = pdsift.getFloatKeypoints();
+
+		int k = 0;
+		for (int i = 0; i < expected.length; i++) {
+			final float[][] expectedDescriptors = expected[i].getDescriptors();
+			final LocalFeatureList<FloatDSIFTKeypoint> expectedKeypoints = expected[i].getFloatKeypoints();
+
+			assertEquals(expectedDescriptors.length, levelDescriptors[i].length);
+			for (int j = 0; j < expectedDescriptors.length; j++, k++) {
+				assertArrayEquals(expectedDescriptors[j], levelDescriptors[i][j], 0f);
+				assertArrayEquals(expectedDescriptors[j], descriptors[k], 0f);
+
+				assertEquals(expectedKeypoints.get(j).x, keypoints.get(k).x, 0f);
+				assertEquals(expectedKeypoints.get(j).y, keypoints.get(k).y, 0f);
+				assertEquals(expectedKeypoints.get(j).energy, keypoints.get(k).energy, 0f);
+			}
+		}
+		assertEquals(k, descriptors.length);
+	}
+
+	private void check(DenseSIFT dsift, float magFactor) {
+		final DenseSIFT[] expected = extractLevels(dsift, magFactor);
+
+		final PyramidDenseSIFT<FImage> pdsift = new PyramidDenseSIFT<FImage>(dsift, magFactor, SIZES);
+		pdsift.analyseImage(image);
+		checkLevels(expected, pdsift);
+
+		// the shared gradient maps are re-used for the next image
+		pdsift.analyseImage(image, GlobalExecutorPool.getPool());
+		checkLevels(expected, pdsift);
+	}
+
+	/**
+	 * Test without smoothing, where all levels share one set of gradients
+	 */
+	@Test
+	public void testUnsmoothed() {
+		check(new DenseSIFT(), 0);
+	}
+
+	/**
+	 * Test with smoothing, where each level has its own gradients
+	 */
+	@Test
+	public void testSmoothed() {
+		check(new DenseSIFT(), 6);
+	}
+
+	/**
+	 * Test the approximate extractor without smoothing
+	 */
+	@Test
+	public void testApproximateUnsmoothed() {
+		check(new ApproximateDenseSIFT(), 0);
+	}
+
+	/**
+	 * Test the approximate extractor with smoothing
+	 */
+	@Test
+	public void testApproximateSmoothed() {
+		check(new ApproximateDenseSIFT(), 6);
+	}
+}
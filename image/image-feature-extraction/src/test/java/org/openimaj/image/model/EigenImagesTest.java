@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link EigenImages}
+ * 
+ * @author agent (agent@local)
+ */
+public class EigenImagesTest {
+	/**
+	 * Create random images in which the variance of the pixels decreases
+	 * along the rows, so that the leading principal components are well
+	 * separated.
+	 */
+	static List<FImage> makeImages(Random rng, int n) {
+		final List<FImage> images = new ArrayList<FImage>();
+
+		for (int i = 0; i < n; i++) {
+			final FImage image = new FImage(8, 8);
+			for (int y = 0; y < image.height; y++)
+				for (int x = 0; x < image.width; x++)
+					image.pixels[y][x] = (float) (0.5 + rng.nextGaussian() * (image.height - y) / image.height);
+			images.add(image);
+		}
+
+		return images;
+	}
+
+	/**
+	 * Test that training in parallel gives the same features as training
+	 * sequentially (up to the sign of each component).
+	 */
+	@Test
+	public void testParallelTraining() {
+		final List<FImage> images = makeImages(new Random(1), 100);
+
+		final EigenImages sequential = new EigenImages(5);
+		sequential.train(images);
+
+		final EigenImages parallel = new EigenImages(5);
+		parallel.train(images, GlobalExecutorPool.getPool());
+
+		for (final FImage image : images) {
+			final double[] expected = sequential.extractFeature(image).values;
+			final double[] actual = parallel.extractFeature(image).values;
+
+			assertEquals(expected.length, actual.length);
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(Math.abs(expected[i]), Math.abs(actual[i]), 1e-4);
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.image.FImage;
+import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link FisherImages}
+ * 
+ * @author agent (agent@local)
+ */
+public class FisherImagesTest {
+	/**
+	 * Test that training in parallel gives the same features as training
+	 * sequentially (up to the sign of each component). The classes are
+	 * balanced, as the batch LDA weights the between-class scatter by the
+	 * total number of instances.
+	 */
+	@Test
+	public void testParallelTraining() {
+		final Random rng = new Random(2);
+		final List<IndependentPair<?, FImage>> data = new ArrayList<IndependentPair<?, FImage>>();
+
+		for (int c = 0; c < 4; c++) {
+			for (final FImage image : EigenImagesTest.makeImages(rng, 30)) {
+				// give each class a brighter region in a different place
+				image.pixels[c][c] += 2;
+				image.pixels[c + 1][c + 2] += 2;
+				data.add(IndependentPair.pair(c, image));
+			}
+		}
+
+		final FisherImages sequential = new FisherImages(3);
+		sequential.train(data);
+
+		final FisherImages parallel = new FisherImages(3);
+		parallel.train(data, GlobalExecutorPool.getPool());
+
+		for (final IndependentPair<?, FImage> item : data) {
+			final double[] expected = sequential.extractFeature(item.secondObject()).values;
+			final double[] actual = parallel.extractFeature(item.secondObject()).values;
+
+			assertEquals(expected.length, actual.length);
+			for (int i = 0; i < expected.length; i++)
+				assertEquals(Math.abs(expected[i]), Math.abs(actual[i]), 1e-4 * (1 + Math.abs(expected[i])));
+		}
+	}
+}
@@ -35,6 +35,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.math.random.MersenneTwister;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openimaj.data.AbstractDataSource;
+import org.openimaj.data.DataSource;
 import org.openimaj.data.RandomData;
 import org.openimaj.feature.DoubleFV;
 import org.openimaj.feature.MultidimensionalFloatFV;
@@ -47,7 +51,7 @@ import org.openimaj.image.MBFImage;
 import org.openimaj.image.feature.local.aggregate.VLAD;
 import org.openimaj.knn.pq.FloatProductQuantiser;
 import org.openimaj.knn.pq.FloatProductQuantiserUtilities;
-import org.openimaj.math.matrix.algorithm.pca.ThinSvdPrincipalComponentAnalysis;
+import org.openimaj.math.matrix.algorithm.pca.RandomisedPrincipalComponentAnalysis;
 import org.openimaj.ml.clustering.FloatCentroidsResult;
 import org.openimaj.ml.clustering.assignment.hard.ExactFloatAssigner;
 import org.openimaj.ml.clustering.kmeans.FloatKMeans;
@@ -67,6 +71,8 @@ import Jama.Matrix;
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class VLADIndexerDataBuilder {
+	private static final Logger logger = LogManager.getLogger(VLADIndexerDataBuilder.class);
+
 	/**
 	 * Feature post-processing options
 	 * 
@@ -175,10 +181,13 @@ public class VLADIndexerDataBuilder {
 	 * <ol>
 	 * <li>A sample of the features is loaded
 	 * <li>The sample is clustered using k-means
-	 * <li>VLAD representations are then built for all the input images
-	 * <li>PCA is performed on the VLAD features
+	 * <li>PCA is performed on the VLAD features of a sample of the input
+	 * images using a randomised PCA. Sampled files that can't be read or that
+	 * contain no features are left out. The VLAD features are not held in
+	 * memory; instead they are recomputed from the local features on each
+	 * pass over the data.
 	 * <li>Whitening is applied to the PCA basis
-	 * <li>The VLAD features are projected by the basis
+	 * <li>The VLAD features of the sample are projected by the basis
 	 * <li>Product quantisers are learned
 	 * <li>The final {@link VLADIndexerData} object is created
 	 * </ol>
@@ -189,11 +198,17 @@ public class VLADIndexerDataBuilder {
 	public VLADIndexerData buildIndexerData() throws IOException {
 		final VLAD<float[]> vlad = buildVLAD();
 
-		final List<MultidimensionalFloatFV> vlads = computeVLADs(vlad);
+		final int[] indices = RandomData.getUniqueRandomInts((int) (localFeatures.size() * pcaSampleProp), 0,
+				localFeatures.size());
+		final List<File> sample = filesWithFeatures(new AcceptingListView<File>(localFeatures, indices));
+		if (sample.isEmpty())
+			throw new IOException("None of the sampled files contain any features");
+
+		final VLADDataSource vlads = new VLADDataSource(vlad, sample);
 
 		// learn PCA basis
 		System.out.println("Learning PCA basis");
-		final FeatureVectorPCA pca = new FeatureVectorPCA(new ThinSvdPrincipalComponentAnalysis(numPcaDims));
+		final FeatureVectorPCA pca = new FeatureVectorPCA(new RandomisedPrincipalComponentAnalysis(numPcaDims));
 		pca.learnBasis(vlads);
 
 		// perform whitening to balance variance; roll into pca basis
@@ -262,48 +277,105 @@ public class VLADIndexerDataBuilder {
 		return m;
 	}
 
-	private float[][] projectFeatures(final FeatureVectorPCA pca, List<MultidimensionalFloatFV> vlads) {
-		final List<float[]> pcaVlads = new ArrayList<float[]>();
-		Parallel.forEach(vlads, new Operation<MultidimensionalFloatFV>() {
-			@Override
-			public void perform(MultidimensionalFloatFV vector) {
-				final DoubleFV result = pca.project(vector).normaliseFV(2);
-				final float[] fresult = ArrayUtils.convertToFloat(result.values);
+	private float[][] projectFeatures(final FeatureVectorPCA pca, final VLADDataSource vlads) {
+		final float[][] pcaVlads = new float[vlads.size()][];
 
-				synchronized (pcaVlads) {
-					pcaVlads.add(fresult);
-				}
+		Parallel.forIndex(0, vlads.size(), 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				final DoubleFV result = pca.project(vlads.computeVLAD(i)).normaliseFV(2);
+				pcaVlads[i] = ArrayUtils.convertToFloat(result.values);
 			}
 		});
 
-		return pcaVlads.toArray(new float[pcaVlads.size()][]);
+		return pcaVlads;
 	}
 
-	private List<MultidimensionalFloatFV> computeVLADs(final VLAD<float[]> vlad) {
-		final List<MultidimensionalFloatFV> vlads = new ArrayList<MultidimensionalFloatFV>();
-
-		final int[] indices = RandomData.getUniqueRandomInts((int) (localFeatures.size() * pcaSampleProp), 0,
-				localFeatures.size());
-		final List<File> selectedLocalFeatures = new AcceptingListView<File>(localFeatures, indices);
+	/**
+	 * Select the files that can be read and contain at least one feature (and
+	 * so produce a VLAD). Files that can't be read are logged and skipped.
+	 */
+	private List<File> filesWithFeatures(final List<File> files) {
+		final boolean[] accept = new boolean[files.size()];
 
-		Parallel.forEach(selectedLocalFeatures, new Operation<File>() {
+		Parallel.forIndex(0, files.size(), 1, new Operation<Integer>() {
 			@Override
-			public void perform(File file) {
+			public void perform(Integer i) {
 				try {
-					final List<FloatLocalFeatureAdaptor<?>> fkeys = readFeatures(file);
-					final MultidimensionalFloatFV feature = vlad.aggregate(fkeys);
-
-					synchronized (vlads) {
-						if (feature != null)
-							vlads.add(feature);
-					}
+					accept[i] = readFeatures(files.get(i)).size() > 0;
 				} catch (final IOException e) {
-					e.printStackTrace();
+					logger.warn("Unable to read the features in " + files.get(i) + "; the file will be skipped", e);
 				}
 			}
 		});
 
-		return vlads;
+		final List<File> accepted = new ArrayList<File>(files.size());
+		for (int i = 0; i < accept.length; i++)
+			if (accept[i])
+				accepted.add(files.get(i));
+
+		return accepted;
+	}
+
+	/**
+	 * {@link DataSource} of the VLAD features of a list of local feature
+	 * files, all of which must contain features. The features are read and
+	 * aggregated each time a row is accessed, so only the rows currently
+	 * being processed are held in memory. Rows may be requested concurrently
+	 * by different threads.
+	 */
+	private class VLADDataSource extends AbstractDataSource<float[]> {
+		private final VLAD<float[]> vlad;
+		private final List<File> files;
+		private volatile int numDimensions = -1;
+
+		VLADDataSource(VLAD<float[]> vlad, List<File> files) {
+			this.vlad = vlad;
+			this.files = files;
+		}
+
+		MultidimensionalFloatFV computeVLAD(int row) {
+			final File file = files.get(row);
+
+			try {
+				final MultidimensionalFloatFV feature = vlad.aggregate(readFeatures(file));
+				if (feature == null)
+					throw new IllegalStateException("No features were found in " + file);
+
+				return feature;
+			} catch (final IOException e) {
+				throw new RuntimeException("Unable to re-read the features in " + file, e);
+			}
+		}
+
+		@Override
+		public float[] getData(int row) {
+			return computeVLAD(row).values;
+		}
+
+		@Override
+		public void getData(int startRow, int stopRow, float[][] data) {
+			for (int i = startRow, j = 0; i < stopRow; i++, j++)
+				data[j] = getData(i);
+		}
+
+		@Override
+		public int numDimensions() {
+			if (numDimensions < 0)
+				numDimensions = computeVLAD(0).length();
+
+			return numDimensions;
+		}
+
+		@Override
+		public int size() {
+			return files.size();
+		}
+
+		@Override
+		public float[][] createTemporaryArray(int size) {
+			return new float[size][];
+		}
 	}
 
 	private List<FloatLocalFeatureAdaptor<?>> readFeatures(File file) throws IOException {
@@ -330,7 +402,7 @@ public class VLADIndexerDataBuilder {
 						samples.addAll(filtered);
 					}
 				} catch (final IOException e) {
-					e.printStackTrace();
+					logger.warn("Unable to read the features in " + file + "; the file will be skipped", e);
 				}
 			}
 		});
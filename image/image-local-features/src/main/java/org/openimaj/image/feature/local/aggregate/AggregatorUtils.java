@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import org.openimaj.feature.ArrayFeatureVector;
+import org.openimaj.feature.local.LocalFeature;
+
+/**
+ * Helpers shared by the batched {@link VectorAggregator} implementations.
+ * 
+ * @author agent (agent@local)
+ */
+final class AggregatorUtils {
+	/**
+	 * The number of descriptors processed together by the batched
+	 * aggregators
+	 */
+	static final int BLOCK_SIZE = 64;
+
+	private AggregatorUtils() {
+	}
+
+	/**
+	 * Get a view of the feature vectors of a list of local features.
+	 * 
+	 * @param features
+	 *            the local features
+	 * @return a list view of the feature vectors
+	 */
+	static <T> List<ArrayFeatureVector<T>> vectors(
+			final List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features)
+	{
+		return new AbstractList<ArrayFeatureVector<T>>() {
+			@Override
+			public ArrayFeatureVector<T> get(int index) {
+				return features.get(index).getFeatureVector();
+			}
+
+			@Override
+			public int size() {
+				return features.size();
+			}
+		};
+	}
+
+	/**
+	 * Copy the values of a feature vector into a pre-allocated array of
+	 * doubles without creating any intermediate arrays.
+	 * 
+	 * @param fv
+	 *            the feature vector
+	 * @param out
+	 *            the output array
+	 */
+	static void copy(ArrayFeatureVector<?> fv, double[] out) {
+		final Object values = fv.values;
+
+		if (values instanceof float[]) {
+			final float[] v = (float[]) values;
+			for (int i = 0; i < out.length; i++)
+				out[i] = v[i];
+		} else if (values instanceof byte[]) {
+			final byte[] v = (byte[]) values;
+			for (int i = 0; i < out.length; i++)
+				out[i] = v[i];
+		} else if (values instanceof double[]) {
+			System.arraycopy(values, 0, out, 0, out.length);
+		} else {
+			for (int i = 0; i < out.length; i++)
+				out[i] = fv.getAsDouble(i);
+		}
+	}
+}
@@ -29,7 +29,9 @@
  */
 package org.openimaj.image.feature.local.aggregate;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -41,6 +43,9 @@ import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
 import org.openimaj.math.statistics.distribution.MultivariateGaussian;
 import org.openimaj.ml.gmm.GaussianMixtureModelEM;
 import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of the Fisher Vector (FV) encoding scheme. FV provides a way
@@ -54,6 +59,13 @@ import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
  * thus you probably want to learn a {@link CovarianceType#Diagonal} or
  * {@link CovarianceType#Spherical} type gaussian with the
  * {@link GaussianMixtureModelEM} class.
+ * <p>
+ * Descriptors are encoded in blocks: the log-likelihoods of a block of
+ * descriptors under all the gaussians are computed together, and the
+ * posteriors are then computed with the log-sum-exp trick, skipping gaussians
+ * whose posterior is negligible. Working buffers are kept per-thread and
+ * reused across calls, and the work for a single image can be split across
+ * the threads of a pool with {@link #aggregate(List, ThreadPoolExecutor)}.
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  *
@@ -97,10 +109,19 @@ import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
 								)
 		})
 public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>, FloatFV> {
+	/**
+	 * Posteriors smaller than this are ignored
+	 */
+	private static final double POSTERIOR_CUTOFF = 1e-6;
+	private static final double LOG_POSTERIOR_CUTOFF = Math.log(POSTERIOR_CUTOFF);
+
 	private MixtureOfGaussians gmm;
 	private boolean hellinger;
 	private boolean l2normalise;
 
+	private transient Model model;
+	private transient ThreadLocal<Workspace> workspaces;
+
 	/**
 	 * Construct with the given mixture of Gaussians and optional improvement
 	 * steps. The covariance matrices of the gaussians are all assumed to be
@@ -153,24 +174,113 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 		this(gmm, improved, improved);
 	}
 
+	/**
+	 * The cached parameters of the diagonal gaussians in the form needed by
+	 * the batched posterior computation.
+	 */
+	private static class Model {
+		int K;
+		int D;
+		double[][] means;
+		double[][] invStd;
+		double[][] precision;
+		double[][] meanPrecision;
+		double[] logConst;
+
+		Model(MixtureOfGaussians gmm) {
+			K = gmm.gaussians.length;
+			D = gmm.gaussians[0].getMean().getColumnDimension();
+
+			means = new double[K][];
+			invStd = new double[K][D];
+			precision = new double[K][D];
+			meanPrecision = new double[K][D];
+			logConst = new double[K];
+
+			for (int k = 0; k < K; k++) {
+				final MultivariateGaussian gauss = gmm.gaussians[k];
+				means[k] = gauss.getMean().getArray()[0];
+
+				double logDet = 0;
+				double mpm = 0;
+				for (int j = 0; j < D; j++) {
+					final double var = gauss.getCovariance(j, j);
+
+					invStd[k][j] = 1.0 / Math.sqrt(var);
+					precision[k][j] = 1.0 / var;
+					meanPrecision[k][j] = means[k][j] / var;
+					logDet += Math.log(var);
+					mpm += means[k][j] * meanPrecision[k][j];
+				}
+
+				logConst[k] = Math.log(gmm.weights[k]) - 0.5 * (D * Math.log(2 * Math.PI) + logDet + mpm);
+			}
+		}
+	}
+
+	/**
+	 * Per-thread buffers that are reused across calls.
+	 */
+	private static class Workspace {
+		double[] acc;
+		double[][] x;
+		double[][] logp;
+
+		Workspace(int K, int D) {
+			acc = new double[2 * K * D];
+			x = new double[AggregatorUtils.BLOCK_SIZE][D];
+			logp = new double[AggregatorUtils.BLOCK_SIZE][K];
+		}
+	}
+
+	private synchronized Model getModel() {
+		if (model == null)
+			model = new Model(gmm);
+		return model;
+	}
+
+	private synchronized Workspace getWorkspace() {
+		if (workspaces == null) {
+			final Model m = getModel();
+
+			workspaces = new ThreadLocal<Workspace>() {
+				@Override
+				protected Workspace initialValue() {
+					return new Workspace(m.K, m.D);
+				}
+			};
+		}
+
+		final Workspace ws = workspaces.get();
+		Arrays.fill(ws.acc, 0);
+		return ws;
+	}
+
 	@Override
 	public FloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features) {
 		if (features == null || features.size() <= 0)
 			return null;
 
-		final int K = this.gmm.gaussians.length;
-		final int D = features.get(0).getFeatureVector().length();
-
-		final float[] vector = new float[2 * K * D];
+		return aggregateVectors(AggregatorUtils.vectors(features));
+	}
 
-		// cache all the features in an array
-		final double[][] X = new double[features.size()][];
-		for (int i = 0; i < X.length; i++) {
-			final LocalFeature<?, ? extends ArrayFeatureVector<T>> f = features.get(i);
-			X[i] = f.getFeatureVector().asDoubleVector();
-		}
+	/**
+	 * Aggregate the given features into a vector, splitting the work across
+	 * the threads of the given pool.
+	 * 
+	 * @param features
+	 *            the features to aggregate
+	 * @param pool
+	 *            the thread pool
+	 * @return the aggregated vector
+	 */
+	public FloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features,
+			ThreadPoolExecutor pool)
+	{
+		if (features == null || features.size() <= 0)
+			return null;
 
-		return computeFisherVector(features.size(), K, D, vector, X);
+		return aggregateVectors(AggregatorUtils.vectors(features), pool);
 	}
 
 	@Override
@@ -178,58 +288,134 @@ public class FisherVector<T> implements VectorAggregator<ArrayFeatureVector<T>,
 		if (features == null || features.size() <= 0)
 			return null;
 
-		final int K = this.gmm.gaussians.length;
-		final int D = features.get(0).length();
+		final Workspace ws = getWorkspace();
+		accumulate(features, 0, features.size(), ws);
 
-		final float[] vector = new float[2 * K * D];
+		return computeFisherVector(features.size(), ws.acc);
+	}
 
-		// cache all the features in an array
-		final double[][] X = new double[features.size()][];
-		for (int i = 0; i < X.length; i++) {
-			final ArrayFeatureVector<T> f = features.get(i);
-			X[i] = f.asDoubleVector();
-		}
+	/**
+	 * Aggregate the given vectors into a vector, splitting the work across the
+	 * threads of the given pool. Each thread accumulates the statistics of its
+	 * share of the vectors separately, and these are then summed.
+	 * 
+	 * @param features
+	 *            the vectors to aggregate
+	 * @param pool
+	 *            the thread pool
+	 * @return the aggregated vector
+	 */
+	public FloatFV aggregateVectors(final List<? extends ArrayFeatureVector<T>> features, ThreadPoolExecutor pool)
+	{
+		if (features == null || features.size() <= 0)
+			return null;
+
+		final Model m = getModel();
+		final double[] acc = new double[2 * m.K * m.D];
 
-		return computeFisherVector(features.size(), K, D, vector, X);
+		Parallel.forRange(0, features.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Workspace ws = getWorkspace();
+				accumulate(features, range.start, range.stop, ws);
+
+				synchronized (acc) {
+					for (int i = 0; i < acc.length; i++)
+						acc[i] += ws.acc[i];
+				}
+			}
+		}, pool);
+
+		return computeFisherVector(features.size(), acc);
 	}
 
-	private FloatFV computeFisherVector(int nFeatures, final int K,
-			final int D, final float[] vector, final double[][] X)
-	{
-		// compute posterior probabilities of all features at once (more
-		// efficient than
-		// doing it for each one at a time)
-		final double[][] posteriors = gmm.scoreSamples(X).secondObject();
+	/**
+	 * Accumulate the (unnormalised) first and second order statistics of the
+	 * given range of vectors into the workspace. The vectors are processed in
+	 * blocks; the log-likelihoods of all the vectors in a block under each
+	 * gaussian are computed together, and the posteriors are computed with
+	 * the log-sum-exp trick, skipping gaussians with negligible posterior.
+	 */
+	private void accumulate(List<? extends ArrayFeatureVector<T>> features, int start, int stop, Workspace ws) {
+		final Model m = getModel();
+		final int K = m.K;
+		final int D = m.D;
+		final double[] acc = ws.acc;
+
+		for (int b = start; b < stop; b += AggregatorUtils.BLOCK_SIZE) {
+			final int n = Math.min(AggregatorUtils.BLOCK_SIZE, stop - b);
 
-		for (int p = 0; p < X.length; p++) {
-			final double[] xp = X[p];
+			for (int p = 0; p < n; p++)
+				AggregatorUtils.copy(features.get(b + p), ws.x[p]);
 
+			// log-likelihoods: c_k - 0.5 * sum_j (x_j^2 / var_kj - 2 x_j
+			// mean_kj / var_kj)
 			for (int k = 0; k < K; k++) {
-				final double apk = posteriors[p][k];
+				final double[] prec = m.precision[k];
+				final double[] mp = m.meanPrecision[k];
+				final double c = m.logConst[k];
 
-				if (apk < 1e-6)
-					continue; // speed-up: ignore really small terms...
+				for (int p = 0; p < n; p++) {
+					final double[] x = ws.x[p];
 
-				final MultivariateGaussian gauss = gmm.gaussians[k];
-				final double[] mean = gauss.getMean().getArray()[0];
+					double sum = 0;
+					for (int j = 0; j < D; j++)
+						sum += x[j] * (x[j] * prec[j] - 2 * mp[j]);
 
-				for (int j = 0; j < D; j++) {
-					final double var = gauss.getCovariance(j, j);
-					final double diff = (xp[j] - mean[j]) / Math.sqrt(var);
+					ws.logp[p][k] = c - 0.5 * sum;
+				}
+			}
+
+			for (int p = 0; p < n; p++) {
+				final double[] x = ws.x[p];
+				final double[] lp = ws.logp[p];
+
+				double max = lp[0];
+				for (int k = 1; k < K; k++)
+					if (lp[k] > max)
+						max = lp[k];
 
-					vector[k * 2 * D + j] += apk * diff;
-					vector[k * 2 * D + j + D] += apk * ((diff * diff) - 1);
+				// lp is reused to hold the unnormalised posteriors
+				double sum = 0;
+				for (int k = 0; k < K; k++) {
+					final double d = lp[k] - max;
+					lp[k] = d < LOG_POSTERIOR_CUTOFF ? 0 : Math.exp(d);
+					sum += lp[k];
+				}
+
+				for (int k = 0; k < K; k++) {
+					final double apk = lp[k] / sum;
+
+					if (apk < POSTERIOR_CUTOFF)
+						continue; // speed-up: ignore really small terms...
+
+					final double[] mean = m.means[k];
+					final double[] is = m.invStd[k];
+					final int off = k * 2 * D;
+
+					for (int j = 0; j < D; j++) {
+						final double diff = (x[j] - mean[j]) * is[j];
+
+						acc[off + j] += apk * diff;
+						acc[off + j + D] += apk * ((diff * diff) - 1);
+					}
 				}
 			}
 		}
+	}
+
+	private FloatFV computeFisherVector(int nFeatures, final double[] acc) {
+		final int K = this.gmm.gaussians.length;
+		final int D = acc.length / (2 * K);
+		final float[] vector = new float[acc.length];
 
 		for (int k = 0; k < K; k++) {
 			final double wt1 = 1.0 / (nFeatures * Math.sqrt(gmm.weights[k]));
 			final double wt2 = 1.0 / (nFeatures * Math.sqrt(2 * gmm.weights[k]));
 
 			for (int j = 0; j < D; j++) {
-				vector[k * 2 * D + j] *= wt1;
-				vector[k * 2 * D + j + D] *= wt2;
+				vector[k * 2 * D + j] = (float) (acc[k * 2 * D + j] * wt1);
+				vector[k * 2 * D + j + D] = (float) (acc[k * 2 * D + j + D] * wt2);
 			}
 		}
 
@@ -30,7 +30,9 @@
 package org.openimaj.image.feature.local.aggregate;
 
 import java.lang.reflect.Array;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
@@ -40,6 +42,9 @@ import org.openimaj.feature.local.LocalFeature;
 import org.openimaj.image.FImage;
 import org.openimaj.ml.clustering.CentroidsProvider;
 import org.openimaj.ml.clustering.assignment.HardAssigner;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of VLAD, the "Vector of Locally Aggregated Descriptors"
@@ -57,6 +62,11 @@ import org.openimaj.ml.clustering.assignment.HardAssigner;
  * produced by {@link BagOfVisualWords}. However, the VLAD descriptor is can be
  * useful with a much smaller K (i.e. of the order of 16-64 dimensions versus up
  * to 1 million (or more) for {@link BagOfVisualWords}).
+ * <p>
+ * Descriptors are assigned to centroids a block at a time, working buffers are
+ * kept per-thread and reused across calls, and the work for a single image can
+ * be split across the threads of a pool with
+ * {@link #aggregate(List, ThreadPoolExecutor)}.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  * 
@@ -81,6 +91,9 @@ public class VLAD<T> implements VectorAggregator<ArrayFeatureVector<T>, Multidim
 	private T[] centroids;
 	private boolean normalise;
 
+	private transient double[][] centroidsD;
+	private transient ThreadLocal<Workspace<T>> workspaces;
+
 	/**
 	 * Construct with the given assigner and the centroids associated with the
 	 * assigner.
@@ -113,26 +126,82 @@ public class VLAD<T> implements VectorAggregator<ArrayFeatureVector<T>, Multidim
 		this(assigner, centroids.getCentroids(), normalise);
 	}
 
-	@Override
-	public MultidimensionalFloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features) {
-		if (features == null || features.size() <= 0)
-			return null;
+	/**
+	 * Per-thread buffers that are reused across calls.
+	 */
+	private static class Workspace<T> {
+		double[][] acc;
+		double[] x;
+		T[] block;
 
-		final int K = this.centroids.length;
-		final int D = features.get(0).getFeatureVector().length();
+		@SuppressWarnings("unchecked")
+		Workspace(T[] centroids, int D) {
+			acc = new double[centroids.length][D];
+			x = new double[D];
+			block = (T[]) Array.newInstance(centroids.getClass().getComponentType(), AggregatorUtils.BLOCK_SIZE);
+		}
+	}
 
-		final float[][] vector = new float[K][D];
+	private synchronized double[][] getCentroids() {
+		if (centroidsD == null) {
+			final double[][] c = new double[centroids.length][];
 
-		for (final LocalFeature<?, ? extends ArrayFeatureVector<T>> f : features) {
-			final T x = f.getFeatureVector().values;
-			final int i = assigner.assign(x);
+			for (int i = 0; i < c.length; i++) {
+				c[i] = new double[Array.getLength(centroids[i])];
 
-			for (int j = 0; j < D; j++) {
-				vector[i][j] += (float) (Array.getDouble(x, j) - Array.getDouble(centroids[i], j));
+				for (int j = 0; j < c[i].length; j++)
+					c[i][j] = Array.getDouble(centroids[i], j);
 			}
+
+			centroidsD = c;
 		}
 
-		return prepareOutput(vector);
+		return centroidsD;
+	}
+
+	private synchronized Workspace<T> getWorkspace() {
+		if (workspaces == null) {
+			final int D = getCentroids()[0].length;
+
+			workspaces = new ThreadLocal<Workspace<T>>() {
+				@Override
+				protected Workspace<T> initialValue() {
+					return new Workspace<T>(centroids, D);
+				}
+			};
+		}
+
+		final Workspace<T> ws = workspaces.get();
+		for (final double[] a : ws.acc)
+			Arrays.fill(a, 0);
+		return ws;
+	}
+
+	@Override
+	public MultidimensionalFloatFV aggregate(List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features) {
+		if (features == null || features.size() <= 0)
+			return null;
+
+		return aggregateVectors(AggregatorUtils.vectors(features));
+	}
+
+	/**
+	 * Aggregate the given features into a vector, splitting the work across
+	 * the threads of the given pool.
+	 * 
+	 * @param features
+	 *            the features to aggregate
+	 * @param pool
+	 *            the thread pool
+	 * @return the aggregated vector
+	 */
+	public MultidimensionalFloatFV aggregate(
+			List<? extends LocalFeature<?, ? extends ArrayFeatureVector<T>>> features, ThreadPoolExecutor pool)
+	{
+		if (features == null || features.size() <= 0)
+			return null;
+
+		return aggregateVectors(AggregatorUtils.vectors(features), pool);
 	}
 
 	@Override
@@ -140,19 +209,83 @@ public class VLAD<T> implements VectorAggregator<ArrayFeatureVector<T>, Multidim
 		if (features == null || features.size() <= 0)
 			return null;
 
-		final int K = this.centroids.length;
-		final int D = features.get(0).length();
+		final Workspace<T> ws = getWorkspace();
+		accumulate(features, 0, features.size(), ws);
+
+		return prepareOutput(ws.acc);
+	}
+
+	/**
+	 * Aggregate the given vectors into a vector, splitting the work across the
+	 * threads of the given pool. Each thread accumulates the residuals of its
+	 * share of the vectors separately, and these are then summed.
+	 * 
+	 * @param features
+	 *            the vectors to aggregate
+	 * @param pool
+	 *            the thread pool
+	 * @return the aggregated vector
+	 */
+	public MultidimensionalFloatFV aggregateVectors(final List<? extends ArrayFeatureVector<T>> features,
+			ThreadPoolExecutor pool)
+	{
+		if (features == null || features.size() <= 0)
+			return null;
 
-		final float[][] vector = new float[K][D];
+		final double[][] acc = new double[centroids.length][getCentroids()[0].length];
 
-		for (final ArrayFeatureVector<T> f : features) {
-			final T x = f.values;
-			final int i = assigner.assign(x);
+		Parallel.forRange(0, features.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Workspace<T> ws = getWorkspace();
+				accumulate(features, range.start, range.stop, ws);
 
-			for (int j = 0; j < D; j++) {
-				vector[i][j] += (float) (Array.getDouble(x, j) - Array.getDouble(centroids[i], j));
+				synchronized (acc) {
+					for (int i = 0; i < acc.length; i++)
+						for (int j = 0; j < acc[i].length; j++)
+							acc[i][j] += ws.acc[i][j];
+				}
+			}
+		}, pool);
+
+		return prepareOutput(acc);
+	}
+
+	/**
+	 * Accumulate the residuals of the given range of vectors into the
+	 * workspace. The vectors are assigned to centroids a block at a time.
+	 */
+	private void accumulate(List<? extends ArrayFeatureVector<T>> features, int start, int stop, Workspace<T> ws) {
+		final double[][] c = getCentroids();
+		final T[] block = ws.block;
+		final double[] x = ws.x;
+
+		for (int b = start; b < stop; b += AggregatorUtils.BLOCK_SIZE) {
+			final int n = Math.min(AggregatorUtils.BLOCK_SIZE, stop - b);
+
+			final T[] data = n == block.length ? block : Arrays.copyOf(block, n);
+			for (int p = 0; p < n; p++)
+				data[p] = features.get(b + p).values;
+
+			final int[] assignments = assigner.assign(data);
+
+			for (int p = 0; p < n; p++) {
+				AggregatorUtils.copy(features.get(b + p), x);
+
+				final int i = assignments[p];
+				final double[] ci = c[i];
+				final double[] ai = ws.acc[i];
+				for (int j = 0; j < x.length; j++)
+					ai[j] += x[j] - ci[j];
 			}
 		}
+	}
+
+	private MultidimensionalFloatFV prepareOutput(final double[][] acc) {
+		final float[][] vector = new float[acc.length][acc[0].length];
+		for (int i = 0; i < acc.length; i++)
+			for (int j = 0; j < acc[i].length; j++)
+				vector[i][j] = (float) acc[i][j];
 
 		return prepareOutput(vector);
 	}
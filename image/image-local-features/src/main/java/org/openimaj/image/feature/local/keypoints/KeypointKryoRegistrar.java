@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.keypoints;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.io.KryoPool;
+import org.openimaj.io.KryoRegistrar;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * {@link KryoRegistrar} for {@link Keypoint}s. Unlike the binary format of a
+ * {@link Keypoint}, the length of the feature vector is written, so keypoints
+ * with any length of vector can be read back.
+ * 
+ * @author agent (agent@local)
+ */
+public class KeypointKryoRegistrar implements KryoRegistrar {
+	/**
+	 * {@link Serializer} for {@link Keypoint}s
+	 */
+	public static class KeypointSerializer extends Serializer<Keypoint> {
+		@Override
+		public void write(Kryo kryo, Output output, Keypoint kpt) {
+			output.writeFloat(kpt.x);
+			output.writeFloat(kpt.y);
+			output.writeFloat(kpt.scale);
+			output.writeFloat(kpt.ori);
+			output.writeInt(kpt.ivec.length, true);
+			output.writeBytes(kpt.ivec);
+		}
+
+		@Override
+		public Keypoint read(Kryo kryo, Input input, Class<Keypoint> type) {
+			final float x = input.readFloat();
+			final float y = input.readFloat();
+			final float scale = input.readFloat();
+			final float ori = input.readFloat();
+			final byte[] ivec = input.readBytes(input.readInt(true));
+
+			return new Keypoint(x, y, ori, scale, ivec);
+		}
+	}
+
+	@Override
+	public List<Registration> getRegistrations() {
+		return Arrays.asList(
+				new Registration(Keypoint.class, new KeypointSerializer(), KryoPool.MIN_REGISTRATION_ID + 20)
+				);
+	}
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.image.feature.local.keypoints.FloatKeypoint;
+import org.openimaj.math.statistics.distribution.DiagonalMultivariateGaussian;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.math.statistics.distribution.MultivariateGaussian;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import Jama.Matrix;
+
+/**
+ * Tests for {@link FisherVector}, checking the blocked implementation against
+ * a straightforward per-feature computation.
+ * 
+ * @author agent (agent@local)
+ */
+public class FisherVectorTest {
+	private static final int K = 4;
+	private static final int D = 16;
+	private static final int N = 523;
+
+	private MixtureOfGaussians gmm;
+	private List<FloatFV> vectors;
+	private List<FloatKeypoint> features;
+
+	/**
+	 * Create a small random mixture and features drawn around its components
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		final MultivariateGaussian[] gaussians = new MultivariateGaussian[K];
+		final double[] weights = new double[K];
+		double sum = 0;
+		for (int k = 0; k < K; k++) {
+			final double[] mean = new double[D];
+			final double[] variance = new double[D];
+			for (int j = 0; j < D; j++) {
+				mean[j] = 2 * rng.nextGaussian();
+				variance[j] = 0.5 + rng.nextDouble();
+			}
+			gaussians[k] = new DiagonalMultivariateGaussian(new Matrix(new double[][] { mean }), variance);
+			weights[k] = 0.5 + rng.nextDouble();
+			sum += weights[k];
+		}
+		for (int k = 0; k < K; k++)
+			weights[k] /= sum;
+		gmm = new MixtureOfGaussians(gaussians, weights);
+
+		vectors = new ArrayList<FloatFV>();
+		features = new ArrayList<FloatKeypoint>();
+		for (int i = 0; i < N; i++) {
+			final double[] mean = gaussians[rng.nextInt(K)].getMean().getArray()[0];
+			final float[] v = new float[D];
+			for (int j = 0; j < D; j++)
+				v[j] = (float) (mean[j] + 1.5 * rng.nextGaussian());
+
+			vectors.add(new FloatFV(v));
+			features.add(new FloatKeypoint(rng.nextFloat(), rng.nextFloat(), 0, 1, v));
+		}
+	}
+
+	/**
+	 * Reference implementation that computes the posteriors of all the
+	 * features and accumulates them one feature at a time
+	 */
+	private static float[] reference(MixtureOfGaussians gmm, List<FloatFV> features, boolean hellinger,
+			boolean l2normalise)
+	{
+		final double[][] X = new double[features.size()][];
+		for (int i = 0; i < X.length; i++)
+			X[i] = features.get(i).asDoubleVector();
+
+		final double[][] posteriors = gmm.scoreSamples(X).secondObject();
+		final float[] vector = new float[2 * K * D];
+
+		for (int p = 0; p < X.length; p++) {
+			for (int k = 0; k < K; k++) {
+				final double apk = posteriors[p][k];
+
+				if (apk < 1e-6)
+					continue;
+
+				final MultivariateGaussian gauss = gmm.gaussians[k];
+				final double[] mean = gauss.getMean().getArray()[0];
+
+				for (int j = 0; j < D; j++) {
+					final double diff = (X[p][j] - mean[j]) / Math.sqrt(gauss.getCovariance(j, j));
+
+					vector[k * 2 * D + j] += apk * diff;
+					vector[k * 2 * D + j + D] += apk * ((diff * diff) - 1);
+				}
+			}
+		}
+
+		for (int k = 0; k < K; k++) {
+			final double wt1 = 1.0 / (X.length * Math.sqrt(gmm.weights[k]));
+			final double wt2 = 1.0 / (X.length * Math.sqrt(2 * gmm.weights[k]));
+
+			for (int j = 0; j < D; j++) {
+				vector[k * 2 * D + j] *= wt1;
+				vector[k * 2 * D + j + D] *= wt2;
+			}
+		}
+
+		if (hellinger) {
+			for (int i = 0; i < vector.length; i++)
+				vector[i] = (float) (vector[i] > 0 ? Math.sqrt(vector[i]) : -Math.sqrt(-vector[i]));
+		}
+
+		if (l2normalise) {
+			double sumsq = 0;
+			for (int i = 0; i < vector.length; i++)
+				sumsq += vector[i] * vector[i];
+
+			final float norm = (float) (1.0 / Math.sqrt(sumsq));
+			for (int i = 0; i < vector.length; i++)
+				vector[i] *= norm;
+		}
+
+		return vector;
+	}
+
+	private void check(boolean hellinger, boolean l2normalise) {
+		final FisherVector<float[]> fv = new FisherVector<float[]>(gmm, hellinger, l2normalise);
+		final float[] expected = reference(gmm, vectors, hellinger, l2normalise);
+
+		assertArrayEquals(expected, fv.aggregateVectors(vectors).values, 1e-4f);
+		assertArrayEquals(expected, fv.aggregate(features).values, 1e-4f);
+		assertArrayEquals(expected, fv.aggregateVectors(vectors, GlobalExecutorPool.getPool()).values, 1e-4f);
+		assertArrayEquals(expected, fv.aggregate(features, GlobalExecutorPool.getPool()).values, 1e-4f);
+
+		// the per-thread workspaces must be reset between images
+		final List<FloatFV> subset = vectors.subList(0, 37);
+		assertArrayEquals(reference(gmm, subset, hellinger, l2normalise), fv.aggregateVectors(subset).values,
+				1e-4f);
+	}
+
+	/**
+	 * Test the standard Fisher vector
+	 */
+	@Test
+	public void testStandard() {
+		check(false, false);
+	}
+
+	/**
+	 * Test the improved Fisher vector
+	 */
+	@Test
+	public void testImproved() {
+		check(true, true);
+	}
+
+	/**
+	 * Test that empty input gives no vector
+	 */
+	@Test
+	public void testEmpty() {
+		final FisherVector<float[]> fv = new FisherVector<float[]>(gmm);
+
+		assertNull(fv.aggregateVectors(new ArrayList<FloatFV>()));
+		assertNull(fv.aggregate(new ArrayList<FloatKeypoint>(), GlobalExecutorPool.getPool()));
+	}
+}
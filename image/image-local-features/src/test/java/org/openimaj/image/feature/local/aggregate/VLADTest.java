@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.image.feature.local.aggregate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openimaj.feature.FloatFV;
+import org.openimaj.feature.FloatFVComparison;
+import org.openimaj.image.feature.local.keypoints.FloatKeypoint;
+import org.openimaj.ml.clustering.assignment.hard.ExactFloatAssigner;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link VLAD}, checking the blocked implementation against a
+ * straightforward per-feature computation.
+ * 
+ * @author agent (agent@local)
+ */
+public class VLADTest {
+	private static final int K = 8;
+	private static final int D = 16;
+	private static final int N = 523;
+
+	private float[][] centroids;
+	private ExactFloatAssigner assigner;
+	private List<FloatFV> vectors;
+	private List<FloatKeypoint> features;
+
+	/**
+	 * Create a random codebook and random features
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(42);
+
+		centroids = new float[K][D];
+		for (int k = 0; k < K; k++)
+			for (int j = 0; j < D; j++)
+				centroids[k][j] = rng.nextFloat();
+		assigner = new ExactFloatAssigner(centroids, FloatFVComparison.EUCLIDEAN);
+
+		vectors = new ArrayList<FloatFV>();
+		features = new ArrayList<FloatKeypoint>();
+		for (int i = 0; i < N; i++) {
+			final float[] v = new float[D];
+			for (int j = 0; j < D; j++)
+				v[j] = rng.nextFloat();
+
+			vectors.add(new FloatFV(v));
+			features.add(new FloatKeypoint(rng.nextFloat(), rng.nextFloat(), 0, 1, v));
+		}
+	}
+
+	/**
+	 * Reference implementation that assigns and accumulates the residual of
+	 * one feature at a time
+	 */
+	private float[] reference(List<FloatFV> features, boolean normalise) {
+		final float[][] vector = new float[K][D];
+
+		for (final FloatFV f : features) {
+			final int i = assigner.assign(f.values);
+
+			for (int j = 0; j < D; j++)
+				vector[i][j] += f.values[j] - centroids[i][j];
+		}
+
+		final float[] out = new float[K * D];
+		for (int k = 0; k < K; k++)
+			System.arraycopy(vector[k], 0, out, k * D, D);
+
+		if (normalise) {
+			double sumsq = 0;
+			for (int i = 0; i < out.length; i++)
+				sumsq += out[i] * out[i];
+
+			final float norm = (float) (1.0 / Math.sqrt(sumsq));
+			for (int i = 0; i < out.length; i++)
+				out[i] *= norm;
+		}
+
+		return out;
+	}
+
+	private void check(boolean normalise) {
+		final VLAD<float[]> vlad = new VLAD<float[]>(assigner, centroids, normalise);
+		final float[] expected = reference(vectors, normalise);
+
+		assertArrayEquals(expected, vlad.aggregateVectors(vectors).values, 1e-4f);
+		assertArrayEquals(expected, vlad.aggregate(features).values, 1e-4f);
+		assertArrayEquals(expected, vlad.aggregateVectors(vectors, GlobalExecutorPool.getPool()).values, 1e-4f);
+		assertArrayEquals(expected, vlad.aggregate(features, GlobalExecutorPool.getPool()).values, 1e-4f);
+
+		// the per-thread workspaces must be reset between images
+		final List<FloatFV> subset = vectors.subList(0, 37);
+		assertArrayEquals(reference(subset, normalise), vlad.aggregateVectors(subset).values, 1e-4f);
+	}
+
+	/**
+	 * Test the unnormalised VLAD
+	 */
+	@Test
+	public void testUnnormalised() {
+		check(false);
+	}
+
+	/**
+	 * Test the l2 normalised VLAD
+	 */
+	@Test
+	public void testNormalised() {
+		check(true);
+	}
+
+	/**
+	 * Test that empty input gives no vector
+	 */
+	@Test
+	public void testEmpty() {
+		final VLAD<float[]> vlad = new VLAD<float[]>(assigner, centroids, true);
+
+		assertNull(vlad.aggregateVectors(new ArrayList<FloatFV>()));
+		assertNull(vlad.aggregate(new ArrayList<FloatKeypoint>(), GlobalExecutorPool.getPool()));
+	}
+}
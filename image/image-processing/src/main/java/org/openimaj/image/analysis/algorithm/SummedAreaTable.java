@@ -29,9 +29,14 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 /**
  * Implementation of an Integral Image or Summed Area Table.
@@ -42,6 +47,20 @@ import org.openimaj.math.geometry.shape.Rectangle;
  * <p>
  * Basically, this provides an efficient way to find the sum of all pixels in a
  * rectangular area of an image.
+ * <p>
+ * The table buffer is re-used if the SAT is used to analyse successive images
+ * of the same size (i.e. frames of a video), so no per-frame allocation takes
+ * place. If only part of a frame has changed, then
+ * {@link #analyseImage(FImage, Rectangle)} can be used to only recompute the
+ * affected part of the table, and large images can be processed across
+ * multiple threads with {@link #analyseImage(FImage, ThreadPoolExecutor)}.
+ * <p>
+ * Note that because the buffer is re-used, a reference to {@link #data} held
+ * by a caller will be overwritten by the next call to one of the
+ * <code>analyseImage</code> methods with an image of the same size; clone the
+ * table if it needs to outlive the next analysis. For the same reason, a
+ * single instance must not be used to analyse images from multiple threads
+ * concurrently.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -68,15 +87,153 @@ public class SummedAreaTable implements ImageAnalyser<FImage> {
 	}
 
 	protected void computeTable(FImage image) {
-		data = new FImage(image.width + 1, image.height + 1);
-
-		for (int y = 0; y < image.height; y++) {
-			for (int x = 0; x < image.width; x++) {
-				data.pixels[y + 1][x + 1] = image.pixels[y][x] +
-						data.pixels[y + 1][x] +
-						data.pixels[y][x + 1] -
-						data.pixels[y][x];
+		data = prepare(data, image);
+
+		computeTable(image, 0, 0);
+	}
+
+	/**
+	 * Recompute the table from the given image for all positions
+	 * at-or-below-and-right of (x0, y0) in image coordinates. Each element is
+	 * computed as the sum of the element above plus the running sum of the
+	 * image row, which gives exactly the same result as a full computation
+	 * irrespective of where the update starts.
+	 */
+	private void computeTable(FImage image, int x0, int y0) {
+		final float[][] img = image.pixels;
+		final float[][] sat = data.pixels;
+
+		for (int y = y0; y < image.height; y++) {
+			final float[] row = img[y];
+			final float[] prev = sat[y];
+			final float[] curr = sat[y + 1];
+
+			float rowSum = 0;
+			for (int x = 0; x < x0; x++)
+				rowSum += row[x];
+
+			for (int x = x0; x < image.width; x++) {
+				rowSum += row[x];
+				curr[x + 1] = prev[x + 1] + rowSum;
+			}
+		}
+	}
+
+	/**
+	 * Ensure that the given table is the correct size for the given image,
+	 * re-using it if possible.
+	 * 
+	 * @param table
+	 *            the existing table (can be null)
+	 * @param image
+	 *            the image
+	 * @return a table of the correct size (which might be the input table)
+	 */
+	static FImage prepare(FImage table, FImage image) {
+		if (table == null || table.width != image.width + 1 || table.height != image.height + 1)
+			return new FImage(image.width + 1, image.height + 1);
+
+		// the first row and column are never written, so are already zero
+		return table;
+	}
+
+	/**
+	 * Compute the table for the given image in two passes over the given
+	 * thread pool; first the prefix sums of each row are computed in parallel,
+	 * and then these are accumulated down blocks of columns in parallel. The
+	 * result is identical to that from {@link #analyseImage(FImage)}.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void analyseImage(FImage image, ThreadPoolExecutor pool) {
+		data = prepare(data, image);
+
+		computeTableParallel(image, data, false, pool);
+	}
+
+	/**
+	 * Compute a SAT (or squared SAT) into the given table using the two-pass
+	 * parallel algorithm.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param table
+	 *            the table (pre-sized to the image width+1 by height+1)
+	 * @param squared
+	 *            if true the squared pixel values are summed
+	 * @param pool
+	 *            the thread pool
+	 */
+	static void computeTableParallel(final FImage image, final FImage table, final boolean squared,
+			ThreadPoolExecutor pool)
+	{
+		final float[][] img = image.pixels;
+		final float[][] sat = table.pixels;
+		final int width = image.width;
+		final int height = image.height;
+
+		// pass 1: row prefix sums
+		Parallel.forRange(0, height, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = range.start; y < range.stop; y += range.incr) {
+					final float[] row = img[y];
+					final float[] curr = sat[y + 1];
+
+					float rowSum = 0;
+					for (int x = 0; x < width; x++) {
+						final float p = row[x];
+						rowSum += squared ? p * p : p;
+						curr[x + 1] = rowSum;
+					}
+				}
 			}
+		}, pool);
+
+		// pass 2: column prefix sums; each task works on a block of columns,
+		// but walks along the rows so memory access remains sequential
+		Parallel.forRange(1, width + 1, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				for (int y = 2; y <= height; y++) {
+					final float[] prev = sat[y - 1];
+					final float[] curr = sat[y];
+
+					for (int x = range.start; x < range.stop; x++)
+						curr[x] = prev[x] + curr[x];
+				}
+			}
+		}, pool);
+	}
+
+	/**
+	 * Update the table after a change to the given region of the image. The
+	 * table must have previously been computed from an image of the same size
+	 * that only differs from the given image within the region. Only the part
+	 * of the table below and to the right of the top-left corner of the region
+	 * is recomputed; the result is identical to that from
+	 * {@link #analyseImage(FImage)}. If the table has not been computed, or
+	 * the image size has changed, then the whole table is computed.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param changed
+	 *            the region of the image that has changed
+	 */
+	public void analyseImage(FImage image, Rectangle changed) {
+		final FImage table = prepare(data, image);
+
+		if (table != data) {
+			data = table;
+			computeTable(image, 0, 0);
+		} else {
+			final int x0 = Math.min(image.width, Math.max(0, (int) changed.x));
+			final int y0 = Math.max(0, (int) changed.y);
+
+			computeTable(image, x0, y0);
 		}
 	}
 
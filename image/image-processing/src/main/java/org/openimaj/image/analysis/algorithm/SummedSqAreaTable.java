@@ -29,6 +29,8 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.analyser.ImageAnalyser;
 import org.openimaj.math.geometry.shape.Rectangle;
@@ -43,6 +45,12 @@ import org.openimaj.math.geometry.shape.Rectangle;
  * <p>
  * Basically, this provides an efficient way to find the sum of all pixels in a
  * rectangular area of an image.
+ * <p>
+ * As with {@link SummedAreaTable}, the table buffers are re-used across images
+ * of the same size, and both partial and parallel recomputation are supported.
+ * This means that references to {@link #sum} and {@link #sqSum} held by a
+ * caller are overwritten by the next analysis of an image of the same size,
+ * and that an instance cannot be shared between threads.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -74,23 +82,84 @@ public class SummedSqAreaTable implements ImageAnalyser<FImage> {
 	}
 
 	protected void computeTable(FImage image) {
-		sum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
-		sqSum = new FImage(image.getWidth() + 1, image.getHeight() + 1);
-
-		for (int y = 0; y < image.height; y++) {
-			for (int x = 0; x < image.width; x++) {
-				final float p = image.pixels[y][x];
-
-				sum.pixels[y + 1][x + 1] = p +
-											sum.pixels[y + 1][x] +
-											sum.pixels[y][x + 1] -
-											sum.pixels[y][x];
-
-				sqSum.pixels[y + 1][x + 1] = p * p +
-										sqSum.pixels[y + 1][x] +
-										sqSum.pixels[y][x + 1] -
-										sqSum.pixels[y][x];
+		sum = SummedAreaTable.prepare(sum, image);
+		sqSum = SummedAreaTable.prepare(sqSum, image);
+
+		computeTable(image, 0, 0);
+	}
+
+	private void computeTable(FImage image, int x0, int y0) {
+		final float[][] img = image.pixels;
+		final float[][] sumData = sum.pixels;
+		final float[][] sqSumData = sqSum.pixels;
+
+		for (int y = y0; y < image.height; y++) {
+			final float[] row = img[y];
+
+			float rowSum = 0;
+			float rowSumSq = 0;
+			for (int x = 0; x < x0; x++) {
+				final float p = row[x];
+				rowSum += p;
+				rowSumSq += p * p;
 			}
+
+			for (int x = x0; x < image.width; x++) {
+				final float p = row[x];
+				rowSum += p;
+				rowSumSq += p * p;
+
+				sumData[y + 1][x + 1] = sumData[y][x + 1] + rowSum;
+				sqSumData[y + 1][x + 1] = sqSumData[y][x + 1] + rowSumSq;
+			}
+		}
+	}
+
+	/**
+	 * Compute the tables for the given image in parallel using the given
+	 * thread pool. The result is identical to that from
+	 * {@link #analyseImage(FImage)}.
+	 * 
+	 * @see SummedAreaTable#analyseImage(FImage, ThreadPoolExecutor)
+	 * 
+	 * @param image
+	 *            the image
+	 * @param pool
+	 *            the thread pool
+	 */
+	public void analyseImage(FImage image, ThreadPoolExecutor pool) {
+		sum = SummedAreaTable.prepare(sum, image);
+		sqSum = SummedAreaTable.prepare(sqSum, image);
+
+		SummedAreaTable.computeTableParallel(image, sum, false, pool);
+		SummedAreaTable.computeTableParallel(image, sqSum, true, pool);
+	}
+
+	/**
+	 * Update the tables after a change to the given region of the image. The
+	 * tables must have previously been computed from an image of the same size
+	 * that only differs from the given image within the region.
+	 * 
+	 * @see SummedAreaTable#analyseImage(FImage, Rectangle)
+	 * 
+	 * @param image
+	 *            the image
+	 * @param changed
+	 *            the region of the image that has changed
+	 */
+	public void analyseImage(FImage image, Rectangle changed) {
+		final FImage newSum = SummedAreaTable.prepare(sum, image);
+		final FImage newSqSum = SummedAreaTable.prepare(sqSum, image);
+
+		if (newSum != sum || newSqSum != sqSum) {
+			sum = newSum;
+			sqSum = newSqSum;
+			computeTable(image, 0, 0);
+		} else {
+			final int x0 = Math.min(image.width, Math.max(0, (int) changed.x));
+			final int y0 = Math.max(0, (int) changed.y);
+
+			computeTable(image, x0, y0);
 		}
 	}
 
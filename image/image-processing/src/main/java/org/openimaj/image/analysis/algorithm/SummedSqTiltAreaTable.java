@@ -29,6 +29,10 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.math.geometry.shape.Rectangle;
 
@@ -43,6 +47,16 @@ import org.openimaj.math.geometry.shape.Rectangle;
  * <p>
  * Basically, this provides an efficient way to find the sum of all pixels in a
  * rectangular area of an image.
+ * <p>
+ * The table buffers are re-used across images of the same size. The tilted
+ * sums have a recurrence that spans two rows, so cannot be split across
+ * columns; when computing in parallel they are computed by a single task
+ * alongside the parallel computation of the normal and squared sums.
+ * <p>
+ * Because the buffers are re-used, references to {@link #sum},
+ * {@link #sqSum} and {@link #tiltSum} held by a caller are overwritten by the
+ * next analysis of an image of the same size, and an instance cannot be
+ * shared between threads.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -82,6 +96,19 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		computeTable(image, computeTilted);
 	}
 
+	/**
+	 * Compute the normal, squared and (optionally) tilted sums from the given
+	 * image, re-using the existing buffers if possible.
+	 * 
+	 * @param image
+	 *            the image.
+	 * @param computeTilted
+	 *            if true compute the tilted features.
+	 */
+	public void analyseImage(FImage image, boolean computeTilted) {
+		computeTable(image, computeTilted);
+	}
+
 	private void computeTable(FImage image, boolean computeTilted) {
 		if (computeTilted) {
 			computeRotSqSumIntegralImages(image);
@@ -94,8 +121,8 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		final int width = img.width;
 		final int height = img.height;
 
-		sum = new FImage(width + 1, height + 1);
-		sqSum = new FImage(width + 1, height + 1);
+		sum = SummedAreaTable.prepare(sum, img);
+		sqSum = SummedAreaTable.prepare(sqSum, img);
 
 		final float[][] sumData = sum.pixels;
 		final float[][] sqSumData = sqSum.pixels;
@@ -121,9 +148,9 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		final int width = image.width;
 		final int height = image.height;
 
-		sum = new FImage(width + 1, height + 1);
-		sqSum = new FImage(width + 1, height + 1);
-		tiltSum = new FImage(width + 2, height + 2);
+		sum = SummedAreaTable.prepare(sum, image);
+		sqSum = SummedAreaTable.prepare(sqSum, image);
+		tiltSum = prepareTilted(tiltSum, image);
 
 		final float[] buffer = new float[width];
 
@@ -222,6 +249,148 @@ public class SummedSqTiltAreaTable extends SummedSqAreaTable {
 		}
 	}
 
+	private static FImage prepareTilted(FImage table, FImage image) {
+		if (table == null || table.width != image.width + 2 || table.height != image.height + 2)
+			return new FImage(image.width + 2, image.height + 2);
+
+		// the border is never written, so is already zero
+		return table;
+	}
+
+	/**
+	 * Compute only the tilted sums, starting from the given row of the table
+	 * (1-based; rows before this must already be valid). This performs exactly
+	 * the same operations as {@link #computeRotSqSumIntegralImages(FImage)} so
+	 * gives identical results.
+	 */
+	private void computeTiltIntegralImage(FImage image, int startRow) {
+		final int width = image.width;
+		final int height = image.height;
+		final float[][] tilt = tiltSum.pixels;
+
+		if (startRow > height)
+			return;
+		if (startRow < 1)
+			startRow = 1;
+
+		// buffer holds the pixels of the row above the current one
+		final float[] buffer = new float[width];
+		if (startRow >= 2)
+			System.arraycopy(image.pixels[startRow - 2], 0, buffer, 0, width);
+
+		if (startRow == 1 && height > 0) {
+			final float[] row = image.pixels[0];
+
+			for (int x = 1; x <= width; x++) {
+				buffer[x - 1] = tilt[1][x] = row[x - 1];
+			}
+		}
+
+		if (startRow <= 2 && height > 1) {
+			final float[] row = image.pixels[1];
+
+			for (int x = 1; x < width; x++) {
+				final float gray = (row[x - 1]);
+
+				tilt[2][x] = tilt[1][x - 1] + buffer[x - 1] + tilt[1][x + 1] + gray;
+				buffer[x - 1] = gray;
+			}
+
+			if (width > 0) {
+				final float gray = (row[width - 1]);
+
+				tilt[2][width] = tilt[1][width - 1] + buffer[width - 1] + gray;
+				buffer[width - 1] = gray;
+			}
+		}
+
+		for (int y = Math.max(3, startRow); y <= height; y++) {
+			final float[] row = image.pixels[y - 1];
+
+			if (width > 0) {
+				final float gray = row[0];
+
+				tilt[y][1] = tilt[y - 1][2] + buffer[0] + gray;
+				buffer[0] = gray;
+			}
+
+			for (int x = 2; x < width; x++) {
+				final float gray = row[x - 1];
+
+				tilt[y][x] = tilt[y - 1][x - 1] + buffer[x - 1] + tilt[y - 1][x + 1] - tilt[y - 2][x] + gray;
+				buffer[x - 1] = gray;
+			}
+
+			if (width > 0) {
+				final float gray = row[width - 1];
+
+				tilt[y][width] = tilt[y - 1][width - 1] + buffer[width - 1] + gray;
+				buffer[width - 1] = gray;
+			}
+		}
+	}
+
+	/**
+	 * Compute the normal, squared and tilted sums for the given image using
+	 * the given thread pool. The normal and squared sums are computed with the
+	 * two-pass parallel algorithm, whilst the tilted sums are computed
+	 * concurrently by a single task. The result is identical to that from
+	 * {@link #analyseImage(FImage)}.
+	 * 
+	 * @param image
+	 *            the image
+	 * @param pool
+	 *            the thread pool
+	 */
+	@Override
+	public void analyseImage(final FImage image, ThreadPoolExecutor pool) {
+		tiltSum = prepareTilted(tiltSum, image);
+
+		final Future<?> tilt = pool.submit(new Runnable() {
+			@Override
+			public void run() {
+				computeTiltIntegralImage(image, 1);
+			}
+		});
+
+		super.analyseImage(image, pool);
+
+		try {
+			tilt.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Update the normal, squared and tilted sums after a change to the given
+	 * region of the image. The tables must have previously been computed from
+	 * an image of the same size that only differs from the given image within
+	 * the region. The tilted sums are recomputed for all rows from the top of
+	 * the region downwards.
+	 * 
+	 * @see SummedAreaTable#analyseImage(FImage, Rectangle)
+	 * 
+	 * @param image
+	 *            the image
+	 * @param changed
+	 *            the region of the image that has changed
+	 */
+	@Override
+	public void analyseImage(FImage image, Rectangle changed) {
+		final FImage newTilt = prepareTilted(tiltSum, image);
+
+		if (newTilt != tiltSum) {
+			computeRotSqSumIntegralImages(image);
+		} else {
+			super.analyseImage(image, changed);
+			computeTiltIntegralImage(image, Math.max(0, (int) changed.y) + 1);
+		}
+	}
+
 	/**
 	 * Calculate the sum of pixels in the image used for constructing this SAT
 	 * within the 45 degree tilted rectangle.
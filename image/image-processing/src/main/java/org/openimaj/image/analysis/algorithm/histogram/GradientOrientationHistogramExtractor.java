@@ -58,6 +58,7 @@ implements ImageAnalyser<FImage>
 {
 	private FImageGradients.Mode orientationMode;
 	private boolean histogramInterpolation;
+	private FImage[] magnitudeMaps;
 
 	/**
 	 * Construct a new {@link GradientOrientationHistogramExtractor} with the
@@ -83,12 +84,26 @@ implements ImageAnalyser<FImage>
 		this.orientationMode = orientationMode;
 	}
 
+	/**
+	 * Get the buffers for the magnitude maps, re-using those from the previous
+	 * call if the image size is unchanged. All elements of the maps are
+	 * overwritten when the gradients are computed, so they don't need to be
+	 * cleared.
+	 */
+	private FImage[] prepareMagnitudes(FImage image) {
+		if (magnitudeMaps == null || magnitudeMaps[0].width != image.width || magnitudeMaps[0].height != image.height) {
+			magnitudeMaps = new FImage[nbins];
+
+			for (int i = 0; i < nbins; i++)
+				magnitudeMaps[i] = new FImage(image.width, image.height);
+		}
+
+		return magnitudeMaps;
+	}
+
 	@Override
 	public void analyseImage(FImage image) {
-		final FImage[] magnitudes = new FImage[nbins];
-
-		for (int i = 0; i < nbins; i++)
-			magnitudes[i] = new FImage(image.width, image.height);
+		final FImage[] magnitudes = prepareMagnitudes(image);
 
 		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, magnitudes, histogramInterpolation,
 				orientationMode);
@@ -109,10 +124,7 @@ implements ImageAnalyser<FImage>
 	 *            the edge image
 	 */
 	public void analyseImage(FImage image, FImage edges) {
-		final FImage[] magnitudes = new FImage[nbins];
-
-		for (int i = 0; i < nbins; i++)
-			magnitudes[i] = new FImage(image.width, image.height);
+		final FImage[] magnitudes = prepareMagnitudes(image);
 
 		FImageGradients.gradientMagnitudesAndQuantisedOrientations(image, magnitudes, histogramInterpolation,
 				orientationMode);
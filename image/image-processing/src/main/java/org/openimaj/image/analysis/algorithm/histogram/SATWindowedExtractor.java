@@ -29,10 +29,14 @@
  */
 package org.openimaj.image.analysis.algorithm.histogram;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 import org.openimaj.image.FImage;
 import org.openimaj.image.analysis.algorithm.SummedAreaTable;
 import org.openimaj.math.geometry.shape.Rectangle;
 import org.openimaj.math.statistics.distribution.Histogram;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
 
 /**
  * This class implements a {@link WindowedHistogramExtractor} with the primary
@@ -81,12 +85,45 @@ public class SATWindowedExtractor implements WindowedHistogramExtractor {
 		computeSATs(magnitudeMaps);
 	}
 
+	/**
+	 * Compute the {@link SummedAreaTable}s for the given magnitude maps. If the
+	 * tables have previously been computed (i.e. on the previous frame of a
+	 * video) then their buffers are re-used.
+	 *
+	 * @param magnitudeMaps
+	 *            array of images, one per bin
+	 */
 	protected void computeSATs(FImage[] magnitudeMaps) {
 		for (int i = 0; i < nbins; i++) {
-			sats[i] = new SummedAreaTable(magnitudeMaps[i]);
+			if (sats[i] == null)
+				sats[i] = new SummedAreaTable(magnitudeMaps[i]);
+			else
+				sats[i].analyseImage(magnitudeMaps[i]);
 		}
 	}
 
+	/**
+	 * Compute the {@link SummedAreaTable}s for the given magnitude maps in
+	 * parallel, with each table being computed by a separate task. Buffers are
+	 * re-used as with {@link #computeSATs(FImage[])}.
+	 *
+	 * @param magnitudeMaps
+	 *            array of images, one per bin
+	 * @param pool
+	 *            the thread pool
+	 */
+	protected void computeSATs(final FImage[] magnitudeMaps, ThreadPoolExecutor pool) {
+		Parallel.forIndex(0, nbins, 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				if (sats[i] == null)
+					sats[i] = new SummedAreaTable(magnitudeMaps[i]);
+				else
+					sats[i].analyseImage(magnitudeMaps[i]);
+			}
+		}, pool);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -29,11 +29,15 @@
  */
 package org.openimaj.image.analysis.algorithm;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 import org.openimaj.data.RandomData;
 import org.openimaj.image.FImage;
+import org.openimaj.math.geometry.shape.Rectangle;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 /**
  * Tests for {@link SummedSqTiltAreaTable}s.
@@ -86,4 +90,72 @@ public class SummedSqTiltAreaTableTests {
 			}
 		}
 	}
+
+	/**
+	 * Test that the parallel computation gives identical results to the
+	 * sequential one.
+	 */
+	@Test
+	public void testParallel() {
+		final FImage image = new FImage(RandomData.getRandomFloatArray(123, 77, 0f, 1f));
+
+		final SummedAreaTable sat = new SummedAreaTable(image);
+		final SummedAreaTable psat = new SummedAreaTable();
+		psat.analyseImage(image, GlobalExecutorPool.getPool());
+		assertImageEquals(sat.data, psat.data);
+
+		final SummedSqTiltAreaTable sqtsat = new SummedSqTiltAreaTable(image, true);
+		final SummedSqTiltAreaTable psqtsat = new SummedSqTiltAreaTable();
+		psqtsat.analyseImage(image, GlobalExecutorPool.getPool());
+		assertImageEquals(sqtsat.sum, psqtsat.sum);
+		assertImageEquals(sqtsat.sqSum, psqtsat.sqSum);
+		assertImageEquals(sqtsat.tiltSum, psqtsat.tiltSum);
+	}
+
+	/**
+	 * Test that re-analysing re-uses the buffers and that updating a changed
+	 * region gives identical results to a full recomputation.
+	 */
+	@Test
+	public void testUpdate() {
+		final FImage image = new FImage(RandomData.getRandomFloatArray(80, 60, 0f, 1f));
+
+		final SummedAreaTable sat = new SummedAreaTable(image);
+		final SummedSqAreaTable sqsat = new SummedSqAreaTable(image);
+		final SummedSqTiltAreaTable sqtsat = new SummedSqTiltAreaTable(image, true);
+		final FImage data = sat.data;
+		final FImage tiltSum = sqtsat.tiltSum;
+
+		final Rectangle changed = new Rectangle(30, 20, 10, 15);
+		for (int y = 20; y < 35; y++)
+			for (int x = 30; x < 40; x++)
+				image.pixels[y][x] = (float) Math.random();
+
+		sat.analyseImage(image, changed);
+		sqsat.analyseImage(image, changed);
+		sqtsat.analyseImage(image, changed);
+
+		assertSame(data, sat.data);
+		assertSame(tiltSum, sqtsat.tiltSum);
+
+		final SummedSqTiltAreaTable expected = new SummedSqTiltAreaTable(image, true);
+		assertImageEquals(expected.sum, sat.data);
+		assertImageEquals(expected.sum, sqsat.sum);
+		assertImageEquals(expected.sqSum, sqsat.sqSum);
+		assertImageEquals(expected.sum, sqtsat.sum);
+		assertImageEquals(expected.sqSum, sqtsat.sqSum);
+		assertImageEquals(expected.tiltSum, sqtsat.tiltSum);
+
+		sat.analyseImage(image);
+		assertSame(data, sat.data);
+		assertImageEquals(expected.sum, sat.data);
+	}
+
+	private static void assertImageEquals(FImage expected, FImage actual) {
+		assertEquals(expected.width, actual.width);
+		assertEquals(expected.height, actual.height);
+
+		for (int y = 0; y < expected.height; y++)
+			assertArrayEquals(expected.pixels[y], actual.pixels[y], 0f);
+	}
 }
@@ -91,6 +91,13 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 	protected int smallStep = 1;
 	protected int bigStep = 2;
 
+	/**
+	 * The integral images from the last call to {@link #detect(FImage)} in
+	 * each thread; the buffers are re-used for successive images of the same
+	 * size, but are never shared between threads as the tables are mutable.
+	 */
+	private transient ThreadLocal<SummedSqTiltAreaTable> sat;
+
 	/**
 	 * Construct the {@link Detector} with the given parameters.
 	 * 
@@ -186,6 +193,24 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 		}
 	}
 
+	/**
+	 * Get the (re-usable) integral image tables for the current thread.
+	 * 
+	 * @return the tables
+	 */
+	private synchronized SummedSqTiltAreaTable getSummedAreaTable() {
+		// the field is transient, so needs to be created lazily
+		if (sat == null) {
+			sat = new ThreadLocal<SummedSqTiltAreaTable>() {
+				@Override
+				protected SummedSqTiltAreaTable initialValue() {
+					return new SummedSqTiltAreaTable();
+				}
+			};
+		}
+		return sat.get();
+	}
+
 	@Override
 	public List<Rectangle> detect(FImage image) {
 		final List<Rectangle> results = new ArrayList<Rectangle>();
@@ -193,7 +218,8 @@ public class Detector extends AbstractMultiScaleObjectDetector<FImage, Rectangle
 		final int imageWidth = image.getWidth();
 		final int imageHeight = image.getHeight();
 
-		final SummedSqTiltAreaTable sat = new SummedSqTiltAreaTable(image, cascade.hasTiltedFeatures);
+		final SummedSqTiltAreaTable sat = getSummedAreaTable();
+		sat.analyseImage(image, cascade.hasTiltedFeatures);
 
 		// compute the number of scales to test and the starting factor
 		int nFactors = 0;
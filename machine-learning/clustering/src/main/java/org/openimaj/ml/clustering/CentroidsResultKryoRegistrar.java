@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.openimaj.io.KryoPool;
+import org.openimaj.io.KryoRegistrar;
+import org.openimaj.io.ReadWriteableBinarySerializer;
+
+import com.esotericsoftware.kryo.Registration;
+
+/**
+ * {@link KryoRegistrar} for the primitive centroid-based cluster results (
+ * {@link ByteCentroidsResult}, {@link ShortCentroidsResult},
+ * {@link IntCentroidsResult}, {@link LongCentroidsResult},
+ * {@link FloatCentroidsResult} and {@link DoubleCentroidsResult}). The results
+ * are written in their binary format.
+ * 
+ * @author agent (agent@local)
+ */
+public class CentroidsResultKryoRegistrar implements KryoRegistrar {
+	private static final int BASE_ID = KryoPool.MIN_REGISTRATION_ID + 30;
+
+	@Override
+	public List<Registration> getRegistrations() {
+		return Arrays.asList(
+				new Registration(ByteCentroidsResult.class, new ReadWriteableBinarySerializer<ByteCentroidsResult>(), BASE_ID),
+				new Registration(ShortCentroidsResult.class, new ReadWriteableBinarySerializer<ShortCentroidsResult>(), BASE_ID + 1),
+				new Registration(IntCentroidsResult.class, new ReadWriteableBinarySerializer<IntCentroidsResult>(), BASE_ID + 2),
+				new Registration(LongCentroidsResult.class, new ReadWriteableBinarySerializer<LongCentroidsResult>(), BASE_ID + 3),
+				new Registration(FloatCentroidsResult.class, new ReadWriteableBinarySerializer<FloatCentroidsResult>(), BASE_ID + 4),
+				new Registration(DoubleCentroidsResult.class, new ReadWriteableBinarySerializer<DoubleCentroidsResult>(), BASE_ID + 5)
+				);
+	}
+}
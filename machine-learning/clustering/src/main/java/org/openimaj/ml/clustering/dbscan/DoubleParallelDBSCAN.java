@@ -0,0 +1,522 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.clustering.dbscan;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.procedure.TIntObjectProcedure;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.data.DataSource;
+import org.openimaj.ml.clustering.DataClusterer;
+import org.openimaj.ml.clustering.SpatialClusterer;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.tree.DoubleKDTree;
+
+/**
+ * Implementation of DBSCAN (http://en.wikipedia.org/wiki/DBSCAN) for large
+ * amounts of low to moderate dimensional data. Rather than performing a
+ * nearest-neighbour query for each point in turn as the cluster is expanded
+ * (as {@link DoubleNNDBSCAN} does), this implementation computes the
+ * neighbourhoods of all points up-front in parallel batches and stores them
+ * in a compressed sparse row structure. Clusters are then formed by taking the
+ * connected components of the core points with a union-find structure, and
+ * the border points are attached to their first cluster.
+ * <p>
+ * The neighbourhoods are found with a uniform grid with cells the size of the
+ * neighbourhood radius if the data has at most {@value #MAX_GRID_DIMENSIONS}
+ * dimensions, and with a {@link DoubleKDTree} otherwise.
+ * <p>
+ * As with {@link DoubleNNDBSCAN} using its default exact nearest-neighbours,
+ * two points are neighbours if their squared Euclidean distance is less than
+ * <code>eps</code>, and a point is a core point if its neighbourhood
+ * (including itself) has at least <code>minPts</code> points. The clusters
+ * produced are the same as those of {@link DoubleNNDBSCAN}, and in the same
+ * order; the members of each cluster and the noise points are given in
+ * increasing order of index.
+ * 
+ * @author agent (agent@local)
+ */
+public class DoubleParallelDBSCAN extends DBSCAN
+		implements
+		SpatialClusterer<DoubleDBSCANClusters, double[]>,
+		DataClusterer<double[][], DoubleDBSCANClusters>
+{
+	/**
+	 * The maximum number of dimensions for which a grid is used to find the
+	 * neighbourhoods
+	 */
+	public static final int MAX_GRID_DIMENSIONS = 3;
+
+	private static final int BLOCK_SIZE = 1024;
+
+	private double eps;
+	private int minPts;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * Construct with the given configuration. The {@link GlobalExecutorPool}
+	 * is used to compute the neighbourhoods.
+	 * 
+	 * @param eps
+	 *            the threshold on the squared Euclidean distance between
+	 *            neighbours
+	 * @param minPts
+	 *            the minimum number of points in the neighbourhood of a core
+	 *            point
+	 */
+	public DoubleParallelDBSCAN(double eps, int minPts) {
+		this(eps, minPts, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given configuration.
+	 * 
+	 * @param eps
+	 *            the threshold on the squared Euclidean distance between
+	 *            neighbours
+	 * @param minPts
+	 *            the minimum number of points in the neighbourhood of a core
+	 *            point
+	 * @param pool
+	 *            the thread pool used to compute the neighbourhoods
+	 */
+	public DoubleParallelDBSCAN(double eps, int minPts, ThreadPoolExecutor pool) {
+		this.eps = eps;
+		this.minPts = minPts;
+		this.pool = pool;
+	}
+
+	/**
+	 * Neighbourhoods of all the points in compressed sparse row form: the
+	 * neighbours of point <code>i</code> (including <code>i</code> itself)
+	 * are <code>neighbours[offsets[i]]</code> to
+	 * <code>neighbours[offsets[i+1] - 1]</code>.
+	 */
+	static class Neighbourhoods {
+		int[] offsets;
+		int[] neighbours;
+
+		int size(int i) {
+			return offsets[i + 1] - offsets[i];
+		}
+	}
+
+	/**
+	 * Strategy for finding all the neighbours of a point
+	 */
+	interface RegionIndex {
+		/**
+		 * Append the indices of all the neighbours of the given point to the
+		 * given list
+		 */
+		void regionQuery(int index, IntList out);
+	}
+
+	/**
+	 * Minimal growable list of ints to hold the neighbours found for a block of
+	 * points
+	 */
+	static class IntList {
+		int[] data = new int[64];
+		int size;
+
+		void add(int v) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, size * 2);
+			data[size++] = v;
+		}
+	}
+
+	/**
+	 * Index of the points in a uniform grid of cells of width
+	 * <code>sqrt(eps)</code>. The points of each cell are stored contiguously
+	 * and cells are found through a hash of their packed coordinates.
+	 */
+	class GridIndex implements RegionIndex {
+		final double[][] data;
+		final double[] min;
+		final double cellSize;
+		final int bits;
+		final TLongIntHashMap cellIds;
+		final int[] cellOffsets;
+		final int[] cellPoints;
+		final int[][] neighbourCells;
+
+		GridIndex(double[][] data, double[] min, int bits) {
+			this.data = data;
+			this.min = min;
+			this.cellSize = Math.sqrt(eps);
+			this.bits = bits;
+
+			final int ndims = min.length;
+			final long[] keys = new long[data.length];
+			cellIds = new TLongIntHashMap(data.length, 0.5f, -1, -1);
+
+			final int[] pointCells = new int[data.length];
+			int[] counts = new int[64];
+			for (int i = 0; i < data.length; i++) {
+				keys[i] = key(cellOf(data[i]), null);
+
+				int id = cellIds.get(keys[i]);
+				if (id < 0) {
+					id = cellIds.size();
+					cellIds.put(keys[i], id);
+					if (id == counts.length)
+						counts = Arrays.copyOf(counts, id * 2);
+				}
+				pointCells[i] = id;
+				counts[id]++;
+			}
+
+			final int ncells = cellIds.size();
+			cellOffsets = new int[ncells + 1];
+			for (int i = 0; i < ncells; i++)
+				cellOffsets[i + 1] = cellOffsets[i] + counts[i];
+
+			cellPoints = new int[data.length];
+			final int[] fill = Arrays.copyOf(cellOffsets, ncells);
+			for (int i = 0; i < data.length; i++)
+				cellPoints[fill[pointCells[i]]++] = i;
+
+			// offsets to the 3^d cells that could contain neighbours
+			int nneighbours = 1;
+			for (int i = 0; i < ndims; i++)
+				nneighbours *= 3;
+
+			neighbourCells = new int[nneighbours][ndims];
+			for (int i = 0; i < nneighbours; i++) {
+				for (int j = 0, v = i; j < ndims; j++, v /= 3)
+					neighbourCells[i][j] = v % 3 - 1;
+			}
+		}
+
+		long[] cellOf(double[] point) {
+			final long[] cell = new long[point.length];
+			for (int j = 0; j < point.length; j++)
+				cell[j] = (long) ((point[j] - min[j]) / cellSize);
+			return cell;
+		}
+
+		/**
+		 * Pack the coordinates of the cell plus the given offset into a single
+		 * long; returns -1 if the cell is outside the grid.
+		 */
+		long key(long[] cell, int[] offset) {
+			long key = 0;
+			for (int j = 0; j < cell.length; j++) {
+				final long c = offset == null ? cell[j] : cell[j] + offset[j];
+				if (c < 0 || c >= (1L << bits))
+					return -1;
+				key = (key << bits) | c;
+			}
+			return key;
+		}
+
+		@Override
+		public void regionQuery(int index, IntList out) {
+			final double[] point = data[index];
+			final long[] cell = cellOf(point);
+
+			for (final int[] offset : neighbourCells) {
+				final long key = key(cell, offset);
+				if (key < 0)
+					continue;
+
+				final int id = cellIds.get(key);
+				if (id < 0)
+					continue;
+
+				for (int k = cellOffsets[id]; k < cellOffsets[id + 1]; k++) {
+					final int j = cellPoints[k];
+					if (distance(point, data[j]) < eps)
+						out.add(j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Index of the points in a {@link DoubleKDTree}; neighbourhoods are found
+	 * with a range search over the bounding box of the neighbourhood.
+	 */
+	class KDTreeIndex implements RegionIndex {
+		final double[][] data;
+		final DoubleKDTree tree;
+		final double radius;
+
+		KDTreeIndex(double[][] data) {
+			this.data = data;
+			this.tree = new DoubleKDTree(data);
+			this.radius = Math.sqrt(eps);
+		}
+
+		@Override
+		public void regionQuery(int index, final IntList out) {
+			final double[] point = data[index];
+			final double[] lower = new double[point.length];
+			final double[] upper = new double[point.length];
+
+			for (int j = 0; j < point.length; j++) {
+				lower[j] = point[j] - radius;
+				upper[j] = point[j] + radius;
+			}
+
+			tree.rangeSearch(lower, upper, new TIntObjectProcedure<double[]>() {
+				@Override
+				public boolean execute(int j, double[] other) {
+					if (distance(point, other) < eps)
+						out.add(j);
+					return true;
+				}
+			});
+		}
+	}
+
+	private static double distance(double[] a, double[] b) {
+		double d = 0;
+		for (int i = 0; i < a.length; i++) {
+			final double diff = a[i] - b[i];
+			d += diff * diff;
+		}
+		return d;
+	}
+
+	RegionIndex createIndex(double[][] data) {
+		final int ndims = data[0].length;
+
+		if (ndims <= MAX_GRID_DIMENSIONS) {
+			final double[] min = data[0].clone();
+			final double[] max = data[0].clone();
+			for (final double[] d : data) {
+				for (int j = 0; j < ndims; j++) {
+					if (d[j] < min[j])
+						min[j] = d[j];
+					if (d[j] > max[j])
+						max[j] = d[j];
+				}
+			}
+
+			// use the grid only if the cell coordinates can be packed into a
+			// long
+			final int bits = 63 / ndims;
+			final double cellSize = Math.sqrt(eps);
+			boolean fits = cellSize > 0;
+			for (int j = 0; j < ndims && fits; j++)
+				fits = (max[j] - min[j]) / cellSize < (1L << bits) - 1;
+
+			if (fits)
+				return new GridIndex(data, min, bits);
+		}
+
+		return new KDTreeIndex(data);
+	}
+
+	/**
+	 * Compute the neighbourhoods of all points in parallel blocks
+	 */
+	Neighbourhoods computeNeighbourhoods(final double[][] data) {
+		final RegionIndex index = createIndex(data);
+		final int nblocks = (data.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final int[][] blockNeighbours = new int[nblocks][];
+		final int[] counts = new int[data.length];
+
+		Parallel.forIndex(0, nblocks, 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer block) {
+				final int start = block * BLOCK_SIZE;
+				final int stop = Math.min(start + BLOCK_SIZE, data.length);
+				final IntList out = new IntList();
+
+				for (int i = start; i < stop; i++) {
+					final int before = out.size;
+					index.regionQuery(i, out);
+					counts[i] = out.size - before;
+				}
+
+				blockNeighbours[block] = Arrays.copyOf(out.data, out.size);
+			}
+		}, pool);
+
+		final Neighbourhoods nh = new Neighbourhoods();
+		nh.offsets = new int[data.length + 1];
+		for (int i = 0; i < data.length; i++)
+			nh.offsets[i + 1] = nh.offsets[i] + counts[i];
+
+		nh.neighbours = new int[nh.offsets[data.length]];
+		for (int b = 0; b < nblocks; b++)
+			System.arraycopy(blockNeighbours[b], 0, nh.neighbours, nh.offsets[b * BLOCK_SIZE],
+					blockNeighbours[b].length);
+
+		return nh;
+	}
+
+	private static int find(int[] parents, int i) {
+		while (parents[i] != i) {
+			parents[i] = parents[parents[i]];
+			i = parents[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Form the clusters from the neighbourhoods. Each connected component of
+	 * core points forms a cluster; linking to the smaller root means the root
+	 * of each component is its lowest indexed point, and clusters are numbered
+	 * in order of their root. Border points join the lowest numbered cluster
+	 * that they neighbour, which is the same cluster that they would be
+	 * assigned to by sequential expansion.
+	 */
+	DoubleDBSCANClusters formClusters(Neighbourhoods nh, int npoints) {
+		final boolean[] core = new boolean[npoints];
+		final int[] parents = new int[npoints];
+		for (int i = 0; i < npoints; i++) {
+			core[i] = nh.size(i) >= minPts;
+			parents[i] = i;
+		}
+
+		for (int i = 0; i < npoints; i++) {
+			if (!core[i])
+				continue;
+
+			for (int k = nh.offsets[i]; k < nh.offsets[i + 1]; k++) {
+				final int j = nh.neighbours[k];
+
+				if (j > i && core[j]) {
+					final int ri = find(parents, i);
+					final int rj = find(parents, j);
+
+					if (ri < rj)
+						parents[rj] = ri;
+					else if (rj < ri)
+						parents[ri] = rj;
+				}
+			}
+		}
+
+		// number the clusters by their roots
+		final int[] assignments = new int[npoints];
+		int nclusters = 0;
+		for (int i = 0; i < npoints; i++) {
+			if (core[i]) {
+				final int root = find(parents, i);
+				assignments[i] = root == i ? nclusters++ : assignments[root];
+			}
+		}
+
+		int nnoise = 0;
+		for (int i = 0; i < npoints; i++) {
+			if (core[i])
+				continue;
+
+			int cluster = -1;
+			for (int k = nh.offsets[i]; k < nh.offsets[i + 1]; k++) {
+				final int j = nh.neighbours[k];
+
+				if (core[j] && (cluster < 0 || assignments[j] < cluster))
+					cluster = assignments[j];
+			}
+
+			assignments[i] = cluster;
+			if (cluster < 0)
+				nnoise++;
+		}
+
+		final int[] noise = new int[nnoise];
+		final int[] sizes = new int[nclusters + (noiseAsClusters ? nnoise : 0)];
+		for (int i = 0, n = 0; i < npoints; i++) {
+			if (assignments[i] >= 0) {
+				sizes[assignments[i]]++;
+			} else {
+				if (noiseAsClusters)
+					sizes[nclusters + n] = 1;
+				noise[n++] = i;
+			}
+		}
+
+		final int[][] clusters = new int[sizes.length][];
+		for (int i = 0; i < sizes.length; i++)
+			clusters[i] = new int[sizes[i]];
+
+		final int[] fill = new int[sizes.length];
+		for (int i = 0, n = 0; i < npoints; i++) {
+			final int c = assignments[i] >= 0 ? assignments[i] : (noiseAsClusters ? nclusters + n++ : -1);
+
+			if (c >= 0)
+				clusters[c][fill[c]++] = i;
+		}
+
+		return new DoubleDBSCANClusters(noise, clusters);
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(double[][] data) {
+		final DoubleDBSCANClusters clusters;
+
+		if (data.length == 0)
+			clusters = new DoubleDBSCANClusters(new int[0], new int[0][]);
+		else
+			clusters = formClusters(computeNeighbourhoods(data), data.length);
+
+		clusters.data = data;
+		return clusters;
+	}
+
+	@Override
+	public DoubleDBSCANClusters cluster(DataSource<double[]> data) {
+		final double[][] allData = new double[data.size()][];
+		final Iterator<double[]> iterator = data.iterator();
+		for (int i = 0; i < allData.length; i++) {
+			allData[i] = iterator.next();
+		}
+		return this.cluster(allData);
+	}
+
+	@Override
+	public int[][] performClustering(double[][] data) {
+		return cluster(data).clusters();
+	}
+
+	/**
+	 * @return the eps parameter
+	 */
+	public double getEps() {
+		return this.eps;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: eps=%2.2f, minpts=%d", this.getClass().getSimpleName(), eps, minPts);
+	}
+}
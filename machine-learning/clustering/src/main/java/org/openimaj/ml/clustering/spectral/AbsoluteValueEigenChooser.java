@@ -35,7 +35,7 @@ import org.openimaj.util.pair.DoubleObjectPair;
 
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
-import ch.akuhn.matrix.eigenvalues.FewEigenvalues;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
 
 /**
  * Attempts to automatically choose the number of eigen vectors based on the
@@ -83,10 +83,14 @@ public class AbsoluteValueEigenChooser extends EigenChooser{
 	}
 
 	@Override
-	public FewEigenvalues prepare(final SparseMatrix laplacian) {
+	public Eigenvalues prepare(final SparseMatrix laplacian) {
+		return prepare(laplacian, SpectralClusteringConf.EigenSolver.ARPACK);
+	}
+
+	@Override
+	public Eigenvalues prepare(final SparseMatrix laplacian, SpectralClusteringConf.EigenSolver solver) {
 		int total = laplacian.columnCount();
-		FewEigenvalues eig = FewEigenvalues.of(laplacian);
-		return eig.greatest((int) (total*maxSelect));
+		return solver.greatest(laplacian, (int) (total*maxSelect));
 	}
 	
 	@Override
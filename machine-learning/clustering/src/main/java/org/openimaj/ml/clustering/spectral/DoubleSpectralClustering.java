@@ -85,7 +85,7 @@ public class DoubleSpectralClustering implements SimilarityClusterer<SpectralInd
 
 	protected Eigenvalues laplacianEigenVectors(final SparseMatrix laplacian) {
 		// Calculate the eigvectors
-		Eigenvalues eig = conf.eigenChooser.prepare(laplacian);
+		Eigenvalues eig = conf.eigenChooser.prepare(laplacian, conf.eigenSolver);
 		eig.run();
 		return eig;
 	}
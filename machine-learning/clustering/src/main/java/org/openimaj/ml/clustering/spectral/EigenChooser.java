@@ -57,4 +57,16 @@ public abstract class EigenChooser{
 	 * @return the prepared eigen values
 	 */
 	public abstract Eigenvalues prepare(SparseMatrix laplacian) ;
+
+	/**
+	 * Make a coarse decision of the number of eigen vectors to extract in the first place,
+	 * computing them with the given solver. The default implementation ignores the solver
+	 * and defers to {@link #prepare(SparseMatrix)}.
+	 * @param laplacian the matrix to be decomposed
+	 * @param solver the eigen solver
+	 * @return the prepared eigen values
+	 */
+	public Eigenvalues prepare(SparseMatrix laplacian, SpectralClusteringConf.EigenSolver solver) {
+		return prepare(laplacian);
+	}
 }
\ No newline at end of file
@@ -37,7 +37,6 @@ import org.openimaj.util.pair.DoubleObjectPair;
 import ch.akuhn.matrix.SparseMatrix;
 import ch.akuhn.matrix.Vector;
 import ch.akuhn.matrix.eigenvalues.Eigenvalues;
-import ch.akuhn.matrix.eigenvalues.FewEigenvalues;
 
 /**
  *
@@ -59,8 +58,12 @@ public class HardCodedEigenChooser extends EigenChooser{
 	}
 	@Override
 	public Eigenvalues prepare(final SparseMatrix laplacian) {
-		FewEigenvalues eig = FewEigenvalues.of(laplacian);
-		return eig.greatest(count);
+		return prepare(laplacian, SpectralClusteringConf.EigenSolver.ARPACK);
+	}
+
+	@Override
+	public Eigenvalues prepare(final SparseMatrix laplacian, SpectralClusteringConf.EigenSolver solver) {
+		return solver.greatest(laplacian, count);
 	}
 	
 	@Override
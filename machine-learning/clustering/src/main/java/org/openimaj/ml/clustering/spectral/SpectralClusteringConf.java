@@ -29,10 +29,16 @@
  */
 package org.openimaj.ml.clustering.spectral;
 
+import org.openimaj.math.matrix.LOBPCGEigenvalues;
 import org.openimaj.ml.clustering.SpatialClusterer;
 import org.openimaj.ml.clustering.SpatialClusters;
 import org.openimaj.util.function.Function;
 import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.eigenvalues.Eigenvalues;
+import ch.akuhn.matrix.eigenvalues.FewEigenvalues;
 
 /**
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
@@ -76,6 +82,49 @@ public class SpectralClusteringConf<DATATYPE> {
 
 	}
 
+	/**
+	 * The methods that can be used to compute the eigen vectors of the graph
+	 * laplacian
+	 *
+	 * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
+	 */
+	public static enum EigenSolver {
+		/**
+		 * Single-threaded implicitly restarted Arnoldi/Lanczos iteration
+		 * using ARPACK ({@link FewEigenvalues})
+		 */
+		ARPACK {
+			@Override
+			public Eigenvalues greatest(SparseMatrix laplacian, int nev) {
+				return FewEigenvalues.of(laplacian).greatest(nev);
+			}
+		},
+		/**
+		 * Block iteration ({@link LOBPCGEigenvalues}) with the sparse
+		 * products and block operations spread across the
+		 * {@link GlobalExecutorPool}. Better suited to large graphs, and
+		 * finds repeated eigenvalues (from disconnected components of the
+		 * graph) reliably.
+		 */
+		LOBPCG {
+			@Override
+			public Eigenvalues greatest(SparseMatrix laplacian, int nev) {
+				return LOBPCGEigenvalues.of(laplacian, GlobalExecutorPool.getPool()).greatest(nev);
+			}
+		};
+
+		/**
+		 * Prepare to compute the eigen values of greatest magnitude
+		 *
+		 * @param laplacian
+		 *            the matrix to decompose
+		 * @param nev
+		 *            the number of eigen values
+		 * @return the (unrun) eigen values
+		 */
+		public abstract Eigenvalues greatest(SparseMatrix laplacian, int nev);
+	}
+
 	/**
 	 * The internal clusterer
 	 */
@@ -93,6 +142,11 @@ public class SpectralClusteringConf<DATATYPE> {
 	 */
 	public EigenChooser eigenChooser;
 
+	/**
+	 * The solver used to compute the eigen vectors of the laplacian
+	 */
+	public EigenSolver eigenSolver = EigenSolver.ARPACK;
+
 	/**
 	 *
 	 */
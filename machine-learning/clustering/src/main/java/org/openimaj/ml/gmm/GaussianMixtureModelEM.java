@@ -31,8 +31,12 @@ package org.openimaj.ml.gmm;
 
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.commons.math.util.MathUtils;
+import org.openimaj.data.DataSource;
+import org.openimaj.data.DoubleArrayBackedDataSource;
+import org.openimaj.data.FloatArrayBackedDataSource;
 import org.openimaj.math.matrix.MatrixUtils;
 import org.openimaj.math.statistics.MeanAndCovariance;
 import org.openimaj.math.statistics.distribution.AbstractMultivariateGaussian;
@@ -43,8 +47,15 @@ import org.openimaj.math.statistics.distribution.MultivariateGaussian;
 import org.openimaj.math.statistics.distribution.SphericalMultivariateGaussian;
 import org.openimaj.ml.clustering.DoubleCentroidsResult;
 import org.openimaj.ml.clustering.kmeans.DoubleKMeans;
+import org.openimaj.ml.clustering.kmeans.DoubleKMeansInit;
+import org.openimaj.ml.clustering.kmeans.FloatKMeans;
+import org.openimaj.ml.clustering.kmeans.FloatKMeansInit;
 import org.openimaj.util.array.ArrayUtils;
+import org.openimaj.util.function.Operation;
 import org.openimaj.util.pair.IndependentPair;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 import Jama.Matrix;
 import gnu.trove.list.array.TDoubleArrayList;
@@ -55,6 +66,12 @@ import gnu.trove.list.array.TDoubleArrayList;
  * initialisation step is used to learn the initial means using K-Means,
  * although this can be disabled in the constructor.
  * <p>
+ * For diagonal and spherical gaussians, the model can also be learned in
+ * parallel from a {@link DataSource} of <code>float[]</code> or
+ * <code>double[]</code> vectors, either with full-batch EM (see
+ * {@link #estimate(DataSource, ThreadPoolExecutor)}) or with mini-batch
+ * stepwise EM (see {@link #estimate(DataSource, int, ThreadPoolExecutor)}).
+ * <p>
  * Implementation was originally inspired by the SciPy's "gmm.py".
  *
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
@@ -118,6 +135,23 @@ public class GaussianMixtureModelEM {
 							/ X.getColumnDimension();
 				}
 			}
+
+			@Override
+			protected boolean supportsStatistics() {
+				return true;
+			}
+
+			@Override
+			protected void mstep(EMGMM gmm, GaussianMixtureModelEM learner, SufficientStatistics stats,
+					double[] norm)
+			{
+				for (int i = 0; i < gmm.gaussians.length; i++) {
+					final double[] covar = diagonalCovariance(gmm, learner, stats, norm, i);
+
+					((SphericalMultivariateGaussian) gmm.gaussians[i]).variance = ArrayUtils.sumValues(covar)
+							/ covar.length;
+				}
+			}
 		},
 		/**
 		 * Gaussians with diagonal covariance matrices.
@@ -162,6 +196,21 @@ public class GaussianMixtureModelEM {
 					((DiagonalMultivariateGaussian) gmm.gaussians[i]).variance = covar.getArray()[0];
 				}
 			}
+
+			@Override
+			protected boolean supportsStatistics() {
+				return true;
+			}
+
+			@Override
+			protected void mstep(EMGMM gmm, GaussianMixtureModelEM learner, SufficientStatistics stats,
+					double[] norm)
+			{
+				for (int i = 0; i < gmm.gaussians.length; i++) {
+					((DiagonalMultivariateGaussian) gmm.gaussians[i]).variance = diagonalCovariance(gmm, learner,
+							stats, norm, i);
+				}
+			}
 		},
 		/**
 		 * Gaussians with full covariance
@@ -209,6 +258,15 @@ public class GaussianMixtureModelEM {
 							.plusEquals(Matrix.identity(nfeatures, nfeatures).times(learner.minCovar));
 				}
 			}
+
+			@Override
+			protected void mstep(EMGMM gmm, GaussianMixtureModelEM learner, SufficientStatistics stats,
+					double[] inverseWeights)
+			{
+				// the statistics only hold the diagonal of the second moments
+				throw new UnsupportedOperationException(this
+						+ " covariances can't be learned from sufficient statistics");
+			}
 		},
 		/**
 		 * Gaussians with a tied covariance matrix; the same covariance matrix
@@ -308,6 +366,15 @@ public class GaussianMixtureModelEM {
 				for (int i = 0; i < learner.nComponents; i++)
 					((FullMultivariateGaussian) gmm.gaussians[i]).covar = covar;
 			}
+
+			@Override
+			protected void mstep(EMGMM gmm, GaussianMixtureModelEM learner, SufficientStatistics stats,
+					double[] inverseWeights)
+			{
+				// the statistics only hold the diagonal of the second moments
+				throw new UnsupportedOperationException(this
+						+ " covariances can't be learned from sufficient statistics");
+			}
 		};
 
 		protected abstract MultivariateGaussian[] createGaussians(int ngauss, int ndims);
@@ -333,6 +400,56 @@ public class GaussianMixtureModelEM {
 		 */
 		protected abstract void mstep(EMGMM gmm, GaussianMixtureModelEM learner, Matrix X,
 				Matrix responsibilities, Matrix weightedXsum, double[] inverseWeights);
+
+		/**
+		 * Can this type of covariance be estimated from the per-component
+		 * {@link SufficientStatistics} (and thus be learned in parallel or
+		 * from mini-batches)?
+		 *
+		 * @return true if {@link SufficientStatistics} are supported
+		 */
+		protected boolean supportsStatistics() {
+			return false;
+		}
+
+		/**
+		 * Perform the maximisation step for the covariances from the
+		 * accumulated {@link SufficientStatistics}. The means of the gaussians
+		 * will already have been updated. Only called for types where
+		 * {@link #supportsStatistics()} returns true; other types throw an
+		 * {@link UnsupportedOperationException}.
+		 *
+		 * @param gmm
+		 *            the mixture being learned
+		 * @param learner
+		 *            the learner
+		 * @param stats
+		 *            the statistics
+		 * @param inverseWeights
+		 *            the inverse of the total responsibility of each
+		 *            component
+		 */
+		protected abstract void mstep(EMGMM gmm, GaussianMixtureModelEM learner, SufficientStatistics stats,
+				double[] inverseWeights);
+
+		/**
+		 * Compute the diagonal of the covariance of the ith component from the
+		 * sufficient statistics: E[x^2] - 2 * mu * E[x] + mu^2 + minCovar
+		 */
+		protected static double[] diagonalCovariance(EMGMM gmm, GaussianMixtureModelEM learner,
+				SufficientStatistics stats, double[] norm, int i)
+		{
+			final double[] mu = ((AbstractMultivariateGaussian) gmm.gaussians[i]).mean.getArray()[0];
+			final double[] sx = stats.sumX[i];
+			final double[] sx2 = stats.sumX2[i];
+			final double[] covar = new double[mu.length];
+
+			for (int j = 0; j < mu.length; j++) {
+				covar[j] = sx2[j] * norm[i] - 2 * mu[j] * sx[j] * norm[i] + mu[j] * mu[j] + learner.minCovar;
+			}
+
+			return covar;
+		}
 	}
 
 	/**
@@ -365,10 +482,171 @@ public class GaussianMixtureModelEM {
 		}
 	}
 
+	/**
+	 * The per-component sufficient statistics accumulated during the
+	 * expectation step: the total responsibility, and the
+	 * responsibility-weighted sums of the data and of its element-wise square.
+	 * Statistics computed over different parts of the data can be summed.
+	 */
+	protected static class SufficientStatistics {
+		double[] weights;
+		double[][] sumX;
+		double[][] sumX2;
+		double logLikelihood;
+
+		SufficientStatistics(int nComponents, int ndims) {
+			weights = new double[nComponents];
+			sumX = new double[nComponents][ndims];
+			sumX2 = new double[nComponents][ndims];
+		}
+
+		void add(SufficientStatistics other) {
+			for (int k = 0; k < weights.length; k++) {
+				weights[k] += other.weights[k];
+
+				for (int j = 0; j < sumX[k].length; j++) {
+					sumX[k][j] += other.sumX[k][j];
+					sumX2[k][j] += other.sumX2[k][j];
+				}
+			}
+			logLikelihood += other.logLikelihood;
+		}
+
+		void scale(double factor) {
+			for (int k = 0; k < weights.length; k++) {
+				weights[k] *= factor;
+
+				for (int j = 0; j < sumX[k].length; j++) {
+					sumX[k][j] *= factor;
+					sumX2[k][j] *= factor;
+				}
+			}
+			logLikelihood *= factor;
+		}
+	}
+
+	/**
+	 * The parameters of a mixture with diagonal (or spherical) covariances in
+	 * the form needed to compute the responsibilities.
+	 */
+	private static class DiagonalModel {
+		double[][] means;
+		double[][] precisions;
+		double[] logConst;
+
+		DiagonalModel(MixtureOfGaussians gmm) {
+			final int K = gmm.gaussians.length;
+			final int D = gmm.gaussians[0].getMean().getColumnDimension();
+
+			means = new double[K][];
+			precisions = new double[K][D];
+			logConst = new double[K];
+
+			for (int k = 0; k < K; k++) {
+				means[k] = gmm.gaussians[k].getMean().getArray()[0];
+
+				double logDet = 0;
+				for (int j = 0; j < D; j++) {
+					final double var = gmm.gaussians[k].getCovariance(j, j);
+					precisions[k][j] = 1.0 / var;
+					logDet += Math.log(var);
+				}
+
+				logConst[k] = Math.log(gmm.weights[k]) - 0.5 * (D * Math.log(2 * Math.PI) + logDet);
+			}
+		}
+
+		/**
+		 * Accumulate the statistics of the given rows into the given
+		 * {@link SufficientStatistics}.
+		 */
+		void accumulate(Object[] rows, int start, int stop, SufficientStatistics stats, double[] x, double[] lp) {
+			final int K = means.length;
+			final int D = x.length;
+
+			for (int r = start; r < stop; r++) {
+				copyRow(rows[r], x);
+
+				double max = Double.NEGATIVE_INFINITY;
+				for (int k = 0; k < K; k++) {
+					final double[] mu = means[k];
+					final double[] prec = precisions[k];
+
+					double sum = 0;
+					for (int j = 0; j < D; j++) {
+						final double diff = x[j] - mu[j];
+						sum += diff * diff * prec[j];
+					}
+
+					lp[k] = logConst[k] - 0.5 * sum;
+					if (lp[k] > max)
+						max = lp[k];
+				}
+
+				double total = 0;
+				for (int k = 0; k < K; k++) {
+					lp[k] = Math.exp(lp[k] - max);
+					total += lp[k];
+				}
+				stats.logLikelihood += max + Math.log(total);
+
+				for (int k = 0; k < K; k++) {
+					final double resp = lp[k] / total;
+					if (resp == 0)
+						continue;
+
+					stats.weights[k] += resp;
+
+					final double[] sx = stats.sumX[k];
+					final double[] sx2 = stats.sumX2[k];
+					for (int j = 0; j < D; j++) {
+						final double rx = resp * x[j];
+						sx[j] += rx;
+						sx2[j] += rx * x[j];
+					}
+				}
+			}
+		}
+	}
+
+	private static void copyRow(Object row, double[] x) {
+		if (row instanceof double[]) {
+			System.arraycopy(row, 0, x, 0, x.length);
+		} else if (row instanceof float[]) {
+			final float[] r = (float[]) row;
+			for (int i = 0; i < x.length; i++)
+				x[i] = r[i];
+		} else {
+			throw new IllegalArgumentException("Unsupported data type: " + row.getClass());
+		}
+	}
+
+	private static double[] toDouble(Object row) {
+		if (row instanceof double[])
+			return (double[]) row;
+
+		final double[] x = new double[((float[]) row).length];
+		copyRow(row, x);
+		return x;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void getData(DataSource<T> data, int start, int stop, Object[] rows) {
+		data.getData(start, stop, (T[]) rows);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void getRandomRows(DataSource<T> data, Object[] rows) {
+		data.getRandomRows((T[]) rows);
+	}
+
 	private static final double DEFAULT_THRESH = 1e-2;
 	private static final double DEFAULT_MIN_COVAR = 1e-3;
 	private static final int DEFAULT_NITERS = 100;
 	private static final int DEFAULT_NINIT = 1;
+	private static final int INIT_SAMPLES_PER_COMPONENT = 100;
+	private static final int ESTEP_BLOCK_SIZE = 256;
+	private static final double ONLINE_STEP_DECAY = 0.6;
 
 	CovarianceType ctype;
 	int nComponents;
@@ -557,6 +835,298 @@ public class GaussianMixtureModelEM {
 		return gmm;
 	}
 
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the given data using the
+	 * {@link GlobalExecutorPool}. The data is not copied or converted to
+	 * doubles. See {@link #estimate(DataSource, ThreadPoolExecutor)} for
+	 * details.
+	 *
+	 * @param X
+	 *            the data array.
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(float[][] X) {
+		return estimate(new FloatArrayBackedDataSource(X), GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the data provided by the
+	 * given {@link DataSource}, in parallel. Use {@link #hasConverged()} to
+	 * check whether the EM algorithm reached convergence in the estimation of
+	 * the returned model.
+	 * <p>
+	 * For {@link CovarianceType#Diagonal} and {@link CovarianceType#Spherical}
+	 * gaussians, the expectation step splits the data into one contiguous
+	 * chunk per thread of the pool, each of which accumulates its own
+	 * {@link SufficientStatistics}; these are summed for the maximisation step.
+	 * The means are initialised by running k-means with k-means++ seeding on
+	 * a sample of the data (all of the data if it is small), and the
+	 * covariances from the covariance of the same sample. For other covariance
+	 * types the data is copied into memory and {@link #estimate(double[][])}
+	 * is used.
+	 *
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param pool
+	 *            the thread pool
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(final DataSource<?> data, ThreadPoolExecutor pool) {
+		if (!ctype.supportsStatistics()) {
+			final double[][] X = new double[data.size()][];
+			for (int i = 0; i < X.length; i++)
+				X[i] = toDouble(data.getData(i)).clone();
+			return estimate(X);
+		}
+
+		if (data.size() < nComponents)
+			throw new IllegalArgumentException(String.format(
+					"GMM estimation with %d components, but got only %d samples", nComponents, data.size()));
+
+		double bestLogLikelihood = Double.NEGATIVE_INFINITY;
+		EMGMM best = null;
+
+		for (int j = 0; j < nInit; j++) {
+			final EMGMM gmm = new EMGMM(nComponents);
+			initialise(gmm, data);
+
+			converged = false;
+			double prevLogLikelihood = Double.NaN;
+			for (int i = 0; i < nIters; i++) {
+				final SufficientStatistics stats = estep(gmm, data, pool);
+
+				if (i > 0 && Math.abs(stats.logLikelihood - prevLogLikelihood) < thresh) {
+					converged = true;
+					break;
+				}
+				prevLogLikelihood = stats.logLikelihood;
+
+				mstep(gmm, stats);
+			}
+
+			if (Double.isNaN(prevLogLikelihood) || Double.isInfinite(prevLogLikelihood))
+				continue;
+
+			if (best == null || prevLogLikelihood > bestLogLikelihood) {
+				bestLogLikelihood = prevLogLikelihood;
+				best = gmm;
+			}
+		}
+
+		if (best == null) {
+			throw new RuntimeException(
+					"EM algorithm was never able to compute a valid likelihood given initial " +
+							"parameters. Try different init parameters (or increasing n_init) or " +
+							"check for degenerate data.");
+		}
+
+		return best;
+	}
+
+	/**
+	 * Estimate a new {@link MixtureOfGaussians} from the data provided by the
+	 * given {@link DataSource} using stepwise (online) EM over mini-batches
+	 * drawn at random from the data. Each of the configured number of
+	 * iterations draws a batch, computes its {@link SufficientStatistics} in
+	 * parallel, interpolates them into the running statistics with a step
+	 * size of <code>(t + 2)<sup>-0.6</sup></code> and then performs the
+	 * maximisation step. The data is never held in memory as a whole, so this
+	 * is suitable for very large collections of features.
+	 * <p>
+	 * Only {@link CovarianceType#Diagonal} and {@link CovarianceType#Spherical}
+	 * gaussians are supported. Initialisation is performed as in
+	 * {@link #estimate(DataSource, ThreadPoolExecutor)}. As the updates are
+	 * stochastic, {@link #hasConverged()} always returns false afterwards.
+	 *
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 * @param batchSize
+	 *            the number of samples in each mini-batch
+	 * @param pool
+	 *            the thread pool
+	 * @return the generated GMM.
+	 */
+	public MixtureOfGaussians estimate(final DataSource<?> data, int batchSize, ThreadPoolExecutor pool) {
+		if (!ctype.supportsStatistics())
+			throw new UnsupportedOperationException("Mini-batch estimation is not supported for " + ctype
+					+ " covariances");
+
+		if (data.size() < nComponents)
+			throw new IllegalArgumentException(String.format(
+					"GMM estimation with %d components, but got only %d samples", nComponents, data.size()));
+
+		final EMGMM gmm = new EMGMM(nComponents);
+		initialise(gmm, data);
+		converged = false;
+
+		final Object[] batch = data.createTemporaryArray(Math.min(batchSize, data.size()));
+		SufficientStatistics running = null;
+
+		for (int i = 0; i < nIters; i++) {
+			getRandomRows(data, batch);
+
+			final SufficientStatistics stats = estep(gmm, batch, pool);
+			stats.scale(1.0 / batch.length);
+
+			if (running == null) {
+				running = stats;
+			} else {
+				final double eta = Math.pow(i + 2, -ONLINE_STEP_DECAY);
+				running.scale(1 - eta);
+				stats.scale(eta);
+				running.add(stats);
+			}
+
+			mstep(gmm, running);
+		}
+
+		return gmm;
+	}
+
+	/**
+	 * Initialise the means with k-means (with k-means++ seeding), and the
+	 * covariances and weights, from a sample of the data.
+	 */
+	private void initialise(EMGMM gmm, DataSource<?> data) {
+		final int ndims = data.numDimensions();
+		final int nsamples = Math.min(data.size(), INIT_SAMPLES_PER_COMPONENT * nComponents);
+
+		final Object[] sample = data.createTemporaryArray(nsamples);
+		if (nsamples == data.size())
+			getData(data, 0, nsamples, sample);
+		else
+			getRandomRows(data, sample);
+
+		final double[][] dsample = new double[nsamples][];
+		for (int i = 0; i < nsamples; i++)
+			dsample[i] = toDouble(sample[i]);
+
+		gmm.gaussians = ctype.createGaussians(nComponents, ndims);
+
+		if (initOpts.contains(UpdateOptions.Means)) {
+			final double[][] centroids;
+
+			if (sample[0] instanceof float[]) {
+				final FloatKMeans km = FloatKMeans.createExact(nComponents);
+				km.setInit(new FloatKMeansInit.KMEANS_PLUS_PLUS());
+				final float[][] fc = km.cluster(new FloatArrayBackedDataSource(Arrays.copyOf(sample, nsamples,
+						float[][].class))).centroids;
+
+				centroids = new double[nComponents][];
+				for (int i = 0; i < nComponents; i++)
+					centroids[i] = toDouble(fc[i]);
+			} else {
+				final DoubleKMeans km = DoubleKMeans.createExact(nComponents);
+				km.setInit(new DoubleKMeansInit.KMEANS_PLUS_PLUS());
+				centroids = km.cluster(new DoubleArrayBackedDataSource(dsample)).centroids;
+			}
+
+			for (int i = 0; i < nComponents; i++) {
+				((AbstractMultivariateGaussian) gmm.gaussians[i]).mean.getArray()[0] = centroids[i];
+			}
+		}
+
+		if (initOpts.contains(UpdateOptions.Weights)) {
+			gmm.weights = new double[nComponents];
+			Arrays.fill(gmm.weights, 1.0 / nComponents);
+		}
+
+		if (initOpts.contains(UpdateOptions.Covariances)) {
+			ctype.setCovariances(gmm.gaussians, MeanAndCovariance.computeCovariance(dsample));
+		}
+	}
+
+	/**
+	 * Compute the sufficient statistics of all the data in parallel, reading
+	 * it from the {@link DataSource} in blocks.
+	 */
+	private SufficientStatistics estep(EMGMM gmm, final DataSource<?> data, ThreadPoolExecutor pool) {
+		final DiagonalModel model = new DiagonalModel(gmm);
+		final int ndims = data.numDimensions();
+		final SufficientStatistics total = new SufficientStatistics(nComponents, ndims);
+
+		Parallel.forRange(0, data.size(), 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final SufficientStatistics stats = new SufficientStatistics(nComponents, ndims);
+				final double[] x = new double[ndims];
+				final double[] lp = new double[nComponents];
+				final Object[] block = data.createTemporaryArray(ESTEP_BLOCK_SIZE);
+
+				for (int start = range.start; start < range.stop; start += ESTEP_BLOCK_SIZE) {
+					final int stop = Math.min(start + ESTEP_BLOCK_SIZE, range.stop);
+					getData(data, start, stop, block);
+
+					model.accumulate(block, 0, stop - start, stats, x, lp);
+				}
+
+				synchronized (total) {
+					total.add(stats);
+				}
+			}
+		}, pool);
+
+		return total;
+	}
+
+	/**
+	 * Compute the sufficient statistics of the given rows in parallel.
+	 */
+	private SufficientStatistics estep(EMGMM gmm, final Object[] rows, ThreadPoolExecutor pool) {
+		final DiagonalModel model = new DiagonalModel(gmm);
+		final int ndims = gmm.gaussians[0].getMean().getColumnDimension();
+		final SufficientStatistics total = new SufficientStatistics(nComponents, ndims);
+
+		Parallel.forRange(0, rows.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final SufficientStatistics stats = new SufficientStatistics(nComponents, ndims);
+
+				model.accumulate(rows, range.start, range.stop, stats, new double[ndims], new double[nComponents]);
+
+				synchronized (total) {
+					total.add(stats);
+				}
+			}
+		}, pool);
+
+		return total;
+	}
+
+	/**
+	 * Perform the maximisation step from the accumulated sufficient
+	 * statistics.
+	 */
+	protected void mstep(EMGMM gmm, SufficientStatistics stats) {
+		final double[] weights = stats.weights;
+		final double[] inverse_weights = new double[weights.length];
+		for (int i = 0; i < inverse_weights.length; i++)
+			inverse_weights[i] = 1.0 / (weights[i] + 10 * MathUtils.EPSILON);
+
+		if (iterOpts.contains(UpdateOptions.Weights)) {
+			final double sum = ArrayUtils.sumValues(weights);
+			for (int i = 0; i < weights.length; i++) {
+				gmm.weights[i] = (weights[i] / (sum + 10 * MathUtils.EPSILON) + MathUtils.EPSILON);
+			}
+		}
+
+		if (iterOpts.contains(UpdateOptions.Means)) {
+			for (int i = 0; i < nComponents; i++) {
+				final double[][] m = ((AbstractMultivariateGaussian) gmm.gaussians[i]).mean.getArray();
+
+				for (int j = 0; j < m[0].length; j++) {
+					m[0][j] = stats.sumX[i][j] * inverse_weights[i];
+				}
+			}
+		}
+
+		if (iterOpts.contains(UpdateOptions.Covariances)) {
+			ctype.mstep(gmm, this, stats, inverse_weights);
+		}
+	}
+
 	protected void mstep(EMGMM gmm, double[][] X, double[][] responsibilities) {
 		final double[] weights = ArrayUtils.colSum(responsibilities);
 		final Matrix resMat = new Matrix(responsibilities);
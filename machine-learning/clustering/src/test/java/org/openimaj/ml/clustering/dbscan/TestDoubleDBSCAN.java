@@ -29,10 +29,14 @@
  */
 package org.openimaj.ml.clustering.dbscan;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Before;
@@ -113,6 +117,59 @@ public class TestDoubleDBSCAN {
 			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
 		}
 	}
+	/**
+	 *
+	 */
+	@Test
+	public void testParallelDBSCAN(){
+		DoubleParallelDBSCAN dbscan = new DoubleParallelDBSCAN(
+			this.testStats.eps,
+			this.testStats.minpts
+		);
+		DoubleDBSCANClusters res = dbscan.cluster(testData);
+		for (int i = 0; i < res.getNoise().length; i++) {
+			assertTrue(res.getNoise()[i] < this.testStats.noutliers);
+		}
+		assertTrue(res.getNoise().length == this.testStats.noutliers);
+		for (int i = 0; i < this.testClusters.length; i++) {
+			assertTrue(toSet(this.testClusters[i]).equals(toSet(res.clusters()[i])));
+		}
+	}
+
+	/**
+	 * Check the parallel implementation gives the same clusters, in the same
+	 * order, as the sequential one using both the grid (2d) and kd-tree (5d)
+	 * neighbourhood indexes.
+	 */
+	@Test
+	public void testParallelMatchesSequential(){
+		final Random rng = new Random(42);
+
+		for (int ndims : new int[] { 2, 5 }) {
+			final double[][] data = new double[600][ndims];
+			for (int i = 0; i < data.length; i++) {
+				final int c = rng.nextInt(4);
+				for (int j = 0; j < ndims; j++) {
+					data[i][j] = c * 10 + rng.nextGaussian() * (i % 10 == 0 ? 4 : 1);
+				}
+			}
+
+			final DoubleDBSCANClusters expected = new DoubleNNDBSCAN(1.5, 5).cluster(data);
+			final DoubleDBSCANClusters actual = new DoubleParallelDBSCAN(1.5, 5).cluster(data);
+
+			assertEquals(expected.clusters().length, actual.clusters().length);
+			for (int i = 0; i < expected.clusters().length; i++) {
+				final int[] e = expected.clusters()[i].clone();
+				Arrays.sort(e);
+				assertArrayEquals(e, actual.clusters()[i]);
+			}
+
+			final int[] noise = expected.getNoise().clone();
+			Arrays.sort(noise);
+			assertArrayEquals(noise, actual.getNoise());
+		}
+	}
+
 	private Set<Integer> toSet(int[] is) {
 		Set<Integer> set = new HashSet<Integer>();
 		for (int i = 0; i < is.length; i++) {
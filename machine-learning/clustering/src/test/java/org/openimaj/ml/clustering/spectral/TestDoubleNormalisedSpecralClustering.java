@@ -97,6 +97,24 @@ public class TestDoubleNormalisedSpecralClustering {
 		confirmClusters(res);
 	}
 	
+	/**
+	 * As {@link #testSimSpatialClusterInverse()}, but computing the eigen
+	 * vectors with the {@link SpectralClusteringConf.EigenSolver#LOBPCG} solver
+	 */
+	@Test
+	public void testSimSpatialClusterInverseLOBPCG(){
+		SpatialClusterer<DoubleDBSCANClusters,double[]> inner = new DoubleNNDBSCAN(
+			0.5, 3, new DoubleNearestNeighboursExact.Factory(DoubleFVComparison.EUCLIDEAN)
+		);
+		SpectralClusteringConf<double[]> conf = new SpectralClusteringConf<double[]>(inner, new GraphLaplacian.Normalised());
+		conf.eigenChooser = new AbsoluteValueEigenChooser(0.2, 0.1);
+		conf.eigenSolver = SpectralClusteringConf.EigenSolver.LOBPCG;
+		DoubleSpectralClustering clust = new DoubleSpectralClustering(conf);
+ 		SparseMatrix mat_norm = normalisedSimilarity();
+		IndexClusters res = clust.cluster(mat_norm);
+		confirmClusters(res);
+	}
+
 	/**
 	 * @throws IOException 
 	 *
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.gmm;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.data.DoubleArrayBackedDataSource;
+import org.openimaj.math.statistics.distribution.MixtureOfGaussians;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.CovarianceType;
+import org.openimaj.ml.gmm.GaussianMixtureModelEM.UpdateOptions;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link GaussianMixtureModelEM}
+ * 
+ * @author agent (agent@local)
+ */
+public class GaussianMixtureModelEMTest {
+	private static final double[] WEIGHTS = { 0.3, 0.7 };
+	private static final double[][] MEANS = { { 0, 0, 0 }, { 8, 6, 7 } };
+	private static final double[][] STDDEVS = { { 1, 0.5, 1.5 }, { 0.7, 1, 1.2 } };
+
+	/**
+	 * Sample from the known two-component diagonal mixture
+	 */
+	private static double[][] makeData(int n, long seed) {
+		final Random rng = new Random(seed);
+		final double[][] data = new double[n][MEANS[0].length];
+
+		for (int i = 0; i < n; i++) {
+			final int c = rng.nextDouble() < WEIGHTS[0] ? 0 : 1;
+
+			for (int j = 0; j < data[i].length; j++)
+				data[i][j] = MEANS[c][j] + STDDEVS[c][j] * rng.nextGaussian();
+		}
+
+		return data;
+	}
+
+	private static GaussianMixtureModelEM createLearner(CovarianceType type, double thresh, int niters) {
+		return new GaussianMixtureModelEM(2, type, thresh, 1e-3, niters, 1, EnumSet.allOf(UpdateOptions.class),
+				EnumSet.allOf(UpdateOptions.class));
+	}
+
+	/**
+	 * Get the index of the component of the mixture whose mean is closest to
+	 * the given point
+	 */
+	private static int closest(MixtureOfGaussians gmm, double[] point) {
+		int best = -1;
+		double bestDist = Double.MAX_VALUE;
+
+		for (int i = 0; i < gmm.gaussians.length; i++) {
+			final double[] mean = gmm.gaussians[i].getMean().getArray()[0];
+
+			double dist = 0;
+			for (int j = 0; j < point.length; j++)
+				dist += (mean[j] - point[j]) * (mean[j] - point[j]);
+
+			if (dist < bestDist) {
+				bestDist = dist;
+				best = i;
+			}
+		}
+
+		return best;
+	}
+
+	private static double[] diagonal(MixtureOfGaussians gmm, int c) {
+		final double[] diag = new double[MEANS[0].length];
+		for (int j = 0; j < diag.length; j++)
+			diag[j] = gmm.gaussians[c].getCovariance(j, j);
+		return diag;
+	}
+
+	private void checkParallelMatchesBatch(CovarianceType type) {
+		final double[][] data = makeData(2000, 1);
+
+		final MixtureOfGaussians batch = createLearner(type, 1e-10, 1000).estimate(data);
+		final MixtureOfGaussians parallel = createLearner(type, 1e-10, 1000).estimate(
+				new DoubleArrayBackedDataSource(data), GlobalExecutorPool.getPool());
+
+		for (final double[] mean : MEANS) {
+			final int b = closest(batch, mean);
+			final int p = closest(parallel, mean);
+
+			assertArrayEquals(batch.gaussians[b].getMean().getArray()[0], parallel.gaussians[p].getMean()
+					.getArray()[0], 1e-4);
+			assertArrayEquals(diagonal(batch, b), diagonal(parallel, p), 1e-4);
+			assertEquals(batch.weights[b], parallel.weights[p], 1e-4);
+		}
+	}
+
+	/**
+	 * Test that the parallel full-batch estimation of a diagonal mixture
+	 * converges to the same model as the in-memory estimation
+	 */
+	@Test
+	public void testParallelDiagonal() {
+		checkParallelMatchesBatch(CovarianceType.Diagonal);
+	}
+
+	/**
+	 * Test that the parallel full-batch estimation of a spherical mixture
+	 * converges to the same model as the in-memory estimation
+	 */
+	@Test
+	public void testParallelSpherical() {
+		checkParallelMatchesBatch(CovarianceType.Spherical);
+	}
+
+	/**
+	 * Test that the mini-batch estimation recovers the parameters of the
+	 * mixture that generated the data
+	 */
+	@Test
+	public void testMiniBatchRecovery() {
+		final double[][] data = makeData(20000, 2);
+
+		final MixtureOfGaussians gmm = createLearner(CovarianceType.Diagonal, 1e-2, 200).estimate(
+				new DoubleArrayBackedDataSource(data, new Random(3)), 500, GlobalExecutorPool.getPool());
+
+		for (int c = 0; c < MEANS.length; c++) {
+			final int i = closest(gmm, MEANS[c]);
+			final double[] mean = gmm.gaussians[i].getMean().getArray()[0];
+			final double[] var = diagonal(gmm, i);
+
+			assertEquals(WEIGHTS[c], gmm.weights[i], 0.03);
+			for (int j = 0; j < mean.length; j++) {
+				assertEquals(MEANS[c][j], mean[j], 0.1);
+				assertEquals(STDDEVS[c][j] * STDDEVS[c][j], var[j], 0.2 * STDDEVS[c][j] * STDDEVS[c][j]);
+			}
+		}
+	}
+}
@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.linear.learner.matlib;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.math.matrix.DiagonalMatrix;
+import org.openimaj.ml.linear.learner.BilinearLearnerParameters;
+import org.openimaj.ml.linear.learner.OnlineLearner;
+import org.openimaj.ml.linear.learner.matlib.init.InitStrategy;
+import org.openimaj.ml.linear.learner.matlib.regul.L1L2Regulariser;
+import org.openimaj.ml.linear.learner.matlib.regul.L1Regulariser;
+import org.openimaj.ml.linear.learner.matlib.regul.Regulariser;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+import ch.akuhn.matrix.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+import ch.akuhn.matrix.SparseVector;
+import ch.akuhn.matrix.Vector;
+import ch.akuhn.matrix.Vector.Entry;
+
+/**
+ * A version of the {@link MatlibBilinearSparseOnlineLearner} that is
+ * specialised for the square loss and works directly on a compressed
+ * representation of the (sparse, words by users) data matrix.
+ * <p>
+ * Each call to {@link #process(Matrix, Matrix)} packs X into compressed sparse
+ * row and column form. Each step of the biconvex optimisation then needs one
+ * pass over the non-zeros of X. W and U are held as dense row-major arrays
+ * (one column per task) and are updated in place; the gradient step, the
+ * proximal step of the {@link L1Regulariser} or {@link L1L2Regulariser} and
+ * the measurement of the change are fused into a single pass over the rows.
+ * All passes are split across the rows of the matrices and run in parallel;
+ * the tasks are handled together within each row. Other {@link Regulariser}s
+ * are supported, but their proximal step is applied through the generic
+ * {@link Regulariser#prox(Matrix, double)}.
+ * <p>
+ * The learner uses the same parameters, learning rate schedules and stopping
+ * criterion as the {@link MatlibBilinearSparseOnlineLearner}, but always
+ * minimises the square loss (the {@link BilinearLearnerParameters#LOSS}
+ * parameter is ignored). Tasks whose value in Y is NaN are treated as missing
+ * and do not contribute to the updates.
+ * 
+ * @author agent (agent@local)
+ */
+public class ParallelMatlibBilinearSparseOnlineLearner implements OnlineLearner<Matrix, Matrix>, ReadWriteableBinary {
+	static Logger logger = LogManager.getLogger(ParallelMatlibBilinearSparseOnlineLearner.class);
+
+	/**
+	 * An operation on a range of rows
+	 */
+	private static abstract class RowOperation {
+		abstract void perform(int start, int stop);
+	}
+
+	/**
+	 * A compressed sparse row matrix
+	 */
+	private static class CSR {
+		int nrows;
+		int[] offsets;
+		int[] columns;
+		double[] values;
+
+		CSR(int nrows, int nnz) {
+			this.nrows = nrows;
+			this.offsets = new int[nrows + 1];
+			this.columns = new int[nnz];
+			this.values = new double[nnz];
+		}
+
+		static CSR fromMatrix(Matrix m) {
+			final int nrows = m.rowCount();
+			int nnz = 0;
+			for (int r = 0; r < nrows; r++)
+				nnz += m.row(r).used();
+
+			final CSR csr = new CSR(nrows, nnz);
+			int k = 0;
+			for (int r = 0; r < nrows; r++) {
+				final Vector row = m.row(r);
+
+				if (row instanceof SparseVector) {
+					final SparseVector srow = (SparseVector) row;
+					System.arraycopy(srow.keys(), 0, csr.columns, k, srow.used());
+					System.arraycopy(srow.values(), 0, csr.values, k, srow.used());
+					k += srow.used();
+				} else {
+					for (final Entry e : row.entries()) {
+						if (e.value != 0) {
+							csr.columns[k] = e.index;
+							csr.values[k++] = e.value;
+						}
+					}
+				}
+				csr.offsets[r + 1] = k;
+			}
+
+			return csr;
+		}
+
+		CSR transpose(int ncols) {
+			final int nnz = offsets[nrows];
+			final CSR t = new CSR(ncols, nnz);
+
+			for (int k = 0; k < nnz; k++)
+				t.offsets[columns[k] + 1]++;
+			for (int c = 0; c < ncols; c++)
+				t.offsets[c + 1] += t.offsets[c];
+
+			final int[] next = t.offsets.clone();
+			for (int r = 0; r < nrows; r++) {
+				for (int k = offsets[r]; k < offsets[r + 1]; k++) {
+					final int pos = next[columns[k]]++;
+					t.columns[pos] = r;
+					t.values[pos] = values[k];
+				}
+			}
+
+			return t;
+		}
+	}
+
+	protected BilinearLearnerParameters params;
+	protected double[][] w;
+	protected double[][] u;
+	protected double[][] bias;
+	protected Regulariser regul;
+	protected Double lambda_w, lambda_u;
+	protected Boolean biasMode;
+	protected Double eta0_u;
+	protected Double eta0_w;
+
+	private boolean nodataseen;
+	private ThreadPoolExecutor pool;
+
+	/**
+	 * The default parameters. These won't work with your dataset, i promise.
+	 */
+	public ParallelMatlibBilinearSparseOnlineLearner() {
+		this(new BilinearLearnerParameters());
+	}
+
+	/**
+	 * Construct with the given parameters, using the
+	 * {@link GlobalExecutorPool}.
+	 * 
+	 * @param params
+	 *            the parameters used by this learner
+	 */
+	public ParallelMatlibBilinearSparseOnlineLearner(BilinearLearnerParameters params) {
+		this(params, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given parameters and thread pool.
+	 * 
+	 * @param params
+	 *            the parameters used by this learner
+	 * @param pool
+	 *            the thread pool; if null all the work is performed in the
+	 *            calling thread
+	 */
+	public ParallelMatlibBilinearSparseOnlineLearner(BilinearLearnerParameters params, ThreadPoolExecutor pool) {
+		this.params = params;
+		this.pool = pool;
+		reinitParams();
+	}
+
+	/**
+	 * must be called if any parameters are changed
+	 */
+	public void reinitParams() {
+		this.regul = this.params.getTyped(BilinearLearnerParameters.REGUL);
+		this.lambda_w = this.params.getTyped(BilinearLearnerParameters.LAMBDA_W);
+		this.lambda_u = this.params.getTyped(BilinearLearnerParameters.LAMBDA_U);
+		this.biasMode = this.params.getTyped(BilinearLearnerParameters.BIAS);
+		this.eta0_u = this.params.getTyped(BilinearLearnerParameters.ETA0_U);
+		this.eta0_w = this.params.getTyped(BilinearLearnerParameters.ETA0_W);
+		this.nodataseen = true;
+	}
+
+	private void initParams(int xrows, int xcols, int ycols) {
+		final InitStrategy wstrat = this.params.getTyped(BilinearLearnerParameters.WINITSTRAT);
+		final InitStrategy ustrat = this.params.getTyped(BilinearLearnerParameters.UINITSTRAT);
+		this.w = wstrat.init(xrows, ycols).asArray();
+		this.u = ustrat.init(xcols, ycols).asArray();
+
+		this.bias = new double[ycols][ycols];
+		if (this.biasMode) {
+			final InitStrategy bstrat = this.params.getTyped(BilinearLearnerParameters.BIASINITSTRAT);
+			this.bias = bstrat.init(ycols, ycols).asArray();
+		}
+	}
+
+	@Override
+	public void process(Matrix X, Matrix Y) {
+		final int nfeatures = X.rowCount();
+		final int nusers = X.columnCount();
+		final int ntasks = Y.columnCount();
+
+		// only inits when the current params is null
+		if (this.w == null) {
+			initParams(nfeatures, nusers, ntasks); // Number of words, users and tasks
+		}
+
+		final Double dampening = this.params.getTyped(BilinearLearnerParameters.DAMPENING);
+		final double weighting = 1.0 - dampening;
+
+		logger.debug("... dampening w, u and bias by: " + weighting);
+
+		scaleInplace(this.w, weighting);
+		scaleInplace(this.u, weighting);
+		if (this.biasMode) {
+			scaleInplace(this.bias, weighting);
+		}
+
+		final double[] y = new double[ntasks];
+		final boolean[] missing = new boolean[ntasks];
+		for (int t = 0; t < ntasks; t++) {
+			y[t] = Y.get(0, t);
+			missing[t] = Double.isNaN(y[t]);
+		}
+
+		// X is words x users; its transpose gives compressed columns
+		final CSR xrows = CSR.fromMatrix(X);
+		final CSR xcols = xrows.transpose(nusers);
+
+		final double[][] dprime = new double[nfeatures][ntasks];
+		final double[][] vprime = new double[nusers][ntasks];
+		final double[] resid = new double[ntasks];
+
+		final Double biconvextol = this.params.getTyped("biconvex_tol");
+		final Integer maxiter = this.params.getTyped("biconvex_maxiter");
+
+		int iter = 0;
+		while (true) {
+			iter += 1;
+
+			final double uLossWeight = etat(iter, eta0_u);
+			final double wLossWeighted = etat(iter, eta0_w);
+			final double weightedLambda_u = lambdat(iter, lambda_u);
+			final double weightedLambda_w = lambdat(iter, lambda_w);
+
+			// Dprime is words x tasks
+			if (this.nodataseen) {
+				this.nodataseen = false;
+				final double[][] fakeu = new double[nusers][ntasks];
+				for (final double[] row : fakeu)
+					Arrays.fill(row, 1);
+				multiply(xrows, fakeu, dprime);
+			} else {
+				multiply(xrows, this.u, dprime);
+			}
+
+			residuals(dprime, this.w, y, missing, resid);
+			final double[] wchange = step(this.w, dprime, resid, wLossWeighted, weightedLambda_w);
+
+			// Vprime is users x tasks
+			multiply(xcols, this.w, vprime);
+
+			residuals(vprime, this.u, y, missing, resid);
+			final double[] uchange = step(this.u, vprime, resid, uLossWeight, weightedLambda_u);
+
+			final double sumchangew = Math.sqrt(wchange[0]);
+			final double totalw = Math.sqrt(wchange[1]);
+			final double sumchangeu = Math.sqrt(uchange[0]);
+			final double totalu = Math.sqrt(uchange[1]);
+
+			// As in MatlibBilinearSparseOnlineLearner, the relative change of W
+			// (or of U if W is zero) measures the progress
+			double ratio = 0;
+			if (totalw != 0)
+				ratio = sumchangew / totalw;
+			else if (totalu != 0)
+				ratio = sumchangeu / totalu;
+
+			double totalbias = 0;
+			if (this.biasMode) {
+				residuals(vprime, this.u, y, missing, resid);
+
+				final double biasLossWeight = biasEtat(iter);
+				double sumchangebias = 0;
+				for (int t = 0; t < ntasks; t++) {
+					for (int t2 = 0; t2 < ntasks; t2++)
+						totalbias += bias[t][t2] * bias[t][t2];
+
+					final double delta = biasLossWeight * resid[t];
+					bias[t][t] -= delta;
+					sumchangebias += delta * delta;
+				}
+				totalbias = Math.sqrt(totalbias);
+
+				if (totalbias != 0)
+					ratio += Math.sqrt(sumchangebias) / totalbias;
+				ratio /= 3;
+			} else {
+				ratio /= 2;
+			}
+
+			if (iter % 3 == 0) {
+				logger.debug(String.format("Iter: %d. Last Ratio: %2.3f", iter, ratio));
+				logger.debug("Total U magnitude: " + totalu);
+				logger.debug("Total W magnitude: " + totalw);
+				logger.debug("Total Bias: " + totalbias);
+			}
+			if (biconvextol < 0 || ratio < biconvextol || iter >= maxiter) {
+				logger.debug("tolerance reached after iteration: " + iter);
+				logger.debug("Total U magnitude: " + totalu);
+				logger.debug("Total W magnitude: " + totalw);
+				logger.debug("Total Bias: " + totalbias);
+				break;
+			}
+		}
+	}
+
+	private void forEachRows(int nrows, final RowOperation op) {
+		if (pool == null) {
+			op.perform(0, nrows);
+		} else {
+			Parallel.forRange(0, nrows, 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					op.perform(range.start, range.stop);
+				}
+			}, pool);
+		}
+	}
+
+	/**
+	 * out = A . B, where A is sparse and B and out are row-major with a
+	 * column per task
+	 */
+	private void multiply(final CSR a, final double[][] b, final double[][] out) {
+		forEachRows(a.nrows, new RowOperation() {
+			@Override
+			void perform(int start, int stop) {
+				for (int r = start; r < stop; r++) {
+					final double[] o = out[r];
+					Arrays.fill(o, 0);
+
+					for (int k = a.offsets[r]; k < a.offsets[r + 1]; k++) {
+						final double v = a.values[k];
+						final double[] br = b[a.columns[k]];
+						for (int t = 0; t < o.length; t++)
+							o[t] += v * br[t];
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Compute the residual of the prediction for each task; the prediction for
+	 * task t is the dot product of the columns t of x and p, plus the bias.
+	 * Missing tasks have a residual of zero.
+	 */
+	private void residuals(final double[][] x, final double[][] p, double[] y, boolean[] missing,
+			final double[] resid)
+	{
+		final int ntasks = resid.length;
+		Arrays.fill(resid, 0);
+
+		forEachRows(x.length, new RowOperation() {
+			@Override
+			void perform(int start, int stop) {
+				final double[] partial = new double[ntasks];
+				for (int r = start; r < stop; r++) {
+					final double[] xr = x[r];
+					final double[] pr = p[r];
+					for (int t = 0; t < ntasks; t++)
+						partial[t] += xr[t] * pr[t];
+				}
+
+				synchronized (resid) {
+					for (int t = 0; t < ntasks; t++)
+						resid[t] += partial[t];
+				}
+			}
+		});
+
+		for (int t = 0; t < ntasks; t++) {
+			if (missing[t])
+				resid[t] = 0;
+			else
+				resid[t] += (this.biasMode ? bias[t][t] : 0) - y[t];
+		}
+	}
+
+	/**
+	 * Perform the gradient step p -= eta * x * diag(resid) followed by the
+	 * proximal step in place, returning the squared Frobenius norms of the
+	 * change and of the original p.
+	 */
+	private double[] step(final double[][] p, final double[][] x, final double[] resid, final double eta,
+			final double lambda)
+	{
+		final int ntasks = resid.length;
+		final double[] norms = new double[2];
+
+		final boolean l1 = regul.getClass() == L1Regulariser.class;
+		final boolean l1l2 = regul.getClass() == L1L2Regulariser.class;
+		final double[][] old = (l1 || l1l2) ? null : copy(p);
+
+		forEachRows(p.length, new RowOperation() {
+			@Override
+			void perform(int start, int stop) {
+				double change = 0;
+				double total = 0;
+				final double[] next = new double[ntasks];
+
+				for (int r = start; r < stop; r++) {
+					final double[] pr = p[r];
+					final double[] xr = x[r];
+
+					double rownorm = 0;
+					for (int t = 0; t < ntasks; t++) {
+						next[t] = pr[t] - eta * xr[t] * resid[t];
+						rownorm += next[t] * next[t];
+					}
+
+					if (l1) {
+						for (int t = 0; t < ntasks; t++) {
+							if (next[t] < -lambda)
+								next[t] += lambda;
+							else if (next[t] > lambda)
+								next[t] -= lambda;
+							else
+								next[t] = 0;
+						}
+					} else if (l1l2) {
+						rownorm = Math.sqrt(rownorm);
+						final double scal = rownorm > lambda ? (rownorm - lambda) / rownorm : 0;
+						for (int t = 0; t < ntasks; t++)
+							next[t] *= scal;
+					}
+
+					for (int t = 0; t < ntasks; t++) {
+						final double d = next[t] - pr[t];
+						change += d * d;
+						total += pr[t] * pr[t];
+						pr[t] = next[t];
+					}
+				}
+
+				synchronized (norms) {
+					norms[0] += change;
+					norms[1] += total;
+				}
+			}
+		});
+
+		if (old != null) {
+			// generic proximal step
+			final double[][] proxed = regul.prox(toMatrix(p), lambda).asArray();
+
+			norms[0] = 0;
+			for (int r = 0; r < p.length; r++) {
+				for (int t = 0; t < ntasks; t++) {
+					final double d = proxed[r][t] - old[r][t];
+					norms[0] += d * d;
+					p[r][t] = proxed[r][t];
+				}
+			}
+		}
+
+		return norms;
+	}
+
+	private double lambdat(int iter, double lambda) {
+		return lambda / iter;
+	}
+
+	private double biasEtat(int iter) {
+		final Double biasEta0 = this.params.getTyped(BilinearLearnerParameters.ETA0_BIAS);
+		return biasEta0 / Math.sqrt(iter);
+	}
+
+	private double etat(int iter, double eta0) {
+		final Integer etaSteps = this.params.getTyped(BilinearLearnerParameters.ETASTEPS);
+		final double sqrtCeil = Math.sqrt(Math.ceil(iter / (double) etaSteps));
+		return eta0 / sqrtCeil;
+	}
+
+	private static void scaleInplace(double[][] m, double s) {
+		for (final double[] row : m)
+			for (int i = 0; i < row.length; i++)
+				row[i] *= s;
+	}
+
+	private static double[][] copy(double[][] m) {
+		final double[][] c = new double[m.length][];
+		for (int i = 0; i < m.length; i++)
+			c[i] = m[i].clone();
+		return c;
+	}
+
+	private static SparseMatrix toMatrix(double[][] m) {
+		final SparseMatrix ret = SparseMatrix.sparse(m.length, m.length == 0 ? 0 : m[0].length);
+		for (int r = 0; r < m.length; r++)
+			for (int c = 0; c < m[r].length; c++)
+				if (m[r][c] != 0)
+					ret.put(r, c, m[r][c]);
+		return ret;
+	}
+
+	private static double[][] vstack(double[][] a, double[][] b) {
+		final double[][] ret = new double[a.length + b.length][];
+		for (int i = 0; i < a.length; i++)
+			ret[i] = a[i];
+		for (int i = 0; i < b.length; i++)
+			ret[a.length + i] = b[i];
+		return ret;
+	}
+
+	/**
+	 * @return the current apramters
+	 */
+	public BilinearLearnerParameters getParams() {
+		return this.params;
+	}
+
+	/**
+	 * @return a copy of the current user matrix
+	 */
+	public Matrix getU() {
+		return toMatrix(this.u);
+	}
+
+	/**
+	 * @return a copy of the current word matrix
+	 */
+	public Matrix getW() {
+		return toMatrix(this.w);
+	}
+
+	/**
+	 * @return a copy of the current bias (null if
+	 *         {@link BilinearLearnerParameters#BIAS} is false
+	 */
+	public Matrix getBias() {
+		if (this.biasMode)
+			return toMatrix(this.bias);
+		else
+			return null;
+	}
+
+	/**
+	 * Expand the U parameters matrix by added a set of rows. If currently
+	 * unset, this function does nothing (assuming U will be initialised in the
+	 * first round) The new U parameters are initialised used
+	 * {@link BilinearLearnerParameters#EXPANDEDUINITSTRAT}
+	 * 
+	 * @param newUsers
+	 *            the number of new users to add
+	 */
+	public void addU(int newUsers) {
+		if (this.u == null)
+			return; // If u has not be inited, then it will be on first process
+		final InitStrategy ustrat = this.params.getTyped(BilinearLearnerParameters.EXPANDEDUINITSTRAT);
+		this.u = vstack(this.u, ustrat.init(newUsers, this.u[0].length).asArray());
+	}
+
+	/**
+	 * Expand the W parameters matrix by added a set of rows. If currently
+	 * unset, this function does nothing (assuming W will be initialised in the
+	 * first round) The new W parameters are initialised used
+	 * {@link BilinearLearnerParameters#EXPANDEDWINITSTRAT}
+	 * 
+	 * @param newWords
+	 *            the number of new words to add
+	 */
+	public void addW(int newWords) {
+		if (this.w == null)
+			return; // If w has not be inited, then it will be on first process
+		final InitStrategy wstrat = this.params.getTyped(BilinearLearnerParameters.EXPANDEDWINITSTRAT);
+		this.w = vstack(this.w, wstrat.init(newWords, this.w[0].length).asArray());
+	}
+
+	@Override
+	public ParallelMatlibBilinearSparseOnlineLearner clone() {
+		final ParallelMatlibBilinearSparseOnlineLearner ret = new ParallelMatlibBilinearSparseOnlineLearner(
+				this.getParams(), this.pool);
+		ret.u = copy(this.u);
+		ret.w = copy(this.w);
+		ret.bias = copy(this.bias);
+		return ret;
+	}
+
+	/**
+	 * @param newu
+	 *            set the model's U
+	 */
+	public void setU(Matrix newu) {
+		this.u = newu.asArray();
+	}
+
+	/**
+	 * @param neww
+	 *            set the model's W
+	 */
+	public void setW(Matrix neww) {
+		this.w = neww.asArray();
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		final int nwords = in.readInt();
+		final int nusers = in.readInt();
+		final int ntasks = in.readInt();
+
+		this.w = new double[nwords][ntasks];
+		for (int t = 0; t < ntasks; t++)
+			for (int r = 0; r < nwords; r++)
+				this.w[r][t] = in.readDouble();
+
+		this.u = new double[nusers][ntasks];
+		for (int t = 0; t < ntasks; t++)
+			for (int r = 0; r < nusers; r++)
+				this.u[r][t] = in.readDouble();
+
+		this.bias = new double[ntasks][ntasks];
+		for (int t2 = 0; t2 < ntasks; t2++)
+			for (int t1 = 0; t1 < ntasks; t1++)
+				this.bias[t1][t2] = in.readDouble();
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return "".getBytes();
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		final int ntasks = u[0].length;
+		out.writeInt(w.length);
+		out.writeInt(u.length);
+		out.writeInt(ntasks);
+
+		for (int t = 0; t < ntasks; t++)
+			for (int r = 0; r < w.length; r++)
+				out.writeDouble(w[r][t]);
+
+		for (int t = 0; t < ntasks; t++)
+			for (int r = 0; r < u.length; r++)
+				out.writeDouble(u[r][t]);
+
+		for (int t2 = 0; t2 < ntasks; t2++)
+			for (int t1 = 0; t1 < ntasks; t1++)
+				out.writeDouble(bias[t1][t2]);
+	}
+
+	@Override
+	public Matrix predict(Matrix x) {
+		final int ntasks = u[0].length;
+
+		// x is words x users
+		final CSR xrows = CSR.fromMatrix(x);
+		final double[][] d = new double[xrows.nrows][ntasks];
+		multiply(xrows, this.u, d);
+
+		final double[][] pred = new double[ntasks][ntasks];
+		for (int r = 0; r < d.length; r++)
+			for (int t = 0; t < ntasks; t++)
+				pred[t][t] += d[r][t] * w[r][t];
+
+		if (this.biasMode)
+			for (int t = 0; t < ntasks; t++)
+				pred[t][t] += bias[t][t];
+
+		return new DiagonalMatrix(pred);
+	}
+}
@@ -29,12 +29,20 @@
  */
 package org.openimaj.ml.pca;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
+import org.openimaj.data.AbstractDataSource;
+import org.openimaj.data.DataSource;
 import org.openimaj.feature.DoubleFV;
 import org.openimaj.feature.FeatureVector;
+import org.openimaj.feature.FloatFV;
 import org.openimaj.math.matrix.algorithm.pca.PrincipalComponentAnalysis;
+import org.openimaj.math.matrix.algorithm.pca.RandomisedPrincipalComponentAnalysis;
+import org.openimaj.math.matrix.algorithm.pca.StreamingPrincipalComponentAnalysis;
 import org.openimaj.math.matrix.algorithm.pca.SvdPrincipalComponentAnalysis;
+import org.openimaj.util.parallel.GlobalExecutorPool;
 
 import Jama.Matrix;
 
@@ -86,6 +94,12 @@ public class FeatureVectorPCA extends PrincipalComponentAnalysis {
 	 *            the feature vectors to apply PCA to.
 	 */
 	public void learnBasis(Collection<? extends FeatureVector> data) {
+		if (inner instanceof RandomisedPrincipalComponentAnalysis || inner instanceof StreamingPrincipalComponentAnalysis)
+		{
+			learnBasis(new FeatureVectorDataSource(data));
+			return;
+		}
+
 		final double[][] d = new double[data.size()][];
 
 		int i = 0;
@@ -96,15 +110,112 @@ public class FeatureVectorPCA extends PrincipalComponentAnalysis {
 		learnBasis(d);
 	}
 
+	/**
+	 * Learn the PCA basis of the data provided by the given {@link DataSource}.
+	 * If the underlying PCA algorithm is a
+	 * {@link RandomisedPrincipalComponentAnalysis} or
+	 * {@link StreamingPrincipalComponentAnalysis} the data is streamed in
+	 * parallel passes using the {@link GlobalExecutorPool}, and the source
+	 * must therefore be thread-safe; otherwise it is first copied into memory.
+	 * 
+	 * @param data
+	 *            the data; rows must be <code>double[]</code> or
+	 *            <code>float[]</code>.
+	 */
+	public void learnBasis(DataSource<?> data) {
+		if (inner instanceof RandomisedPrincipalComponentAnalysis) {
+			((RandomisedPrincipalComponentAnalysis) inner).learnBasis(data);
+		} else if (inner instanceof StreamingPrincipalComponentAnalysis) {
+			final StreamingPrincipalComponentAnalysis spca = (StreamingPrincipalComponentAnalysis) inner;
+			spca.reset();
+			spca.update(data, GlobalExecutorPool.getPool());
+			spca.learnBasis();
+		} else {
+			final double[][] d = new double[data.size()][];
+			for (int i = 0; i < d.length; i++)
+				d[i] = toDouble(data.getData(i));
+
+			inner.learnBasis(d);
+		}
+
+		this.basis = inner.getBasis();
+		this.eigenvalues = inner.getEigenValues();
+		this.mean = inner.getMean();
+	}
+
+	private static double[] toDouble(Object row) {
+		if (row instanceof double[])
+			return (double[]) row;
+
+		if (row instanceof float[]) {
+			final float[] f = (float[]) row;
+			final double[] d = new double[f.length];
+			for (int i = 0; i < f.length; i++)
+				d[i] = f[i];
+			return d;
+		}
+
+		throw new IllegalArgumentException("Unsupported data type: " + row.getClass());
+	}
+
+	/**
+	 * {@link DataSource} view of a collection of {@link FeatureVector}s. The
+	 * values of {@link FloatFV}s and {@link DoubleFV}s are provided directly;
+	 * other types are converted to doubles as they are accessed.
+	 */
+	private static class FeatureVectorDataSource extends AbstractDataSource<Object> {
+		private List<FeatureVector> vectors;
+
+		FeatureVectorDataSource(Collection<? extends FeatureVector> vectors) {
+			this.vectors = new ArrayList<FeatureVector>(vectors);
+		}
+
+		@Override
+		public void getData(int startRow, int stopRow, Object[] data) {
+			for (int i = startRow, j = 0; i < stopRow; i++, j++)
+				data[j] = getData(i);
+		}
+
+		@Override
+		public Object getData(int row) {
+			final FeatureVector fv = vectors.get(row);
+
+			if (fv instanceof FloatFV)
+				return ((FloatFV) fv).values;
+			if (fv instanceof DoubleFV)
+				return ((DoubleFV) fv).values;
+			return fv.asDoubleVector();
+		}
+
+		@Override
+		public int numDimensions() {
+			return vectors.get(0).length();
+		}
+
+		@Override
+		public int size() {
+			return vectors.size();
+		}
+
+		@Override
+		public Object[] createTemporaryArray(int size) {
+			return new Object[size];
+		}
+	}
+
 	/**
 	 * Project a vector by the basis. The vector is normalised by subtracting
-	 * the mean and then multiplied by the basis.
+	 * the mean and then multiplied by the basis. The values of {@link FloatFV}
+	 * vectors are projected directly without being converted to doubles.
 	 * 
 	 * @param vector
 	 *            the vector to project
 	 * @return projected vector
 	 */
 	public DoubleFV project(FeatureVector vector) {
+		if (vector instanceof FloatFV)
+			return new DoubleFV(project(((FloatFV) vector).values));
+
 		return new DoubleFV(project(vector.asDoubleVector()));
 	}
 
@@ -116,6 +227,23 @@ public class FeatureVectorPCA extends PrincipalComponentAnalysis {
 		this.mean = inner.getMean();
 	}
 
+	/**
+	 * Learn the PCA basis from the statistics that have been accumulated by
+	 * the given {@link StreamingPrincipalComponentAnalysis}. The given object
+	 * becomes the underlying PCA algorithm.
+	 * 
+	 * @param accumulated
+	 *            the accumulated statistics
+	 */
+	public void learnBasis(StreamingPrincipalComponentAnalysis accumulated) {
+		accumulated.learnBasis();
+
+		this.inner = accumulated;
+		this.basis = inner.getBasis();
+		this.eigenvalues = inner.getEigenValues();
+		this.mean = inner.getMean();
+	}
+
 	@Override
 	protected void learnBasisNorm(Matrix norm) {
 		inner.learnBasis(norm);
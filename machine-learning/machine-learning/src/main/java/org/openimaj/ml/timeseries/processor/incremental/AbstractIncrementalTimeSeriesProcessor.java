@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.processor.incremental;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openimaj.ml.timeseries.processor.TimeSeriesProcessor;
+import org.openimaj.ml.timeseries.series.CircularDoubleTimeSeries;
+import org.openimaj.ml.timeseries.series.DoubleTimeSeries;
+import org.openimaj.util.pair.IndependentPair;
+
+/**
+ * Base class for {@link IncrementalTimeSeriesProcessor}s. Provides the
+ * {@link org.openimaj.util.function.MultiFunction} interface in terms of
+ * {@link #add(long, double, Listener)}, and allows the processor to be used
+ * as a (batch) {@link TimeSeriesProcessor} by streaming the whole series
+ * through it.
+ * 
+ * @author agent (agent@local)
+ */
+public abstract class AbstractIncrementalTimeSeriesProcessor
+		implements
+		IncrementalTimeSeriesProcessor,
+		TimeSeriesProcessor<double[], Double, DoubleTimeSeries>
+{
+	@Override
+	public List<IndependentPair<Long, Double>> apply(IndependentPair<Long, Double> in) {
+		final List<IndependentPair<Long, Double>> out = new ArrayList<IndependentPair<Long, Double>>(1);
+
+		add(in.firstObject(), in.secondObject(), new Listener() {
+			@Override
+			public void emit(long time, double value) {
+				out.add(IndependentPair.pair(time, value));
+			}
+		});
+
+		return out;
+	}
+
+	@Override
+	public void flush(Listener listener) {
+		reset();
+	}
+
+	/**
+	 * Replace the series with the values emitted by passing all of its points
+	 * through this processor. Any points previously added to this processor
+	 * are forgotten first.
+	 */
+	@Override
+	public void process(DoubleTimeSeries series) {
+		final CircularDoubleTimeSeries out = new CircularDoubleTimeSeries();
+		final Listener listener = new Listener() {
+			@Override
+			public void emit(long time, double value) {
+				out.add(time, value);
+			}
+		};
+
+		reset();
+
+		final long[] times = series.getTimes();
+		final double[] data = series.getData();
+		final int size = series.size();
+		for (int i = 0; i < size; i++)
+			add(times[i], data[i], listener);
+		flush(listener);
+
+		series.internalAssign(out.doubleTimeSeries());
+	}
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.processor.incremental;
+
+import org.openimaj.ml.timeseries.processor.GaussianTimeSeriesProcessor;
+import org.openimaj.ml.timeseries.series.CircularDoubleTimeSeries;
+
+/**
+ * An incremental version of the {@link GaussianTimeSeriesProcessor}. The
+ * Gaussian kernel is centred on each point, so the smoothed value of a point
+ * is emitted once the points in the second half of the kernel have been
+ * added; the last values are emitted by {@link #flush(Listener)}. As with the
+ * {@link GaussianTimeSeriesProcessor}, the first and last values of the series
+ * are repeated to fill the kernel at either end.
+ * <p>
+ * The most recent points are held in a {@link CircularDoubleTimeSeries} the
+ * size of the kernel, so the cost of adding a point depends only on the
+ * length of the kernel.
+ * 
+ * @author agent (agent@local)
+ */
+public class IncrementalGaussianTimeSeriesProcessor extends AbstractIncrementalTimeSeriesProcessor {
+	private double[] kernel;
+	private CircularDoubleTimeSeries buffer;
+
+	/**
+	 * @param sigma
+	 *            the sigma of the guassian function
+	 */
+	public IncrementalGaussianTimeSeriesProcessor(double sigma) {
+		this(sigma, GaussianTimeSeriesProcessor.DEFAULT_GAUSS_TRUNCATE);
+	}
+
+	/**
+	 * @param sigma
+	 *            the sigma of the guassian function
+	 * @param truncate
+	 *            the number of sigmas from the centre at which to truncate the
+	 *            Gaussian
+	 */
+	public IncrementalGaussianTimeSeriesProcessor(double sigma, double truncate) {
+		this.kernel = GaussianTimeSeriesProcessor.makeKernel(sigma, truncate);
+		this.buffer = new CircularDoubleTimeSeries(kernel.length);
+	}
+
+	@Override
+	public void add(long time, double value, Listener listener) {
+		if (buffer.isEmpty()) {
+			// repeat the first value over the first half of the kernel
+			for (int i = 0; i < kernel.length / 2; i++)
+				buffer.add(time, value);
+		}
+
+		buffer.add(time, value);
+		emit(listener);
+	}
+
+	private void emit(Listener listener) {
+		if (buffer.size() < kernel.length)
+			return;
+
+		double sum = 0;
+		for (int j = 0, jj = kernel.length - 1; j < kernel.length; j++, jj--)
+			sum += buffer.getValue(j) * kernel[jj];
+
+		listener.emit(buffer.getTime(kernel.length / 2), sum);
+	}
+
+	@Override
+	public void flush(Listener listener) {
+		if (!buffer.isEmpty()) {
+			// repeat the last value over the second half of the kernel
+			final long time = buffer.getLastTime();
+			final double value = buffer.getLastValue();
+
+			for (int i = 0; i < kernel.length / 2; i++) {
+				buffer.add(time, value);
+				emit(listener);
+			}
+		}
+
+		reset();
+	}
+
+	@Override
+	public void reset() {
+		buffer.clear();
+	}
+}
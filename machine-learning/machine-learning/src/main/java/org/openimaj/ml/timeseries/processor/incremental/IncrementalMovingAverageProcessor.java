@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.processor.incremental;
+
+import org.openimaj.ml.timeseries.processor.MovingAverageProcessor;
+import org.openimaj.ml.timeseries.series.CircularDoubleTimeSeries;
+
+/**
+ * An incremental version of the {@link MovingAverageProcessor}. For each
+ * point added, the mean of the values of the points with times in [t_n -
+ * length, t_n] is emitted at time t_n. A running sum over the points in the
+ * window is maintained, so each point is added and evicted in constant time.
+ * To stop rounding errors accumulating on long streams, the sum is recomputed
+ * from the window once as many points have been evicted as the window holds,
+ * which keeps the amortised cost constant.
+ * <p>
+ * Unlike the {@link MovingAverageProcessor}, points with the same time as
+ * t_n that are added after it are not included in its average.
+ * 
+ * @author agent (agent@local)
+ */
+public class IncrementalMovingAverageProcessor extends AbstractIncrementalTimeSeriesProcessor {
+	private long length;
+	private CircularDoubleTimeSeries window = new CircularDoubleTimeSeries();
+	private double sum;
+	private int evictions;
+
+	/**
+	 * @param length
+	 *            the length of the window placed ending at t_n
+	 */
+	public IncrementalMovingAverageProcessor(long length) {
+		this.length = length;
+	}
+
+	@Override
+	public void add(long time, double value, Listener listener) {
+		window.add(time, value);
+		sum += value;
+
+		final long earliest = time - length;
+		while (window.getTime(0) < earliest) {
+			sum -= window.getValue(0);
+			window.removeFirst();
+			evictions++;
+		}
+
+		if (evictions >= window.size())
+			resync();
+
+		listener.emit(time, sum / window.size());
+	}
+
+	/**
+	 * Recompute the sum from the points in the window
+	 */
+	private void resync() {
+		sum = 0;
+		for (int i = 0; i < window.size(); i++)
+			sum += window.getValue(i);
+		evictions = 0;
+	}
+
+	@Override
+	public void reset() {
+		window.clear();
+		sum = 0;
+		evictions = 0;
+	}
+}
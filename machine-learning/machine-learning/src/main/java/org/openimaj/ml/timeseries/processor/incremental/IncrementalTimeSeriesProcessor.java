@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.processor.incremental;
+
+import org.openimaj.ml.timeseries.processor.TimeSeriesProcessor;
+import org.openimaj.util.function.MultiFunction;
+import org.openimaj.util.pair.IndependentPair;
+
+/**
+ * A processor that consumes a time series one point at a time and emits
+ * processed values as soon as they can be computed. Unlike a
+ * {@link TimeSeriesProcessor}, the cost of adding a point does not depend on
+ * the length of the series seen so far, so these processors are suitable for
+ * unbounded streams of data.
+ * <p>
+ * As a {@link MultiFunction} an incremental processor can be applied directly
+ * to a {@link org.openimaj.util.stream.Stream} of (time, value) pairs.
+ * 
+ * @author agent (agent@local)
+ */
+public interface IncrementalTimeSeriesProcessor
+		extends
+		MultiFunction<IndependentPair<Long, Double>, IndependentPair<Long, Double>>
+{
+	/**
+	 * Receiver of the values emitted by an {@link IncrementalTimeSeriesProcessor}
+	 */
+	public static interface Listener {
+		/**
+		 * Called when a processed value becomes available
+		 * 
+		 * @param time
+		 *            the time of the processed value
+		 * @param value
+		 *            the processed value
+		 */
+		public void emit(long time, double value);
+	}
+
+	/**
+	 * Add a point to the series. Points must be added in time order. Any
+	 * processed values that become available are passed to the listener.
+	 * 
+	 * @param time
+	 *            the time of the point
+	 * @param value
+	 *            the value of the point
+	 * @param listener
+	 *            the listener to receive processed values
+	 */
+	public void add(long time, double value, Listener listener);
+
+	/**
+	 * Signal the end of the series. Processors whose output lags behind their
+	 * input emit any outstanding values to the listener; the processor is then
+	 * {@link #reset()}.
+	 * 
+	 * @param listener
+	 *            the listener to receive processed values
+	 */
+	public void flush(Listener listener);
+
+	/**
+	 * Forget all points added so far
+	 */
+	public void reset();
+}
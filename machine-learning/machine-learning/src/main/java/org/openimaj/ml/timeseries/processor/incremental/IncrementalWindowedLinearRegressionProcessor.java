@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.processor.incremental;
+
+import java.util.Arrays;
+
+import org.openimaj.math.matrix.MatrixUtils;
+import org.openimaj.ml.timeseries.processor.WindowedLinearRegressionProcessor;
+import org.openimaj.ml.timeseries.series.CircularDoubleTimeSeries;
+
+import Jama.Matrix;
+
+/**
+ * An incremental version of the {@link WindowedLinearRegressionProcessor}.
+ * Each point X_t, together with the window of points
+ * X{t-offset-window,t-offset} before it, forms an instance of the
+ * autoregressive model X_t = b*X{t-offset-window,t-offset} + c. The
+ * least-squares solution is maintained over the most recent instances (or
+ * all instances if no history length is given) using running sums of
+ * x^T.x and x^T.y, which are updated in constant time as instances enter
+ * and leave the history. To stop rounding errors accumulating, the sums are
+ * recomputed from the history once as many instances have left it as it
+ * holds. For each point that completes an instance, the prediction of the
+ * current model for that point is emitted.
+ * <p>
+ * With an unbounded history, the last emitted value matches the last value
+ * produced by the {@link WindowedLinearRegressionProcessor} on the same
+ * series.
+ * 
+ * @author agent (agent@local)
+ */
+public class IncrementalWindowedLinearRegressionProcessor extends AbstractIncrementalTimeSeriesProcessor {
+	private static final int DEFAULT_WINDOW_SIZE = 3;
+	private static final int DEFAULT_OFFSET = 1;
+
+	private int windowsize;
+	private int offset;
+	private int history;
+
+	private CircularDoubleTimeSeries values;
+	private double[][] xtx;
+	private double[] xty;
+	private double[] x;
+	private double[] weights;
+	private int ninstances;
+	private int removals;
+
+	/**
+	 * Default window size and offset, with an unbounded history
+	 */
+	public IncrementalWindowedLinearRegressionProcessor() {
+		this(DEFAULT_WINDOW_SIZE, DEFAULT_OFFSET);
+	}
+
+	/**
+	 * Perform regression s.t. y = Sum(w_{0-i} * x_{0-i}) + c for i from 1 to
+	 * windowsize, with an unbounded history
+	 * 
+	 * @param windowsize
+	 */
+	public IncrementalWindowedLinearRegressionProcessor(int windowsize) {
+		this(windowsize, DEFAULT_OFFSET);
+	}
+
+	/**
+	 * Perform regression s.t. y = Sum(w_{0-i} * x_{0-i}) + c for i from 1 to
+	 * windowsize, with an unbounded history
+	 * 
+	 * @param windowsize
+	 * @param offset
+	 */
+	public IncrementalWindowedLinearRegressionProcessor(int windowsize, int offset) {
+		this(windowsize, offset, -1);
+	}
+
+	/**
+	 * Perform regression s.t. y = Sum(w_{0-i} * x_{0-i}) + c for i from 1 to
+	 * windowsize, using only the most recent instances
+	 * 
+	 * @param windowsize
+	 * @param offset
+	 * @param history
+	 *            the number of instances the regression is estimated from; if
+	 *            not positive, all instances are used
+	 */
+	public IncrementalWindowedLinearRegressionProcessor(int windowsize, int offset, int history) {
+		this.windowsize = windowsize;
+		this.offset = offset;
+		this.history = history;
+
+		// enough points to form the newest instance and the one leaving the
+		// history
+		if (history > 0)
+			this.values = new CircularDoubleTimeSeries(history + windowsize + offset);
+		else
+			this.values = new CircularDoubleTimeSeries(windowsize + offset);
+
+		this.xtx = new double[windowsize + 1][windowsize + 1];
+		this.xty = new double[windowsize + 1];
+		this.x = new double[windowsize + 1];
+	}
+
+	@Override
+	public void add(long time, double value, Listener listener) {
+		values.add(time, value);
+
+		final int last = values.size() - 1;
+		if (last < windowsize + offset - 1)
+			return;
+
+		if (history > 0 && ninstances == history) {
+			final int leaving = last - history;
+			accumulate(leaving, -1);
+			ninstances--;
+			removals++;
+		}
+
+		accumulate(last, 1);
+		ninstances++;
+
+		if (removals >= ninstances)
+			resync(last);
+
+		final Matrix w = MatrixUtils.pseudoInverse(new Matrix(xtx)).times(new Matrix(xty, xty.length));
+		weights = w.getColumnPackedCopy();
+
+		features(last);
+		double pred = 0;
+		for (int i = 0; i < x.length; i++)
+			pred += weights[i] * x[i];
+
+		listener.emit(time, pred);
+	}
+
+	/**
+	 * Fill x with the constant and window of the instance whose target is the
+	 * point at the given index
+	 */
+	private void features(int target) {
+		final int start = target - windowsize - (offset - 1);
+
+		x[0] = 1;
+		for (int i = 0; i < windowsize; i++)
+			x[i + 1] = values.getValue(start + i);
+	}
+
+	private void accumulate(int target, double sign) {
+		features(target);
+		final double y = values.getValue(target);
+
+		for (int i = 0; i < x.length; i++) {
+			final double sxi = sign * x[i];
+			for (int j = 0; j < x.length; j++)
+				xtx[i][j] += sxi * x[j];
+			xty[i] += sxi * y;
+		}
+	}
+
+	/**
+	 * Recompute the sums from the instances in the history, the newest of
+	 * which has its target at the given index
+	 */
+	private void resync(int last) {
+		for (final double[] row : xtx)
+			Arrays.fill(row, 0);
+		Arrays.fill(xty, 0);
+
+		for (int target = last - ninstances + 1; target <= last; target++)
+			accumulate(target, 1);
+		removals = 0;
+	}
+
+	/**
+	 * @return the current weights of the model, with the constant first; null
+	 *         if no instances have been seen
+	 */
+	public double[] getWeights() {
+		return weights == null ? null : weights.clone();
+	}
+
+	@Override
+	public void reset() {
+		values.clear();
+		for (final double[] row : xtx)
+			Arrays.fill(row, 0);
+		Arrays.fill(xty, 0);
+		weights = null;
+		ninstances = 0;
+		removals = 0;
+	}
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries.series;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.openimaj.util.pair.IndependentPair;
+
+/**
+ * A store of the most recent points of a time series, backed by circular
+ * arrays of primitive times and values. Points must be added in time order;
+ * the oldest points can be evicted explicitly, by time, or (if the store has
+ * a fixed capacity) automatically when a new point is added to a full store.
+ * Adding and evicting points are constant time operations.
+ * 
+ * @author agent (agent@local)
+ */
+public class CircularDoubleTimeSeries implements DoubleTimeSeriesProvider, Iterable<IndependentPair<Long, Double>> {
+	private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+	private long[] times;
+	private double[] data;
+	private int head;
+	private int size;
+	private final boolean bounded;
+
+	/**
+	 * Construct an empty store that grows as required and never evicts points
+	 * automatically.
+	 */
+	public CircularDoubleTimeSeries() {
+		this.times = new long[DEFAULT_INITIAL_CAPACITY];
+		this.data = new double[DEFAULT_INITIAL_CAPACITY];
+		this.bounded = false;
+	}
+
+	/**
+	 * Construct an empty store with a fixed capacity. Once the store is full,
+	 * adding a point evicts the oldest one.
+	 * 
+	 * @param capacity
+	 *            the maximum number of points held
+	 */
+	public CircularDoubleTimeSeries(int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive");
+
+		this.times = new long[capacity];
+		this.data = new double[capacity];
+		this.bounded = true;
+	}
+
+	/**
+	 * Add a point to the end of the series. If the store has a fixed capacity
+	 * and is full, the oldest point is evicted first.
+	 * 
+	 * @param time
+	 *            the time of the point; must not be before the time of the
+	 *            last point
+	 * @param value
+	 *            the value of the point
+	 * @return true if the oldest point was evicted; false otherwise
+	 */
+	public boolean add(long time, double value) {
+		if (size > 0 && time < getLastTime())
+			throw new IllegalArgumentException("Points must be added in time order");
+
+		boolean evicted = false;
+		if (size == times.length) {
+			if (bounded) {
+				removeFirst();
+				evicted = true;
+			} else {
+				grow();
+			}
+		}
+
+		final int idx = index(size);
+		times[idx] = time;
+		data[idx] = value;
+		size++;
+
+		return evicted;
+	}
+
+	private void grow() {
+		final long[] newTimes = new long[times.length * 2];
+		final double[] newData = new double[data.length * 2];
+
+		final int firstPart = Math.min(size, times.length - head);
+		System.arraycopy(times, head, newTimes, 0, firstPart);
+		System.arraycopy(data, head, newData, 0, firstPart);
+		System.arraycopy(times, 0, newTimes, firstPart, size - firstPart);
+		System.arraycopy(data, 0, newData, firstPart, size - firstPart);
+
+		this.times = newTimes;
+		this.data = newData;
+		this.head = 0;
+	}
+
+	private int index(int i) {
+		final int idx = head + i;
+		return idx < times.length ? idx : idx - times.length;
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+	}
+
+	/**
+	 * Remove the oldest point
+	 * 
+	 * @throws NoSuchElementException
+	 *             if the series is empty
+	 */
+	public void removeFirst() {
+		if (size == 0)
+			throw new NoSuchElementException();
+
+		head = index(1);
+		size--;
+	}
+
+	/**
+	 * Remove all points with a time before the given time
+	 * 
+	 * @param time
+	 *            the earliest time to keep
+	 * @return the number of points removed
+	 */
+	public int evictBefore(long time) {
+		int count = 0;
+		while (size > 0 && times[head] < time) {
+			removeFirst();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Remove all the points
+	 */
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * Get the time of the i-th point, counting from the oldest
+	 * 
+	 * @param i
+	 *            the index of the point
+	 * @return the time
+	 */
+	public long getTime(int i) {
+		checkIndex(i);
+		return times[index(i)];
+	}
+
+	/**
+	 * Get the value of the i-th point, counting from the oldest
+	 * 
+	 * @param i
+	 *            the index of the point
+	 * @return the value
+	 */
+	public double getValue(int i) {
+		checkIndex(i);
+		return data[index(i)];
+	}
+
+	/**
+	 * @return the time of the newest point
+	 */
+	public long getLastTime() {
+		return getTime(size - 1);
+	}
+
+	/**
+	 * @return the value of the newest point
+	 */
+	public double getLastValue() {
+		return getValue(size - 1);
+	}
+
+	/**
+	 * @return the number of points in the series
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if the series has no points
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Copy the current points into a new {@link DoubleTimeSeries}
+	 */
+	@Override
+	public DoubleTimeSeries doubleTimeSeries() {
+		final long[] outTimes = new long[size];
+		final double[] outData = new double[size];
+
+		for (int i = 0; i < size; i++) {
+			final int idx = index(i);
+			outTimes[i] = times[idx];
+			outData[i] = data[idx];
+		}
+
+		return new DoubleTimeSeries(outTimes, outData);
+	}
+
+	@Override
+	public Iterator<IndependentPair<Long, Double>> iterator() {
+		return new Iterator<IndependentPair<Long, Double>>() {
+			int i = 0;
+
+			@Override
+			public boolean hasNext() {
+				return i < size;
+			}
+
+			@Override
+			public IndependentPair<Long, Double> next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+
+				final int idx = index(i++);
+				return IndependentPair.pair(times[idx], data[idx]);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		final StringBuffer sb = new StringBuffer();
+		final String lf = "%d => %.5f\n";
+		for (int i = 0; i < size; i++) {
+			final int idx = index(i);
+			sb.append(String.format(lf, times[idx], data[idx]));
+		}
+		return sb.toString();
+	}
+}
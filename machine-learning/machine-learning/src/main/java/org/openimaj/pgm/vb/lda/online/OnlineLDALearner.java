@@ -0,0 +1,710 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.online;
+
+import gnu.trove.map.hash.TIntIntHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.apache.commons.math.special.Gamma;
+import org.openimaj.citation.annotation.Reference;
+import org.openimaj.citation.annotation.ReferenceType;
+import org.openimaj.io.IOUtils;
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.pgm.util.Corpus;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.pgm.vb.lda.mle.LDABetaInitStrategy;
+import org.openimaj.pgm.vb.lda.mle.LDAModel;
+import org.openimaj.util.array.SparseIntArray.Entry;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
+
+/**
+ * Online (stochastic) variational inference for LDA. Rather than iterating
+ * over the entire corpus for every update of the topics, the learner takes a
+ * natural gradient step on the topic-word parameters (lambda) after each
+ * mini-batch of documents, so it can be used on very large corpora or on
+ * streams of documents (for example the daily corpora produced from tweets).
+ * <p>
+ * The E-step over the documents of a mini-batch can be run in parallel, with
+ * each thread accumulating its own sufficient statistics. Only the columns
+ * of lambda corresponding to the words seen in a mini-batch are touched by an
+ * update: the decay that the update applies to every other word is held as a
+ * single scale factor, so the cost of an update depends on the size of the
+ * mini-batch rather than the size of the vocabulary.
+ * <p>
+ * The state of the learner (including lambda, the number of updates
+ * performed and the position reached by {@link #estimate(Corpus, int)}) can
+ * be written and read with {@link IOUtils}, and can be written automatically
+ * every few mini-batches using {@link #setCheckpoint(File, int)}, so that a
+ * long run can be resumed with {@link #load(File)}.
+ * 
+ * @author agent (agent@local)
+ */
+@Reference(
+		type = ReferenceType.Inproceedings,
+		author = { "Hoffman, Matthew D.", "Blei, David M.", "Bach, Francis" },
+		title = "Online Learning for Latent Dirichlet Allocation",
+		year = "2010",
+		booktitle = "Advances in Neural Information Processing Systems 23",
+		pages = { "856", "864" })
+public class OnlineLDALearner implements ReadWriteableBinary {
+	private static final double MIN_SCALE = 1e-30;
+
+	private int ntopics;
+	private int vocabularySize;
+	private long numDocuments;
+
+	private double alpha = 0.1;
+	private double eta = 0.01;
+	private double tau0 = 1024;
+	private double kappa = 0.7;
+
+	private int batchSize = 256;
+	private int maxIterations = 100;
+	private double convergence = 1e-3;
+	private long shuffleSeed = 0;
+
+	private ThreadPoolExecutor pool;
+
+	private File checkpointFile;
+	private int checkpointInterval;
+
+	/** lambda[k][w] = eta + scale * mu[k][w] */
+	private double[][] mu;
+	private double[] muTotal;
+	private double scale;
+	private int updateCount;
+
+	/** the position reached by estimate(): completed passes and batches */
+	private int passesDone;
+	private int batchesDone;
+
+	private OnlineLDALearner() {
+	}
+
+	/**
+	 * Construct a learner with topics initialised by
+	 * {@link LDABetaInitStrategy.RandomBetaInit}.
+	 * 
+	 * @param ntopics
+	 *            the number of topics
+	 * @param vocabularySize
+	 *            the size of the vocabulary
+	 * @param numDocuments
+	 *            the (estimated) total number of documents that will be seen
+	 */
+	public OnlineLDALearner(int ntopics, int vocabularySize, long numDocuments) {
+		this(ntopics, vocabularySize, numDocuments, new LDABetaInitStrategy.RandomBetaInit());
+	}
+
+	/**
+	 * Construct a learner with topics initialised by the given strategy. The
+	 * initial topic-word sufficient statistics produced by the strategy are
+	 * used as the initial value of lambda.
+	 * 
+	 * @param ntopics
+	 *            the number of topics
+	 * @param vocabularySize
+	 *            the size of the vocabulary
+	 * @param numDocuments
+	 *            the (estimated) total number of documents that will be seen
+	 * @param init
+	 *            the initialisation strategy
+	 */
+	public OnlineLDALearner(int ntopics, int vocabularySize, long numDocuments, LDABetaInitStrategy init) {
+		this.ntopics = ntopics;
+		this.vocabularySize = vocabularySize;
+		this.numDocuments = numDocuments;
+
+		final LDAModel model = new LDAModel(ntopics);
+		model.prepare(vocabularySize);
+		init.initModel(model, new Corpus(vocabularySize));
+
+		this.mu = new double[ntopics][vocabularySize];
+		this.muTotal = new double[ntopics];
+		this.scale = 1;
+		for (int k = 0; k < ntopics; k++) {
+			for (int w = 0; w < vocabularySize; w++) {
+				mu[k][w] = model.topicWord[k][w] - eta;
+				muTotal[k] += mu[k][w];
+			}
+		}
+	}
+
+	/**
+	 * Load a learner (for example one written by a checkpoint) from a file
+	 * 
+	 * @param file
+	 *            the file
+	 * @return the learner
+	 * @throws IOException
+	 */
+	public static OnlineLDALearner load(File file) throws IOException {
+		return IOUtils.read(file, OnlineLDALearner.class);
+	}
+
+	/**
+	 * Set the dirichlet parameter of the per-document topic proportions.
+	 * Defaults to 0.1.
+	 * 
+	 * @param alpha
+	 *            the parameter
+	 */
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+
+	/**
+	 * Set the dirichlet parameter of the topic-word distributions. Defaults to
+	 * 0.01. This should be set before any updates are made.
+	 * 
+	 * @param eta
+	 *            the parameter
+	 */
+	public void setEta(double eta) {
+		for (int k = 0; k < ntopics; k++) {
+			for (int w = 0; w < vocabularySize; w++) {
+				mu[k][w] += (this.eta - eta) / scale;
+			}
+			muTotal[k] += vocabularySize * (this.eta - eta) / scale;
+		}
+		this.eta = eta;
+	}
+
+	/**
+	 * Set the learning rate schedule; the weight given to update t is
+	 * (tau0 + t)^-kappa. Defaults to tau0=1024, kappa=0.7.
+	 * 
+	 * @param tau0
+	 *            the delay (&gt;= 0) which down-weights early updates
+	 * @param kappa
+	 *            the forgetting rate, in (0.5, 1] for convergence
+	 */
+	public void setLearningRate(double tau0, double kappa) {
+		if (tau0 < 0)
+			throw new IllegalArgumentException("tau0 must be non-negative");
+
+		this.tau0 = tau0;
+		this.kappa = kappa;
+	}
+
+	/**
+	 * Set the number of documents per mini-batch used by
+	 * {@link #estimate(Corpus, int)}. Defaults to 256.
+	 * 
+	 * @param batchSize
+	 *            the batch size
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Set the seed of the random order in which
+	 * {@link #estimate(Corpus, int)} visits the documents. Each pass is
+	 * shuffled with a generator seeded from this value and the number of the
+	 * pass, so a resumed run visits the documents in the same order as the
+	 * original. Defaults to 0.
+	 * 
+	 * @param seed
+	 *            the seed
+	 */
+	public void setShuffleSeed(long seed) {
+		this.shuffleSeed = seed;
+	}
+
+	/**
+	 * Set the maximum number of iterations and the convergence threshold on
+	 * the mean change of the topic proportions for the per-document E-step.
+	 * Defaults to 100 and 0.001.
+	 * 
+	 * @param maxIterations
+	 *            the maximum number of iterations
+	 * @param convergence
+	 *            the convergence threshold
+	 */
+	public void setEStep(int maxIterations, double convergence) {
+		this.maxIterations = maxIterations;
+		this.convergence = convergence;
+	}
+
+	/**
+	 * Set the estimated total number of documents
+	 * 
+	 * @param numDocuments
+	 *            the number of documents
+	 */
+	public void setNumDocuments(long numDocuments) {
+		this.numDocuments = numDocuments;
+	}
+
+	/**
+	 * Set the thread pool used to perform the E-step. If the pool is null (the
+	 * default) the E-step is performed in the calling thread.
+	 * 
+	 * @param pool
+	 *            the pool; can be null
+	 */
+	public void setThreadPool(ThreadPoolExecutor pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Write the state of the learner to the given file after every
+	 * <code>interval</code> updates. The file is replaced atomically where the
+	 * platform allows, so a run that is interrupted can be resumed from the
+	 * last checkpoint with {@link #load(File)}.
+	 * 
+	 * @param file
+	 *            the checkpoint file; null to disable checkpointing
+	 * @param interval
+	 *            the number of updates between checkpoints
+	 */
+	public void setCheckpoint(File file, int interval) {
+		this.checkpointFile = file;
+		this.checkpointInterval = interval;
+	}
+
+	/**
+	 * Make the given number of passes over the corpus, visiting the documents
+	 * in a random order in mini-batches. The estimated total number of
+	 * documents is set to the size of the corpus.
+	 * <p>
+	 * The number of completed passes and the number of completed batches of
+	 * the current pass are part of the state of the learner. A learner loaded
+	 * from a checkpoint written during this method therefore carries on from
+	 * the next batch when it is called again with the same corpus and number
+	 * of passes, rather than starting again from the first pass. The position
+	 * is reset once all the passes are complete.
+	 * 
+	 * @param corpus
+	 *            the corpus
+	 * @param passes
+	 *            the total number of passes
+	 * @throws IOException
+	 *             if a checkpoint cannot be written
+	 */
+	public void estimate(Corpus corpus, int passes) throws IOException {
+		if ((passesDone > 0 || batchesDone > 0) && numDocuments != corpus.size())
+			throw new IllegalArgumentException("The learner is part way through a run over a corpus of "
+					+ numDocuments + " documents, but the corpus has " + corpus.size());
+
+		this.numDocuments = corpus.size();
+
+		final int numBatches = (corpus.size() + batchSize - 1) / batchSize;
+		for (; passesDone < passes; passesDone++, batchesDone = 0) {
+			final List<Document> docs = new ArrayList<Document>(corpus.getDocuments());
+			Collections.shuffle(docs, new Random(shuffleSeed * 31 + passesDone));
+
+			while (batchesDone < numBatches) {
+				final int start = batchesDone * batchSize;
+				updateTopics(docs.subList(start, Math.min(docs.size(), start + batchSize)));
+				batchesDone++;
+
+				checkpointIfRequired();
+			}
+		}
+
+		passesDone = 0;
+		batchesDone = 0;
+	}
+
+	/**
+	 * Update the topics with a mini-batch of documents
+	 * 
+	 * @param batch
+	 *            the documents
+	 * @throws IOException
+	 *             if a checkpoint cannot be written
+	 */
+	public void update(final List<? extends Document> batch) throws IOException {
+		if (batch.size() == 0)
+			return;
+
+		updateTopics(batch);
+		checkpointIfRequired();
+	}
+
+	/**
+	 * Perform the E- and M-steps for a non-empty mini-batch
+	 */
+	private void updateTopics(final List<? extends Document> batch) {
+		final Batch b = new Batch(batch);
+		final double[][] expElogbeta = expElogbeta(b.ids);
+		final double[][] sstats = new double[ntopics][b.ids.length];
+
+		if (pool == null) {
+			eStep(b, 0, b.size(), expElogbeta, sstats);
+		} else {
+			Parallel.forRange(0, b.size(), 1, new Operation<IntRange>() {
+				@Override
+				public void perform(IntRange range) {
+					final double[][] local = new double[ntopics][b.ids.length];
+					eStep(b, range.start, range.stop, expElogbeta, local);
+
+					synchronized (sstats) {
+						for (int k = 0; k < ntopics; k++)
+							for (int u = 0; u < b.ids.length; u++)
+								sstats[k][u] += local[k][u];
+					}
+				}
+			}, pool);
+		}
+
+		mStep(b.ids, expElogbeta, sstats, batch.size());
+	}
+
+	private void checkpointIfRequired() throws IOException {
+		if (checkpointFile != null && checkpointInterval > 0 && updateCount % checkpointInterval == 0)
+			checkpoint();
+	}
+
+	/**
+	 * Estimate the topic proportions of a document with the current topics
+	 * 
+	 * @param doc
+	 *            the document
+	 * @return the (normalised) expected topic proportions
+	 */
+	public double[] inferTopicProportions(Document doc) {
+		final Batch b = new Batch(Collections.singletonList(doc));
+		final double[] gamma = new double[ntopics];
+		inferDocument(b, 0, expElogbeta(b.ids), gamma, new double[ntopics]);
+
+		double sum = 0;
+		for (final double g : gamma)
+			sum += g;
+		for (int k = 0; k < ntopics; k++)
+			gamma[k] /= sum;
+
+		return gamma;
+	}
+
+	/**
+	 * @return the number of mini-batch updates that have been performed
+	 */
+	public int getUpdateCount() {
+		return updateCount;
+	}
+
+	/**
+	 * Get the current topics as an {@link LDAModel}; the topic-word
+	 * statistics are lambda, so the expected topic-word probabilities are
+	 * <code>topicWord[k][w] / topicTotal[k]</code>.
+	 * 
+	 * @return the model
+	 */
+	public LDAModel getModel() {
+		final LDAModel model = new LDAModel(ntopics);
+		model.prepare(vocabularySize);
+		model.setAlpha(alpha);
+
+		for (int k = 0; k < ntopics; k++) {
+			for (int w = 0; w < vocabularySize; w++) {
+				final double l = eta + scale * mu[k][w];
+				model.incTopicWord(k, w, l);
+				model.incTopicTotal(k, l);
+			}
+		}
+
+		return model;
+	}
+
+	/**
+	 * Write the state to the checkpoint file, via a temporary file
+	 */
+	private void checkpoint() throws IOException {
+		final File tmp = new File(checkpointFile.getPath() + ".tmp");
+		IOUtils.writeBinary(tmp, this);
+
+		if (!tmp.renameTo(checkpointFile)) {
+			checkpointFile.delete();
+			if (!tmp.renameTo(checkpointFile))
+				throw new IOException("Unable to write checkpoint " + checkpointFile);
+		}
+	}
+
+	/**
+	 * The documents of a batch as parallel arrays of the (batch-local) indices
+	 * of the words and their counts.
+	 */
+	private static class Batch {
+		int[] ids;
+		int[][] words;
+		int[][] counts;
+
+		Batch(List<? extends Document> docs) {
+			final TIntIntHashMap local = new TIntIntHashMap();
+			words = new int[docs.size()][];
+			counts = new int[docs.size()][];
+
+			for (int d = 0; d < docs.size(); d++) {
+				final Document doc = docs.get(d);
+				final int n = doc.countUniqueWords();
+				words[d] = new int[n];
+				counts[d] = new int[n];
+
+				int i = 0;
+				for (final Entry e : doc.getVector().entries()) {
+					if (!local.containsKey(e.index))
+						local.put(e.index, local.size());
+
+					words[d][i] = local.get(e.index);
+					counts[d][i] = e.value;
+					i++;
+				}
+			}
+
+			ids = new int[local.size()];
+			for (final int w : local.keys())
+				ids[local.get(w)] = w;
+		}
+
+		int size() {
+			return words.length;
+		}
+	}
+
+	/**
+	 * Compute exp(E[log beta]) for the given words
+	 */
+	private double[][] expElogbeta(int[] ids) {
+		final double[][] eb = new double[ntopics][ids.length];
+
+		for (int k = 0; k < ntopics; k++) {
+			final double dgTotal = Gamma.digamma(vocabularySize * eta + scale * muTotal[k]);
+
+			for (int u = 0; u < ids.length; u++)
+				eb[k][u] = Math.exp(Gamma.digamma(eta + scale * mu[k][ids[u]]) - dgTotal);
+		}
+
+		return eb;
+	}
+
+	/**
+	 * Perform the E-step on a range of the documents of a batch, accumulating
+	 * the sufficient statistics (before multiplication by expElogbeta)
+	 */
+	private void eStep(Batch b, int start, int stop, double[][] expElogbeta, double[][] sstats) {
+		final double[] gamma = new double[ntopics];
+		final double[] expElogtheta = new double[ntopics];
+
+		for (int d = start; d < stop; d++) {
+			final double[] phinorm = inferDocument(b, d, expElogbeta, gamma, expElogtheta);
+
+			final int[] words = b.words[d];
+			final int[] counts = b.counts[d];
+			for (int i = 0; i < words.length; i++) {
+				final double c = counts[i] / phinorm[i];
+				for (int k = 0; k < ntopics; k++)
+					sstats[k][words[i]] += expElogtheta[k] * c;
+			}
+		}
+	}
+
+	/**
+	 * Iterate the topic proportions (gamma) of a single document to
+	 * convergence. On return expElogtheta holds exp(E[log theta]) for the
+	 * final gamma and the returned array holds the corresponding normalisers
+	 * of phi for each word.
+	 */
+	private double[] inferDocument(Batch b, int d, double[][] expElogbeta, double[] gamma, double[] expElogtheta) {
+		final int[] words = b.words[d];
+		final int[] counts = b.counts[d];
+		final double[] phinorm = new double[words.length];
+
+		int length = 0;
+		for (final int c : counts)
+			length += c;
+		for (int k = 0; k < ntopics; k++)
+			gamma[k] = alpha + (double) length / ntopics;
+
+		for (int iter = 0; iter <= maxIterations; iter++) {
+			computeExpElogtheta(gamma, expElogtheta);
+
+			for (int i = 0; i < words.length; i++) {
+				double sum = 1e-100;
+				for (int k = 0; k < ntopics; k++)
+					sum += expElogtheta[k] * expElogbeta[k][words[i]];
+				phinorm[i] = sum;
+			}
+
+			if (iter == maxIterations)
+				break;
+
+			double change = 0;
+			for (int k = 0; k < ntopics; k++) {
+				double s = 0;
+				for (int i = 0; i < words.length; i++)
+					s += counts[i] / phinorm[i] * expElogbeta[k][words[i]];
+
+				final double g = alpha + expElogtheta[k] * s;
+				change += Math.abs(g - gamma[k]);
+				gamma[k] = g;
+			}
+
+			if (change / ntopics < convergence) {
+				computeExpElogtheta(gamma, expElogtheta);
+				for (int i = 0; i < words.length; i++) {
+					double sum = 1e-100;
+					for (int k = 0; k < ntopics; k++)
+						sum += expElogtheta[k] * expElogbeta[k][words[i]];
+					phinorm[i] = sum;
+				}
+				break;
+			}
+		}
+
+		return phinorm;
+	}
+
+	private void computeExpElogtheta(double[] gamma, double[] expElogtheta) {
+		double sum = 0;
+		for (int k = 0; k < ntopics; k++)
+			sum += gamma[k];
+
+		final double dgSum = Gamma.digamma(sum);
+		for (int k = 0; k < ntopics; k++)
+			expElogtheta[k] = Math.exp(Gamma.digamma(gamma[k]) - dgSum);
+	}
+
+	/**
+	 * Blend the estimate of lambda from the batch into the current lambda
+	 */
+	private void mStep(int[] ids, double[][] expElogbeta, double[][] sstats, int nDocs) {
+		final double rho = Math.pow(tau0 + updateCount, -kappa);
+
+		if (rho >= 1) {
+			// the old value of lambda is forgotten completely
+			for (int k = 0; k < ntopics; k++) {
+				Arrays.fill(mu[k], 0);
+				muTotal[k] = 0;
+			}
+			scale = 1;
+		} else {
+			scale *= (1 - rho);
+		}
+
+		final double weight = rho * numDocuments / nDocs / scale;
+		for (int k = 0; k < ntopics; k++) {
+			for (int u = 0; u < ids.length; u++) {
+				final double delta = weight * sstats[k][u] * expElogbeta[k][u];
+				mu[k][ids[u]] += delta;
+				muTotal[k] += delta;
+			}
+		}
+
+		if (scale < MIN_SCALE)
+			rescale();
+
+		updateCount++;
+	}
+
+	/**
+	 * Fold the scale factor into mu
+	 */
+	private void rescale() {
+		for (int k = 0; k < ntopics; k++) {
+			double total = 0;
+			for (int w = 0; w < vocabularySize; w++) {
+				mu[k][w] *= scale;
+				total += mu[k][w];
+			}
+			muTotal[k] = total;
+		}
+		scale = 1;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		ntopics = in.readInt();
+		vocabularySize = in.readInt();
+		numDocuments = in.readLong();
+		alpha = in.readDouble();
+		eta = in.readDouble();
+		tau0 = in.readDouble();
+		kappa = in.readDouble();
+		batchSize = in.readInt();
+		maxIterations = in.readInt();
+		convergence = in.readDouble();
+		shuffleSeed = in.readLong();
+		updateCount = in.readInt();
+		passesDone = in.readInt();
+		batchesDone = in.readInt();
+
+		scale = 1;
+		mu = new double[ntopics][vocabularySize];
+		muTotal = new double[ntopics];
+		for (int k = 0; k < ntopics; k++) {
+			for (int w = 0; w < vocabularySize; w++) {
+				mu[k][w] = in.readDouble() - eta;
+				muTotal[k] += mu[k][w];
+			}
+		}
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return "OLDA".getBytes();
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(ntopics);
+		out.writeInt(vocabularySize);
+		out.writeLong(numDocuments);
+		out.writeDouble(alpha);
+		out.writeDouble(eta);
+		out.writeDouble(tau0);
+		out.writeDouble(kappa);
+		out.writeInt(batchSize);
+		out.writeInt(maxIterations);
+		out.writeDouble(convergence);
+		out.writeLong(shuffleSeed);
+		out.writeInt(updateCount);
+		out.writeInt(passesDone);
+		out.writeInt(batchesDone);
+
+		for (int k = 0; k < ntopics; k++)
+			for (int w = 0; w < vocabularySize; w++)
+				out.writeDouble(eta + scale * mu[k][w]);
+	}
+}
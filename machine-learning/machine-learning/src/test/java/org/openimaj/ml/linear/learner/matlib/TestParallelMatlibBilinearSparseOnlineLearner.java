@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.linear.learner.matlib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.ml.linear.learner.BilinearLearnerParameters;
+import org.openimaj.ml.linear.learner.matlib.init.SparseSingleValueInitStrat;
+import org.openimaj.ml.linear.learner.matlib.init.SparseZerosInitStrategy;
+import org.openimaj.ml.linear.learner.matlib.regul.L1L2Regulariser;
+import org.openimaj.ml.linear.learner.matlib.regul.L1Regulariser;
+import org.openimaj.ml.linear.learner.matlib.regul.Regulariser;
+
+import ch.akuhn.matrix.Matrix;
+import ch.akuhn.matrix.SparseMatrix;
+
+/**
+ * Tests for the {@link ParallelMatlibBilinearSparseOnlineLearner}
+ * 
+ * @author agent (agent@local)
+ */
+public class TestParallelMatlibBilinearSparseOnlineLearner {
+	private static final double EPS = 1e-8;
+	private static final double INIT = 0.1;
+	private static final double ETA = 0.01;
+	private static final double LAMBDA = 0.001;
+	private static final int MAXITER = 5;
+
+	private static BilinearLearnerParameters params(Regulariser regul, boolean bias) {
+		final BilinearLearnerParameters params = new BilinearLearnerParameters();
+		params.put(BilinearLearnerParameters.REGUL, regul);
+		params.put(BilinearLearnerParameters.WINITSTRAT, new SparseSingleValueInitStrat(INIT));
+		params.put(BilinearLearnerParameters.UINITSTRAT, new SparseSingleValueInitStrat(INIT));
+		params.put(BilinearLearnerParameters.EXPANDEDWINITSTRAT, new SparseZerosInitStrategy());
+		params.put(BilinearLearnerParameters.EXPANDEDUINITSTRAT, new SparseZerosInitStrategy());
+		params.put(BilinearLearnerParameters.BIASINITSTRAT, new SparseZerosInitStrategy());
+		params.put(BilinearLearnerParameters.BIAS, bias);
+		params.put(BilinearLearnerParameters.LAMBDA_W, LAMBDA);
+		params.put(BilinearLearnerParameters.LAMBDA_U, LAMBDA);
+		params.put(BilinearLearnerParameters.ETA0_W, ETA);
+		params.put(BilinearLearnerParameters.ETA0_U, ETA);
+		params.put(BilinearLearnerParameters.ETA0_BIAS, ETA);
+		params.put(BilinearLearnerParameters.ETASTEPS, 1);
+		params.put("biconvex_tol", 0.0);
+		params.put("biconvex_maxiter", MAXITER);
+		return params;
+	}
+
+	private static Matrix randomX(int nwords, int nusers, Random rng) {
+		final SparseMatrix x = SparseMatrix.sparse(nwords, nusers);
+		for (int r = 0; r < nwords; r++)
+			for (int c = 0; c < nusers; c++)
+				if (rng.nextDouble() < 0.1)
+					x.put(r, c, rng.nextDouble());
+		return x;
+	}
+
+	private static Matrix randomY(int ntasks, Random rng) {
+		final SparseMatrix y = SparseMatrix.sparse(1, ntasks);
+		for (int t = 0; t < ntasks; t++)
+			y.put(0, t, rng.nextGaussian());
+		return y;
+	}
+
+	private static void assertMatrixEquals(double[][] expected, Matrix actual) {
+		assertEquals(expected.length, actual.rowCount());
+		for (int r = 0; r < expected.length; r++)
+			for (int c = 0; c < expected[r].length; c++)
+				assertEquals(expected[r][c], actual.get(r, c), EPS);
+	}
+
+	/**
+	 * Straightforward dense implementation of the updates performed by the
+	 * learner on the first call to process (without bias)
+	 */
+	private static void reference(double[][] x, double[] y, double[][] w, double[][] u, boolean l1) {
+		final int nwords = x.length;
+		final int nusers = x[0].length;
+		final int ntasks = y.length;
+
+		for (int iter = 1; iter <= MAXITER; iter++) {
+			final double eta = ETA / Math.sqrt(iter);
+			final double lambda = LAMBDA / iter;
+
+			// D = X.U (or X.1 on the very first step)
+			final double[][] d = new double[nwords][ntasks];
+			for (int i = 0; i < nwords; i++)
+				for (int j = 0; j < nusers; j++)
+					for (int t = 0; t < ntasks; t++)
+						d[i][t] += x[i][j] * (iter == 1 ? 1 : u[j][t]);
+			update(w, d, y, eta, lambda, l1);
+
+			// V = X^T.W
+			final double[][] v = new double[nusers][ntasks];
+			for (int i = 0; i < nwords; i++)
+				for (int j = 0; j < nusers; j++)
+					for (int t = 0; t < ntasks; t++)
+						v[j][t] += x[i][j] * w[i][t];
+			update(u, v, y, eta, lambda, l1);
+		}
+	}
+
+	private static void update(double[][] p, double[][] d, double[] y, double eta, double lambda, boolean l1) {
+		final int ntasks = y.length;
+		final double[] resid = new double[ntasks];
+		for (int t = 0; t < ntasks; t++) {
+			for (int i = 0; i < p.length; i++)
+				resid[t] += d[i][t] * p[i][t];
+			resid[t] -= y[t];
+		}
+
+		for (int i = 0; i < p.length; i++) {
+			double norm = 0;
+			for (int t = 0; t < ntasks; t++) {
+				p[i][t] -= eta * d[i][t] * resid[t];
+				norm += p[i][t] * p[i][t];
+			}
+			norm = Math.sqrt(norm);
+
+			for (int t = 0; t < ntasks; t++) {
+				if (l1)
+					p[i][t] = Math.signum(p[i][t]) * Math.max(0, Math.abs(p[i][t]) - lambda);
+				else
+					p[i][t] = norm > lambda ? p[i][t] * (norm - lambda) / norm : 0;
+			}
+		}
+	}
+
+	private static void compare(Regulariser regul, boolean l1) {
+		final Random rng = new Random(1);
+		final int nwords = 50;
+		final int nusers = 20;
+		final int ntasks = 3;
+
+		final Matrix x = randomX(nwords, nusers, rng);
+		final Matrix y = randomY(ntasks, rng);
+
+		final double[][] w = new double[nwords][ntasks];
+		final double[][] u = new double[nusers][ntasks];
+		for (int i = 0; i < nwords; i++)
+			for (int t = 0; t < ntasks; t++)
+				w[i][t] = (float) INIT;
+		for (int j = 0; j < nusers; j++)
+			for (int t = 0; t < ntasks; t++)
+				u[j][t] = (float) INIT;
+		reference(x.asArray(), y.asArray()[0], w, u, l1);
+
+		final ParallelMatlibBilinearSparseOnlineLearner learner = new ParallelMatlibBilinearSparseOnlineLearner(
+				params(regul, false));
+		learner.process(x, y);
+
+		assertMatrixEquals(w, learner.getW());
+		assertMatrixEquals(u, learner.getU());
+
+		final ParallelMatlibBilinearSparseOnlineLearner sequential = new ParallelMatlibBilinearSparseOnlineLearner(
+				params(regul, false), null);
+		sequential.process(x, y);
+
+		assertMatrixEquals(learner.getW().asArray(), sequential.getW());
+		assertMatrixEquals(learner.getU().asArray(), sequential.getU());
+	}
+
+	/**
+	 * Test the updates with the L1L2 regulariser
+	 */
+	@Test
+	public void testL1L2() {
+		compare(new L1L2Regulariser(), false);
+	}
+
+	/**
+	 * Test the updates with the L1 regulariser
+	 */
+	@Test
+	public void testL1() {
+		compare(new L1Regulariser(), true);
+	}
+
+	/**
+	 * Test that learning the bias reduces the error on repeated data
+	 */
+	@Test
+	public void testBias() {
+		final Random rng = new Random(1);
+		final ParallelMatlibBilinearSparseOnlineLearner learner = new ParallelMatlibBilinearSparseOnlineLearner(
+				params(new L1L2Regulariser(), true));
+
+		final Matrix x = randomX(50, 20, rng);
+		final Matrix y = randomY(3, rng);
+
+		learner.process(x, y);
+		final double first = error(learner.predict(x), y);
+		for (int i = 0; i < 20; i++)
+			learner.process(x, y);
+		final double last = error(learner.predict(x), y);
+
+		assertTrue(last < first);
+		assertTrue(learner.getBias().get(0, 0) != 0);
+	}
+
+	private static double error(Matrix pred, Matrix y) {
+		double err = 0;
+		for (int t = 0; t < y.columnCount(); t++) {
+			final double d = pred.get(t, t) - y.get(0, t);
+			err += d * d;
+		}
+		return err;
+	}
+
+	/**
+	 * Test that tasks with a NaN value in Y do not affect the model
+	 */
+	@Test
+	public void testMissingTasks() {
+		final Random rng = new Random(1);
+		final BilinearLearnerParameters params = params(new L1Regulariser(), true);
+		params.put(BilinearLearnerParameters.LAMBDA_W, 0.0);
+		params.put(BilinearLearnerParameters.LAMBDA_U, 0.0);
+		final ParallelMatlibBilinearSparseOnlineLearner learner = new ParallelMatlibBilinearSparseOnlineLearner(params);
+
+		final Matrix x = randomX(50, 20, rng);
+		final Matrix y = randomY(3, rng);
+		y.put(0, 1, Double.NaN);
+		learner.process(x, y);
+
+		final Matrix w = learner.getW();
+		for (int r = 0; r < w.rowCount(); r++)
+			assertEquals(INIT, w.get(r, 1), 1e-6);
+		assertEquals(0, learner.getBias().get(1, 1), EPS);
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.timeseries;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.openimaj.ml.regression.LinearRegression;
+import org.openimaj.ml.timeseries.processor.GaussianTimeSeriesProcessor;
+import org.openimaj.ml.timeseries.processor.MovingAverageProcessor;
+import org.openimaj.ml.timeseries.processor.WindowedLinearRegressionProcessor;
+import org.openimaj.ml.timeseries.processor.incremental.IncrementalGaussianTimeSeriesProcessor;
+import org.openimaj.ml.timeseries.processor.incremental.IncrementalMovingAverageProcessor;
+import org.openimaj.ml.timeseries.processor.incremental.IncrementalTimeSeriesProcessor;
+import org.openimaj.ml.timeseries.processor.incremental.IncrementalWindowedLinearRegressionProcessor;
+import org.openimaj.ml.timeseries.series.CircularDoubleTimeSeries;
+import org.openimaj.ml.timeseries.series.DoubleTimeSeries;
+import org.openimaj.util.pair.IndependentPair;
+
+public class IncrementalTimeSeriesProcessorTest {
+	private static DoubleTimeSeries randomSeries(int size, Random rng) {
+		final long[] times = new long[size];
+		final double[] data = new double[size];
+		long time = 0;
+		for (int i = 0; i < size; i++) {
+			time += 1 + rng.nextInt(3);
+			times[i] = time;
+			data[i] = rng.nextDouble() * 10;
+		}
+		return new DoubleTimeSeries(times, data);
+	}
+
+	@Test
+	public void testCircularDoubleTimeSeries() {
+		final CircularDoubleTimeSeries ts = new CircularDoubleTimeSeries(3);
+		assertTrue(!ts.add(1, 1));
+		assertTrue(!ts.add(2, 2));
+		assertTrue(!ts.add(3, 3));
+		assertTrue(ts.add(4, 4));
+		assertEquals(3, ts.size());
+		assertEquals(2, ts.getTime(0));
+		assertEquals(4, ts.getLastValue(), 0);
+
+		assertEquals(1, ts.evictBefore(3));
+		assertArrayEquals(new long[] { 3, 4 }, ts.doubleTimeSeries().getTimes());
+
+		final CircularDoubleTimeSeries unbounded = new CircularDoubleTimeSeries();
+		for (int i = 0; i < 100; i++) {
+			unbounded.add(i, i);
+			if (i % 3 == 0)
+				unbounded.removeFirst();
+		}
+		assertEquals(66, unbounded.size());
+		for (int i = 0; i < unbounded.size(); i++)
+			assertEquals(i + 34, unbounded.getValue(i), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCircularDoubleTimeSeriesOrder() {
+		final CircularDoubleTimeSeries ts = new CircularDoubleTimeSeries();
+		ts.add(2, 1);
+		ts.add(1, 1);
+	}
+
+	private static void assertSeriesEquals(DoubleTimeSeries expected, DoubleTimeSeries actual, double eps) {
+		assertArrayEquals(expected.getTimes(), actual.getTimes());
+		assertArrayEquals(expected.getData(), actual.getData(), eps);
+	}
+
+	@Test
+	public void testMovingAverage() {
+		final DoubleTimeSeries series = randomSeries(200, new Random(1));
+
+		final DoubleTimeSeries expected = series.process(new MovingAverageProcessor(10));
+		final DoubleTimeSeries actual = series.process(new IncrementalMovingAverageProcessor(10));
+
+		assertSeriesEquals(expected, actual, 1e-10);
+	}
+
+	@Test
+	public void testMovingAverageLongStream() {
+		// large values followed by small ones; errors accumulated in the
+		// running sum while the large values pass through the window would
+		// swamp the averages of the small ones
+		final Random rng = new Random(1);
+		final int n = 200000;
+		final long[] times = new long[n];
+		final double[] data = new double[n];
+		for (int i = 0; i < n; i++) {
+			times[i] = i;
+			data[i] = i < n / 2 ? rng.nextDouble() * 1e12 : rng.nextDouble();
+		}
+		final DoubleTimeSeries series = new DoubleTimeSeries(times, data);
+
+		final DoubleTimeSeries expected = series.process(new MovingAverageProcessor(10));
+		final DoubleTimeSeries actual = series.process(new IncrementalMovingAverageProcessor(10));
+
+		assertEquals(expected.getData()[n - 1], actual.getData()[n - 1], 1e-12);
+		assertSeriesEquals(expected, actual, 1e-3);
+	}
+
+	@Test
+	public void testGaussian() {
+		final DoubleTimeSeries series = randomSeries(200, new Random(1));
+
+		for (final double sigma : new double[] { 0, 1, 5, 100 }) {
+			final DoubleTimeSeries expected = series.process(new GaussianTimeSeriesProcessor(sigma));
+			final DoubleTimeSeries actual = series.process(new IncrementalGaussianTimeSeriesProcessor(sigma));
+
+			assertSeriesEquals(expected, actual, 1e-4);
+		}
+	}
+
+	@Test
+	public void testWindowedLinearRegression() {
+		final DoubleTimeSeries series = randomSeries(100, new Random(1));
+
+		final DoubleTimeSeries expected = series.process(new WindowedLinearRegressionProcessor(3, 2));
+		final DoubleTimeSeries actual = series.process(new IncrementalWindowedLinearRegressionProcessor(3, 2));
+
+		assertArrayEquals(expected.getTimes(), actual.getTimes());
+		assertEquals(expected.getData()[expected.size() - 1], actual.getData()[actual.size() - 1], 1e-8);
+	}
+
+	@Test
+	public void testWindowedLinearRegressionHistory() {
+		final DoubleTimeSeries series = randomSeries(100, new Random(1));
+		final double[] data = series.getData();
+		final int windowsize = 3;
+		final int history = 20;
+
+		final IncrementalWindowedLinearRegressionProcessor proc = new IncrementalWindowedLinearRegressionProcessor(
+				windowsize, 1, history);
+		final List<IndependentPair<double[], double[]>> instances = new ArrayList<IndependentPair<double[], double[]>>();
+		for (int i = 0; i < series.size(); i++) {
+			final List<IndependentPair<Long, Double>> out = proc.apply(IndependentPair.pair(series.getTimes()[i],
+					data[i]));
+			if (i < windowsize)
+				continue;
+
+			final double[] window = new double[windowsize];
+			System.arraycopy(data, i - windowsize, window, 0, windowsize);
+			instances.add(IndependentPair.pair(window, new double[] { data[i] }));
+			if (instances.size() > history)
+				instances.remove(0);
+
+			if (instances.size() == history) {
+				final LinearRegression reg = new LinearRegression();
+				reg.estimate(instances);
+
+				assertEquals(1, out.size());
+				assertEquals(series.getTimes()[i], (long) out.get(0).firstObject());
+				assertEquals(reg.predict(window)[0], out.get(0).secondObject(), 1e-8);
+			}
+		}
+	}
+
+	@Test
+	public void testStreaming() {
+		final DoubleTimeSeries series = randomSeries(50, new Random(1));
+		final DoubleTimeSeries expected = series.process(new GaussianTimeSeriesProcessor(2));
+
+		final IncrementalTimeSeriesProcessor proc = new IncrementalGaussianTimeSeriesProcessor(2);
+		final int half = GaussianTimeSeriesProcessor.makeKernel(2, GaussianTimeSeriesProcessor.DEFAULT_GAUSS_TRUNCATE).length / 2;
+		final CircularDoubleTimeSeries out = new CircularDoubleTimeSeries();
+		final IncrementalTimeSeriesProcessor.Listener listener = new IncrementalTimeSeriesProcessor.Listener() {
+			@Override
+			public void emit(long time, double value) {
+				out.add(time, value);
+			}
+		};
+
+		for (int i = 0; i < series.size(); i++) {
+			proc.add(series.getTimes()[i], series.getData()[i], listener);
+			// the output lags by half the kernel
+			assertEquals(Math.max(0, i + 1 - half), out.size());
+		}
+		proc.flush(listener);
+
+		assertSeriesEquals(expected, out.doubleTimeSeries(), 1e-4);
+	}
+}
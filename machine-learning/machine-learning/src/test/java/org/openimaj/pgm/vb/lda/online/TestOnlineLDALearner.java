@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.pgm.vb.lda.online;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.pgm.util.Corpus;
+import org.openimaj.pgm.util.Document;
+import org.openimaj.pgm.vb.lda.mle.LDABetaInitStrategy;
+import org.openimaj.pgm.vb.lda.mle.LDAModel;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+
+/**
+ * Tests for {@link OnlineLDALearner}
+ * 
+ * @author agent (agent@local)
+ */
+public class TestOnlineLDALearner {
+	private static final int NTOPICS = 4;
+	private static final int WORDS_PER_TOPIC = 10;
+
+	/**
+	 * Temporary folder for checkpoints
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Corpus corpus;
+
+	/**
+	 * Create a corpus where each document is drawn mostly from one of a set of
+	 * topics with disjoint vocabularies
+	 */
+	@Before
+	public void setup() {
+		final Random rng = new Random(1);
+		corpus = new Corpus(NTOPICS * WORDS_PER_TOPIC);
+
+		for (int d = 0; d < 1000; d++) {
+			final int topic = rng.nextInt(NTOPICS);
+			final int[] counts = new int[corpus.vocabularySize()];
+
+			for (int i = 0; i < 30; i++) {
+				final int t = rng.nextDouble() < 0.9 ? topic : rng.nextInt(NTOPICS);
+				counts[t * WORDS_PER_TOPIC + rng.nextInt(WORDS_PER_TOPIC)]++;
+			}
+
+			final Document doc = new Document(corpus);
+			for (int w = 0; w < counts.length; w++)
+				if (counts[w] > 0)
+					doc.setWordCount(w, counts[w]);
+			corpus.addDocument(doc);
+		}
+	}
+
+	/**
+	 * Test that the topics are recovered using a parallel E-step
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testRecoverTopics() throws IOException {
+		final OnlineLDALearner learner = new OnlineLDALearner(NTOPICS, corpus.vocabularySize(), corpus.size(),
+				new LDABetaInitStrategy.RandomBetaInit(2));
+		learner.setLearningRate(1, 0.7);
+		learner.setBatchSize(50);
+		learner.setThreadPool(GlobalExecutorPool.getPool());
+		learner.estimate(corpus, 5);
+
+		final LDAModel model = learner.getModel();
+		final boolean[] found = new boolean[NTOPICS];
+		for (int k = 0; k < NTOPICS; k++) {
+			double best = 0;
+			int bestTopic = -1;
+			for (int t = 0; t < NTOPICS; t++) {
+				double mass = 0;
+				for (int w = 0; w < WORDS_PER_TOPIC; w++)
+					mass += model.topicWord[k][t * WORDS_PER_TOPIC + w] / model.topicTotal[k];
+
+				if (mass > best) {
+					best = mass;
+					bestTopic = t;
+				}
+			}
+
+			assertTrue(best > 0.8);
+			found[bestTopic] = true;
+		}
+
+		for (int t = 0; t < NTOPICS; t++)
+			assertTrue(found[t]);
+
+		final double[] theta = learner.inferTopicProportions(corpus.getDocuments().get(0));
+		double sum = 0;
+		for (final double v : theta)
+			sum += v;
+		assertEquals(1, sum, 1e-8);
+	}
+
+	/**
+	 * Test that a run can be resumed from a checkpoint
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testCheckpoint() throws IOException {
+		final File file = new File(folder.getRoot(), "lda.bin");
+
+		final OnlineLDALearner learner = new OnlineLDALearner(NTOPICS, corpus.vocabularySize(), corpus.size(),
+				new LDABetaInitStrategy.RandomBetaInit(1));
+		learner.setBatchSize(100);
+		learner.setCheckpoint(file, 5);
+		learner.estimate(corpus, 1);
+
+		assertEquals(10, learner.getUpdateCount());
+		assertTrue(file.exists());
+
+		final OnlineLDALearner resumed = OnlineLDALearner.load(file);
+		assertEquals(learner.getUpdateCount(), resumed.getUpdateCount());
+
+		final LDAModel expected = learner.getModel();
+		final LDAModel actual = resumed.getModel();
+		for (int k = 0; k < NTOPICS; k++)
+			assertArrayEquals(expected.topicWord[k], actual.topicWord[k], 1e-8);
+
+		learner.update(corpus.getDocuments().subList(0, 100));
+		resumed.update(corpus.getDocuments().subList(0, 100));
+		final LDAModel e2 = learner.getModel();
+		final LDAModel a2 = resumed.getModel();
+		for (int k = 0; k < NTOPICS; k++)
+			assertArrayEquals(e2.topicWord[k], a2.topicWord[k], 1e-6);
+	}
+
+	/**
+	 * Test that a run resumed from a checkpoint written part way through a
+	 * pass carries on from the next batch and produces the same topics as
+	 * the uninterrupted run
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testResumeEstimate() throws IOException {
+		final File file = new File(folder.getRoot(), "lda-resume.bin");
+
+		final OnlineLDALearner learner = new OnlineLDALearner(NTOPICS, corpus.vocabularySize(), corpus.size(),
+				new LDABetaInitStrategy.RandomBetaInit(1));
+		learner.setBatchSize(100);
+		learner.setCheckpoint(file, 13);
+		learner.estimate(corpus, 2);
+		assertEquals(20, learner.getUpdateCount());
+
+		// the checkpoint was written after the third batch of the second pass
+		final OnlineLDALearner resumed = OnlineLDALearner.load(file);
+		assertEquals(13, resumed.getUpdateCount());
+
+		resumed.estimate(corpus, 2);
+		assertEquals(20, resumed.getUpdateCount());
+
+		final LDAModel expected = learner.getModel();
+		final LDAModel actual = resumed.getModel();
+		for (int k = 0; k < NTOPICS; k++)
+			assertArrayEquals(expected.topicWord[k], actual.topicWord[k], 1e-8);
+	}
+}
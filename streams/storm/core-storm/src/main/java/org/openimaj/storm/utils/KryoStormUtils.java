@@ -0,0 +1,65 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.storm.utils;
+
+import org.openimaj.io.KryoPool;
+import org.openimaj.io.KryoRegistrar;
+
+import backtype.storm.Config;
+
+import com.esotericsoftware.kryo.Registration;
+import com.esotericsoftware.kryo.Serializer;
+
+/**
+ * Utilities for using the OpenIMAJ Kryo serializers with Storm.
+ * 
+ * @author agent (agent@local)
+ */
+public class KryoStormUtils {
+	private KryoStormUtils() {
+	}
+
+	/**
+	 * Register the classes and {@link Serializer}s provided by all the
+	 * {@link KryoRegistrar}s on the classpath (for example those for images,
+	 * feature vectors, keypoints and cluster centroids) with the given
+	 * configuration, so that they are passed between spouts and bolts without
+	 * their class names and using the compact serialisation. Storm assigns its
+	 * own ids to the registered classes and creates the serializers from their
+	 * class.
+	 * 
+	 * @param conf
+	 *            the configuration to register the serializers with
+	 */
+	public static void registerSerializers(Config conf) {
+		for (final Registration r : KryoPool.getRegistrations())
+			conf.registerSerialization(r.getType(), r.getSerializer().getClass());
+	}
+}
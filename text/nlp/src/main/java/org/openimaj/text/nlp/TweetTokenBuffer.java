@@ -0,0 +1,208 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A reusable buffer of tokens produced by a {@link TweetTokeniserEngine}. The
+ * buffer holds the normalised text of the last tokenised string together with
+ * the start and end offsets of each token within it, so tokenising does not
+ * require a {@link String} to be created per token. Tokens are stored in the
+ * order they appear in the text; each is flagged as either protected (matched
+ * by one of the protection patterns of the {@link TweetTokeniser}) or
+ * unprotected (a whitespace delimited run of the remaining text).
+ * <p>
+ * Instances are not thread-safe, but may be reused for any number of calls to
+ * {@link TweetTokeniserEngine#tokenise(String, TweetTokenBuffer)}.
+ *
+ * @author agent (agent@local)
+ */
+public class TweetTokenBuffer {
+	private static final int DEFAULT_CAPACITY = 32;
+
+	final StringBuilder text = new StringBuilder();
+	private int[] starts;
+	private int[] ends;
+	private boolean[] protectedFlags;
+	private int size;
+
+	/**
+	 * Construct an empty buffer
+	 */
+	public TweetTokenBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Construct an empty buffer with space for the given number of tokens. The
+	 * buffer will grow as required.
+	 *
+	 * @param capacity
+	 *            the initial capacity
+	 */
+	public TweetTokenBuffer(int capacity) {
+		capacity = Math.max(1, capacity);
+		starts = new int[capacity];
+		ends = new int[capacity];
+		protectedFlags = new boolean[capacity];
+	}
+
+	/**
+	 * Remove all tokens and text from the buffer
+	 */
+	public void clear() {
+		text.setLength(0);
+		size = 0;
+	}
+
+	void add(int start, int end, boolean isProtected) {
+		if (size == starts.length) {
+			final int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			protectedFlags = Arrays.copyOf(protectedFlags, capacity);
+		}
+
+		starts[size] = start;
+		ends[size] = end;
+		protectedFlags[size] = isProtected;
+		size++;
+	}
+
+	/**
+	 * @return the number of tokens in the buffer
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get the normalised text that the token offsets refer to. The returned
+	 * sequence is owned by the buffer and will change when the buffer is
+	 * reused.
+	 *
+	 * @return the normalised text
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return the offset of the first character of the token in
+	 *         {@link #getText()}
+	 */
+	public int getStart(int i) {
+		checkIndex(i);
+		return starts[i];
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return the offset after the last character of the token in
+	 *         {@link #getText()}
+	 */
+	public int getEnd(int i) {
+		checkIndex(i);
+		return ends[i];
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return true if the token was matched by a protection pattern; false
+	 *         otherwise
+	 */
+	public boolean isProtected(int i) {
+		checkIndex(i);
+		return protectedFlags[i];
+	}
+
+	/**
+	 * @param i
+	 *            the token index
+	 * @return the text of the token
+	 */
+	public String getToken(int i) {
+		checkIndex(i);
+		return text.substring(starts[i], ends[i]);
+	}
+
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+	}
+
+	/**
+	 * @return all tokens as a {@link List} of {@link String}
+	 * @see TweetTokeniser#getStringTokens()
+	 */
+	public List<String> getStringTokens() {
+		final List<String> tokens = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			tokens.add(text.substring(starts[i], ends[i]));
+		return tokens;
+	}
+
+	/**
+	 * @return all tokens protected by the tokeniser patterns
+	 * @see TweetTokeniser#getProtectedStringTokens()
+	 */
+	public List<String> getProtectedStringTokens() {
+		return getStringTokens(true);
+	}
+
+	/**
+	 * @return all tokens not protected by the tokeniser patterns
+	 * @see TweetTokeniser#getUnprotectedStringTokens()
+	 */
+	public List<String> getUnprotectedStringTokens() {
+		return getStringTokens(false);
+	}
+
+	private List<String> getStringTokens(boolean isProtected) {
+		final List<String> tokens = new ArrayList<String>();
+		for (int i = 0; i < size; i++) {
+			if (protectedFlags[i] == isProtected)
+				tokens.add(text.substring(starts[i], ends[i]));
+		}
+		return tokens;
+	}
+
+	@Override
+	public String toString() {
+		return getStringTokens().toString();
+	}
+}
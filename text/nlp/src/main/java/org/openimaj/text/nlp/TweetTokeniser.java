@@ -137,24 +137,45 @@ public class TweetTokeniser implements Iterable<Token> {
 	static EmbeddedApostrophePatternProvider embedded = new EmbeddedApostrophePatternProvider(punctuation);
 	static EmbeddedDashPatternProvider embeddedDash = new EmbeddedDashPatternProvider(punctuation);
 
-	static String[] ProtectThese = new String[] {
-		twitterPart.patternString(),
-		emoticons.patternString(),
-		truncatedURL.patternString(),
-		url.patternString(),
-		email.patternString(),
-		entity.patternString(),
-		time.patternString(),
-		number.patternString(),
-		// embeddedDash.patternString(),
-		embedded.patternString(),
-		punctuation.patternString(),
-		abbrev.patternString(),
-		Separators,
-		Decorations,
+	/**
+	 * The protected patterns, each paired with the characters of which at
+	 * least one must appear in any match of that pattern, or null if there is
+	 * no such set. The required characters are used by the
+	 * {@link TweetTokeniserEngine} to avoid attempting patterns that cannot
+	 * match the remainder of the text.
+	 */
+	private static final String[][] Protect = new String[][] {
+		{ twitterPart.patternString(), null },
+		{ emoticons.patternString(), null },
+		{ truncatedURL.patternString(), "." },
+		{ url.patternString(), null },
+		{ email.patternString(), "@" },
+		{ entity.patternString(), null },
+		{ time.patternString(), ":" },
+		{ number.patternString(), null },
+		// { embeddedDash.patternString(), null },
+		{ embedded.patternString(), "'\u2019\u2018\u201B-" },
+		{ punctuation.patternString(), null },
+		{ abbrev.patternString(), "." },
+		{ Separators, null },
+		{ Decorations, null },
 	};
 
+	static String[] ProtectThese = column(Protect, 0);
+
+	/**
+	 * For each entry of {@link #ProtectThese}, the characters of which at
+	 * least one must appear in any match of that entry, or null if there is no
+	 * such set.
+	 */
+	static String[] ProtectTheseRequired = column(Protect, 1);
 
+	private static String[] column(String[][] table, int col) {
+		final String[] values = new String[table.length];
+		for (int i = 0; i < table.length; i++)
+			values[i] = table[i][col];
+		return values;
+	}
 
 	static String oredProtect = RegexUtil.regex_or_match(ProtectThese);
 	static Pattern Protect_RE = Pattern.compile(oredProtect, Pattern.UNICODE_CASE | Pattern.CASE_INSENSITIVE);
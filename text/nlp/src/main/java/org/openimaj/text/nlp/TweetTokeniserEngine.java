@@ -0,0 +1,360 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import java.io.UnsupportedEncodingException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.StringEscapeUtils;
+
+/**
+ * A fast, single-pass implementation of the {@link TweetTokeniser} that
+ * produces exactly the same tokens, but writes them as offsets into a reusable
+ * {@link TweetTokenBuffer} rather than creating a list of {@link String}s.
+ * <p>
+ * The {@link TweetTokeniser} finds protected tokens by searching with a single
+ * large alternation of all the protection patterns, which means that every
+ * alternative is attempted at every character position in the text. The
+ * protection patterns make use of look-ahead, word boundaries and ordered
+ * alternation, so they cannot be compiled into a true DFA without changing
+ * their behaviour. Instead, this engine scans the text once and at each
+ * position attempts an anchored match of each protection pattern in turn
+ * (which is equivalent to the alternation), but skips any pattern that
+ * provably cannot match:
+ * <ul>
+ * <li>For each pattern, the set of characters that can begin a match (given
+ * whether the preceding character is a word character) is determined lazily
+ * by probing the pattern itself, and cached.</li>
+ * <li>Patterns that require a specific character somewhere in the match (for
+ * example the "@" of an email address) are skipped once the scan has passed
+ * the last occurrence of that character.</li>
+ * </ul>
+ * Unprotected text between protected tokens is split on whitespace by hand.
+ * <p>
+ * Instances are thread-safe; the per-thread matchers are held in a
+ * {@link ThreadLocal}, and the cached prefilters are shared.
+ *
+ * @author agent (agent@local)
+ */
+public class TweetTokeniserEngine {
+	/**
+	 * Characters below this code point have their prefilter entries cached;
+	 * all others are always tested against every pattern
+	 */
+	private static final int PREFILTER_CHARS = 0x3000;
+
+	private static final int CONTEXT_START = 0;
+	private static final int CONTEXT_WORD = 1;
+	private static final int CONTEXT_OTHER = 2;
+	private static final int CONTEXT_UNKNOWN = -1;
+	private static final String[] CONTEXT_PREFIXES = { "", "a", " " };
+
+	private static final byte UNKNOWN = 0;
+	private static final byte POSSIBLE = 1;
+	private static final byte IMPOSSIBLE = 2;
+
+	private final Pattern[] patterns;
+	private final char[][] required;
+	private final Pattern boundary;
+
+	private final byte[][] firstChars;
+	private final byte[] contexts = new byte[PREFILTER_CHARS];
+
+	/**
+	 * Per-thread matchers and scan state
+	 */
+	private class Workspace {
+		final Matcher[] matchers = new Matcher[patterns.length];
+		final int[] lastRequired = new int[patterns.length];
+
+		Workspace() {
+			for (int i = 0; i < patterns.length; i++) {
+				matchers[i] = patterns[i].matcher("");
+				matchers[i].useTransparentBounds(true);
+				matchers[i].useAnchoringBounds(false);
+			}
+		}
+	}
+
+	private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
+
+	/**
+	 * Construct an engine using the same protection patterns as the
+	 * {@link TweetTokeniser}
+	 */
+	public TweetTokeniserEngine() {
+		this(TweetTokeniser.ProtectThese, TweetTokeniser.ProtectTheseRequired, TweetTokeniser.Protect_RE.flags());
+	}
+
+	TweetTokeniserEngine(String[] protect, String[] requiredChars, int flags) {
+		if (requiredChars != null && requiredChars.length != protect.length)
+			throw new IllegalArgumentException("The required characters must be given for every protected pattern");
+
+		this.patterns = new Pattern[protect.length];
+		this.required = new char[protect.length][];
+		this.firstChars = new byte[protect.length][3 * PREFILTER_CHARS];
+
+		for (int i = 0; i < protect.length; i++) {
+			patterns[i] = Pattern.compile(protect[i], flags);
+
+			if (requiredChars != null && requiredChars[i] != null)
+				required[i] = requiredChars[i].toCharArray();
+		}
+
+		this.boundary = Pattern.compile("\\b", flags);
+	}
+
+	/**
+	 * Tokenise the given text into a new {@link TweetTokenBuffer}.
+	 *
+	 * @param s
+	 *            the text to tokenise
+	 * @return the buffer containing the tokens
+	 * @throws UnsupportedEncodingException
+	 */
+	public TweetTokenBuffer tokenise(String s) throws UnsupportedEncodingException {
+		return tokenise(s, new TweetTokenBuffer());
+	}
+
+	/**
+	 * Tokenise the given text into the given buffer. Any existing content of
+	 * the buffer is discarded.
+	 *
+	 * @param s
+	 *            the text to tokenise
+	 * @param buffer
+	 *            the buffer to fill
+	 * @return the buffer
+	 * @throws UnsupportedEncodingException
+	 */
+	public TweetTokenBuffer tokenise(String s, TweetTokenBuffer buffer) throws UnsupportedEncodingException {
+		buffer.clear();
+		normalise(s, buffer.text);
+		scan(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Apply the same normalisation as the {@link TweetTokeniser}: round-trip
+	 * through UTF-8, unescape HTML entities and squeeze runs of whitespace
+	 * into a single space.
+	 */
+	private static void normalise(String s, StringBuilder out) throws UnsupportedEncodingException {
+		if (hasUnpairedSurrogate(s))
+			s = new String(s.getBytes("UTF-8"), "UTF-8");
+
+		if (s.indexOf('&') >= 0)
+			s = StringEscapeUtils.unescapeHtml(s);
+
+		final int len = s.length();
+		for (int i = 0; i < len; i++) {
+			final char c = s.charAt(i);
+
+			if (isSpace(c)) {
+				out.append(' ');
+				while (i + 1 < len && isSpace(s.charAt(i + 1)))
+					i++;
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	private static boolean hasUnpairedSurrogate(String s) {
+		final int len = s.length();
+		for (int i = 0; i < len; i++) {
+			final char c = s.charAt(i);
+
+			if (Character.isHighSurrogate(c)) {
+				if (i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1)))
+					i++;
+				else
+					return true;
+			} else if (Character.isLowSurrogate(c)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the character is matched by the regex \s
+	 */
+	private static boolean isSpace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private void scan(TweetTokenBuffer buffer) {
+		final CharSequence text = buffer.text;
+		final int len = text.length();
+		final Workspace ws = workspace.get();
+		final Matcher[] m = ws.matchers;
+		final int[] lastRequired = ws.lastRequired;
+
+		for (int i = 0; i < patterns.length; i++) {
+			m[i].reset(text);
+			lastRequired[i] = required[i] == null ? len : lastIndexOf(text, required[i]);
+		}
+
+		int gapStart = 0;
+		int p = 0;
+		while (p <= len) {
+			final int end = matchAt(text, p, m, lastRequired);
+
+			if (end < 0) {
+				p++;
+				continue;
+			}
+
+			splitUnprotected(text, gapStart, p, buffer);
+			buffer.add(p, end, true);
+			gapStart = end;
+
+			// as with Matcher#find(), an empty match moves the search on by one
+			p = end == p ? p + 1 : end;
+		}
+		splitUnprotected(text, gapStart, len, buffer);
+
+		for (int i = 0; i < patterns.length; i++)
+			m[i].reset("");
+	}
+
+	/**
+	 * Attempt to match each pattern in order at the given position.
+	 *
+	 * @return the end of the first match, or -1 if nothing matched
+	 */
+	private int matchAt(CharSequence text, int p, Matcher[] m, int[] lastRequired) {
+		final int len = text.length();
+		final int c = p < len ? text.charAt(p) : -1;
+		final int context;
+		if (c < 0 || c >= PREFILTER_CHARS || Character.getType(c) == Character.NON_SPACING_MARK)
+			context = CONTEXT_UNKNOWN;
+		else
+			context = context(text, p);
+
+		for (int i = 0; i < patterns.length; i++) {
+			if (lastRequired[i] < p)
+				continue;
+
+			if (context != CONTEXT_UNKNOWN && !canStartWith(i, context, (char) c))
+				continue;
+
+			final Matcher matcher = m[i];
+			matcher.region(p, len);
+			if (matcher.lookingAt())
+				return matcher.end();
+		}
+		return -1;
+	}
+
+	private static int lastIndexOf(CharSequence text, char[] chars) {
+		for (int i = text.length() - 1; i >= 0; i--) {
+			final char c = text.charAt(i);
+			for (final char r : chars) {
+				if (c == r)
+					return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Determine the context given by the character preceding position p. This
+	 * is all that the word-boundary assertions in the patterns can observe of
+	 * the text before p.
+	 */
+	private int context(CharSequence text, int p) {
+		if (p == 0)
+			return CONTEXT_START;
+
+		final char prev = text.charAt(p - 1);
+		if (prev >= PREFILTER_CHARS || Character.getType(prev) == Character.NON_SPACING_MARK)
+			return CONTEXT_UNKNOWN;
+
+		byte ctx = contexts[prev];
+		if (ctx == UNKNOWN) {
+			// a boundary between prev and a space exists iff prev is a word char
+			final Matcher matcher = boundary.matcher(prev + " ");
+			matcher.region(1, 2);
+			matcher.useTransparentBounds(true);
+			ctx = matcher.lookingAt() ? (byte) (CONTEXT_WORD + 1) : (byte) (CONTEXT_OTHER + 1);
+			contexts[prev] = ctx;
+		}
+		return ctx - 1;
+	}
+
+	/**
+	 * Determine whether pattern i could match starting with the character c
+	 * in the given context. The answer is found by probing the pattern with
+	 * the character alone: if the match fails without the matcher having
+	 * needed to look past c, then no continuation of the text can match.
+	 */
+	private boolean canStartWith(int i, int context, char c) {
+		final int idx = context * PREFILTER_CHARS + c;
+		byte state = firstChars[i][idx];
+
+		if (state == UNKNOWN) {
+			final String prefix = CONTEXT_PREFIXES[context];
+			final Matcher matcher = patterns[i].matcher(prefix + c);
+			matcher.region(prefix.length(), prefix.length() + 1);
+			matcher.useTransparentBounds(true);
+			matcher.useAnchoringBounds(false);
+
+			state = matcher.lookingAt() || matcher.hitEnd() ? POSSIBLE : IMPOSSIBLE;
+			firstChars[i][idx] = state;
+		}
+
+		return state == POSSIBLE;
+	}
+
+	private static void splitUnprotected(CharSequence text, int start, int end, TweetTokenBuffer buffer) {
+		int i = start;
+		while (i < end) {
+			while (i < end && isSpace(text.charAt(i)))
+				i++;
+
+			if (i == end)
+				break;
+
+			final int tokenStart = i;
+			while (i < end && !isSpace(text.charAt(i)))
+				i++;
+
+			buffer.add(tokenStart, i, false);
+		}
+	}
+}
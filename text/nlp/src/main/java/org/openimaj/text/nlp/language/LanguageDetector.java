@@ -29,24 +29,27 @@
  */
 package org.openimaj.text.nlp.language;
 
-import gnu.trove.map.hash.TIntDoubleHashMap;
-import gnu.trove.map.hash.TIntIntHashMap;
-import gnu.trove.procedure.TIntIntProcedure;
+import gnu.trove.procedure.TIntObjectProcedure;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.zip.GZIPInputStream;
 
-import no.uib.cipr.matrix.DenseMatrix;
-
 import org.openimaj.citation.annotation.Reference;
 import org.openimaj.citation.annotation.ReferenceType;
 import org.openimaj.io.IOUtils;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+import org.openimaj.util.parallel.Parallel.IntRange;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -83,7 +86,40 @@ public class LanguageDetector {
 	 */
 	public static final String LANGUAGE_MODEL_BINARY = "/org/openimaj/text/language/language.model.binary.gz";
 
-	private LanguageModel languageModel;
+	/**
+	 * Log-factorials of small counts; larger counts are computed on demand
+	 */
+	private static final double[] LOG_FACTORIAL = new double[256];
+
+	static {
+		for (int i = 2; i < LOG_FACTORIAL.length; i++)
+			LOG_FACTORIAL[i] = LOG_FACTORIAL[i - 1] + Math.log(i);
+	}
+
+	private final LanguageModel languageModel;
+
+	/*
+	 * Immutable copies of the model data used for classification. These are
+	 * never modified after construction, so a single detector can be used
+	 * from many threads concurrently.
+	 */
+	private final int[] tkNextMove;
+	private final int[][] tkOutput;
+	private final double[] naiveBayesPC;
+	private final double[] naiveBayesPTC; // row-major nFeats x nClasses
+	private final String[] naiveBayesClasses;
+	private final int nFeats;
+	private final int nClasses;
+
+	/**
+	 * Per-thread working space
+	 */
+	private final ThreadLocal<Workspace> workspace = new ThreadLocal<Workspace>() {
+		@Override
+		protected Workspace initialValue() {
+			return new Workspace();
+		}
+	};
 
 	/**
 	 * Load a language model from {@value #LANGUAGE_MODEL_BINARY}
@@ -96,36 +132,69 @@ public class LanguageDetector {
 	}
 
 	@SuppressWarnings("unchecked")
-	private void loadFromJSON() throws IOException {
+	private static LanguageModel loadFromJSON() throws IOException {
 		Map<String, Object> languageModelRaw;
 		final InputStream is = new GZIPInputStream(LanguageDetector.class.getResourceAsStream(LANGUAGE_MODEL_JSON));
 		languageModelRaw = gson.fromJson(new InputStreamReader(is), Map.class);
-		languageModel = new LanguageModel(languageModelRaw);
+		return new LanguageModel(languageModelRaw);
 	}
 
-	private void loadFromBinary() throws IOException {
-		this.languageModel = IOUtils.read(
+	private static LanguageModel loadFromBinary() throws IOException {
+		return IOUtils.read(
 				new GZIPInputStream(LanguageDetector.class.getResourceAsStream(LANGUAGE_MODEL_BINARY)),
 				LanguageModel.class
 				);
 	}
 
 	/**
-	 * Create a language detector with a provided language model
+	 * Create a language detector with a provided language model. The data
+	 * needed for classification is copied from the model, so subsequent
+	 * changes to the model will not affect the detector.
 	 * 
 	 * @param model
 	 */
 	public LanguageDetector(LanguageModel model) {
 		this.languageModel = model;
+
+		this.tkNextMove = model.tk_nextmove.clone();
+		final int nStates = tkNextMove.length >> 8;
+		this.tkOutput = new int[nStates][];
+		model.tk_output.forEachEntry(new TIntObjectProcedure<int[]>() {
+			@Override
+			public boolean execute(int state, int[] indexes) {
+				tkOutput[state] = indexes.clone();
+				return true;
+			}
+		});
+
+		this.naiveBayesClasses = model.naiveBayesClasses.clone();
+		this.nClasses = model.naiveBayesPTC.numColumns();
+		this.nFeats = model.naiveBayesPTC.numRows();
+		this.naiveBayesPC = model.naiveBayesPC.getData().clone();
+
+		// MTJ matrices are column-major; transpose so that the class scores
+		// for each feature are contiguous
+		final double[] ptc = model.naiveBayesPTC.getData();
+		this.naiveBayesPTC = new double[nFeats * nClasses];
+		for (int f = 0; f < nFeats; f++)
+			for (int c = 0; c < nClasses; c++)
+				this.naiveBayesPTC[f * nClasses + c] = ptc[c * nFeats + f];
 	}
 
 	LanguageDetector(boolean fromJSON) throws IOException {
-		if (fromJSON) {
-			loadFromJSON();
-		}
-		else {
-			loadFromBinary();
-		}
+		this(fromJSON ? loadFromJSON() : loadFromBinary());
+	}
+
+	/**
+	 * Working space for a single thread. The count arrays are kept zeroed
+	 * between uses by only resetting the entries that were touched.
+	 */
+	private class Workspace {
+		final int[] stateCounts = new int[tkOutput.length];
+		final int[] states = new int[tkOutput.length];
+		final int[] featureCounts = new int[nFeats];
+		final int[] features = new int[nFeats];
+		final double[] scores = new double[nClasses];
 	}
 
 	/**
@@ -189,36 +258,84 @@ public class LanguageDetector {
 	}
 
 	/**
-	 * Classify the language using a naive-bayes model
+	 * Classify the language using a naive-bayes model. This method is
+	 * thread-safe.
 	 * 
 	 * @param text
 	 * @return the detected language
 	 */
 	public WeightedLocale classify(String text) {
-		final DenseMatrix fv = tokenize(text);
-		final WeightedLocale locale = naiveBayesClassify(fv);
-		return locale;
+		return naiveBayesClassify(text, workspace.get());
+	}
+
+	/**
+	 * Classify the language of each of the given texts. The texts are
+	 * classified in parallel using the default global thread pool.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @return the detected languages, in the same order as the texts
+	 */
+	public List<WeightedLocale> classifyBatch(final List<String> texts) {
+		return classifyBatch(texts, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Classify the language of each of the given texts. The texts are
+	 * classified in parallel using the given thread pool.
+	 * 
+	 * @param texts
+	 *            the texts
+	 * @param pool
+	 *            the thread pool
+	 * @return the detected languages, in the same order as the texts
+	 */
+	public List<WeightedLocale> classifyBatch(final List<String> texts, ThreadPoolExecutor pool) {
+		final WeightedLocale[] results = new WeightedLocale[texts.size()];
+
+		Parallel.forRange(0, results.length, 1, new Operation<IntRange>() {
+			@Override
+			public void perform(IntRange range) {
+				final Workspace ws = workspace.get();
+				for (int i = range.start; i < range.stop; i += range.incr)
+					results[i] = naiveBayesClassify(texts.get(i), ws);
+			}
+		}, pool);
+
+		return Arrays.asList(results);
 	}
 
-	DenseMatrix nbWorkspace = null;
+	/**
+	 * Score the text. Only the rows of the class-conditional matrix
+	 * corresponding to the features present in the text are visited.
+	 */
+	private WeightedLocale naiveBayesClassify(String text, Workspace ws) {
+		final int nFeatures = tokenize(text, ws);
 
-	private WeightedLocale naiveBayesClassify(DenseMatrix fv) {
-		if (nbWorkspace == null) {
-			nbWorkspace = new DenseMatrix(1, this.languageModel.naiveBayesPTC.numColumns());
+		final double[] scores = ws.scores;
+		final int[] featureCounts = ws.featureCounts;
+		final int[] features = ws.features;
+
+		System.arraycopy(naiveBayesPC, 0, scores, 0, nClasses);
+
+		double logFVSum = 0;
+		for (int j = 0; j < nFeatures; j++) {
+			final int f = features[j];
+			final int count = featureCounts[f];
+			featureCounts[f] = 0;
+
+			logFVSum += logFactorial(count);
+
+			final int offset = f * nClasses;
+			for (int c = 0; c < nClasses; c++)
+				scores[c] += count * naiveBayesPTC[offset + c];
 		}
-		final double logFVSum = sumLogFactorial(fv);
-		fv.mult(this.languageModel.naiveBayesPTC, nbWorkspace);// times(this.languageModel.naiveBayesPTC);
-		final DenseMatrix pdc = nbWorkspace;
-		// multiplied.print(5, 5);
-		// this.languageModel.naiveBayesPTC.print(5, 5);
-		pdc.add(this.languageModel.naiveBayesPC);
-		final double[] pdData = pdc.getData();
+
 		int bestIndex = -1;
 		double best = 0;
 		double sum = 0;
-		for (int i = 0; i < pdc.numColumns(); i++) {
-			final double correctedScore = pdData[i] - logFVSum;
-			// System.out.format("%s scores %f \n",this.languageModel.naiveBayesClasses[i],correctedScore);
+		for (int i = 0; i < nClasses; i++) {
+			final double correctedScore = scores[i] - logFVSum;
 			sum += correctedScore;
 			if (bestIndex == -1 || correctedScore > best)
 			{
@@ -227,57 +344,66 @@ public class LanguageDetector {
 			}
 		}
 
-		return new WeightedLocale(this.languageModel.naiveBayesClasses[bestIndex], best / sum);
+		return new WeightedLocale(naiveBayesClasses[bestIndex], best / sum);
 	}
 
-	// an element wise log-factorial
-	TIntDoubleHashMap logFacCache = new TIntDoubleHashMap();
+	private static double logFactorial(int n) {
+		if (n < LOG_FACTORIAL.length)
+			return LOG_FACTORIAL[n];
 
-	private double sumLogFactorial(DenseMatrix fv) {
-		double sum = 0;
-		final double[] data = fv.getData();
-		for (int i = 0; i < fv.numColumns(); i++) {
-			final int fvi = (int) data[i];
-			if (logFacCache.contains(fvi))
-			{
-				sum += logFacCache.get(fvi);
-			}
-			else {
-				for (int j = 1; j < fvi + 1; j++) {
-					sum += Math.log(j);
-				}
-			}
-		}
+		double sum = LOG_FACTORIAL[LOG_FACTORIAL.length - 1];
+		for (int j = LOG_FACTORIAL.length; j <= n; j++)
+			sum += Math.log(j);
 		return sum;
 	}
 
-	private DenseMatrix tokenize(String text) {
+	/**
+	 * Run the tokeniser automaton over the UTF-8 bytes of the text and count
+	 * the n-gram features. The distinct features are written to
+	 * {@link Workspace#features} and their counts to
+	 * {@link Workspace#featureCounts}.
+	 * 
+	 * @return the number of distinct features
+	 */
+	private int tokenize(String text, Workspace ws) {
 		byte[] ords = null;
 		try {
 			ords = text.getBytes("UTF-8");
 		} catch (final UnsupportedEncodingException e) {
 		}
+
+		final int[] stateCounts = ws.stateCounts;
+		final int[] states = ws.states;
+		int nStates = 0;
+
 		int state = 0;
-		final TIntIntHashMap statecount = new TIntIntHashMap();
 		for (final byte letter : ords) {
-			state = this.languageModel.tk_nextmove[(state << 8) + (letter & 0xff)];
-			statecount.adjustOrPutValue(state, 1, 1);
+			state = tkNextMove[(state << 8) + (letter & 0xff)];
+			if (stateCounts[state]++ == 0)
+				states[nStates++] = state;
 		}
-		final double[][] fv = new double[1][this.languageModel.naiveBayesNFeats];
-		statecount.forEachEntry(new TIntIntProcedure() {
-			@Override
-			public boolean execute(int state, final int statecount) {
-				final int[] indexes = LanguageDetector.this.languageModel.tk_output.get(state);
-				if (indexes == null)
-					return true;
-				for (final int i : indexes) {
-
-					fv[0][i] += statecount;
-				}
-				return true;
+
+		final int[] featureCounts = ws.featureCounts;
+		final int[] features = ws.features;
+		int nFeatures = 0;
+
+		for (int i = 0; i < nStates; i++) {
+			final int s = states[i];
+			final int count = stateCounts[s];
+			stateCounts[s] = 0;
+
+			final int[] indexes = tkOutput[s];
+			if (indexes == null)
+				continue;
+
+			for (final int f : indexes) {
+				if (featureCounts[f] == 0)
+					features[nFeatures++] = f;
+				featureCounts[f] += count;
 			}
-		});
-		return new DenseMatrix(fv);
+		}
+
+		return nFeatures;
 	}
 
 	/**
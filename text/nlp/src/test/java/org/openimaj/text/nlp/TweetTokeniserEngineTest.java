@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.text.nlp;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the {@link TweetTokeniserEngine} produces the same tokens as the
+ * {@link TweetTokeniser}
+ *
+ * @author agent (agent@local)
+ */
+public class TweetTokeniserEngineTest {
+	private List<String> allTweets;
+
+	/**
+	 * Load the test tweets
+	 *
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				TweetTokeniserEngineTest.class.getResourceAsStream("/org/openimaj/twitter/tweets.txt"), "UTF-8"));
+		String line = null;
+		allTweets = new ArrayList<String>();
+		while ((line = reader.readLine()) != null) {
+			allTweets.add(line);
+		}
+		reader.close();
+	}
+
+	private static void assertSameTokens(TweetTokeniserEngine engine, TweetTokenBuffer buffer, String text)
+			throws Exception
+	{
+		final TweetTokeniser expected = new TweetTokeniser(text);
+		engine.tokenise(text, buffer);
+
+		assertEquals(text, expected.getStringTokens(), buffer.getStringTokens());
+		assertEquals(text, expected.getProtectedStringTokens(), buffer.getProtectedStringTokens());
+		assertEquals(text, expected.getUnprotectedStringTokens(), buffer.getUnprotectedStringTokens());
+	}
+
+	/**
+	 * Check equivalence over a corpus of real tweets, reusing a single buffer
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testTweets() throws Exception {
+		final TweetTokeniserEngine engine = new TweetTokeniserEngine();
+		final TweetTokenBuffer buffer = new TweetTokenBuffer(1);
+
+		for (final String tweet : allTweets)
+			assertSameTokens(engine, buffer, tweet);
+	}
+
+	/**
+	 * Check equivalence on some awkward inputs
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testEdgeCases() throws Exception {
+		final TweetTokeniserEngine engine = new TweetTokeniserEngine();
+		final TweetTokenBuffer buffer = new TweetTokenBuffer();
+
+		final String[] tweets = {
+				"",
+				" ",
+				"words\r\nacross new\nlines\t\t",
+				"@janecds RT _badbristal np VYBZ KARTEL - TURN & WINE&lt; WE DANCEN TO THIS LOL? http://blity.ax.lt/63HPL",
+				"Contact redplanetmusicgroup@gmail.com for details",
+				"it's 18:00h, U.S.A. time... $10,000 -- \u2015 \u266B\u266B don\u2019t",
+				"broken \ud83d surrogate and \uD83D\uDE00 pair",
+				"e\u0301t\u00E9 caf\u00E9\u0301:) x\u0301 #tag_\u0301",
+				"\u30A2\u30DE\u30BE\u30F3\uFF0F\u6D0B\u66F8 http://tinyurl.com/3yslnw5\u3000(http://tinyurl.com/24e8alm )",
+		};
+
+		for (final String tweet : tweets)
+			assertSameTokens(engine, buffer, tweet);
+	}
+
+	/**
+	 * Check the offsets and flags of the tokens in the buffer
+	 *
+	 * @throws Exception
+	 */
+	@Test
+	public void testOffsets() throws Exception {
+		final TweetTokenBuffer buffer = new TweetTokeniserEngine().tokenise("hello  @world :-)");
+
+		assertEquals("hello @world :-)", buffer.getText().toString());
+		assertEquals(3, buffer.size());
+		assertEquals(0, buffer.getStart(0));
+		assertEquals(5, buffer.getEnd(0));
+		assertEquals(false, buffer.isProtected(0));
+		assertEquals("@world", buffer.getToken(1));
+		assertEquals(true, buffer.isProtected(1));
+		assertEquals(":-)", buffer.getToken(2));
+	}
+}
@@ -29,6 +29,7 @@
  */
 package org.openimaj.text.nlp.language;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -36,6 +37,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -120,6 +123,34 @@ public class LanguageDetectorTest {
 		assertLanguage(newdet, hindiStrings, new Locale("hi"));
 	}
 
+	/**
+	 * Test that batch classification gives the same results as classifying
+	 * the texts one at a time
+	 * 
+	 * @throws IOException
+	 */
+	@Test
+	public void testClassifyBatch() throws IOException {
+		final LanguageDetector det = new LanguageDetector();
+
+		final String[] base = new String[] { "This is an english sentence",
+				"das erlebnis im wahllokal im bezirk um im \u00f6sterreich ticker ist heftig",
+				"\u3053\u308C\u306F\u79C1\u304C\u65E5\u672C\u8A9E\u3067\u8A18\u8FF0\u3059\u308B\u6587\u5B57\u5217\u3067\u3059\u3002",
+				"", "a" };
+
+		final List<String> texts = new ArrayList<String>();
+		for (int i = 0; i < 200; i++)
+			texts.add(base[i % base.length]);
+
+		final List<WeightedLocale> results = det.classifyBatch(texts);
+		assertEquals(texts.size(), results.size());
+		for (int i = 0; i < texts.size(); i++) {
+			final WeightedLocale expected = det.classify(texts.get(i));
+			assertEquals(expected.language, results.get(i).language);
+			assertEquals(expected.confidence, results.get(i).confidence, 1e-12);
+		}
+	}
+
 	private void assertLanguage(LanguageDetector det, String[] statements, Locale language) {
 		for (final String statement : statements) {
 			final WeightedLocale estimateLanguage = det.classify(statement);
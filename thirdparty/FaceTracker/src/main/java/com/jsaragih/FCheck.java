@@ -97,6 +97,22 @@ public class FCheck {
 	protected FCheck() {
 	}
 
+	/**
+	 * Returns a copy of this FCheck with its own working buffers, so that it
+	 * can be used concurrently with the original.
+	 * 
+	 * @return a copy of this FCheck
+	 */
+	FCheck copy() {
+		final FCheck fcheck = new FCheck();
+		fcheck._b = _b;
+		fcheck._w = _w;
+		fcheck._paw = _paw.copy();
+		fcheck.crop_ = new FImage(fcheck._paw._mask.width, fcheck._paw._mask.height);
+		fcheck.vec_ = new Matrix(fcheck._paw._nPix, 1);
+		return fcheck;
+	}
+
 	static FCheck load(final String fname) throws FileNotFoundException {
 		BufferedReader br = null;
 		try {
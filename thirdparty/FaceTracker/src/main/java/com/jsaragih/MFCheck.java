@@ -126,6 +126,22 @@ public class MFCheck {
 		return mfcheck;
 	}
 
+	/**
+	 * Returns a copy of this MFCheck with its own working buffers, so that it
+	 * can be used concurrently with the original.
+	 * 
+	 * @return a copy of this MFCheck
+	 */
+	public MFCheck copy() {
+		final MFCheck mfcheck = new MFCheck();
+		mfcheck._fcheck = new FCheck[_fcheck.length];
+
+		for (int i = 0; i < _fcheck.length; i++)
+			mfcheck._fcheck[i] = _fcheck[i].copy();
+
+		return mfcheck;
+	}
+
 	/**
 	 * Check the whether its actually a face
 	 * @param idx
@@ -189,7 +189,7 @@ public class MPatch {
 		MPatch m = new MPatch();
 		m._w = _w;
 		m._h = _h;
-		m.res_ = res_;
+		m.res_ = new FImage(0, 0);
 		m._p = new Patch[_p.length];
 		for (int i = 0; i < _p.length; i++)
 			m._p[i] = _p[i].copy();
@@ -299,6 +299,31 @@ public class PAW {
 	PAW() {
 	}
 
+	/**
+	 * Returns a copy of this PAW. The source shape, triangulation and mask are
+	 * shared; the working buffers are not, so the copy can be used to crop
+	 * concurrently with the original.
+	 * 
+	 * @return a copy of this PAW
+	 */
+	PAW copy() {
+		final PAW p = new PAW();
+		p._nPix = _nPix;
+		p._xmin = _xmin;
+		p._ymin = _ymin;
+		p._src = _src;
+		p._dst = _src;
+		p._tri = _tri;
+		p._tridx = _tridx;
+		p._mask = _mask;
+		p._alpha = _alpha;
+		p._beta = _beta;
+		p._coeff = new Matrix(_coeff.getRowDimension(), _coeff.getColumnDimension());
+		p._mapx = new FImage(_mapx.width, _mapx.height);
+		p._mapy = new FImage(_mapy.width, _mapy.height);
+		return p;
+	}
+
 	void crop(FImage src, FImage dst, Matrix s) {
 		assert ((s.getRowDimension() == _src.getRowDimension()) && (s
 				.getColumnDimension() == 1));
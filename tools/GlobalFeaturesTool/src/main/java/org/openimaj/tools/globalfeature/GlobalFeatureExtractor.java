@@ -59,4 +59,18 @@ public abstract class GlobalFeatureExtractor {
 	public FeatureVector extract(MBFImage image) {
 		return extract(image, null);
 	}
+	
+	/**
+	 * Create the feature from an image and optional mask, making use of (and
+	 * adding to) the intermediate representations of the image that have
+	 * already been computed by other extractors. Extractors that use common
+	 * intermediates (such as the intensity image) should override this
+	 * method; by default it just calls {@link #extract(MBFImage, FImage)}.
+	 * 
+	 * @param intermediates the image, mask and memoised intermediates
+	 * @return the feature based on an image and mask
+	 */
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		return extract(intermediates.getImage(), intermediates.getMask());
+	}
 }
@@ -31,6 +31,9 @@ package org.openimaj.tools.globalfeature;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -43,15 +46,24 @@ import org.openimaj.image.MBFImage;
 import org.openimaj.io.IOUtils;
 
 /**
- * A tool for extracting global image features.
+ * A tool for extracting global image features. Either a single feature type
+ * can be given with its options, or a number of features can be specified
+ * with repeated <code>--features</code> options (each consisting of the type
+ * followed by any options for that type). In the latter case the image is
+ * decoded once, intermediates shared between the features are only computed
+ * once, the features are extracted in parallel, and the output is a single
+ * vector formed by concatenating all the features in the order given.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
 public class GlobalFeaturesTool {
-	@Option(name="--feature-type", aliases="-f", handler=ProxyOptionHandler.class, usage="Feature type", required=true)
+	@Option(name="--feature-type", aliases="-f", handler=ProxyOptionHandler.class, usage="Feature type", required=false)
 	private GlobalFeatureType feature;
 	private GlobalFeatureExtractor featureOp;
 	
+	@Option(name="--features", aliases="-F", usage="Feature type followed by its options (e.g. \"HISTOGRAM -c RGB 4 4 4\"); can be repeated to extract multiple features at once", required=false)
+	private List<String> featureSpecs = new ArrayList<String>();
+	
 	@Option(name = "-input", aliases="-i", required=true, usage="Set the input image", handler=MBFImageOptionHandler.class)
 	private MBFImage input;
 	
@@ -70,6 +82,61 @@ public class GlobalFeaturesTool {
 			IOUtils.writeASCII(output, fv);
 	}
 	
+	/**
+	 * Parse a feature specification consisting of the name of a
+	 * {@link GlobalFeatureType} followed by the options for that type.
+	 * 
+	 * @param spec the specification
+	 * @return the configured extractor
+	 * @throws CmdLineException if the specification is invalid
+	 */
+	static GlobalFeatureExtractor parseFeature(String spec) throws CmdLineException {
+		final String[] parts = spec.trim().split("\\s+");
+		
+		final GlobalFeatureType type;
+		try {
+			type = GlobalFeatureType.valueOf(parts[0]);
+		} catch (IllegalArgumentException e) {
+			throw new CmdLineException(null, "Unknown feature type: " + parts[0]);
+		}
+		
+		final GlobalFeatureExtractor extractor = type.getOptions();
+		new CmdLineParser(extractor).parseArgument(Arrays.copyOfRange(parts, 1, parts.length));
+		return extractor;
+	}
+	
+	/**
+	 * Parse the command line arguments into this tool. Exactly one of
+	 * <code>--feature-type</code> or (one or more) <code>--features</code>
+	 * must be given.
+	 * 
+	 * @param parser the parser for this tool
+	 * @param args the arguments
+	 * @throws CmdLineException if the arguments are invalid
+	 */
+	void parseArgs(CmdLineParser parser, String[] args) throws CmdLineException {
+		parser.parseArgument(args);
+		
+		if (feature == null && featureSpecs.isEmpty())
+			throw new CmdLineException(parser, "Either --feature-type or --features must be given");
+		if (feature != null && !featureSpecs.isEmpty())
+			throw new CmdLineException(parser, "Only one of --feature-type and --features can be given");
+		
+		if (!featureSpecs.isEmpty()) {
+			final List<GlobalFeatureExtractor> extractors = new ArrayList<GlobalFeatureExtractor>();
+			for (String spec : featureSpecs)
+				extractors.add(parseFeature(spec));
+			featureOp = new MultiGlobalFeatureExtractor(extractors);
+		}
+	}
+	
+	/**
+	 * @return the configured feature extractor
+	 */
+	GlobalFeatureExtractor getFeatureExtractor() {
+		return featureOp;
+	}
+	
 	/**
 	 * The main method of the tool.
 	 * 
@@ -84,20 +151,20 @@ public class GlobalFeaturesTool {
 		CmdLineParser parser = new CmdLineParser(tool);
 
 		try {
-			parser.parseArgument(args);
+			tool.parseArgs(parser, args);
 		} catch (CmdLineException e) {
 			System.err.println(e.getMessage());
 			System.err.println("Usage: java -jar GlobalFeaturesTool.jar [options...]");
 			parser.printUsage(System.err);
 			
-			if (tool.feature == null) {
+			if (tool.feature == null && tool.featureSpecs.isEmpty()) {
 				for (GlobalFeatureType m : GlobalFeatureType.values()) {
 					System.err.println();
 					System.err.println(m + " options: ");
 					new CmdLineParser(m.getOptions()).printUsage(System.err);
 				}
 			}
-			return;
+			System.exit(1);
 		}
 		
 		tool.execute();
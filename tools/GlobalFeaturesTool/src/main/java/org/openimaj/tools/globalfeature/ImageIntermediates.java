@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.globalfeature;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.colour.ColourSpace;
+import org.openimaj.image.colour.Transforms;
+
+/**
+ * An image (and optional mask) together with a memo of intermediate
+ * representations of the image that are needed by several
+ * {@link GlobalFeatureExtractor}s, such as the intensity image or a
+ * conversion to a different colour space. Each intermediate is computed at
+ * most once, on first request, even if it is requested concurrently by
+ * extractors running in parallel.
+ * <p>
+ * The image and the intermediates are shared, so extractors must not modify
+ * them; an extractor that needs to modify an intermediate should clone it
+ * first.
+ *
+ * @author agent (agent@local)
+ */
+public class ImageIntermediates {
+	private static final String INTENSITY_KEY = "intensity";
+	private static final String FLATTENED_KEY = "flattened";
+
+	private final MBFImage image;
+	private final FImage mask;
+	private final ConcurrentHashMap<Object, Future<?>> memo = new ConcurrentHashMap<Object, Future<?>>();
+
+	/**
+	 * Construct with the given image and mask
+	 *
+	 * @param image
+	 *            the image
+	 * @param mask
+	 *            the mask (may be null)
+	 */
+	public ImageIntermediates(MBFImage image, FImage mask) {
+		this.image = image;
+		this.mask = mask;
+	}
+
+	/**
+	 * @return the image
+	 */
+	public MBFImage getImage() {
+		return image;
+	}
+
+	/**
+	 * @return the mask (may be null)
+	 */
+	public FImage getMask() {
+		return mask;
+	}
+
+	/**
+	 * Get the NTSC-weighted intensity image
+	 *
+	 * @see Transforms#calculateIntensityNTSC(MBFImage)
+	 * @return the intensity image
+	 */
+	public FImage getIntensity() {
+		return get(INTENSITY_KEY, new Callable<FImage>() {
+			@Override
+			public FImage call() {
+				return Transforms.calculateIntensityNTSC(image);
+			}
+		});
+	}
+
+	/**
+	 * Get the flattened image
+	 *
+	 * @see MBFImage#flatten()
+	 * @return the flattened image
+	 */
+	public FImage getFlattened() {
+		return get(FLATTENED_KEY, new Callable<FImage>() {
+			@Override
+			public FImage call() {
+				return image.flatten();
+			}
+		});
+	}
+
+	/**
+	 * Get the image converted to the given colour space
+	 *
+	 * @param colourSpace
+	 *            the colour space
+	 * @return the converted image
+	 */
+	public MBFImage getColourSpace(final ColourSpace colourSpace) {
+		return get(colourSpace, new Callable<MBFImage>() {
+			@Override
+			public MBFImage call() {
+				return colourSpace.convert(image);
+			}
+		});
+	}
+
+	/**
+	 * Get the intermediate with the given key, computing it with the given
+	 * {@link Callable} if it hasn't already been computed. If several threads
+	 * request the same key at the same time, only one of them computes it and
+	 * the others wait for the result.
+	 *
+	 * @param key
+	 *            the key identifying the intermediate
+	 * @param computer
+	 *            the {@link Callable} that computes the intermediate
+	 * @return the intermediate
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T get(Object key, Callable<T> computer) {
+		Future<?> f = memo.get(key);
+		if (f == null) {
+			final FutureTask<T> task = new FutureTask<T>(computer);
+			f = memo.putIfAbsent(key, task);
+			if (f == null) {
+				f = task;
+				task.run();
+			}
+		}
+
+		try {
+			return (T) f.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.globalfeature;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.feature.FeatureVector;
+import org.openimaj.image.FImage;
+import org.openimaj.image.MBFImage;
+import org.openimaj.util.function.Operation;
+import org.openimaj.util.parallel.GlobalExecutorPool;
+import org.openimaj.util.parallel.Parallel;
+
+/**
+ * A {@link GlobalFeatureExtractor} that runs a number of other extractors on
+ * the same image in parallel and concatenates their features into a single
+ * {@link DoubleFV}, in the order the extractors were given. The extractors
+ * share an {@link ImageIntermediates}, so common intermediate representations
+ * (such as the intensity image) are only computed once per image.
+ * <p>
+ * Each extractor is only ever used by one thread at a time, but an instance
+ * of this class must not be used concurrently on different images.
+ *
+ * @author agent (agent@local)
+ */
+public class MultiGlobalFeatureExtractor extends GlobalFeatureExtractor {
+	private final List<GlobalFeatureExtractor> extractors;
+	private final ThreadPoolExecutor pool;
+
+	/**
+	 * Construct with the given extractors, using the global thread pool.
+	 *
+	 * @param extractors
+	 *            the extractors
+	 */
+	public MultiGlobalFeatureExtractor(List<GlobalFeatureExtractor> extractors) {
+		this(extractors, GlobalExecutorPool.getPool());
+	}
+
+	/**
+	 * Construct with the given extractors and thread pool.
+	 *
+	 * @param extractors
+	 *            the extractors
+	 * @param pool
+	 *            the thread pool used to run the extractors
+	 */
+	public MultiGlobalFeatureExtractor(List<GlobalFeatureExtractor> extractors, ThreadPoolExecutor pool) {
+		this.extractors = new ArrayList<GlobalFeatureExtractor>(extractors);
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the extractors
+	 */
+	public List<GlobalFeatureExtractor> getExtractors() {
+		return extractors;
+	}
+
+	/**
+	 * Run all the extractors on the given image and mask, returning the
+	 * features from each in the same order as the extractors.
+	 *
+	 * @param intermediates
+	 *            the image, mask and memoised intermediates
+	 * @return the features
+	 */
+	public FeatureVector[] extractAll(final ImageIntermediates intermediates) {
+		final FeatureVector[] features = new FeatureVector[extractors.size()];
+		final RuntimeException[] errors = new RuntimeException[extractors.size()];
+
+		Parallel.forIndex(0, extractors.size(), 1, new Operation<Integer>() {
+			@Override
+			public void perform(Integer i) {
+				try {
+					features[i] = extractors.get(i).extract(intermediates);
+				} catch (final RuntimeException e) {
+					errors[i] = e;
+				}
+			}
+		}, pool);
+
+		for (final RuntimeException e : errors)
+			if (e != null)
+				throw e;
+
+		return features;
+	}
+
+	@Override
+	public FeatureVector extract(MBFImage image, FImage mask) {
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public DoubleFV extract(ImageIntermediates intermediates) {
+		final FeatureVector[] features = extractAll(intermediates);
+
+		int length = 0;
+		final double[][] vectors = new double[features.length][];
+		for (int i = 0; i < features.length; i++) {
+			vectors[i] = features[i].asDoubleVector();
+			length += vectors[i].length;
+		}
+
+		final double[] values = new double[length];
+		int offset = 0;
+		for (final double[] v : vectors) {
+			System.arraycopy(v, 0, values, offset, v.length);
+			offset += v.length;
+		}
+
+		return new DoubleFV(values);
+	}
+}
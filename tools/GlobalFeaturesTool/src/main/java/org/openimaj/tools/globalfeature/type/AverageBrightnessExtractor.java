@@ -44,6 +44,7 @@ public class AverageBrightnessExtractor extends GlobalFeatureExtractor {
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
 		final AvgBrightness f = new AvgBrightness(AvgBrightness.Mode.NTSC_LUMINANCE, mask);
+		image.analyseWith(f);
 		return f.getFeatureVector();
 	}
 }
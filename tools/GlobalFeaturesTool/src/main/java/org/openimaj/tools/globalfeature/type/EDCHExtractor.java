@@ -34,6 +34,7 @@ import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
 import org.openimaj.image.analysis.algorithm.EdgeDirectionCoherenceVector;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * EDCH
@@ -42,10 +43,15 @@ import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
 public class EDCHExtractor extends GlobalFeatureExtractor {
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
 		EdgeDirectionCoherenceVector cldo = new EdgeDirectionCoherenceVector();
-		image.flatten().analyseWith(cldo);
+		intermediates.getFlattened().analyseWith(cldo);
 		
-		if (mask != null)
+		if (intermediates.getMask() != null)
 			System.err.println("Warning: EDGE_DIRECTION_COHERENCE_HISTOGRAM doesn't support masking");
 		
 		return cldo.getFeatureVector();
@@ -33,11 +33,11 @@ import org.kohsuke.args4j.Option;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.colour.Transforms;
 import org.openimaj.image.processing.face.detection.FaceDetectorFeatures;
 import org.openimaj.image.processing.face.detection.HaarCascadeDetector;
 import org.openimaj.image.processing.face.detection.HaarCascadeDetector.BuiltInCascade;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Haar cascades
@@ -52,10 +52,16 @@ public class HaarFacesExtractor extends GlobalFeatureExtractor {
 
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
-		if (mask != null)
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		if (intermediates.getMask() != null)
 			System.err.println("Warning: HAAR_FACES doesn't support masking");
 
 		HaarCascadeDetector fd = cascade.load();
-		return mode.getFeatureVector(fd.detectFaces(Transforms.calculateIntensityNTSC(image)), image);
+		// the detector may equalise the image in-place, so work on a copy
+		return mode.getFeatureVector(fd.detectFaces(intermediates.getIntensity().clone()), intermediates.getImage());
 	}
 }
@@ -41,6 +41,7 @@ import org.openimaj.image.colour.ColourSpace;
 import org.openimaj.image.pixel.statistics.HistogramModel;
 import org.openimaj.image.pixel.statistics.MaskingHistogramModel;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Create a global colour histogram and output a feature
@@ -62,7 +63,12 @@ public class HistogramExtractor extends GlobalFeatureExtractor {
 	
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
-		MBFImage converted = converter.convert(image);
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		MBFImage converted = intermediates.getColourSpace(converter);
 		
 		if (converted.numBands() != bins.size()) {
 			throw new RuntimeException("Incorrect number of dimensions - recieved " + bins.size() +", expected " + converted.numBands() +".");
@@ -73,10 +79,10 @@ public class HistogramExtractor extends GlobalFeatureExtractor {
 			ibins[i] = bins.get(i);
 		
 		hm = null; 
-		if (mask == null)
+		if (intermediates.getMask() == null)
 			hm = new HistogramModel(ibins);
 		else 
-			hm = new MaskingHistogramModel(mask, ibins);
+			hm = new MaskingHistogramModel(intermediates.getMask(), ibins);
 		
 		hm.estimateModel(converted);
 		return hm.histogram;
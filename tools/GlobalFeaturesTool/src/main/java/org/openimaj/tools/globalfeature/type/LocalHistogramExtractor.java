@@ -41,6 +41,7 @@ import org.openimaj.image.colour.ColourSpace;
 import org.openimaj.image.pixel.statistics.BlockHistogramModel;
 import org.openimaj.image.pixel.statistics.MaskingBlockHistogramModel;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Local (block-based) pixel histograms
@@ -61,7 +62,12 @@ public class LocalHistogramExtractor extends GlobalFeatureExtractor {
 	
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
-		MBFImage converted = converter.convert(image);
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		MBFImage converted = intermediates.getColourSpace(converter);
 		
 		if (converted.numBands() != bins.size()) {
 			throw new RuntimeException("Incorrect number of dimensions - recieved " + bins.size() +", expected " + converted.numBands() +".");
@@ -72,10 +78,10 @@ public class LocalHistogramExtractor extends GlobalFeatureExtractor {
 			ibins[i] = bins.get(i);
 		
 		BlockHistogramModel hm = null;
-		if (mask == null)
+		if (intermediates.getMask() == null)
 			hm = new BlockHistogramModel(blocks_x, blocks_y, ibins);
 		else
-			hm = new MaskingBlockHistogramModel(mask, blocks_x, blocks_y, ibins);
+			hm = new MaskingBlockHistogramModel(intermediates.getMask(), blocks_x, blocks_y, ibins);
 		
 		hm.estimateModel(converted);
 		return hm.toSingleHistogram();
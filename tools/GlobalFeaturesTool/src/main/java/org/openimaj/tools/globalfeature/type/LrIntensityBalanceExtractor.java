@@ -33,9 +33,9 @@ import org.kohsuke.args4j.Option;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.colour.Transforms;
 import org.openimaj.image.feature.global.LRIntensityBalance;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Left-right intensity balance
@@ -47,8 +47,13 @@ public class LrIntensityBalanceExtractor extends GlobalFeatureExtractor {
 
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
 		LRIntensityBalance cc = new LRIntensityBalance(nbins);
-		Transforms.calculateIntensityNTSC(image).analyseWith(cc);
+		intermediates.getIntensity().analyseWith(cc);
 		return cc.getFeatureVector();
 	}
 }
@@ -33,10 +33,9 @@ import java.util.List;
 
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.feature.FloatFV;
-import org.openimaj.image.FImage;
-import org.openimaj.image.MBFImage;
 import org.openimaj.image.colour.ColourSpace;
 import org.openimaj.tools.globalfeature.GlobalFeatureType;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 import org.openimaj.util.array.ArrayUtils;
 
 /**
@@ -61,8 +60,8 @@ public class MaxHistogramExtractor extends HistogramExtractor {
 	}
 
 	@Override
-	public FeatureVector extract(MBFImage image, FImage mask) {
-		final FeatureVector fv = super.extract(image, mask);
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		final FeatureVector fv = super.extract(intermediates);
 		final double[] vals = fv.asDoubleVector();
 		final int index = ArrayUtils.maxIndex(vals);
 		return new FloatFV(hm.colourAverage(index));
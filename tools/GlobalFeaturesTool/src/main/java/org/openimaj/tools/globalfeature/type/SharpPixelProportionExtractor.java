@@ -33,9 +33,9 @@ import org.kohsuke.args4j.Option;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.colour.Transforms;
 import org.openimaj.image.feature.global.SharpPixelProportion;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Sharp pixel proportion
@@ -47,8 +47,13 @@ public class SharpPixelProportionExtractor extends GlobalFeatureExtractor {
 
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
 		SharpPixelProportion cc = new SharpPixelProportion(thresh);
-		Transforms.calculateIntensityNTSC(image).analyseWith(cc);
+		intermediates.getIntensity().analyseWith(cc);
 		return cc.getFeatureVector();
 	}
 }
@@ -32,9 +32,9 @@ package org.openimaj.tools.globalfeature.type;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.colour.Transforms;
 import org.openimaj.image.feature.global.Sharpness;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Sharpness
@@ -43,8 +43,13 @@ import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
 public class SharpnessExtractor extends GlobalFeatureExtractor {
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
-		Sharpness f = new Sharpness(mask);
-		Transforms.calculateIntensityNTSC(image).analyseWith(f);
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
+		Sharpness f = new Sharpness(intermediates.getMask());
+		intermediates.getIntensity().analyseWith(f);
 		return f.getFeatureVector();
 	}
 }
@@ -32,9 +32,9 @@ package org.openimaj.tools.globalfeature.type;
 import org.openimaj.feature.FeatureVector;
 import org.openimaj.image.FImage;
 import org.openimaj.image.MBFImage;
-import org.openimaj.image.colour.Transforms;
 import org.openimaj.image.feature.global.WeberContrast;
 import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
+import org.openimaj.tools.globalfeature.ImageIntermediates;
 
 /**
  * Weber constrast
@@ -43,8 +43,13 @@ import org.openimaj.tools.globalfeature.GlobalFeatureExtractor;
 public class WeberContrastExtractor extends GlobalFeatureExtractor {
 	@Override
 	public FeatureVector extract(MBFImage image, FImage mask) {
+		return extract(new ImageIntermediates(image, mask));
+	}
+
+	@Override
+	public FeatureVector extract(ImageIntermediates intermediates) {
 		WeberContrast cc = new WeberContrast();
-		Transforms.calculateIntensityNTSC(image).analyseWith(cc);
+		intermediates.getIntensity().analyseWith(cc);
 		return cc.getFeatureVector();
 	}
 }
@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.globalfeature;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.MBFImage;
+import org.openimaj.tools.globalfeature.type.AverageBrightnessExtractor;
+import org.openimaj.tools.globalfeature.type.HistogramExtractor;
+import org.openimaj.tools.globalfeature.type.LocalHistogramExtractor;
+
+/**
+ * Tests for the command line parsing of the {@link GlobalFeaturesTool}
+ * 
+ * @author agent (agent@local)
+ */
+public class GlobalFeaturesToolTest {
+	/**
+	 * Temporary folder for the input image
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MBFImage image;
+	private String imagePath;
+
+	/**
+	 * Write the test image to a file
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readMBF(OpenIMAJ.getLogoAsStream());
+
+		final File file = folder.newFile("image.png");
+		ImageUtilities.write(image, file);
+		imagePath = file.getAbsolutePath();
+	}
+
+	private GlobalFeatureExtractor parse(String... args) throws CmdLineException {
+		final GlobalFeaturesTool tool = new GlobalFeaturesTool();
+		tool.parseArgs(new CmdLineParser(tool), args);
+		return tool.getFeatureExtractor();
+	}
+
+	/**
+	 * Test a single feature given with --feature-type
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test
+	public void testFeatureType() throws CmdLineException {
+		final GlobalFeatureExtractor fe = parse("-i", imagePath, "-f", "HISTOGRAM", "-c", "RGB", "4", "4", "4");
+
+		assertTrue(fe instanceof HistogramExtractor);
+		assertEquals(64, fe.extract(image).length());
+	}
+
+	/**
+	 * Test multiple features given with repeated --features
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test
+	public void testFeatures() throws CmdLineException {
+		final GlobalFeatureExtractor fe = parse("-i", imagePath,
+				"--features", "HISTOGRAM -c RGB 4 4 4",
+				"-F", " LOCAL_HISTOGRAM  -c HSV -bx 2 -by 3 2 2 2 ",
+				"-F", "AVERAGE_BRIGHTNESS");
+
+		assertTrue(fe instanceof MultiGlobalFeatureExtractor);
+
+		final List<GlobalFeatureExtractor> extractors = ((MultiGlobalFeatureExtractor) fe).getExtractors();
+		assertEquals(3, extractors.size());
+		assertTrue(extractors.get(0) instanceof HistogramExtractor);
+		assertTrue(extractors.get(1) instanceof LocalHistogramExtractor);
+		assertTrue(extractors.get(2) instanceof AverageBrightnessExtractor);
+
+		assertEquals(64 + 2 * 3 * 8 + 1, fe.extract(image).length());
+	}
+
+	/**
+	 * Test that an unknown feature type is rejected
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test(expected = CmdLineException.class)
+	public void testUnknownFeature() throws CmdLineException {
+		parse("-i", imagePath, "-F", "NOT_A_FEATURE");
+	}
+
+	/**
+	 * Test that invalid options for a feature are rejected
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test(expected = CmdLineException.class)
+	public void testInvalidFeatureOptions() throws CmdLineException {
+		parse("-i", imagePath, "-F", "HISTOGRAM 4 4 4");
+	}
+
+	/**
+	 * Test that one of --feature-type or --features is required
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test(expected = CmdLineException.class)
+	public void testNoFeature() throws CmdLineException {
+		parse("-i", imagePath);
+	}
+
+	/**
+	 * Test that --feature-type and --features can't both be given
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test(expected = CmdLineException.class)
+	public void testBothFeatureOptions() throws CmdLineException {
+		parse("-i", imagePath, "-F", "AVERAGE_BRIGHTNESS", "-f", "AVERAGE_BRIGHTNESS");
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.globalfeature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.kohsuke.args4j.CmdLineException;
+import org.openimaj.OpenIMAJ;
+import org.openimaj.feature.DoubleFV;
+import org.openimaj.image.FImage;
+import org.openimaj.image.ImageUtilities;
+import org.openimaj.image.MBFImage;
+import org.openimaj.image.processing.resize.ResizeProcessor;
+import org.openimaj.math.geometry.shape.Rectangle;
+
+/**
+ * Tests for {@link MultiGlobalFeatureExtractor}
+ * 
+ * @author agent (agent@local)
+ */
+public class MultiGlobalFeatureExtractorTest {
+	private static final String[] SPECS = {
+			"HISTOGRAM -c RGB 4 4 4",
+			"HISTOGRAM -c HSV 4 4 4",
+			"MAX_HISTOGRAM -c RGB 4 4 4",
+			"LOCAL_HISTOGRAM -c RGB -bx 2 -by 2 4 4 4",
+			"EDGE_DIRECTION_COHERENCE_HISTOGRAM",
+			"AVERAGE_BRIGHTNESS",
+			"SHARPNESS",
+			"COLORFULNESS",
+			"HUE_STATISTICS",
+			"HAAR_FACES -ff COUNT -c frontalface_default",
+			"WEBER_CONTRAST",
+			"LR_INTENSITY_BALANCE",
+			"HORIZONTAL_INTENSITY_DISTRIBUTION",
+			"SHARP_PIXEL_PROPORTION"
+	};
+
+	private MBFImage image;
+
+	/**
+	 * Load the test image
+	 * 
+	 * @throws IOException
+	 */
+	@Before
+	public void setup() throws IOException {
+		image = ImageUtilities.readMBF(OpenIMAJ.getLogoAsStream());
+	}
+
+	private static List<GlobalFeatureExtractor> createExtractors() throws CmdLineException {
+		final List<GlobalFeatureExtractor> extractors = new ArrayList<GlobalFeatureExtractor>();
+
+		for (final String spec : SPECS)
+			extractors.add(GlobalFeaturesTool.parseFeature(spec));
+
+		return extractors;
+	}
+
+	private void checkMatchesIndividual(FImage mask) throws CmdLineException {
+		final MultiGlobalFeatureExtractor multi = new MultiGlobalFeatureExtractor(createExtractors());
+		final MBFImage input = image.clone();
+		final double[] combined = ((DoubleFV) multi.extract(input, mask)).values;
+
+		int offset = 0;
+		for (final GlobalFeatureExtractor extractor : createExtractors()) {
+			final double[] expected = extractor.extract(image.clone(), mask).asDoubleVector();
+
+			final double[] actual = new double[expected.length];
+			System.arraycopy(combined, offset, actual, 0, expected.length);
+			assertArrayEquals(expected, actual, 0);
+
+			offset += expected.length;
+		}
+		assertEquals(offset, combined.length);
+
+		// the extractors must not modify the input image
+		assertArrayEquals(image.getBand(0).pixels[10], input.getBand(0).pixels[10], 0f);
+	}
+
+	/**
+	 * Test that the combined feature is the concatenation of the features
+	 * produced by each extractor on its own
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test
+	public void testMatchesIndividual() throws CmdLineException {
+		checkMatchesIndividual(null);
+	}
+
+	/**
+	 * Test that the combined feature is the concatenation of the features
+	 * produced by each extractor on its own when a mask is used
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test
+	public void testMatchesIndividualMasked() throws CmdLineException {
+		final FImage mask = new FImage(image.getWidth(), image.getHeight());
+		final Rectangle centre = image.getBounds();
+		centre.scaleCentroid(0.5f);
+		mask.drawShapeFilled(centre, 1f);
+
+		checkMatchesIndividual(mask);
+	}
+
+	/**
+	 * Test that the extractor can be re-used for several images
+	 * 
+	 * @throws CmdLineException
+	 */
+	@Test
+	public void testReuse() throws CmdLineException {
+		final MultiGlobalFeatureExtractor multi = new MultiGlobalFeatureExtractor(createExtractors());
+		final MBFImage small = image.process(new ResizeProcessor(0.5f));
+
+		final double[] first = multi.extract(image).asDoubleVector();
+		multi.extract(small);
+		assertArrayEquals(first, multi.extract(image).asDoubleVector(), 0);
+	}
+}
@@ -31,20 +31,20 @@ package org.openimaj.tools.localfeature;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
-import org.openimaj.feature.local.LocalFeature;
-import org.openimaj.feature.local.list.LocalFeatureList;
-import org.openimaj.io.IOUtils;
-import org.openimaj.time.Timer;
 import org.openimaj.tools.localfeature.options.BatchExtractorOptions;
-import org.openimaj.util.function.Operation;
-import org.openimaj.util.parallel.Parallel;
 
 /**
- * Tool for extracting local features
+ * Tool for extracting local features from a directory of images. The work is
+ * performed by a {@link BatchExtractorPipeline}; the features are either
+ * written to a file per image or packed into shards by a
+ * {@link ShardedFeatureWriter}, in which case an interrupted run can be
+ * resumed from the last committed shard by running the tool again.
  * 
  * @author Jonathon Hare (jsh2@ecs.soton.ac.uk)
  */
@@ -54,13 +54,17 @@ public class BatchExtractor {
 	 * 
 	 * @param args
 	 * @throws IOException
+	 * @throws InterruptedException
 	 */
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws IOException, InterruptedException {
 		final BatchExtractorOptions options = new BatchExtractorOptions();
 		final CmdLineParser parser = new CmdLineParser(options);
 
 		try {
 			parser.parseArgument(args);
+
+			if (!options.isSharded() && options.getOutputExt() == null)
+				throw new CmdLineException(parser, "An output extension is required unless writing shards");
 		} catch (final CmdLineException e) {
 			System.err.println(e.getMessage());
 			System.err.println("Usage: java -jar LocalFeaturesTool.jar BatchExtractor [options]");
@@ -68,32 +72,31 @@ public class BatchExtractor {
 			return;
 		}
 
-		final ThreadPoolExecutor pool = options.getThreadPool();
-
-		Parallel.forEach(options.getInputs(), new Operation<File>() {
-			@Override
-			public void perform(File input) {
-				try {
-					final byte[] img = options.getInputImage(input);
+		List<File> inputs = options.getInputs();
 
-					final Timer timing = Timer.timer();
-					final LocalFeatureList<? extends LocalFeature<?, ?>> kpl = options.getMode().extract(img);
-					timing.stop();
+		ShardedFeatureWriter shards = null;
+		if (options.isSharded()) {
+			shards = new ShardedFeatureWriter(options.getOutputBase(), options.getShardSize(), options.isForce());
 
-					if (options.printTiming()) {
-						System.out.println("Took: " + timing.duration());
-					}
-
-					if (options.isAsciiMode()) {
-						IOUtils.writeASCII(options.getOutput(input), kpl);
-					} else {
-						IOUtils.writeBinary(options.getOutput(input), kpl);
-					}
-				} catch (final IOException e) {
-					System.err.println(e);
+			final Set<String> done = shards.getCommittedKeys();
+			if (!done.isEmpty()) {
+				final List<File> remaining = new ArrayList<File>();
+				for (final File f : inputs) {
+					if (!done.contains(options.getKey(f)))
+						remaining.add(f);
 				}
+				System.err.println("Resuming from shard " + shards.getCommittedShards() + ": "
+						+ (inputs.size() - remaining.size()) + " of " + inputs.size() + " inputs already processed");
+				inputs = remaining;
 			}
-		}, pool);
+		}
+
+		try {
+			new BatchExtractorPipeline(options, shards).run(inputs);
+		} finally {
+			if (shards != null)
+				shards.close();
+		}
 
 		options.serialiseExtractor();
 	}
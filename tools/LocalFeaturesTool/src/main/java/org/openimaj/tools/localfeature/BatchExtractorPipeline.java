@@ -0,0 +1,370 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.localfeature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.feature.local.list.LocalFeatureList;
+import org.openimaj.io.IOUtils;
+import org.openimaj.time.Timer;
+import org.openimaj.tools.localfeature.options.BatchExtractorOptions;
+
+/**
+ * The staged pipeline behind the {@link BatchExtractor}. Input files are
+ * read by a set of reader threads, decoded and processed by a set of
+ * extraction threads and written by a single writer thread; the stages are
+ * connected by bounded queues so that slow IO and extraction overlap without
+ * buffering an unbounded number of images. The output is either written to
+ * one file per input, or packed into shards with a
+ * {@link ShardedFeatureWriter}.
+ * <p>
+ * The number of items processed by each stage and the current depth of each
+ * queue can be reported periodically, which makes it easy to see which stage
+ * is the bottleneck.
+ *
+ * @author agent (agent@local)
+ */
+public class BatchExtractorPipeline {
+	private static class Item {
+		final File file;
+		final byte[] data;
+
+		Item(File file, byte[] data) {
+			this.file = file;
+			this.data = data;
+		}
+	}
+
+	private static final Item END = new Item(null, null);
+
+	/**
+	 * Counters for a stage of the pipeline
+	 */
+	private static class Stage {
+		final String name;
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong nanos = new AtomicLong();
+		long lastCount;
+
+		Stage(String name) {
+			this.name = name;
+		}
+
+		void record(long start) {
+			nanos.addAndGet(System.nanoTime() - start);
+			count.incrementAndGet();
+		}
+	}
+
+	private final BatchExtractorOptions options;
+	private final ShardedFeatureWriter shards;
+
+	private final BlockingQueue<Item> readQueue;
+	private final BlockingQueue<Item> writeQueue;
+
+	private final Stage read = new Stage("read");
+	private final Stage extract = new Stage("extract");
+	private final Stage write = new Stage("write");
+	private final AtomicLong failed = new AtomicLong();
+
+	private final List<Thread> threads = new ArrayList<Thread>();
+
+	/**
+	 * Construct the pipeline.
+	 *
+	 * @param options
+	 *            the options describing the extraction and the sizes of the
+	 *            stages
+	 * @param shards
+	 *            the writer for the output shards, or null if the output
+	 *            should be written to a file per input
+	 */
+	public BatchExtractorPipeline(BatchExtractorOptions options, ShardedFeatureWriter shards) {
+		this.options = options;
+		this.shards = shards;
+		this.readQueue = new ArrayBlockingQueue<Item>(options.getQueueSize());
+		this.writeQueue = new ArrayBlockingQueue<Item>(options.getQueueSize());
+	}
+
+	/**
+	 * Process the given inputs, returning once all the outputs have been
+	 * written (and, if sharding, committed). Inputs that cannot be read,
+	 * processed or written are reported and skipped; errors committing the
+	 * output abort the pipeline.
+	 *
+	 * @param inputs
+	 *            the input files
+	 * @throws IOException
+	 *             if an error occurs writing the output
+	 * @throws InterruptedException
+	 *             if the pipeline is interrupted
+	 */
+	public void run(Collection<File> inputs) throws IOException, InterruptedException {
+		final ConcurrentLinkedQueue<File> pending = new ConcurrentLinkedQueue<File>(inputs);
+		final int nreaders = options.getNumReaders();
+		final int nextractors = options.getNumThreads();
+		final AtomicInteger activeReaders = new AtomicInteger(nreaders);
+		final AtomicInteger activeExtractors = new AtomicInteger(nextractors);
+
+		for (int i = 0; i < nreaders; i++) {
+			start("reader-" + i, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						File f;
+						while ((f = pending.poll()) != null) {
+							final long start = System.nanoTime();
+							final byte[] data;
+							try {
+								data = options.getInputImage(f);
+							} catch (final Exception e) {
+								failed.incrementAndGet();
+								System.err.println("Error reading " + f + ": " + e);
+								continue;
+							}
+							read.record(start);
+
+							readQueue.put(new Item(f, data));
+						}
+					} catch (final InterruptedException e) {
+						// pipeline aborted
+					} finally {
+						// always signal the end, even if this thread dies, so
+						// the downstream stages don't wait forever
+						if (activeReaders.decrementAndGet() == 0) {
+							try {
+								for (int j = 0; j < nextractors; j++)
+									readQueue.put(END);
+							} catch (final InterruptedException e) {
+								// pipeline aborted
+							}
+						}
+					}
+				}
+			});
+		}
+
+		for (int i = 0; i < nextractors; i++) {
+			start("extractor-" + i, new Runnable() {
+				@Override
+				public void run() {
+					try {
+						Item item;
+						while ((item = readQueue.take()) != END) {
+							final long start = System.nanoTime();
+							final byte[] data;
+							try {
+								data = extract(item);
+							} catch (final Exception e) {
+								failed.incrementAndGet();
+								System.err.println("Error extracting features from " + item.file + ": " + e);
+								continue;
+							}
+							extract.record(start);
+
+							writeQueue.put(new Item(item.file, data));
+						}
+					} catch (final InterruptedException e) {
+						// pipeline aborted
+					} finally {
+						if (activeExtractors.decrementAndGet() == 0) {
+							try {
+								writeQueue.put(END);
+							} catch (final InterruptedException e) {
+								// pipeline aborted
+							}
+						}
+					}
+				}
+			});
+		}
+
+		final Thread reporter = startReporter();
+
+		try {
+			Item item;
+			while ((item = writeQueue.take()) != END) {
+				final long start = System.nanoTime();
+				final int uncommitted = shards == null ? 0 : shards.getUncommittedRecords();
+				try {
+					write(item);
+				} catch (final IOException e) {
+					// a failed shard write also loses the uncommitted records
+					// before it
+					write.count.addAndGet(-uncommitted);
+					failed.addAndGet(1 + uncommitted);
+					System.err.println("Error writing features for " + item.file + ": " + e);
+					continue;
+				}
+				write.record(start);
+			}
+
+			if (shards != null)
+				shards.commit();
+		} catch (final IOException e) {
+			abort();
+			throw e;
+		} catch (final RuntimeException e) {
+			abort();
+			throw e;
+		} catch (final InterruptedException e) {
+			abort();
+			throw e;
+		} finally {
+			if (reporter != null)
+				reporter.interrupt();
+		}
+
+		for (final Thread t : threads)
+			t.join();
+
+		if (options.getReportInterval() > 0)
+			report(System.err, 0);
+	}
+
+	/**
+	 * @return the number of inputs that have been written
+	 */
+	public long getNumWritten() {
+		return write.count.get();
+	}
+
+	/**
+	 * @return the number of inputs that could not be read, processed or
+	 *         written
+	 */
+	public long getNumFailed() {
+		return failed.get();
+	}
+
+	private byte[] extract(Item item) throws IOException {
+		final Timer timing = Timer.timer();
+		final LocalFeatureList<? extends LocalFeature<?, ?>> kpl = options.getMode().extract(item.data);
+		timing.stop();
+
+		if (options.printTiming()) {
+			System.out.println("Took: " + timing.duration());
+		}
+
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (options.isAsciiMode()) {
+			IOUtils.writeASCII(baos, kpl);
+		} else {
+			IOUtils.writeBinary(baos, kpl);
+		}
+		return baos.toByteArray();
+	}
+
+	private void write(Item item) throws IOException {
+		if (shards != null) {
+			shards.write(options.getKey(item.file), item.data);
+		} else {
+			final FileOutputStream fos = new FileOutputStream(options.getOutput(item.file));
+			try {
+				fos.write(item.data);
+			} finally {
+				fos.close();
+			}
+		}
+	}
+
+	private void start(String name, Runnable r) {
+		final Thread t = new Thread(r, "BatchExtractor-" + name);
+		t.setDaemon(true);
+		threads.add(t);
+		t.start();
+	}
+
+	private void abort() {
+		for (final Thread thread : threads)
+			thread.interrupt();
+	}
+
+	private Thread startReporter() {
+		final int interval = options.getReportInterval();
+		if (interval <= 0)
+			return null;
+
+		final Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(interval * 1000L);
+						report(System.err, interval);
+					}
+				} catch (final InterruptedException e) {
+					// finished
+				}
+			}
+		}, "BatchExtractor-reporter");
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	private synchronized void report(PrintStream out, int interval) {
+		final StringBuilder sb = new StringBuilder();
+		for (final Stage s : new Stage[] { read, extract, write }) {
+			final long count = s.count.get();
+			sb.append(s.name).append(": ").append(count);
+
+			if (interval > 0)
+				sb.append(String.format(" (%.1f/s)", (count - s.lastCount) / (double) interval));
+			if (count > 0)
+				sb.append(String.format(" [%.1fms each]", s.nanos.get() / (1e6 * count)));
+			sb.append("; ");
+
+			s.lastCount = count;
+		}
+
+		sb.append("failed: ").append(failed.get()).append("; ");
+		sb.append("queues: read ").append(readQueue.size()).append("/").append(options.getQueueSize());
+		sb.append(", write ").append(writeQueue.size()).append("/").append(options.getQueueSize());
+
+		if (shards != null)
+			sb.append("; committed shards: ").append(shards.getCommittedShards());
+
+		out.println(sb.toString());
+	}
+}
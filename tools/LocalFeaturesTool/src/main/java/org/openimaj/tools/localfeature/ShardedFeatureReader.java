@@ -0,0 +1,160 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.localfeature;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.openimaj.feature.local.LocalFeature;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+
+/**
+ * Random-access reader for the shards written by a
+ * {@link ShardedFeatureWriter}. Only committed shards are visible. The shard
+ * files are opened lazily and kept open until the reader is closed.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author agent (agent@local)
+ */
+public class ShardedFeatureReader implements Closeable {
+	private static class Location {
+		final int shard;
+		final long offset;
+		final int length;
+
+		Location(int shard, long offset, int length) {
+			this.shard = shard;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final File dir;
+	private final Map<String, Location> locations = new HashMap<String, Location>();
+	private final RandomAccessFile[] shards;
+
+	/**
+	 * Construct a reader for the shards in the given directory.
+	 *
+	 * @param dir
+	 *            the directory containing the shards
+	 * @throws IOException
+	 *             if an error occurs reading the shard indexes
+	 */
+	public ShardedFeatureReader(File dir) throws IOException {
+		this.dir = dir;
+
+		final int nshards = ShardedFeatureWriter.readCheckpoint(dir);
+		this.shards = new RandomAccessFile[nshards];
+
+		for (int i = 0; i < nshards; i++) {
+			for (final ShardedFeatureWriter.Entry e : ShardedFeatureWriter.readIndex(ShardedFeatureWriter.indexFile(
+					dir, i)))
+			{
+				locations.put(e.key, new Location(i, e.offset, e.length));
+			}
+		}
+	}
+
+	/**
+	 * @return the keys of all the records in the shards
+	 */
+	public Set<String> keys() {
+		return Collections.unmodifiableSet(locations.keySet());
+	}
+
+	/**
+	 * @return the number of records in the shards
+	 */
+	public int size() {
+		return locations.size();
+	}
+
+	/**
+	 * Read the raw bytes of the record with the given key
+	 *
+	 * @param key
+	 *            the key
+	 * @return the record, or null if the key is not present
+	 * @throws IOException
+	 *             if an error occurs reading the record
+	 */
+	public byte[] read(String key) throws IOException {
+		final Location loc = locations.get(key);
+		if (loc == null)
+			return null;
+
+		RandomAccessFile raf = shards[loc.shard];
+		if (raf == null)
+			raf = shards[loc.shard] = new RandomAccessFile(ShardedFeatureWriter.dataFile(dir, loc.shard), "r");
+
+		final byte[] data = new byte[loc.length];
+		raf.seek(loc.offset);
+		raf.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Read the list of features stored under the given key
+	 *
+	 * @param key
+	 *            the key
+	 * @param clz
+	 *            the type of feature
+	 * @return the features, or null if the key is not present
+	 * @throws IOException
+	 *             if an error occurs reading the features
+	 */
+	public <T extends LocalFeature<?, ?>> MemoryLocalFeatureList<T> read(String key, Class<T> clz) throws IOException {
+		final byte[] data = read(key);
+		if (data == null)
+			return null;
+
+		return MemoryLocalFeatureList.read(new ByteArrayInputStream(data), clz);
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (int i = 0; i < shards.length; i++) {
+			if (shards[i] != null) {
+				shards[i].close();
+				shards[i] = null;
+			}
+		}
+	}
+}
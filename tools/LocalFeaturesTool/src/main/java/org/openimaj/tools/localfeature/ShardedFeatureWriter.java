@@ -0,0 +1,368 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.localfeature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writer that packs many small records (typically the serialised features of
+ * a single image) into a small number of large shard files. Each shard
+ * <code>shard-NNNNN.dat</code> is accompanied by an index
+ * <code>shard-NNNNN.idx</code> giving the key, offset and length of every
+ * record in the shard.
+ * <p>
+ * Shards are written to temporary files and only renamed into place once
+ * they are complete and have been synced to disk; the number of committed
+ * shards is then recorded in a <code>checkpoint</code> file. When a writer is
+ * opened on an existing directory, anything beyond the last checkpoint is
+ * discarded, and the keys of the committed records are available through
+ * {@link #getCommittedKeys()} so that an interrupted job can be resumed. The
+ * shards can be read back with a {@link ShardedFeatureReader}.
+ * <p>
+ * Instances are not thread-safe.
+ *
+ * @author agent (agent@local)
+ */
+public class ShardedFeatureWriter implements Closeable {
+	static final String CHECKPOINT_NAME = "checkpoint";
+	static final String SHARD_PREFIX = "shard-";
+	static final String DATA_EXT = ".dat";
+	static final String INDEX_EXT = ".idx";
+	static final String TMP_EXT = ".tmp";
+	static final int INDEX_VERSION = 1;
+
+	/**
+	 * An entry in a shard index
+	 */
+	static class Entry {
+		final String key;
+		final long offset;
+		final int length;
+
+		Entry(String key, long offset, int length) {
+			this.key = key;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final File dir;
+	private final long maxShardBytes;
+	private final Set<String> committedKeys = new HashSet<String>();
+	private int committedShards;
+
+	private FileOutputStream dataFos;
+	private DataOutputStream dataOut;
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private long shardBytes;
+
+	/**
+	 * Construct a writer in the given directory. If the directory already
+	 * contains committed shards they will be kept and new records will be
+	 * written to new shards, unless <code>overwrite</code> is set, in which
+	 * case all existing shards are deleted.
+	 *
+	 * @param dir
+	 *            the output directory
+	 * @param maxShardBytes
+	 *            the size (in bytes) at which a shard is committed and a new
+	 *            one is started
+	 * @param overwrite
+	 *            if true, existing shards are removed
+	 * @throws IOException
+	 *             if an error occurs reading the existing shards
+	 */
+	public ShardedFeatureWriter(File dir, long maxShardBytes, boolean overwrite) throws IOException {
+		if (maxShardBytes <= 0)
+			throw new IllegalArgumentException("Shard size must be positive");
+
+		this.dir = dir;
+		this.maxShardBytes = maxShardBytes;
+
+		if (!dir.exists() && !dir.mkdirs())
+			throw new IOException("Unable to create output directory " + dir);
+
+		if (overwrite) {
+			deleteShards(0);
+			new File(dir, CHECKPOINT_NAME).delete();
+			committedShards = 0;
+		} else {
+			committedShards = readCheckpoint(dir);
+			deleteShards(committedShards);
+
+			for (int i = 0; i < committedShards; i++) {
+				for (final Entry e : readIndex(indexFile(dir, i)))
+					committedKeys.add(e.key);
+			}
+		}
+	}
+
+	/**
+	 * Get the keys of all the records that have been committed, including
+	 * those from previous runs. The returned set is updated as new shards are
+	 * committed.
+	 *
+	 * @return the committed keys
+	 */
+	public Set<String> getCommittedKeys() {
+		return Collections.unmodifiableSet(committedKeys);
+	}
+
+	/**
+	 * @return the number of committed shards
+	 */
+	public int getCommittedShards() {
+		return committedShards;
+	}
+
+	/**
+	 * @return the output directory
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * @return the number of records written to the current shard that have
+	 *         not yet been committed
+	 */
+	public int getUncommittedRecords() {
+		return entries.size();
+	}
+
+	/**
+	 * Append a record to the current shard, committing the shard if it has
+	 * reached the maximum size. If an error occurs, the current shard is
+	 * discarded (including the records previously written to it, see
+	 * {@link #getUncommittedRecords()}), and the writer is left ready to start
+	 * a new shard.
+	 *
+	 * @param key
+	 *            the key of the record
+	 * @param data
+	 *            the record
+	 * @throws IOException
+	 *             if an error occurs writing the record
+	 */
+	public void write(String key, byte[] data) throws IOException {
+		try {
+			if (dataOut == null) {
+				dataFos = new FileOutputStream(tmpFile(dataFile(dir, committedShards)));
+				dataOut = new DataOutputStream(new BufferedOutputStream(dataFos, 1 << 16));
+				shardBytes = 0;
+			}
+
+			dataOut.write(data);
+			entries.add(new Entry(key, shardBytes, data.length));
+			shardBytes += data.length;
+
+			if (shardBytes >= maxShardBytes)
+				commit();
+		} catch (final IOException e) {
+			discard();
+			throw e;
+		}
+	}
+
+	private void discard() {
+		if (dataOut != null) {
+			try {
+				dataOut.close();
+			} catch (final IOException e) {
+				// ignore; the shard is being thrown away
+			}
+		}
+		dataOut = null;
+		dataFos = null;
+		entries.clear();
+		deleteShards(committedShards);
+	}
+
+	/**
+	 * Commit the current shard (if it contains any records). Once this method
+	 * returns the shard is on disk and the records it contains will survive a
+	 * crash.
+	 *
+	 * @throws IOException
+	 *             if an error occurs writing the shard
+	 */
+	public void commit() throws IOException {
+		if (dataOut == null)
+			return;
+
+		dataOut.flush();
+		dataFos.getFD().sync();
+		dataOut.close();
+		dataOut = null;
+		dataFos = null;
+
+		final File data = dataFile(dir, committedShards);
+		final File index = indexFile(dir, committedShards);
+		writeIndex(tmpFile(index), entries);
+
+		move(tmpFile(data), data);
+		move(tmpFile(index), index);
+		writeCheckpoint(committedShards + 1);
+
+		committedShards++;
+		for (final Entry e : entries)
+			committedKeys.add(e.key);
+		entries.clear();
+	}
+
+	/**
+	 * Commit any outstanding records and close the writer.
+	 */
+	@Override
+	public void close() throws IOException {
+		commit();
+	}
+
+	private void deleteShards(final int from) {
+		final File[] files = dir.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File d, String name) {
+				if (!name.startsWith(SHARD_PREFIX))
+					return false;
+				if (name.endsWith(TMP_EXT))
+					return true;
+
+				final int dot = name.indexOf('.');
+				try {
+					return dot > 0 && Integer.parseInt(name.substring(SHARD_PREFIX.length(), dot)) >= from;
+				} catch (final NumberFormatException e) {
+					return false;
+				}
+			}
+		});
+
+		if (files != null) {
+			for (final File f : files)
+				f.delete();
+		}
+	}
+
+	private void writeCheckpoint(int shards) throws IOException {
+		final File checkpoint = new File(dir, CHECKPOINT_NAME);
+		final File tmp = tmpFile(checkpoint);
+
+		final FileOutputStream fos = new FileOutputStream(tmp);
+		try {
+			final DataOutputStream dos = new DataOutputStream(fos);
+			dos.writeInt(shards);
+			dos.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+
+		move(tmp, checkpoint);
+	}
+
+	private static void move(File from, File to) throws IOException {
+		Files.move(from.toPath(), to.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static File tmpFile(File f) {
+		return new File(f.getParentFile(), f.getName() + TMP_EXT);
+	}
+
+	static File dataFile(File dir, int shard) {
+		return new File(dir, String.format("%s%05d%s", SHARD_PREFIX, shard, DATA_EXT));
+	}
+
+	static File indexFile(File dir, int shard) {
+		return new File(dir, String.format("%s%05d%s", SHARD_PREFIX, shard, INDEX_EXT));
+	}
+
+	static int readCheckpoint(File dir) throws IOException {
+		final File checkpoint = new File(dir, CHECKPOINT_NAME);
+		if (!checkpoint.exists())
+			return 0;
+
+		final DataInputStream dis = new DataInputStream(new FileInputStream(checkpoint));
+		try {
+			return dis.readInt();
+		} finally {
+			dis.close();
+		}
+	}
+
+	static List<Entry> readIndex(File index) throws IOException {
+		final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(index)));
+		try {
+			final int version = dis.readInt();
+			if (version != INDEX_VERSION)
+				throw new IOException("Unsupported shard index version " + version + " in " + index);
+
+			final int n = dis.readInt();
+			final List<Entry> entries = new ArrayList<Entry>(n);
+			for (int i = 0; i < n; i++)
+				entries.add(new Entry(dis.readUTF(), dis.readLong(), dis.readInt()));
+			return entries;
+		} finally {
+			dis.close();
+		}
+	}
+
+	private static void writeIndex(File index, List<Entry> entries) throws IOException {
+		final FileOutputStream fos = new FileOutputStream(index);
+		try {
+			final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			dos.writeInt(INDEX_VERSION);
+			dos.writeInt(entries.size());
+			for (final Entry e : entries) {
+				dos.writeUTF(e.key);
+				dos.writeLong(e.offset);
+				dos.writeInt(e.length);
+			}
+			dos.flush();
+			fos.getFD().sync();
+		} finally {
+			fos.close();
+		}
+	}
+}
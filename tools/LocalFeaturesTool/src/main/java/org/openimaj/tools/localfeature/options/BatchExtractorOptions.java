@@ -52,7 +52,7 @@ public class BatchExtractorOptions extends BaseExtractorOptions {
 	@Option(name = "--output", aliases = "-o", usage = "output directory", required = true)
 	private File outputBase;
 
-	@Option(name = "--output-ext", aliases = "-e", usage = "output extension", required = true)
+	@Option(name = "--output-ext", aliases = "-e", usage = "output extension (required unless writing shards)")
 	private File outputExt;
 
 	@Option(name = "--input-regex", aliases = "-r", usage = "input regex")
@@ -64,6 +64,20 @@ public class BatchExtractorOptions extends BaseExtractorOptions {
 	@Option(name = "-j", usage = "number of threads to use (defaults to the number of CPU cores)", required = false)
 	private int njobs = 0;
 
+	@Option(
+			name = "--shard-size",
+			usage = "pack the features into shard files of approximately this many megabytes in the output directory, rather than writing one file per image")
+	private long shardSizeMB = 0;
+
+	@Option(name = "--readers", usage = "number of threads reading the input files")
+	private int nreaders = 2;
+
+	@Option(name = "--queue-size", usage = "capacity of each of the queues between the stages of the pipeline")
+	private int queueSize = 64;
+
+	@Option(name = "--report-interval", usage = "seconds between progress reports (0 to disable)")
+	private int reportInterval = 30;
+
 	/**
 	 * Get the input files
 	 *
@@ -84,11 +98,16 @@ public class BatchExtractorOptions extends BaseExtractorOptions {
 			} else {
 				// check matches regex
 				if (inputRegex == null || f.getName().matches(inputRegex)) {
-					// check output
-					final File output = getOutput(f);
-
-					if (!output.exists() || force) {
+					if (isSharded()) {
+						// completed inputs are determined by the shard writer
 						files.add(f);
+					} else {
+						// check output
+						final File output = getOutput(f);
+
+						if (!output.exists() || force) {
+							files.add(f);
+						}
 					}
 				}
 			}
@@ -116,14 +135,88 @@ public class BatchExtractorOptions extends BaseExtractorOptions {
 		return output;
 	}
 
+	/**
+	 * Get the key identifying the input in the output shards; this is the path
+	 * of the input relative to the input directory.
+	 *
+	 * @param f
+	 *            the input file
+	 * @return the key
+	 */
+	public String getKey(File f) {
+		return inputBase.toURI().relativize(f.toURI()).getPath();
+	}
+
+	/**
+	 * @return the output directory
+	 */
+	public File getOutputBase() {
+		return outputBase;
+	}
+
+	/**
+	 * @return the output extension, or null if not set
+	 */
+	public File getOutputExt() {
+		return outputExt;
+	}
+
+	/**
+	 * @return true if the output should be packed into shards
+	 */
+	public boolean isSharded() {
+		return shardSizeMB > 0;
+	}
+
+	/**
+	 * @return the maximum size of an output shard in bytes
+	 */
+	public long getShardSize() {
+		return shardSizeMB * 1024L * 1024L;
+	}
+
+	/**
+	 * @return true if existing outputs should be regenerated
+	 */
+	public boolean isForce() {
+		return force;
+	}
+
+	/**
+	 * @return the number of threads to use for extracting features
+	 */
+	public int getNumThreads() {
+		return this.njobs <= 0 ? Runtime.getRuntime().availableProcessors() : njobs;
+	}
+
+	/**
+	 * @return the number of threads to use for reading the inputs
+	 */
+	public int getNumReaders() {
+		return Math.max(1, nreaders);
+	}
+
+	/**
+	 * @return the capacity of the queues between the pipeline stages
+	 */
+	public int getQueueSize() {
+		return Math.max(1, queueSize);
+	}
+
+	/**
+	 * @return the number of seconds between progress reports, or 0 if
+	 *         progress should not be reported
+	 */
+	public int getReportInterval() {
+		return reportInterval;
+	}
+
 	/**
 	 * Get the thread pool to use for performing operations
 	 *
 	 * @return the thread pool
 	 */
 	public ThreadPoolExecutor getThreadPool() {
-		final int numThreads = this.njobs <= 0 ? Runtime.getRuntime().availableProcessors() : njobs;
-
-		return (ThreadPoolExecutor) Executors.newFixedThreadPool(numThreads, new DaemonThreadFactory());
+		return (ThreadPoolExecutor) Executors.newFixedThreadPool(getNumThreads(), new DaemonThreadFactory());
 	}
 }
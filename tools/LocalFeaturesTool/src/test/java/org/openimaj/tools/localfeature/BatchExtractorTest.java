@@ -0,0 +1,234 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.tools.localfeature;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.openimaj.feature.local.list.MemoryLocalFeatureList;
+import org.openimaj.image.feature.local.keypoints.Keypoint;
+
+/**
+ * Tests for the {@link BatchExtractor} and the sharded output
+ *
+ * @author agent (agent@local)
+ */
+public class BatchExtractorTest {
+	/**
+	 * Temporary folder
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] record(int i) {
+		final byte[] data = new byte[10 + i];
+		for (int j = 0; j < data.length; j++)
+			data[j] = (byte) (i * 31 + j);
+		return data;
+	}
+
+	/**
+	 * Test that records can be written and read back, and that uncommitted
+	 * records are discarded when the writer is reopened
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testShardsResume() throws IOException {
+		final File dir = folder.newFolder("shards");
+
+		ShardedFeatureWriter writer = new ShardedFeatureWriter(dir, 50, false);
+		for (int i = 0; i < 10; i++)
+			writer.write("key" + i, record(i));
+		final int committed = writer.getCommittedShards();
+		final int numCommittedKeys = writer.getCommittedKeys().size();
+		assertTrue(committed > 1);
+		assertTrue(numCommittedKeys < 10);
+		// simulate a crash by not closing the writer
+
+		writer = new ShardedFeatureWriter(dir, 50, false);
+		assertEquals(committed, writer.getCommittedShards());
+		assertEquals(numCommittedKeys, writer.getCommittedKeys().size());
+		for (int i = 0; i < 10; i++) {
+			if (!writer.getCommittedKeys().contains("key" + i))
+				writer.write("key" + i, record(i));
+		}
+		writer.close();
+
+		for (final File f : dir.listFiles())
+			assertFalse(f.getName().endsWith(".tmp"));
+
+		final ShardedFeatureReader reader = new ShardedFeatureReader(dir);
+		try {
+			assertEquals(10, reader.size());
+			for (int i = 9; i >= 0; i--)
+				assertArrayEquals(record(i), reader.read("key" + i));
+			assertNull(reader.read("missing"));
+		} finally {
+			reader.close();
+		}
+
+		writer = new ShardedFeatureWriter(dir, 50, true);
+		assertEquals(0, writer.getCommittedShards());
+		assertTrue(writer.getCommittedKeys().isEmpty());
+		writer.close();
+	}
+
+	/**
+	 * Test that the sharded output of the tool matches the features
+	 * extracted from each image individually
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testShardedExtraction() throws IOException, InterruptedException {
+		final File input = folder.newFolder("images");
+		final File output = folder.newFolder("features");
+
+		for (int i = 0; i < 3; i++) {
+			final File dir = new File(input, "dir" + i);
+			dir.mkdirs();
+
+			final InputStream is = getClass().getResourceAsStream("/org/openimaj/tools/localfeature/ukbench00000.jpg");
+			try {
+				FileUtils.copyInputStreamToFile(is, new File(dir, "image.jpg"));
+			} finally {
+				is.close();
+			}
+		}
+
+		final String[] common = {
+				"-i", input.getAbsolutePath(),
+				"-it", "RESIZE_MAX",
+				"-dmax", "200",
+				"--report-interval", "0"
+		};
+
+		final File single = folder.newFile("single.key");
+		Extractor.main(new String[] {
+				"-i", new File(input, "dir0/image.jpg").getAbsolutePath(),
+				"-o", single.getAbsolutePath(),
+				"-it", "RESIZE_MAX",
+				"-dmax", "200"
+		});
+		final List<Keypoint> expected = MemoryLocalFeatureList.read(single, Keypoint.class);
+
+		BatchExtractor.main(concat(common, "-o", output.getAbsolutePath(), "--shard-size", "1"));
+
+		final ShardedFeatureReader reader = new ShardedFeatureReader(output);
+		try {
+			assertEquals(3, reader.size());
+			for (int i = 0; i < 3; i++) {
+				final List<Keypoint> actual = reader.read("dir" + i + "/image.jpg", Keypoint.class);
+				assertEquals(expected.size(), actual.size());
+				for (int j = 0; j < expected.size(); j++)
+					assertArrayEquals(expected.get(j).ivec, actual.get(j).ivec);
+			}
+		} finally {
+			reader.close();
+		}
+
+		// everything is already committed, so nothing should change
+		final long modified = ShardedFeatureWriter.dataFile(output, 0).lastModified();
+		BatchExtractor.main(concat(common, "-o", output.getAbsolutePath(), "--shard-size", "1"));
+		assertEquals(1, ShardedFeatureWriter.readCheckpoint(output));
+		assertEquals(modified, ShardedFeatureWriter.dataFile(output, 0).lastModified());
+
+		// per-file output
+		final File files = folder.newFolder("files");
+		BatchExtractor.main(concat(common, "-o", files.getAbsolutePath(), "-e", ".key"));
+		for (int i = 0; i < 3; i++)
+			assertEquals(expected.size(),
+					MemoryLocalFeatureList.read(new File(files, "dir" + i + "/image.key"), Keypoint.class).size());
+	}
+
+	/**
+	 * Test that a failure writing the output of one image doesn't stop the
+	 * others from being written
+	 *
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testWriteFailureContinues() throws IOException, InterruptedException {
+		final File input = folder.newFolder("images");
+		final File output = folder.newFolder("files");
+
+		for (int i = 0; i < 3; i++) {
+			final File dir = new File(input, "dir" + i);
+			dir.mkdirs();
+
+			final InputStream is = getClass().getResourceAsStream("/org/openimaj/tools/localfeature/ukbench00000.jpg");
+			try {
+				FileUtils.copyInputStreamToFile(is, new File(dir, "image.jpg"));
+			} finally {
+				is.close();
+			}
+		}
+
+		// the output for dir1 can't be written as a file of that name can't
+		// be created
+		new File(output, "dir1/image.key").mkdirs();
+
+		BatchExtractor.main(new String[] {
+				"-i", input.getAbsolutePath(),
+				"-o", output.getAbsolutePath(),
+				"-e", ".key",
+				"-it", "RESIZE_MAX",
+				"-dmax", "200",
+				"--report-interval", "0",
+				"--force"
+		});
+
+		assertTrue(new File(output, "dir0/image.key").isFile());
+		assertTrue(new File(output, "dir1/image.key").isDirectory());
+		assertTrue(new File(output, "dir2/image.key").isFile());
+	}
+
+	private static String[] concat(String[] a, String... b) {
+		final String[] r = new String[a.length + b.length];
+		System.arraycopy(a, 0, r, 0, a.length);
+		System.arraycopy(b, 0, r, a.length, b.length);
+		return r;
+	}
+}
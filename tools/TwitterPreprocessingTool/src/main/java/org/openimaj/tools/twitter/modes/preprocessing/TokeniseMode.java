@@ -34,7 +34,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.openimaj.text.nlp.TweetTokenBuffer;
 import org.openimaj.text.nlp.TweetTokeniser;
+import org.openimaj.text.nlp.TweetTokeniserEngine;
 import org.openimaj.text.nlp.language.LanguageDetector.WeightedLocale;
 import org.openimaj.twitter.USMFStatus;
 
@@ -50,6 +52,14 @@ public class TokeniseMode extends TwitterPreprocessingMode<Map<String, List<Stri
 	public static final String TOKENS_UNPROTECTED = "unprotected";
 	public static final String TOKENS_PROTECTED = "protected";
 	public static final String TOKENS_ALL = "all";
+	private static final TweetTokeniserEngine ENGINE = new TweetTokeniserEngine();
+	private static final ThreadLocal<TweetTokenBuffer> BUFFER = new ThreadLocal<TweetTokenBuffer>() {
+		@Override
+		protected TweetTokenBuffer initialValue() {
+			return new TweetTokenBuffer();
+		}
+	};
+
 	private LanguageDetectionMode langMode;
 
 	/**
@@ -66,7 +76,6 @@ public class TokeniseMode extends TwitterPreprocessingMode<Map<String, List<Stri
 
 	@Override
 	public Map<String, List<String>> process(USMFStatus twitterStatus) {
-		TweetTokeniser tokeniser;
 		final Map<String, List<String>> tokens = new HashMap<String, List<String>>();
 		twitterStatus.addAnalysis(TOKENS, tokens);
 		try {
@@ -78,7 +87,7 @@ public class TokeniseMode extends TwitterPreprocessingMode<Map<String, List<Stri
 				}
 			}
 
-			tokeniser = new TweetTokeniser(twitterStatus.text);
+			final TweetTokenBuffer tokeniser = ENGINE.tokenise(twitterStatus.text, BUFFER.get());
 			tokens.put(TOKENS_ALL, tokeniser.getStringTokens());
 			tokens.put(TOKENS_PROTECTED, tokeniser.getProtectedStringTokens());
 			tokens.put(TOKENS_UNPROTECTED, tokeniser.getUnprotectedStringTokens());
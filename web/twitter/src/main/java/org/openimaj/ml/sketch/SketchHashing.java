@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.sketch;
+
+import java.nio.charset.Charset;
+
+import org.openimaj.util.hash.StringMurmurHashFunction;
+
+/**
+ * Hashing utilities shared by the sketches. Each item is hashed once into a
+ * pair of 32-bit Murmur hashes, from which any number of hash functions can be
+ * derived by double hashing (h1 + i * h2), as described in Kirsch &amp;
+ * Mitzenmacher's "Less Hashing, Same Performance: Building a Better Bloom
+ * Filter". The hashes depend only on the UTF-8 bytes of the item and the
+ * seed, so sketches built with the same seed in different processes are
+ * compatible and can be merged.
+ *
+ * @author agent (agent@local)
+ */
+public final class SketchHashing {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private SketchHashing() {
+	}
+
+	/**
+	 * Compute a 64-bit hash of the given string, made up of two independent
+	 * 32-bit Murmur hashes.
+	 *
+	 * @param data
+	 *            the data to hash
+	 * @param seed
+	 *            the seed
+	 * @return the hash
+	 */
+	public static long hash64(String data, long seed) {
+		final byte[] bytes = data.getBytes(UTF8);
+		final int h1 = StringMurmurHashFunction.murmurhash(bytes, bytes.length, (int) seed);
+		final int h2 = StringMurmurHashFunction.murmurhash(bytes, bytes.length, (int) (seed >>> 32) ^ 0x9e3779b9);
+
+		return ((long) h1 << 32) | (h2 & 0xffffffffL);
+	}
+
+	/**
+	 * Get the index into a table of the given width for the i-th derived hash
+	 * function.
+	 *
+	 * @param hash
+	 *            the 64-bit hash from {@link #hash64(String, long)}
+	 * @param i
+	 *            the index of the hash function
+	 * @param width
+	 *            the width of the table
+	 * @return the index in the range [0, width)
+	 */
+	public static int index(long hash, int i, int width) {
+		final int h1 = (int) (hash >>> 32);
+		final int h2 = (int) hash;
+
+		return ((h1 + i * h2) & Integer.MAX_VALUE) % width;
+	}
+}
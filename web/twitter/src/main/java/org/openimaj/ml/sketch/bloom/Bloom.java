@@ -29,63 +29,178 @@
  */
 package org.openimaj.ml.sketch.bloom;
 
-import gnu.trove.map.hash.TIntIntHashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
 
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.ml.sketch.SketchHashing;
 import org.openimaj.ml.sketch.SummarySketcher;
-import org.openimaj.util.hash.StringMurmurHashFunction;
-import org.openimaj.util.hash.StringMurmurHashFunctionFactory;
 
 /**
  * The bloom sketch as described by
  * http://lkozma.net/blog/sketching-data-structures/
- * 
+ * <p>
+ * The filter is held as a packed bit array. Filters constructed with the same
+ * number of hash functions, width and seed can be combined with
+ * {@link #merge(Bloom)}.
+ *
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
- * 
+ *
  */
-public class Bloom implements SummarySketcher<String, Boolean> {
+public class Bloom implements SummarySketcher<String, Boolean>, ReadWriteableBinary {
+	private static final byte[] HEADER = "BLM1".getBytes();
 
-	private StringMurmurHashFunction[] maps;
-	private TIntIntHashMap table;
+	private int ntables;
 	private int nwords;
+	private long seed;
+	private long[] bits;
 
 	/**
+	 * Construct an empty filter for deserialisation
+	 */
+	public Bloom() {
+	}
+
+	/**
+	 * Construct with randomly seeded hash functions.
+	 *
 	 * @param ntables
 	 *            the number of hash functions
 	 * @param nwords
 	 *            the range of the hash functions
 	 */
 	public Bloom(int ntables, int nwords) {
-		maps = new StringMurmurHashFunction[ntables];
+		this(ntables, nwords, new Random().nextLong());
+	}
 
-		final StringMurmurHashFunctionFactory fact = new StringMurmurHashFunctionFactory();
-		for (int i = 0; i < maps.length; i++) {
-			maps[i] = fact.create();
-		}
+	/**
+	 * Construct with hash functions determined by the given seed.
+	 *
+	 * @param ntables
+	 *            the number of hash functions
+	 * @param nwords
+	 *            the range of the hash functions
+	 * @param seed
+	 *            the seed for the hash functions
+	 */
+	public Bloom(int ntables, int nwords, long seed) {
+		if (ntables <= 0 || nwords <= 0)
+			throw new IllegalArgumentException("ntables and nwords must be positive");
 
+		this.ntables = ntables;
 		this.nwords = nwords;
-		this.table = new TIntIntHashMap(nwords);
+		this.seed = seed;
+		this.bits = new long[(nwords + 63) >>> 6];
 	}
 
 	@Override
 	public void update(String data, Boolean value) {
-		for (final StringMurmurHashFunction map : maps) {
-			final int hash = map.computeHashCode(data);
-			final int loc = Math.abs(hash) % this.nwords;
-			this.table.put(loc, 1);
-		}
+		add(data);
 	}
 
 	@Override
 	public Boolean query(String data) {
-		boolean found = false;
-		for (final StringMurmurHashFunction map : maps) {
-			final int hash = map.computeHashCode(data);
-			final int loc = Math.abs(hash) % this.nwords;
-			found = this.table.get(loc) == 1;
-			if (found)
-				return found;
+		return contains(data);
+	}
+
+	/**
+	 * Add an item to the filter
+	 *
+	 * @param data
+	 *            the item
+	 */
+	public void add(String data) {
+		final long hash = SketchHashing.hash64(data, seed);
+
+		for (int i = 0; i < ntables; i++) {
+			final int loc = SketchHashing.index(hash, i, nwords);
+			bits[loc >>> 6] |= 1L << loc;
 		}
-		return found;
 	}
 
+	/**
+	 * Test whether an item might have been added to the filter. False
+	 * positives are possible, but false negatives are not.
+	 *
+	 * @param data
+	 *            the item
+	 * @return true if the item might have been added; false if it definitely
+	 *         was not
+	 */
+	public boolean contains(String data) {
+		final long hash = SketchHashing.hash64(data, seed);
+
+		for (int i = 0; i < ntables; i++) {
+			final int loc = SketchHashing.index(hash, i, nwords);
+			if ((bits[loc >>> 6] & (1L << loc)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Add all the items of another filter to this one. The other filter must
+	 * have the same dimensions and seed.
+	 *
+	 * @param other
+	 *            the filter to merge into this one
+	 * @throws IllegalArgumentException
+	 *             if the filters are not compatible
+	 */
+	public void merge(Bloom other) {
+		if (other.ntables != ntables || other.nwords != nwords || other.seed != seed)
+			throw new IllegalArgumentException("Cannot merge filters with different dimensions or seeds");
+
+		for (int i = 0; i < bits.length; i++)
+			bits[i] |= other.bits[i];
+	}
+
+	/**
+	 * @return the number of hash functions
+	 */
+	public int getNumTables() {
+		return ntables;
+	}
+
+	/**
+	 * @return the range of the hash functions
+	 */
+	public int getNumWords() {
+		return nwords;
+	}
+
+	/**
+	 * @return the seed of the hash functions
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		ntables = in.readInt();
+		nwords = in.readInt();
+		seed = in.readLong();
+
+		bits = new long[(nwords + 63) >>> 6];
+		for (int i = 0; i < bits.length; i++)
+			bits[i] = in.readLong();
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(ntables);
+		out.writeInt(nwords);
+		out.writeLong(seed);
+
+		for (final long b : bits)
+			out.writeLong(b);
+	}
 }
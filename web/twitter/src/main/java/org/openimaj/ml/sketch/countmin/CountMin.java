@@ -29,70 +29,251 @@
  */
 package org.openimaj.ml.sketch.countmin;
 
-import gnu.trove.map.hash.TIntIntHashMap;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
 
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.ml.sketch.SketchHashing;
 import org.openimaj.ml.sketch.SummarySketcher;
-import org.openimaj.util.hash.StringMurmurHashFunction;
-import org.openimaj.util.hash.StringMurmurHashFunctionFactory;
-import org.openimaj.util.pair.IndependentPair;
 
 /**
- * CountMin as described in the reference below
- * 
+ * CountMin as described in "An Improved Data Stream Summary: The Count-Min
+ * Sketch and its Applications" by Cormode and Muthukrishnan.
+ * <p>
+ * The counters are held in a single flat array of ntables rows, each nwords
+ * wide. Optionally, conservative update can be used; this only increments the
+ * counters that would otherwise be smaller than the new estimate, which
+ * reduces the over-estimation error for positive updates.
+ * <p>
+ * Sketches constructed with the same number of tables, width and seed use
+ * the same hash functions and can be combined with {@link #merge(CountMin)},
+ * for example to aggregate the sketches built by several mappers or bolts.
+ *
  * @author Sina Samangooei (ss@ecs.soton.ac.uk)
- * 
+ *
  */
-public class CountMin implements SummarySketcher<String, Integer> {
-
-	private static class FunctionHashPair extends IndependentPair<StringMurmurHashFunction, TIntIntHashMap> {
+public class CountMin implements SummarySketcher<String, Integer>, ReadWriteableBinary {
+	private static final byte[] HEADER = "CMS1".getBytes();
 
-		public FunctionHashPair(StringMurmurHashFunction func, TIntIntHashMap map) {
-			super(func, map);
+	private int ntables;
+	private int nwords;
+	private long seed;
+	private boolean conservative;
+	private int[] table;
+	private long total;
 
-		}
+	/**
+	 * Construct an empty sketch for deserialisation
+	 */
+	public CountMin() {
 	}
 
-	private FunctionHashPair[] maps;
-	private int nwords;
-
 	/**
+	 * Construct with randomly seeded hash functions.
+	 *
 	 * @param ntables
 	 *            the number of hash functions
 	 * @param nwords
 	 *            the range of the hash functions
 	 */
 	public CountMin(int ntables, int nwords) {
-		maps = new FunctionHashPair[ntables];
+		this(ntables, nwords, new Random().nextLong(), false);
+	}
+
+	/**
+	 * Construct with hash functions determined by the given seed.
+	 *
+	 * @param ntables
+	 *            the number of hash functions
+	 * @param nwords
+	 *            the range of the hash functions
+	 * @param seed
+	 *            the seed for the hash functions
+	 * @param conservative
+	 *            if true, use conservative update
+	 */
+	public CountMin(int ntables, int nwords, long seed, boolean conservative) {
+		if (ntables <= 0 || nwords <= 0)
+			throw new IllegalArgumentException("ntables and nwords must be positive");
+
+		this.ntables = ntables;
 		this.nwords = nwords;
+		this.seed = seed;
+		this.conservative = conservative;
+		this.table = new int[ntables * nwords];
+	}
 
-		final StringMurmurHashFunctionFactory fact = new StringMurmurHashFunctionFactory();
-		for (int i = 0; i < maps.length; i++) {
-			maps[i] = new FunctionHashPair(fact.create(), new TIntIntHashMap());
-		}
+	/**
+	 * Construct a sketch with dimensions chosen so that estimates exceed the
+	 * true count by at most epsilon times the total count with probability
+	 * at least 1 - delta.
+	 *
+	 * @param epsilon
+	 *            the relative error
+	 * @param delta
+	 *            the probability of exceeding the error
+	 * @param seed
+	 *            the seed for the hash functions
+	 * @param conservative
+	 *            if true, use conservative update
+	 * @return the sketch
+	 */
+	public static CountMin create(double epsilon, double delta, long seed, boolean conservative) {
+		final int nwords = (int) Math.ceil(Math.E / epsilon);
+		final int ntables = (int) Math.ceil(Math.log(1 / delta));
+
+		return new CountMin(ntables, nwords, seed, conservative);
 	}
 
 	@Override
 	public void update(String data, Integer value) {
-		for (final FunctionHashPair map : this.maps) {
-			final int hash = map.firstObject().computeHashCode(data);
-			final int loc = Math.abs(hash) % this.nwords;
-
-			map.secondObject().adjustOrPutValue(loc, value, value);
-		}
+		add(data, value);
 	}
 
 	@Override
 	public Integer query(String data) {
-		int min = -1;
-		for (final FunctionHashPair map : this.maps) {
-			final int hash = map.firstObject().computeHashCode(data);
-			final int loc = Math.abs(hash) % this.nwords;
-			final int v = map.secondObject().get(loc);
-			if (min == -1 || min > v) {
-				min = v;
+		return estimate(data);
+	}
+
+	/**
+	 * Add the given count for the item. Conservative update is only applied
+	 * to positive counts.
+	 *
+	 * @param data
+	 *            the item
+	 * @param count
+	 *            the count to add
+	 * @return the estimated count of the item after the update
+	 */
+	public int add(String data, int count) {
+		final long hash = SketchHashing.hash64(data, seed);
+		total += count;
+
+		if (conservative && count > 0) {
+			final int target = estimate(hash) + count;
+
+			for (int i = 0, offset = 0; i < ntables; i++, offset += nwords) {
+				final int loc = offset + SketchHashing.index(hash, i, nwords);
+				if (table[loc] < target)
+					table[loc] = target;
 			}
+			return target;
+		}
+
+		int min = Integer.MAX_VALUE;
+		for (int i = 0, offset = 0; i < ntables; i++, offset += nwords) {
+			final int loc = offset + SketchHashing.index(hash, i, nwords);
+			final int v = (table[loc] += count);
+			if (v < min)
+				min = v;
 		}
 		return min;
 	}
 
+	/**
+	 * Estimate the count of the given item. The estimate is never smaller
+	 * than the true count if only positive counts have been added.
+	 *
+	 * @param data
+	 *            the item
+	 * @return the estimated count
+	 */
+	public int estimate(String data) {
+		return estimate(SketchHashing.hash64(data, seed));
+	}
+
+	private int estimate(long hash) {
+		int min = Integer.MAX_VALUE;
+		for (int i = 0, offset = 0; i < ntables; i++, offset += nwords) {
+			final int v = table[offset + SketchHashing.index(hash, i, nwords)];
+			if (v < min)
+				min = v;
+		}
+		return min;
+	}
+
+	/**
+	 * Add the counts from another sketch to this one. The other sketch must
+	 * have the same dimensions and seed.
+	 *
+	 * @param other
+	 *            the sketch to merge into this one
+	 * @throws IllegalArgumentException
+	 *             if the sketches are not compatible
+	 */
+	public void merge(CountMin other) {
+		if (other.ntables != ntables || other.nwords != nwords || other.seed != seed)
+			throw new IllegalArgumentException("Cannot merge sketches with different dimensions or seeds");
+
+		for (int i = 0; i < table.length; i++)
+			table[i] += other.table[i];
+		total += other.total;
+	}
+
+	/**
+	 * @return the sum of all the counts added to the sketch
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * @return the number of hash functions
+	 */
+	public int getNumTables() {
+		return ntables;
+	}
+
+	/**
+	 * @return the range of the hash functions
+	 */
+	public int getNumWords() {
+		return nwords;
+	}
+
+	/**
+	 * @return the seed of the hash functions
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @return true if conservative update is used
+	 */
+	public boolean isConservative() {
+		return conservative;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		ntables = in.readInt();
+		nwords = in.readInt();
+		seed = in.readLong();
+		conservative = in.readBoolean();
+		total = in.readLong();
+
+		table = new int[ntables * nwords];
+		for (int i = 0; i < table.length; i++)
+			table[i] = in.readInt();
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(ntables);
+		out.writeInt(nwords);
+		out.writeLong(seed);
+		out.writeBoolean(conservative);
+		out.writeLong(total);
+
+		for (final int v : table)
+			out.writeInt(v);
+	}
 }
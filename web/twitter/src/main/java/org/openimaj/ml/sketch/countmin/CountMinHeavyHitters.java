@@ -0,0 +1,241 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.sketch.countmin;
+
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.procedure.TObjectIntProcedure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.ml.sketch.SummarySketcher;
+import org.openimaj.util.pair.ObjectIntPair;
+
+/**
+ * Track the approximate top-k most frequent items of a stream using a
+ * {@link CountMin} sketch to estimate the counts, and a small set of
+ * candidate items with the largest estimates seen so far. An item replaces
+ * the current smallest candidate when its estimated count exceeds it.
+ * <p>
+ * Like the underlying {@link CountMin}, trackers built from compatible
+ * sketches can be combined with {@link #merge(CountMinHeavyHitters)}; the
+ * candidates of both are re-estimated against the merged sketch.
+ *
+ * @author agent (agent@local)
+ */
+public class CountMinHeavyHitters implements SummarySketcher<String, Integer>, ReadWriteableBinary {
+	private static final byte[] HEADER = "CMHH".getBytes();
+
+	private int k;
+	private CountMin sketch;
+	private TObjectIntHashMap<String> candidates;
+	private String minKey;
+	private int minCount;
+
+	/**
+	 * Construct an empty tracker for deserialisation
+	 */
+	public CountMinHeavyHitters() {
+	}
+
+	/**
+	 * Construct a tracker for the k most frequent items using the given
+	 * sketch to estimate counts.
+	 *
+	 * @param k
+	 *            the number of items to track
+	 * @param sketch
+	 *            the sketch
+	 */
+	public CountMinHeavyHitters(int k, CountMin sketch) {
+		if (k <= 0)
+			throw new IllegalArgumentException("k must be positive");
+
+		this.k = k;
+		this.sketch = sketch;
+		this.candidates = new TObjectIntHashMap<String>(2 * k);
+	}
+
+	@Override
+	public void update(String data, Integer value) {
+		add(data, value);
+	}
+
+	@Override
+	public Integer query(String data) {
+		return sketch.estimate(data);
+	}
+
+	/**
+	 * Add the given count for the item
+	 *
+	 * @param data
+	 *            the item
+	 * @param count
+	 *            the count to add
+	 */
+	public void add(String data, int count) {
+		offer(data, sketch.add(data, count));
+	}
+
+	private void offer(String data, int estimate) {
+		if (candidates.containsKey(data)) {
+			candidates.put(data, estimate);
+
+			if (data.equals(minKey))
+				findMin();
+			else if (estimate < minCount) {
+				minKey = data;
+				minCount = estimate;
+			}
+		} else if (candidates.size() < k) {
+			candidates.put(data, estimate);
+
+			if (minKey == null || estimate < minCount) {
+				minKey = data;
+				minCount = estimate;
+			}
+		} else if (estimate > minCount) {
+			candidates.remove(minKey);
+			candidates.put(data, estimate);
+			findMin();
+		}
+	}
+
+	private void findMin() {
+		minKey = null;
+		minCount = Integer.MAX_VALUE;
+
+		candidates.forEachEntry(new TObjectIntProcedure<String>() {
+			@Override
+			public boolean execute(String key, int count) {
+				if (minKey == null || count < minCount) {
+					minKey = key;
+					minCount = count;
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * Get the tracked items and their current estimated counts, in
+	 * descending order of count.
+	 *
+	 * @return the top items
+	 */
+	public List<ObjectIntPair<String>> getTopK() {
+		final List<ObjectIntPair<String>> top = new ArrayList<ObjectIntPair<String>>(candidates.size());
+
+		for (final String key : candidates.keySet())
+			top.add(ObjectIntPair.pair(key, sketch.estimate(key)));
+
+		Collections.sort(top, ObjectIntPair.SECOND_ITEM_DESCENDING_COMPARATOR);
+		return top;
+	}
+
+	/**
+	 * Merge another tracker into this one. The underlying sketches must be
+	 * compatible; the number of tracked items of this tracker is retained.
+	 *
+	 * @param other
+	 *            the tracker to merge into this one
+	 * @throws IllegalArgumentException
+	 *             if the sketches are not compatible
+	 */
+	public void merge(CountMinHeavyHitters other) {
+		sketch.merge(other.sketch);
+
+		final List<ObjectIntPair<String>> all = new ArrayList<ObjectIntPair<String>>();
+		for (final String key : candidates.keySet())
+			all.add(ObjectIntPair.pair(key, sketch.estimate(key)));
+		for (final String key : other.candidates.keySet()) {
+			if (!candidates.containsKey(key))
+				all.add(ObjectIntPair.pair(key, sketch.estimate(key)));
+		}
+		Collections.sort(all, ObjectIntPair.SECOND_ITEM_DESCENDING_COMPARATOR);
+
+		candidates.clear();
+		for (int i = 0; i < Math.min(k, all.size()); i++)
+			candidates.put(all.get(i).first, all.get(i).second);
+		findMin();
+	}
+
+	/**
+	 * @return the number of items tracked
+	 */
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return the underlying sketch
+	 */
+	public CountMin getSketch() {
+		return sketch;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		k = in.readInt();
+		sketch = new CountMin();
+		sketch.readBinary(in);
+
+		final int n = in.readInt();
+		candidates = new TObjectIntHashMap<String>(2 * k);
+		for (int i = 0; i < n; i++) {
+			final String key = in.readUTF();
+			candidates.put(key, in.readInt());
+		}
+		findMin();
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(k);
+		sketch.writeBinary(out);
+
+		out.writeInt(candidates.size());
+		for (final String key : candidates.keySet()) {
+			out.writeUTF(key);
+			out.writeInt(candidates.get(key));
+		}
+	}
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.sketch.hyperloglog;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.ml.sketch.SketchHashing;
+
+/**
+ * HyperLogLog distinct counting, as described in "HyperLogLog: the analysis
+ * of a near-optimal cardinality estimation algorithm" by Flajolet et al. Uses
+ * 2^precision single-byte registers and a 64-bit hash, so no large-range
+ * correction is required; small cardinalities are estimated by linear
+ * counting. The relative standard error is approximately
+ * 1.04/sqrt(2^precision).
+ * <p>
+ * Counters constructed with the same precision and seed can be combined with
+ * {@link #merge(HyperLogLog)} to estimate the cardinality of the union of
+ * their inputs.
+ *
+ * @author agent (agent@local)
+ */
+public class HyperLogLog implements ReadWriteableBinary {
+	private static final byte[] HEADER = "HLL1".getBytes();
+
+	private int precision;
+	private long seed;
+	private byte[] registers;
+
+	/**
+	 * Construct an empty counter for deserialisation
+	 */
+	public HyperLogLog() {
+	}
+
+	/**
+	 * Construct with the given precision and a default seed
+	 *
+	 * @param precision
+	 *            the number of bits used to select a register (4 to 16)
+	 */
+	public HyperLogLog(int precision) {
+		this(precision, 0);
+	}
+
+	/**
+	 * Construct with the given precision and seed
+	 *
+	 * @param precision
+	 *            the number of bits used to select a register (4 to 16)
+	 * @param seed
+	 *            the seed for the hash function
+	 */
+	public HyperLogLog(int precision, long seed) {
+		if (precision < 4 || precision > 16)
+			throw new IllegalArgumentException("precision must be between 4 and 16");
+
+		this.precision = precision;
+		this.seed = seed;
+		this.registers = new byte[1 << precision];
+	}
+
+	/**
+	 * Add an item
+	 *
+	 * @param data
+	 *            the item
+	 */
+	public void offer(String data) {
+		final long hash = SketchHashing.hash64(data, seed);
+		final int idx = (int) (hash >>> (64 - precision));
+		final long w = (hash << precision) | (1L << (precision - 1));
+		final byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+
+		if (rank > registers[idx])
+			registers[idx] = rank;
+	}
+
+	/**
+	 * @return the estimated number of distinct items added
+	 */
+	public long cardinality() {
+		final int m = registers.length;
+
+		double sum = 0;
+		int zeros = 0;
+		for (final byte r : registers) {
+			sum += Math.scalb(1.0, -r);
+			if (r == 0)
+				zeros++;
+		}
+
+		final double estimate = alpha(m) * m * m / sum;
+		if (estimate <= 2.5 * m && zeros > 0)
+			return Math.round(m * Math.log((double) m / zeros));
+
+		return Math.round(estimate);
+	}
+
+	private static double alpha(int m) {
+		switch (m) {
+		case 16:
+			return 0.673;
+		case 32:
+			return 0.697;
+		case 64:
+			return 0.709;
+		default:
+			return 0.7213 / (1 + 1.079 / m);
+		}
+	}
+
+	/**
+	 * Add all the items of another counter to this one. The other counter
+	 * must have the same precision and seed.
+	 *
+	 * @param other
+	 *            the counter to merge into this one
+	 * @throws IllegalArgumentException
+	 *             if the counters are not compatible
+	 */
+	public void merge(HyperLogLog other) {
+		if (other.precision != precision || other.seed != seed)
+			throw new IllegalArgumentException("Cannot merge counters with different precisions or seeds");
+
+		for (int i = 0; i < registers.length; i++) {
+			if (other.registers[i] > registers[i])
+				registers[i] = other.registers[i];
+		}
+	}
+
+	/**
+	 * @return the precision
+	 */
+	public int getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * @return the seed of the hash function
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	@Override
+	public void readBinary(DataInput in) throws IOException {
+		precision = in.readInt();
+		seed = in.readLong();
+		registers = new byte[1 << precision];
+		in.readFully(registers);
+	}
+
+	@Override
+	public byte[] binaryHeader() {
+		return HEADER;
+	}
+
+	@Override
+	public void writeBinary(DataOutput out) throws IOException {
+		out.writeInt(precision);
+		out.writeLong(seed);
+		out.write(registers);
+	}
+}
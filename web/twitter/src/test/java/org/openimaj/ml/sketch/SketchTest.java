@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2011, The University of Southampton and the individual contributors.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *   * 	Redistributions of source code must retain the above copyright notice,
+ * 	this list of conditions and the following disclaimer.
+ *
+ *   *	Redistributions in binary form must reproduce the above copyright notice,
+ * 	this list of conditions and the following disclaimer in the documentation
+ * 	and/or other materials provided with the distribution.
+ *
+ *   *	Neither the name of the University of Southampton nor the names of its
+ * 	contributors may be used to endorse or promote products derived from this
+ * 	software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON
+ * ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.openimaj.ml.sketch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+import org.openimaj.io.ReadWriteableBinary;
+import org.openimaj.ml.sketch.bloom.Bloom;
+import org.openimaj.ml.sketch.countmin.CountMin;
+import org.openimaj.ml.sketch.countmin.CountMinHeavyHitters;
+import org.openimaj.ml.sketch.hyperloglog.HyperLogLog;
+import org.openimaj.util.pair.ObjectIntPair;
+
+/**
+ * Tests for the sketches
+ *
+ * @author agent (agent@local)
+ */
+public class SketchTest {
+	private static <T extends ReadWriteableBinary> T roundTrip(T in, T out) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		in.writeBinary(new DataOutputStream(baos));
+		out.readBinary(new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+		return out;
+	}
+
+	/**
+	 * Test that merged CountMin sketches give the same estimates as a single
+	 * sketch over all the data, and survive serialisation
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testCountMin() throws IOException {
+		final CountMin a = new CountMin(4, 1000, 42, false);
+		final CountMin b = new CountMin(4, 1000, 42, false);
+		final CountMin all = new CountMin(4, 1000, 42, false);
+
+		for (int i = 0; i < 2000; i++) {
+			final String word = "word" + (i % 300);
+			(i % 2 == 0 ? a : b).update(word, 1);
+			all.update(word, 1);
+		}
+
+		a.merge(b);
+		final CountMin read = roundTrip(a, new CountMin());
+
+		for (int i = 0; i < 300; i++) {
+			final String word = "word" + i;
+			final int truth = 2000 / 300 + (i < 2000 % 300 ? 1 : 0);
+
+			assertEquals(all.query(word), read.query(word));
+			assertTrue(read.query(word) >= truth);
+		}
+		assertEquals(2000, read.getTotal());
+	}
+
+	/**
+	 * Test that conservative update never under-estimates and is at least as
+	 * accurate as the standard update
+	 */
+	@Test
+	public void testConservativeUpdate() {
+		final CountMin standard = new CountMin(3, 50, 1, false);
+		final CountMin conservative = new CountMin(3, 50, 1, true);
+
+		for (int i = 0; i < 5000; i++) {
+			final String word = "w" + (i * 7919 % 500);
+			standard.add(word, 1);
+			conservative.add(word, 1);
+		}
+
+		for (int i = 0; i < 500; i++) {
+			final String word = "w" + i;
+			assertTrue(conservative.estimate(word) >= 10);
+			assertTrue(conservative.estimate(word) <= standard.estimate(word));
+		}
+	}
+
+	/**
+	 * Test the heavy hitters find the most frequent items
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testHeavyHitters() throws IOException {
+		final CountMinHeavyHitters a = new CountMinHeavyHitters(3, new CountMin(4, 2000, 7, true));
+		final CountMinHeavyHitters b = new CountMinHeavyHitters(3, new CountMin(4, 2000, 7, true));
+
+		for (int i = 0; i < 1000; i++) {
+			a.add("rare" + i, 1);
+			b.add("uncommon" + i, 1);
+		}
+		a.add("first", 100);
+		b.add("first", 100);
+		a.add("second", 150);
+		b.add("third", 120);
+
+		a.merge(b);
+		final List<ObjectIntPair<String>> top = roundTrip(a, new CountMinHeavyHitters()).getTopK();
+
+		assertEquals(3, top.size());
+		assertEquals("first", top.get(0).first);
+		assertEquals("second", top.get(1).first);
+		assertEquals("third", top.get(2).first);
+		assertTrue(top.get(0).second >= 200);
+	}
+
+	/**
+	 * Test the Bloom filter has no false negatives and merges correctly
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testBloom() throws IOException {
+		final Bloom a = new Bloom(5, 10000, 3);
+		final Bloom b = new Bloom(5, 10000, 3);
+
+		for (int i = 0; i < 500; i++) {
+			a.update("a" + i, true);
+			b.update("b" + i, true);
+		}
+
+		a.merge(b);
+		final Bloom read = roundTrip(a, new Bloom());
+
+		int falsePositives = 0;
+		for (int i = 0; i < 500; i++) {
+			assertTrue(read.query("a" + i));
+			assertTrue(read.query("b" + i));
+			if (read.contains("c" + i))
+				falsePositives++;
+		}
+		assertTrue(falsePositives < 25);
+		assertFalse(new Bloom(5, 10000, 3).contains("a0"));
+	}
+
+	/**
+	 * Test the HyperLogLog estimates for small and large cardinalities and
+	 * merging
+	 *
+	 * @throws IOException
+	 */
+	@Test
+	public void testHyperLogLog() throws IOException {
+		final HyperLogLog a = new HyperLogLog(12);
+		final HyperLogLog b = new HyperLogLog(12);
+
+		for (int i = 0; i < 100; i++)
+			a.offer("item" + i);
+		assertEquals(100, a.cardinality(), 5);
+
+		for (int i = 0; i < 60000; i++) {
+			a.offer("item" + i);
+			b.offer("item" + (i + 40000));
+		}
+		assertEquals(60000, a.cardinality(), 60000 * 0.05);
+
+		a.merge(b);
+		assertEquals(100000, roundTrip(a, new HyperLogLog()).cardinality(), 100000 * 0.05);
+	}
+}